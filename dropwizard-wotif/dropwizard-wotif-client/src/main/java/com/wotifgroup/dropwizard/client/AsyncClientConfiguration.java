@@ -0,0 +1,88 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+
+/**
+ * Configuration for the {@link WotifAsyncClient}s built by {@link WotifJerseyClientBuilder#buildAsync(String)}.
+ */
+public class AsyncClientConfiguration {
+
+    @Min(1)
+    @Max(1024)
+    @JsonProperty
+    private int threads = 16;
+
+    @Min(1)
+    @JsonProperty
+    private int maxInFlightPerTarget = 8;
+
+    @Min(0)
+    @JsonProperty
+    private int maxQueuedPerTarget = 256;
+
+    /**
+     * Number of threads making calls.
+     */
+    public int getThreads() {
+        return threads;
+    }
+
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * Most calls made to a single target (host and port) at once. Further calls wait their turn.
+     */
+    public int getMaxInFlightPerTarget() {
+        return maxInFlightPerTarget;
+    }
+
+    public void setMaxInFlightPerTarget(int maxInFlightPerTarget) {
+        this.maxInFlightPerTarget = maxInFlightPerTarget;
+    }
+
+    /**
+     * Most calls waiting their turn for a single target, beyond which calls fail straight away.
+     */
+    public int getMaxQueuedPerTarget() {
+        return maxQueuedPerTarget;
+    }
+
+    public void setMaxQueuedPerTarget(int maxQueuedPerTarget) {
+        this.maxQueuedPerTarget = maxQueuedPerTarget;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("threads", threads)
+                .add("maxInFlightPerTarget", maxInFlightPerTarget)
+                .add("maxQueuedPerTarget", maxQueuedPerTarget)
+                .toString();
+    }
+
+}
@@ -0,0 +1,400 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.sun.jersey.spi.MessageBodyWorkers;
+import org.apache.http.client.HttpClient;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Caches GET responses and collapses concurrent identical GETs into a single call.
+ *
+ * <p>Responses are cached for as long as their Cache-Control max-age (or s-maxage) allows, capped at the configured
+ * maximum. Once stale, a response with an ETag is revalidated with If-None-Match and served again on a 304. Responses
+ * marked no-store or private, varying on more than Accept and Accept-Encoding, or bigger than the maximum entry size
+ * aren't cached. The cache is bounded by the total size of the cached bodies, and entries are dropped altogether once
+ * the retention period has passed.</p>
+ *
+ * <p>While a GET is in flight, identical GETs wait for its response and share it rather than making calls of their
+ * own, as long as it could be cached: responses that are private, vary on other headers or are too big are only
+ * given to the caller that made the call, and the others make their own. Requests are identical when they have the
+ * same URI, Accept and Accept-Encoding headers. Requests with a body, credentials (Authorization or Cookie) or their
+ * own conditional headers bypass the filter.</p>
+ *
+ * <p>Metrics named {@code org.apache.http.client.HttpClient.<client name>.response-cache.<metric>} count hits,
+ * misses, revalidations (304s served from the cache) and coalesced requests.</p>
+ */
+class CachingClientFilter extends ClientFilter {
+
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+    private static final String CACHE_CONTROL = "Cache-Control";
+    private static final String VARY = "Vary";
+    private static final String COOKIE = "Cookie";
+    private static final String PROXY_AUTHORIZATION = "Proxy-Authorization";
+
+    // rough allowance for the URI, headers and bookkeeping of each entry
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final MessageBodyWorkers workers;
+    private final Ticker ticker;
+    private final int maxEntryBytes;
+    private final long maxTtlNanos;
+    private final boolean coalesce;
+    private final Cache<String, Entry> cache;
+    private final ConcurrentMap<String, SettableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter revalidations;
+    private final Meter coalesced;
+
+    CachingClientFilter(ResponseCacheConfiguration configuration, MessageBodyWorkers workers, MetricRegistry metrics,
+                        String clientName) {
+        this(configuration, workers, metrics, clientName, Ticker.systemTicker());
+    }
+
+    CachingClientFilter(ResponseCacheConfiguration configuration, MessageBodyWorkers workers, MetricRegistry metrics,
+                        String clientName, Ticker ticker) {
+        this.workers = workers;
+        this.ticker = ticker;
+        this.maxEntryBytes = (int) Math.min(Integer.MAX_VALUE - 1, configuration.getMaxEntrySize().toBytes());
+        this.maxTtlNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMaxTtl().toMilliseconds());
+        this.coalesce = configuration.isCoalesce();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(configuration.getMaxSize().toBytes())
+                .weigher(new Weigher<String, Entry>() {
+                    @Override
+                    public int weigh(String key, Entry entry) {
+                        return entry.body.length + ENTRY_OVERHEAD;
+                    }
+                })
+                .expireAfterWrite(configuration.getRetention().toMilliseconds(), TimeUnit.MILLISECONDS)
+                .ticker(ticker)
+                .build();
+
+        final String prefix = name(HttpClient.class, clientName, "response-cache");
+        this.hits = metrics.meter(name(prefix, "hits"));
+        this.misses = metrics.meter(name(prefix, "misses"));
+        this.revalidations = metrics.meter(name(prefix, "revalidations"));
+        this.coalesced = metrics.meter(name(prefix, "coalesced"));
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        if (!isCacheable(cr)) {
+            return getNext().handle(cr);
+        }
+
+        final String key = key(cr);
+        final Entry cached = cache.getIfPresent(key);
+        if (cached != null && cached.isFresh(ticker.read())) {
+            hits.mark();
+            return cached.toResponse(workers);
+        }
+        if (!coalesce) {
+            return fetch(cr, key, cached);
+        }
+
+        final SettableFuture<Entry> call = SettableFuture.create();
+        final SettableFuture<Entry> leader = inFlight.putIfAbsent(key, call);
+        if (leader != null) {
+            coalesced.mark();
+            final Entry shared = await(leader);
+            // The leader's response couldn't be shared, so make our own call
+            return shared != null ? shared.toResponse(workers) : getNext().handle(cr);
+        }
+
+        try {
+            final ClientResponse response = fetch(cr, key, cached);
+            call.set(shared(response));
+            return response;
+        } catch (RuntimeException e) {
+            call.setException(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, call);
+            // Never leave followers waiting, whatever went wrong
+            call.set(null);
+        }
+    }
+
+    private static boolean isCacheable(ClientRequest cr) {
+        if (!"GET".equals(cr.getMethod()) || cr.getEntity() != null) {
+            return false;
+        }
+        final MultivaluedMap<String, Object> headers = cr.getHeaders();
+        if (headers.containsKey(HttpHeaders.AUTHORIZATION) || headers.containsKey(PROXY_AUTHORIZATION)
+                || headers.containsKey(COOKIE) || headers.containsKey(IF_NONE_MATCH)
+                || headers.containsKey(IF_MODIFIED_SINCE)) {
+            return false;
+        }
+        final List<Object> cacheControl = headers.get(CACHE_CONTROL);
+        return cacheControl == null
+                || (!cacheControl.toString().contains("no-cache") && !cacheControl.toString().contains("no-store"));
+    }
+
+    /**
+     * @return the URI and the only headers a cached response may vary on
+     */
+    private static String key(ClientRequest cr) {
+        final List<Object> accept = cr.getHeaders().get(HttpHeaders.ACCEPT);
+        final List<Object> acceptEncoding = cr.getHeaders().get(HttpHeaders.ACCEPT_ENCODING);
+        if (accept == null && acceptEncoding == null) {
+            return cr.getURI().toString();
+        }
+        return cr.getURI() + "\n" + accept + "\n" + acceptEncoding;
+    }
+
+    private ClientResponse fetch(ClientRequest cr, String key, Entry cached) {
+        if (cached != null && cached.etag != null) {
+            cr.getHeaders().putSingle(IF_NONE_MATCH, cached.etag);
+        }
+        final ClientResponse response = getNext().handle(cr);
+        final long now = ticker.read();
+
+        if (cached != null && cached.etag != null && response.getStatus() == 304) {
+            response.close();
+            revalidations.mark();
+            final Entry refreshed = cached.refresh(response.getHeaders(), now, maxTtlNanos);
+            cache.put(key, refreshed);
+            return refreshed.toResponse(workers);
+        }
+
+        misses.mark();
+        final Entry entry = buffer(response, now);
+        if (entry == null) {
+            return response;
+        }
+        if (entry.isStorable()) {
+            cache.put(key, entry);
+        } else {
+            cache.invalidate(key);
+        }
+        return entry.toResponse(workers);
+    }
+
+    /**
+     * Reads the response body into memory, unless it's bigger than the maximum entry size, in which case the response
+     * is left to stream what's been read followed by the rest.
+     */
+    private Entry buffer(ClientResponse response, long now) {
+        final int length = response.getLength();
+        if (length > maxEntryBytes) {
+            return null;
+        }
+        final byte[] body;
+        if (response.hasEntity()) {
+            final InputStream in = response.getEntityInputStream();
+            try {
+                body = ByteStreams.toByteArray(ByteStreams.limit(in, maxEntryBytes + 1));
+                if (body.length > maxEntryBytes) {
+                    response.setEntityInputStream(new SequenceInputStream(new ByteArrayInputStream(body), in));
+                    return null;
+                }
+            } catch (IOException e) {
+                throw new ClientHandlerException(e);
+            }
+            response.close();
+        } else {
+            body = new byte[0];
+        }
+        return new Entry(response.getStatus(), copy(response.getHeaders()), body, now, maxTtlNanos);
+    }
+
+    // Null when the response can't be shared, leaving it to be read by the caller that made the call. Only responses
+    // that could be cached are shared, so a private response, or one varying on headers not in the key, never is.
+    private Entry shared(ClientResponse response) {
+        if (!(response instanceof CachedClientResponse)) {
+            return null;
+        }
+        final Entry entry = ((CachedClientResponse) response).entry;
+        return entry.isStorable() ? entry : null;
+    }
+
+    private static Entry await(SettableFuture<Entry> leader) {
+        try {
+            return Uninterruptibles.getUninterruptibly(leader);
+        } catch (ExecutionException e) {
+            throw new ClientHandlerException(e.getCause());
+        }
+    }
+
+    private static Map<String, List<String>> copy(MultivaluedMap<String, String> headers) {
+        final Map<String, List<String>> copy = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+            copy.put(header.getKey(), new ArrayList<>(header.getValue()));
+        }
+        return copy;
+    }
+
+    /**
+     * A response served from memory, which knows the entry it was made from so that it can be shared.
+     */
+    private static final class CachedClientResponse extends ClientResponse {
+
+        private final Entry entry;
+
+        private CachedClientResponse(Entry entry, InBoundHeaders headers, MessageBodyWorkers workers) {
+            super(entry.status, headers, new ByteArrayInputStream(entry.body), workers);
+            this.entry = entry;
+        }
+    }
+
+    private static final class Entry {
+
+        private final int status;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+        private final String etag;
+        private final boolean storable;
+        private final long expires;
+
+        private Entry(int status, Map<String, List<String>> headers, byte[] body, long now, long maxTtlNanos) {
+            this.status = status;
+            this.headers = headers;
+            this.body = body;
+            this.etag = first(headers, HttpHeaders.ETAG);
+
+            final String cacheControl = first(headers, CACHE_CONTROL);
+            final long ttl = Math.min(maxTtlNanos, freshness(cacheControl));
+            this.expires = now + ttl;
+            this.storable = status == 200 && !contains(cacheControl, "no-store") && !contains(cacheControl, "private")
+                    && isVaryCacheable(first(headers, VARY)) && (ttl > 0 || etag != null);
+        }
+
+        private boolean isFresh(long now) {
+            return now - expires < 0;
+        }
+
+        private boolean isStorable() {
+            return storable;
+        }
+
+        /**
+         * @return this response with the headers of a 304 revalidating it, fresh again from now
+         */
+        private Entry refresh(MultivaluedMap<String, String> notModified, long now, long maxTtlNanos) {
+            final Map<String, List<String>> merged = new LinkedHashMap<>(headers);
+            for (Map.Entry<String, List<String>> header : notModified.entrySet()) {
+                if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                    merged.put(header.getKey(), new ArrayList<>(header.getValue()));
+                }
+            }
+            return new Entry(status, merged, body, now, maxTtlNanos);
+        }
+
+        private ClientResponse toResponse(MessageBodyWorkers workers) {
+            final InBoundHeaders copy = new InBoundHeaders();
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                copy.put(header.getKey(), new ArrayList<>(header.getValue()));
+            }
+            return new CachedClientResponse(this, copy, workers);
+        }
+
+        private static String first(Map<String, List<String>> headers, String name) {
+            for (Map.Entry<String, List<String>> header : headers.entrySet()) {
+                if (name.equalsIgnoreCase(header.getKey()) && !header.getValue().isEmpty()) {
+                    return header.getValue().get(0);
+                }
+            }
+            return null;
+        }
+
+        private static boolean contains(String cacheControl, String directive) {
+            return cacheControl != null && cacheControl.toLowerCase(Locale.ENGLISH).contains(directive);
+        }
+
+        /**
+         * @return how long the response may be used without revalidation according to its Cache-Control, in nanos
+         */
+        private static long freshness(String cacheControl) {
+            if (cacheControl == null || contains(cacheControl, "no-cache")) {
+                return 0;
+            }
+            long seconds = 0;
+            for (String directive : cacheControl.split(",")) {
+                final String trimmed = directive.trim().toLowerCase(Locale.ENGLISH);
+                // s-maxage applies to shared caches, and wins over max-age wherever it appears
+                if (trimmed.startsWith("s-maxage=")) {
+                    return TimeUnit.SECONDS.toNanos(parseSeconds(trimmed.substring("s-maxage=".length())));
+                }
+                if (trimmed.startsWith("max-age=")) {
+                    seconds = parseSeconds(trimmed.substring("max-age=".length()));
+                }
+            }
+            return TimeUnit.SECONDS.toNanos(seconds);
+        }
+
+        private static long parseSeconds(String value) {
+            try {
+                return Math.max(0, Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+
+        private static boolean isVaryCacheable(String vary) {
+            if (vary == null) {
+                return true;
+            }
+            for (String header : vary.split(",")) {
+                final String trimmed = header.trim();
+                if (!trimmed.isEmpty() && !HttpHeaders.ACCEPT.equalsIgnoreCase(trimmed)
+                        && !HttpHeaders.ACCEPT_ENCODING.equalsIgnoreCase(trimmed)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,194 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.apache.http.client.HttpClient;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Limits how many calls are made to each target (host and port) at once, failing calls beyond the limit straight away
+ * with a {@link ClientHandlerException} caused by a {@link RejectedExecutionException} rather than letting them queue
+ * up on a struggling service.
+ *
+ * <p>The limit adapts to how the target copes (additive increase, multiplicative decrease): it grows by one for each
+ * call that succeeds promptly while at least half the limit is in use, and is cut by the backoff ratio whenever a call
+ * fails, is answered with a 429 or 503, or takes longer than the tolerated multiple of the lowest latency seen
+ * recently. The lowest latency stands in for the target's latency when it isn't queueing, so latency rising above it
+ * is taken as the first sign of overload.</p>
+ *
+ * <p>Metrics for each target are named {@code org.apache.http.client.HttpClient.<client name>.<host:port>.<metric>}:
+ * concurrency-limit and concurrency-in-flight gauges and a concurrency-rejected meter.</p>
+ */
+class ConcurrencyLimitClientFilter extends ClientFilter {
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final ConcurrencyLimitConfiguration configuration;
+    private final MetricRegistry metrics;
+    private final String clientName;
+    private final Ticker ticker;
+    private final long minLatencyWindowNanos;
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    ConcurrencyLimitClientFilter(ConcurrencyLimitConfiguration configuration, MetricRegistry metrics, String clientName) {
+        this(configuration, metrics, clientName, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    ConcurrencyLimitClientFilter(ConcurrencyLimitConfiguration configuration, MetricRegistry metrics,
+                                 String clientName, Ticker ticker) {
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.clientName = clientName;
+        this.ticker = ticker;
+        this.minLatencyWindowNanos = TimeUnit.MILLISECONDS.toNanos(
+                configuration.getMinLatencyWindow().toMilliseconds());
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        final Target target = target(cr.getURI());
+        final int inFlight = target.acquire();
+        final long start = ticker.read();
+        boolean dropped = true;
+        try {
+            final ClientResponse response = getNext().handle(cr);
+            final int status = response.getStatus();
+            dropped = status == TOO_MANY_REQUESTS
+                    || status == ClientResponse.Status.SERVICE_UNAVAILABLE.getStatusCode();
+            return response;
+        } finally {
+            target.release(inFlight, ticker.read() - start, dropped);
+        }
+    }
+
+    private Target target(URI uri) {
+        final String name = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        Target target = targets.get(name);
+        if (target == null) {
+            final Target created = new Target(name);
+            target = targets.putIfAbsent(name, created);
+            if (target == null) {
+                target = created;
+                created.register();
+            }
+        }
+        return target;
+    }
+
+    private final class Target {
+
+        private final String name;
+        private final String prefix;
+        private final Meter rejected;
+
+        // guarded by this
+        private double limit = configuration.getInitialLimit();
+        private int inFlight;
+        private long windowMinLatency = Long.MAX_VALUE;
+        private long previousWindowMinLatency = Long.MAX_VALUE;
+        private long windowEnds;
+        private boolean windowStarted;
+
+        private Target(String name) {
+            this.name = name;
+            this.prefix = name(HttpClient.class, clientName, name);
+            this.rejected = metrics.meter(name(prefix, "concurrency-rejected"));
+        }
+
+        private void register() {
+            metrics.register(name(prefix, "concurrency-limit"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    synchronized (Target.this) {
+                        return (int) limit;
+                    }
+                }
+            });
+            metrics.register(name(prefix, "concurrency-in-flight"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    synchronized (Target.this) {
+                        return inFlight;
+                    }
+                }
+            });
+        }
+
+        /**
+         * @return the number of calls in flight, including this one
+         */
+        private int acquire() {
+            final int limited;
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    return ++inFlight;
+                }
+                limited = (int) limit;
+            }
+            rejected.mark();
+            throw new ClientHandlerException(new RejectedExecutionException(
+                    "Concurrency limit of " + limited + " reached for " + name));
+        }
+
+        private synchronized void release(int inFlightAtStart, long latency, boolean dropped) {
+            inFlight--;
+
+            final long now = ticker.read();
+            if (!windowStarted || now - windowEnds >= 0) {
+                // Keeps the last window's lowest latency too, so the baseline never rests on just a call or two
+                previousWindowMinLatency = windowStarted && now - windowEnds < minLatencyWindowNanos
+                        ? windowMinLatency : Long.MAX_VALUE;
+                windowMinLatency = Long.MAX_VALUE;
+                windowEnds = now + minLatencyWindowNanos;
+                windowStarted = true;
+            }
+            // Dropped calls don't count, as a target failing fast would otherwise make every normal call look slow
+            if (!dropped) {
+                windowMinLatency = Math.min(windowMinLatency, latency);
+            }
+            final long minLatency = Math.min(windowMinLatency, previousWindowMinLatency);
+
+            if (dropped || latency > configuration.getLatencyTolerance() * minLatency) {
+                limit = Math.max(configuration.getMinLimit(), limit * configuration.getBackoffRatio());
+            } else if (inFlightAtStart * 2 >= limit) {
+                // Only grow while the limit's being used, or an idle target's limit would grow without bound
+                limit = Math.min(configuration.getMaxLimit(), limit + 1);
+            }
+        }
+    }
+
+}
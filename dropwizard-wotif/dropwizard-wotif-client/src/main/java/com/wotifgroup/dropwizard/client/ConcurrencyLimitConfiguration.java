@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link ConcurrencyLimitClientFilter}, which is off by default.
+ */
+public class ConcurrencyLimitConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(1)
+    @JsonProperty
+    private int initialLimit = 20;
+
+    @Min(1)
+    @JsonProperty
+    private int minLimit = 1;
+
+    @Min(1)
+    @JsonProperty
+    private int maxLimit = 200;
+
+    @DecimalMin("0.5")
+    @DecimalMax("0.99")
+    @JsonProperty
+    private double backoffRatio = 0.9;
+
+    @DecimalMin("1")
+    @JsonProperty
+    private double latencyTolerance = 2;
+
+    @NotNull
+    @JsonProperty
+    private Duration minLatencyWindow = Duration.seconds(30);
+
+    @ValidationMethod(message = "must have minLimit <= initialLimit <= maxLimit")
+    public boolean isLimitRangeValid() {
+        return minLimit <= initialLimit && initialLimit <= maxLimit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The limit each target starts at.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * How much of the limit is kept after a call fails or is slow.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * How many times the lowest recent latency a call can take before it counts as slow.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * The length of the windows the lowest latency is taken over. The baseline is the lowest latency in the current
+     * and previous windows, so a low latency stays the baseline for between one and two windows.
+     */
+    public Duration getMinLatencyWindow() {
+        return minLatencyWindow;
+    }
+
+    public void setMinLatencyWindow(Duration minLatencyWindow) {
+        this.minLatencyWindow = minLatencyWindow;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("initialLimit", initialLimit)
+                .add("minLimit", minLimit)
+                .add("maxLimit", maxLimit)
+                .add("backoffRatio", backoffRatio)
+                .add("latencyTolerance", latencyTolerance)
+                .add("minLatencyWindow", minLatencyWindow)
+                .toString();
+    }
+
+}
@@ -0,0 +1,337 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import org.apache.http.client.HttpClient;
+
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Hedges GET and HEAD requests: when a request hasn't been answered within the configured percentile of its target's
+ * recent latency, the same request is sent again, and whichever response comes first is used. The other response is
+ * closed as soon as it arrives. Hedges are paid for from a budget that grows with every request, so they can't be
+ * more than the configured percentage of requests however slow a target gets.
+ *
+ * <p>With adaptive timeouts, a request also fails once it has taken a multiple of its target's recent high percentile
+ * latency, which is usually much sooner than the client's own timeout when a target gets into trouble.</p>
+ *
+ * <p>Targets are timed, and neither hedged nor timed out, until enough of their requests have been seen. Requests are
+ * made on a separate pool, so that the calling thread is free to give up on them; when the pool is exhausted,
+ * requests are made on the calling thread without hedging.</p>
+ *
+ * <p>Metrics for each target are named {@code org.apache.http.client.HttpClient.<client name>.<host:port>.<metric>}:
+ * latency, hedges, hedges-denied (by the budget), hedge-wins, responses-wasted (closed unread), timeouts, and the
+ * current hedge-delay and timeout in milliseconds.</p>
+ */
+class HedgingClientFilter extends ClientFilter {
+
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final long REFRESH_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final Executor executor;
+    private final MetricRegistry metrics;
+    private final String clientName;
+    private final HedgingConfiguration configuration;
+    private final long minDelayNanos;
+    private final long minTimeoutNanos;
+    private final HedgeBudget budget;
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    HedgingClientFilter(HedgingConfiguration configuration, Executor executor, MetricRegistry metrics,
+                        String clientName) {
+        this.executor = executor;
+        this.metrics = metrics;
+        this.clientName = clientName;
+        this.configuration = configuration;
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMinDelay().toMilliseconds());
+        this.minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(configuration.getMinTimeout().toMilliseconds());
+        this.budget = new HedgeBudget(configuration.getBudgetPercent());
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        if (!isHedgeable(cr)) {
+            return getNext().handle(cr);
+        }
+        final Target target = target(cr.getURI());
+        budget.deposit();
+        target.refresh();
+
+        final long delay = target.hedgeDelay;
+        final long timeout = target.timeout;
+        if (delay == NEVER && timeout == NEVER) {
+            return target.time(getNext(), cr);
+        }
+
+        final Call call = new Call(target);
+        // Cloned before the first attempt starts, as the filters after this one may change the request
+        final ClientRequest hedge = delay < timeout ? cr.clone() : null;
+        if (!call.attempt(cr, false)) {
+            return target.time(getNext(), cr);
+        }
+
+        final long start = System.nanoTime();
+        ClientResponse response = call.await(Math.min(delay, timeout));
+        if (response == null && hedge != null) {
+            if (budget.tryWithdraw()) {
+                if (call.attempt(hedge, true)) {
+                    target.hedges.mark();
+                }
+            } else {
+                target.denied.mark();
+            }
+            response = call.await(timeout == NEVER ? NEVER : timeout - (System.nanoTime() - start));
+        }
+        if (response == null) {
+            final ClientHandlerException timedOut = new ClientHandlerException(new SocketTimeoutException(
+                    "No response from " + target.name + " within "
+                            + TimeUnit.NANOSECONDS.toMillis(timeout) + "ms"));
+            // Any response that turns up from now on is closed unread
+            if (call.winner.setException(timedOut)) {
+                target.timeouts.mark();
+                throw timedOut;
+            }
+            // One turned up just as we gave up on it
+            response = call.await(0);
+        }
+        return response;
+    }
+
+    private static boolean isHedgeable(ClientRequest cr) {
+        return ("GET".equals(cr.getMethod()) || "HEAD".equals(cr.getMethod())) && cr.getEntity() == null;
+    }
+
+    private Target target(URI uri) {
+        final String name = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        Target target = targets.get(name);
+        if (target == null) {
+            final Target created = new Target(name);
+            target = targets.putIfAbsent(name, created);
+            if (target == null) {
+                target = created;
+                created.register();
+            }
+        }
+        return target;
+    }
+
+    /**
+     * The attempts at a single request, the first of which to respond wins.
+     */
+    private final class Call {
+
+        private final Target target;
+        private final SettableFuture<ClientResponse> winner = SettableFuture.create();
+        private final AtomicInteger outstanding = new AtomicInteger();
+
+        private Call(Target target) {
+            this.target = target;
+        }
+
+        /**
+         * @return whether the attempt was started
+         */
+        private boolean attempt(final ClientRequest request, final boolean isHedge) {
+            outstanding.incrementAndGet();
+            try {
+                executor.execute(RequestContext.wrap(new Runnable() {
+                    @Override
+                    public void run() {
+                        final ClientResponse response;
+                        try {
+                            response = target.time(getNext(), request);
+                        } catch (RuntimeException e) {
+                            // Only fail the call once no other attempt could still succeed
+                            if (outstanding.decrementAndGet() == 0) {
+                                winner.setException(e);
+                            }
+                            return;
+                        }
+                        if (winner.set(response)) {
+                            if (isHedge) {
+                                target.wins.mark();
+                            }
+                        } else {
+                            response.close();
+                            target.wasted.mark();
+                        }
+                    }
+                }));
+                return true;
+            } catch (RejectedExecutionException e) {
+                outstanding.decrementAndGet();
+                return false;
+            }
+        }
+
+        /**
+         * @return the winning response, or null if there's none within the given time
+         */
+        private ClientResponse await(long nanos) {
+            try {
+                if (nanos == NEVER) {
+                    return Uninterruptibles.getUninterruptibly(winner);
+                }
+                return Uninterruptibles.getUninterruptibly(winner, Math.max(0, nanos), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                return null;
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new ClientHandlerException(e.getCause());
+            }
+        }
+    }
+
+    private final class Target {
+
+        private final String name;
+        private final String prefix;
+        private final Timer latency;
+        private final Meter hedges;
+        private final Meter denied;
+        private final Meter wins;
+        private final Meter wasted;
+        private final Meter timeouts;
+
+        private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime());
+        private volatile long hedgeDelay = NEVER;
+        private volatile long timeout = NEVER;
+
+        private Target(String name) {
+            this.name = name;
+            this.prefix = name(HttpClient.class, clientName, name);
+            this.latency = metrics.timer(name(prefix, "latency"));
+            this.hedges = metrics.meter(name(prefix, "hedges"));
+            this.denied = metrics.meter(name(prefix, "hedges-denied"));
+            this.wins = metrics.meter(name(prefix, "hedge-wins"));
+            this.wasted = metrics.meter(name(prefix, "responses-wasted"));
+            this.timeouts = metrics.meter(name(prefix, "timeouts"));
+        }
+
+        private void register() {
+            metrics.register(name(prefix, "hedge-delay"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return hedgeDelay == NEVER ? -1 : TimeUnit.NANOSECONDS.toMillis(hedgeDelay);
+                }
+            });
+            metrics.register(name(prefix, "timeout"), new Gauge<Long>() {
+                @Override
+                public Long getValue() {
+                    return timeout == NEVER ? -1 : TimeUnit.NANOSECONDS.toMillis(timeout);
+                }
+            });
+        }
+
+        private ClientResponse time(ClientHandler next, ClientRequest request) {
+            final long start = System.nanoTime();
+            final ClientResponse response = next.handle(request);
+            latency.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return response;
+        }
+
+        /**
+         * Recalculates the hedge delay and timeout from recent latency, at most once a second as taking a snapshot
+         * means sorting the reservoir.
+         */
+        private void refresh() {
+            if (latency.getCount() < configuration.getMinSamples()) {
+                return;
+            }
+            final long now = System.nanoTime();
+            final long next = nextRefresh.get();
+            if (now - next < 0 || !nextRefresh.compareAndSet(next, now + REFRESH_INTERVAL)) {
+                return;
+            }
+            final Snapshot snapshot = latency.getSnapshot();
+            hedgeDelay = Math.max(minDelayNanos, (long) snapshot.getValue(configuration.getPercentile() / 100));
+            if (configuration.isAdaptiveTimeout()) {
+                timeout = Math.max(minTimeoutNanos, (long) (configuration.getTimeoutMultiplier()
+                        * snapshot.getValue(configuration.getTimeoutPercentile() / 100)));
+            }
+        }
+    }
+
+    /**
+     * Every request adds a percentage of a hedge to the budget, and every hedge takes a whole one, so the hedges sent
+     * can't exceed that percentage of requests. The balance is capped so a long quiet spell can't save up a burst.
+     */
+    static final class HedgeBudget {
+
+        private static final long HEDGE = 100;
+        private static final long MAX_BALANCE = 10 * HEDGE;
+
+        private final long deposit;
+        private final AtomicLong balance = new AtomicLong();
+
+        HedgeBudget(int percent) {
+            this.deposit = percent;
+        }
+
+        void deposit() {
+            long current;
+            do {
+                current = balance.get();
+                if (current >= MAX_BALANCE) {
+                    return;
+                }
+            } while (!balance.compareAndSet(current, Math.min(MAX_BALANCE, current + deposit)));
+        }
+
+        boolean tryWithdraw() {
+            long current;
+            do {
+                current = balance.get();
+                if (current < HEDGE) {
+                    return false;
+                }
+            } while (!balance.compareAndSet(current, current - HEDGE));
+            return true;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link HedgingClientFilter}, which is off by default.
+ */
+public class HedgingConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @DecimalMin("50")
+    @DecimalMax("99.9")
+    @JsonProperty
+    private double percentile = 95;
+
+    @Min(1)
+    @Max(50)
+    @JsonProperty
+    private int budgetPercent = 10;
+
+    @NotNull
+    @JsonProperty
+    private Duration minDelay = Duration.milliseconds(5);
+
+    @Min(1)
+    @JsonProperty
+    private int minSamples = 100;
+
+    @Min(1)
+    @JsonProperty
+    private int maxThreads = 128;
+
+    @JsonProperty
+    private boolean adaptiveTimeout = false;
+
+    @DecimalMin("50")
+    @DecimalMax("99.9")
+    @JsonProperty
+    private double timeoutPercentile = 99.9;
+
+    @DecimalMin("1")
+    @JsonProperty
+    private double timeoutMultiplier = 3;
+
+    @NotNull
+    @JsonProperty
+    private Duration minTimeout = Duration.milliseconds(50);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Percentile of a target's recent latency after which a request to it is hedged.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    /**
+     * Most hedges sent, as a percentage of requests, so hedging never adds more than this much load.
+     */
+    public int getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    public void setBudgetPercent(int budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+
+    /**
+     * Shortest time waited before hedging, whatever the target's latency.
+     */
+    public Duration getMinDelay() {
+        return minDelay;
+    }
+
+    public void setMinDelay(Duration minDelay) {
+        this.minDelay = minDelay;
+    }
+
+    /**
+     * Number of requests to a target timed before it's hedged or given an adaptive timeout.
+     */
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Size of the pool making hedgeable requests. Requests are made without hedging when it's exhausted.
+     */
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        this.maxThreads = maxThreads;
+    }
+
+    /**
+     * Whether hedgeable requests time out after a multiple of the target's recent latency, rather than only after
+     * the client's timeout.
+     */
+    public boolean isAdaptiveTimeout() {
+        return adaptiveTimeout;
+    }
+
+    public void setAdaptiveTimeout(boolean adaptiveTimeout) {
+        this.adaptiveTimeout = adaptiveTimeout;
+    }
+
+    public double getTimeoutPercentile() {
+        return timeoutPercentile;
+    }
+
+    public void setTimeoutPercentile(double timeoutPercentile) {
+        this.timeoutPercentile = timeoutPercentile;
+    }
+
+    /**
+     * Adaptive timeouts are this multiple of the timeout percentile of the target's recent latency.
+     */
+    public double getTimeoutMultiplier() {
+        return timeoutMultiplier;
+    }
+
+    public void setTimeoutMultiplier(double timeoutMultiplier) {
+        this.timeoutMultiplier = timeoutMultiplier;
+    }
+
+    /**
+     * Shortest adaptive timeout, whatever the target's latency.
+     */
+    public Duration getMinTimeout() {
+        return minTimeout;
+    }
+
+    public void setMinTimeout(Duration minTimeout) {
+        this.minTimeout = minTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("percentile", percentile)
+                .add("budgetPercent", budgetPercent)
+                .add("minDelay", minDelay)
+                .add("minSamples", minSamples)
+                .add("maxThreads", maxThreads)
+                .add("adaptiveTimeout", adaptiveTimeout)
+                .add("timeoutPercentile", timeoutPercentile)
+                .add("timeoutMultiplier", timeoutMultiplier)
+                .add("minTimeout", minTimeout)
+                .toString();
+    }
+
+}
@@ -0,0 +1,55 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Closes pooled connections that have expired or been idle for too long, so the server closing them first doesn't
+ * cost a failed request or a stale connection check.
+ */
+@SuppressWarnings("deprecation")
+class IdleConnectionEvictor implements Runnable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(IdleConnectionEvictor.class);
+
+    private final org.apache.http.conn.ClientConnectionManager connectionManager;
+    private final long idleTimeoutMillis;
+
+    IdleConnectionEvictor(org.apache.http.conn.ClientConnectionManager connectionManager, long idleTimeoutMillis) {
+        this.connectionManager = connectionManager;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public void run() {
+        // An exception would stop the scheduled executor from running this again
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to close idle connections", e);
+        }
+    }
+
+}
@@ -24,17 +24,49 @@ import com.sun.jersey.api.client.ClientHandlerException;
 import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.filter.ClientFilter;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import com.wotifgroup.dropwizard.tracing.Span;
 import org.slf4j.MDC;
 
+import java.net.URI;
+
+/**
+ * Passes the request ID on to the called service, and records the call as a client {@link Span} when the current
+ * {@link RequestContext} is recording spans.
+ */
 class RequestTracingClientFilter extends ClientFilter {
 
     @Override
     public ClientResponse handle(final ClientRequest cr) throws ClientHandlerException {
-        final String requestId = MDC.get("requestId");
+        final String requestId = MDC.get(RequestContext.REQUEST_ID);
         if (!Strings.isNullOrEmpty(requestId)) {
             cr.getHeaders().add("X-Opaque-ID", requestId);
         }
-        return getNext().handle(cr);
+        final RequestContext context = RequestContext.current();
+        if (context == null || !context.isRecordingSpans()) {
+            return getNext().handle(cr);
+        }
+
+        final long startTime = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        int status = Span.NO_STATUS;
+        try {
+            final ClientResponse response = getNext().handle(cr);
+            status = response.getStatus();
+            return response;
+        } finally {
+            context.recordSpan(Span.Kind.CLIENT, spanName(cr), startTime, System.nanoTime() - start, status);
+        }
+    }
+
+    // Leaves out the query string, which would make every call look different and may hold sensitive values
+    private static String spanName(final ClientRequest cr) {
+        final URI uri = cr.getURI();
+        final StringBuilder name = new StringBuilder(cr.getMethod()).append(' ').append(uri.getHost());
+        if (uri.getPort() >= 0) {
+            name.append(':').append(uri.getPort());
+        }
+        return name.append(uri.getRawPath()).toString();
     }
 
 }
@@ -0,0 +1,143 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link CachingClientFilter}, which is off by default.
+ */
+public class ResponseCacheConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @JsonProperty
+    private boolean coalesce = true;
+
+    @NotNull
+    @JsonProperty
+    private Size maxSize = Size.megabytes(16);
+
+    @NotNull
+    @JsonProperty
+    private Size maxEntrySize = Size.kilobytes(256);
+
+    @NotNull
+    @JsonProperty
+    private Duration maxTtl = Duration.minutes(5);
+
+    @NotNull
+    @JsonProperty
+    private Duration retention = Duration.minutes(10);
+
+    @ValidationMethod(message = "maxEntrySize must be positive and no bigger than maxSize")
+    public boolean isMaxEntrySizeValid() {
+        return maxEntrySize.toBytes() > 0 && maxEntrySize.toBytes() <= maxSize.toBytes();
+    }
+
+    @ValidationMethod(message = "retention must be at least maxTtl")
+    public boolean isRetentionValid() {
+        return retention.toMilliseconds() >= maxTtl.toMilliseconds();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Whether concurrent identical GETs are collapsed into a single call, whose response they all share.
+     */
+    public boolean isCoalesce() {
+        return coalesce;
+    }
+
+    public void setCoalesce(boolean coalesce) {
+        this.coalesce = coalesce;
+    }
+
+    /**
+     * Total size of the cached response bodies, beyond which the least recently used are evicted.
+     */
+    public Size getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(Size maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Largest response body that is cached or shared between coalesced requests.
+     */
+    public Size getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    public void setMaxEntrySize(Size maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Longest time a response is served from the cache without revalidation, whatever its Cache-Control says.
+     */
+    public Duration getMaxTtl() {
+        return maxTtl;
+    }
+
+    public void setMaxTtl(Duration maxTtl) {
+        this.maxTtl = maxTtl;
+    }
+
+    /**
+     * How long a response is kept after it was fetched, so one with an ETag can be revalidated with If-None-Match
+     * once it's stale.
+     */
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("coalesce", coalesce)
+                .add("maxSize", maxSize)
+                .add("maxEntrySize", maxEntrySize)
+                .add("maxTtl", maxTtl)
+                .add("retention", retention)
+                .toString();
+    }
+
+}
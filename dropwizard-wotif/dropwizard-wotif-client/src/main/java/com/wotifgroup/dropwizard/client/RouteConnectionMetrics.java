@@ -0,0 +1,195 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.filter.ClientFilter;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Connection pool metrics for each route a client calls, named {@code org.apache.http.client.HttpClient.<client
+ * name>.<host:port>.<metric>}:
+ * <ul>
+ * <li>lease: time from the request leaving the Jersey filters until it has a connected connection, which is waiting
+ * for a free connection plus, for a new connection, connecting</li>
+ * <li>connections-created: rate of requests sent on a new connection rather than a reused one</li>
+ * <li>leased-connections, pending-connections, available-connections: current use of the route's pool</li>
+ * </ul>
+ *
+ * <p>Routes to the same host and port, such as direct and through a proxy, share their metrics, and the pool gauges add
+ * up their pools.</p>
+ *
+ * <p>This is a client filter, which notes when each request is handed to the HTTP client, and a request interceptor,
+ * which runs on the same thread once the HTTP client has a connection for the request.</p>
+ */
+@SuppressWarnings("deprecation")
+class RouteConnectionMetrics extends ClientFilter implements HttpRequestInterceptor {
+
+    private final MetricRegistry metrics;
+    private final String clientName;
+    private final org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager;
+    // by host:port, as the metrics are named
+    private final ConcurrentMap<String, Route> routes = new ConcurrentHashMap<>();
+
+    // when the current thread's request was handed to the HTTP client, or zero once its lease has been timed
+    private final ThreadLocal<long[]> handedOver = new ThreadLocal<long[]>() {
+        @Override
+        protected long[] initialValue() {
+            return new long[1];
+        }
+    };
+
+    /**
+     * @param connectionManager the client's connection manager, or null if it doesn't pool connections by route
+     */
+    RouteConnectionMetrics(MetricRegistry metrics, String clientName,
+                           org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager) {
+        this.metrics = metrics;
+        this.clientName = clientName;
+        this.connectionManager = connectionManager;
+    }
+
+    @Override
+    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+        final long[] start = handedOver.get();
+        start[0] = System.nanoTime();
+        try {
+            return getNext().handle(cr);
+        } finally {
+            start[0] = 0;
+        }
+    }
+
+    @Override
+    public void process(HttpRequest request, HttpContext context) {
+        final HttpRoute httpRoute = (HttpRoute) context.getAttribute(HttpClientContext.HTTP_ROUTE);
+        if (httpRoute == null) {
+            return;
+        }
+        final Route route = route(httpRoute);
+
+        // Redirects and retries come through here again for the same request, but only the first lease is timed
+        final long[] start = handedOver.get();
+        if (start[0] != 0) {
+            route.lease.update(System.nanoTime() - start[0], TimeUnit.NANOSECONDS);
+            start[0] = 0;
+        }
+
+        final HttpClientConnection connection =
+                (HttpClientConnection) context.getAttribute(HttpCoreContext.HTTP_CONNECTION);
+        if (connection != null && connection.getMetrics().getRequestCount() == 0) {
+            route.created.mark();
+        }
+    }
+
+    private Route route(HttpRoute httpRoute) {
+        final String target = httpRoute.getTargetHost().toHostString();
+        Route route = routes.get(target);
+        if (route == null) {
+            final Route created = new Route(target);
+            route = routes.putIfAbsent(target, created);
+            if (route == null) {
+                route = created;
+                created.register();
+            }
+        }
+        // Checked first, as adding locks the set even when it's already there
+        if (!route.httpRoutes.contains(httpRoute)) {
+            route.httpRoutes.add(httpRoute);
+        }
+        return route;
+    }
+
+    private final class Route {
+
+        private final Set<HttpRoute> httpRoutes = new CopyOnWriteArraySet<>();
+        private final String prefix;
+        private final Timer lease;
+        private final Meter created;
+
+        private Route(String target) {
+            this.prefix = name(HttpClient.class, clientName, target);
+            this.lease = metrics.timer(name(prefix, "lease"));
+            this.created = metrics.meter(name(prefix, "connections-created"));
+        }
+
+        private void register() {
+            if (connectionManager == null) {
+                return;
+            }
+            metrics.register(name(prefix, "leased-connections"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return stats().getLeased();
+                }
+            });
+            metrics.register(name(prefix, "pending-connections"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return stats().getPending();
+                }
+            });
+            metrics.register(name(prefix, "available-connections"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    return stats().getAvailable();
+                }
+            });
+        }
+
+        private PoolStats stats() {
+            int leased = 0;
+            int pending = 0;
+            int available = 0;
+            int max = 0;
+            for (HttpRoute httpRoute : httpRoutes) {
+                final PoolStats stats = connectionManager.getStats(httpRoute);
+                leased += stats.getLeased();
+                pending += stats.getPending();
+                available += stats.getAvailable();
+                max += stats.getMax();
+            }
+            return new PoolStats(leased, pending, available, max);
+        }
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import org.apache.http.client.HttpClient;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Makes calls through a {@link Client} built by {@link WotifJerseyClientBuilder} on a small pool of its own, returning
+ * futures straight away, so a request thread can fan out to several services at once and wait for them together.
+ * Calls go through all of the client's filters, and run with the caller's {@link RequestContext}, so they're traced
+ * and logged like any other.
+ *
+ * <p>At most a configured number of calls to each target (host and port) are in flight at once. Further calls wait
+ * their turn in a bounded queue without tying up a thread, and fail with a {@link RejectedExecutionException} once it's
+ * full.</p>
+ *
+ * <p>Metrics for each target are named {@code org.apache.http.client.HttpClient.<client name>.<host:port>.<metric>}:
+ * async-in-flight and async-queued gauges, an async-queue-wait timer and an async-rejected meter.</p>
+ */
+public class WotifAsyncClient {
+
+    private final Client client;
+    private final Executor executor;
+    private final MetricRegistry metrics;
+    private final String clientName;
+    private final int maxInFlight;
+    private final int maxQueued;
+    private final ConcurrentMap<String, Target> targets = new ConcurrentHashMap<>();
+
+    public WotifAsyncClient(Client client, Executor executor, AsyncClientConfiguration configuration,
+                            MetricRegistry metrics, String clientName) {
+        this.client = client;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.clientName = clientName;
+        this.maxInFlight = configuration.getMaxInFlightPerTarget();
+        this.maxQueued = configuration.getMaxQueuedPerTarget();
+    }
+
+    /**
+     * @return the synchronous client that calls are made with
+     */
+    public Client getClient() {
+        return client;
+    }
+
+    /**
+     * Makes a call. The response must be closed, or its entity read, once it's finished with.
+     */
+    public ListenableFuture<ClientResponse> handle(final ClientRequest request) {
+        final SettableFuture<ClientResponse> future = SettableFuture.create();
+        final Target target = target(request.getURI());
+        target.submit(new Call(target, future, RequestContext.wrap(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.set(client.handle(request));
+                } catch (RuntimeException e) {
+                    future.setException(e);
+                }
+            }
+        })));
+        return future;
+    }
+
+    /**
+     * GETs a resource, failing with a {@link UniformInterfaceException} when the response status isn't 2xx, as
+     * {@link com.sun.jersey.api.client.WebResource#get(Class)} does.
+     */
+    public <T> ListenableFuture<T> get(final URI uri, final Class<T> type) {
+        final SettableFuture<T> future = SettableFuture.create();
+        final Target target = target(uri);
+        target.submit(new Call(target, future, RequestContext.wrap(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final ClientResponse response = client.handle(ClientRequest.create().build(uri, "GET"));
+                    if (response.getStatus() >= 300) {
+                        throw new UniformInterfaceException(response);
+                    }
+                    future.set(response.getEntity(type));
+                } catch (RuntimeException e) {
+                    future.setException(e);
+                }
+            }
+        })));
+        return future;
+    }
+
+    private Target target(URI uri) {
+        final String name = uri.getPort() < 0 ? uri.getHost() : uri.getHost() + ":" + uri.getPort();
+        Target target = targets.get(name);
+        if (target == null) {
+            final Target created = new Target(name);
+            target = targets.putIfAbsent(name, created);
+            if (target == null) {
+                target = created;
+                created.register();
+            }
+        }
+        return target;
+    }
+
+    private static final class Call implements Runnable {
+
+        private final Target target;
+        private final SettableFuture<?> future;
+        private final Runnable work;
+        private final long queuedAt = System.nanoTime();
+
+        private Call(Target target, SettableFuture<?> future, Runnable work) {
+            this.target = target;
+            this.future = future;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            try {
+                // Cancelled while it was waiting its turn
+                if (!future.isDone()) {
+                    work.run();
+                }
+            } finally {
+                target.finished();
+            }
+        }
+    }
+
+    private final class Target {
+
+        private final String prefix;
+        private final Timer queueWait;
+        private final Meter rejected;
+
+        // guarded by this
+        private final Queue<Call> queue = new ArrayDeque<>();
+        private int inFlight;
+
+        private Target(String name) {
+            this.prefix = name(HttpClient.class, clientName, name);
+            this.queueWait = metrics.timer(name(prefix, "async-queue-wait"));
+            this.rejected = metrics.meter(name(prefix, "async-rejected"));
+        }
+
+        private void register() {
+            metrics.register(name(prefix, "async-in-flight"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    synchronized (Target.this) {
+                        return inFlight;
+                    }
+                }
+            });
+            metrics.register(name(prefix, "async-queued"), new Gauge<Integer>() {
+                @Override
+                public Integer getValue() {
+                    synchronized (Target.this) {
+                        return queue.size();
+                    }
+                }
+            });
+        }
+
+        private void submit(Call call) {
+            synchronized (this) {
+                if (inFlight >= maxInFlight) {
+                    if (queue.size() < maxQueued) {
+                        queue.add(call);
+                    } else {
+                        rejected.mark();
+                        call.future.setException(new RejectedExecutionException(
+                                "Too many calls to " + prefix + " waiting their turn"));
+                    }
+                    return;
+                }
+                inFlight++;
+            }
+            start(call);
+        }
+
+        /**
+         * Hands the finished call's slot to the next in the queue, if there is one.
+         */
+        private void finished() {
+            final Call next;
+            synchronized (this) {
+                next = queue.poll();
+                if (next == null) {
+                    inFlight--;
+                    return;
+                }
+            }
+            start(next);
+        }
+
+        private void start(Call call) {
+            queueWait.update(System.nanoTime() - call.queuedAt, TimeUnit.NANOSECONDS);
+            try {
+                executor.execute(call);
+            } catch (RejectedExecutionException e) {
+                rejected.mark();
+                call.future.setException(e);
+                finished();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.client.JerseyClientConfiguration;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Jersey client configuration with Wotif defaults for talking to other services: connections are kept alive and
+ * reused, the pool is sized for a handful of downstream services rather than one, and connections left idle are
+ * closed in the background rather than being found dead on their next use. Given to
+ * {@link WotifJerseyClientBuilder#using(io.dropwizard.client.JerseyClientConfiguration)}, it also turns on metrics
+ * for each route (host and port) the client calls, see {@link RouteConnectionMetrics}, and optionally a response
+ * cache and hedged requests.
+ */
+public class WotifClientConfiguration extends JerseyClientConfiguration {
+
+    @NotNull
+    @JsonProperty
+    private Duration idleTimeout = Duration.seconds(30);
+
+    @NotNull
+    @JsonProperty
+    private Duration evictionInterval = Duration.seconds(5);
+
+    @JsonProperty
+    private boolean routeMetrics = true;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ResponseCacheConfiguration responseCache = new ResponseCacheConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private HedgingConfiguration hedging = new HedgingConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private ConcurrencyLimitConfiguration concurrencyLimit = new ConcurrencyLimitConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AsyncClientConfiguration async = new AsyncClientConfiguration();
+
+    public WotifClientConfiguration() {
+        // Dropwizard's keep alive of zero closes every connection after a single request
+        setKeepAlive(Duration.seconds(30));
+        setTimeToLive(Duration.minutes(5));
+        setMaxConnections(512);
+        setMaxConnectionsPerRoute(64);
+    }
+
+    @ValidationMethod(message = "evictionInterval must be positive")
+    public boolean isEvictionIntervalValid() {
+        return evictionInterval.toMilliseconds() > 0;
+    }
+
+    /**
+     * How long a pooled connection may sit unused before it's closed.
+     */
+    public Duration getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public void setIdleTimeout(Duration idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * How often idle and expired connections are looked for.
+     */
+    public Duration getEvictionInterval() {
+        return evictionInterval;
+    }
+
+    public void setEvictionInterval(Duration evictionInterval) {
+        this.evictionInterval = evictionInterval;
+    }
+
+    /**
+     * Whether lease time, connections created and pool usage are reported for each route.
+     */
+    public boolean isRouteMetrics() {
+        return routeMetrics;
+    }
+
+    public void setRouteMetrics(boolean routeMetrics) {
+        this.routeMetrics = routeMetrics;
+    }
+
+    /**
+     * Response caching and request coalescing, off by default. See {@link CachingClientFilter}.
+     */
+    public ResponseCacheConfiguration getResponseCache() {
+        return responseCache;
+    }
+
+    public void setResponseCache(ResponseCacheConfiguration responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Hedged requests and adaptive timeouts, off by default. See {@link HedgingClientFilter}.
+     */
+    public HedgingConfiguration getHedging() {
+        return hedging;
+    }
+
+    public void setHedging(HedgingConfiguration hedging) {
+        this.hedging = hedging;
+    }
+
+    /**
+     * Adaptive per-target concurrency limits, off by default. See {@link ConcurrencyLimitClientFilter}.
+     */
+    public ConcurrencyLimitConfiguration getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public void setConcurrencyLimit(ConcurrencyLimitConfiguration concurrencyLimit) {
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * The pool and per-target limits used by {@link WotifJerseyClientBuilder#buildAsync(String)}.
+     */
+    public AsyncClientConfiguration getAsync() {
+        return async;
+    }
+
+    public void setAsync(AsyncClientConfiguration async) {
+        this.async = async;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("timeout", getTimeout())
+                .add("connectionTimeout", getConnectionTimeout())
+                .add("keepAlive", getKeepAlive())
+                .add("timeToLive", getTimeToLive())
+                .add("maxConnections", getMaxConnections())
+                .add("maxConnectionsPerRoute", getMaxConnectionsPerRoute())
+                .add("idleTimeout", idleTimeout)
+                .add("evictionInterval", evictionInterval)
+                .add("routeMetrics", routeMetrics)
+                .add("responseCache", responseCache)
+                .add("hedging", hedging)
+                .add("concurrencyLimit", concurrencyLimit)
+                .add("async", async)
+                .toString();
+    }
+
+}
@@ -22,26 +22,121 @@ package com.wotifgroup.dropwizard.client;
 import com.google.common.annotations.VisibleForTesting;
 import com.sun.jersey.api.client.Client;
 import com.sun.jersey.api.client.filter.ClientFilter;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
 import io.dropwizard.client.JerseyClientBuilder;
+import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.setup.Environment;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jersey client builder adding request tracing and a User-Agent header to every client. Using a
+ * {@link WotifClientConfiguration} also gets the client Wotif's connection pooling defaults, idle connection eviction
+ * and per-route connection metrics, and optionally response caching, hedged requests and adaptive concurrency
+ * limits. {@link #buildAsync(String)} builds a {@link WotifAsyncClient} for making calls concurrently.
+ */
 public class WotifJerseyClientBuilder extends JerseyClientBuilder {
 
     @VisibleForTesting
     static final ClientFilter TRACING_FILTER = new RequestTracingClientFilter();
     private final ClientFilter userAgentFilter;
+    private final Environment environment;
+    private WotifClientConfiguration wotifConfiguration;
 
     public WotifJerseyClientBuilder(final Environment environment, final String version) {
         super(environment);
+        this.environment = environment;
         userAgentFilter = new UserAgentClientFilter(environment.getName() + "/" + version);
     }
 
+    @Override
+    public JerseyClientBuilder using(final JerseyClientConfiguration configuration) {
+        wotifConfiguration = configuration instanceof WotifClientConfiguration
+                ? (WotifClientConfiguration) configuration : null;
+        return super.using(configuration);
+    }
+
     @Override
     public Client build(final String name) {
         final Client client = super.build(name);
+        if (wotifConfiguration != null && client instanceof ApacheHttpClient4) {
+            configure((ApacheHttpClient4) client, name, wotifConfiguration);
+        }
         client.addFilter(TRACING_FILTER);
         client.addFilter(userAgentFilter);
         return client;
     }
 
+    /**
+     * Builds a client as {@link #build(String)} does, wrapped to make calls on a pool of its own and return futures.
+     * The pool and per-target limits come from {@link WotifClientConfiguration#getAsync()}, or its defaults when
+     * configured with a plain {@link JerseyClientConfiguration}.
+     */
+    public WotifAsyncClient buildAsync(final String name) {
+        final AsyncClientConfiguration async = wotifConfiguration != null
+                ? wotifConfiguration.getAsync() : new AsyncClientConfiguration();
+        final Client client = build(name);
+        // Calls past the per-target limits wait in WotifAsyncClient, so the pool's queue only holds calls that are
+        // free to start
+        final ExecutorService executor = environment.lifecycle()
+                .executorService("jersey-client-" + name + "-async-%d")
+                .minThreads(async.getThreads())
+                .maxThreads(async.getThreads())
+                .build();
+        return new WotifAsyncClient(client, executor, async, environment.metrics(), name);
+    }
+
+    @SuppressWarnings("deprecation")
+    private void configure(final ApacheHttpClient4 client, final String name,
+                           final WotifClientConfiguration configuration) {
+        final org.apache.http.impl.client.AbstractHttpClient httpClient =
+                (org.apache.http.impl.client.AbstractHttpClient) client.getClientHandler().getHttpClient();
+        final org.apache.http.conn.ClientConnectionManager connectionManager = httpClient.getConnectionManager();
+
+        if (configuration.isRouteMetrics()) {
+            final RouteConnectionMetrics routeMetrics = new RouteConnectionMetrics(environment.metrics(), name,
+                    connectionManager instanceof org.apache.http.impl.conn.PoolingClientConnectionManager
+                            ? (org.apache.http.impl.conn.PoolingClientConnectionManager) connectionManager : null);
+            httpClient.addRequestInterceptor(routeMetrics);
+            // Added before the tracing and User-Agent filters, so it runs after them, nearer the HTTP client
+            client.addFilter(routeMetrics);
+        }
+
+        final ConcurrencyLimitConfiguration concurrencyLimit = configuration.getConcurrencyLimit();
+        if (concurrencyLimit.isEnabled()) {
+            // Runs after the hedging filter, so that hedges count towards the limit too
+            client.addFilter(new ConcurrencyLimitClientFilter(concurrencyLimit, environment.metrics(), name));
+        }
+
+        final HedgingConfiguration hedging = configuration.getHedging();
+        if (hedging.isEnabled()) {
+            final ExecutorService hedgingExecutor = environment.lifecycle()
+                    .executorService("jersey-client-" + name + "-hedging-%d")
+                    .minThreads(0)
+                    .maxThreads(hedging.getMaxThreads())
+                    .workQueue(new SynchronousQueue<Runnable>())
+                    .build();
+            client.addFilter(new HedgingClientFilter(hedging, hedgingExecutor, environment.metrics(), name));
+        }
+
+        final ResponseCacheConfiguration responseCache = configuration.getResponseCache();
+        if (responseCache.isEnabled()) {
+            // Runs before the hedging and route metrics filters, so that cache hits and coalesced requests aren't
+            // counted as calls
+            client.addFilter(new CachingClientFilter(responseCache, client.getMessageBodyWorkers(),
+                    environment.metrics(), name));
+        }
+
+        final long interval = configuration.getEvictionInterval().toMilliseconds();
+        final ScheduledExecutorService evictor = environment.lifecycle()
+                .scheduledExecutorService("jersey-client-" + name + "-evictor-%d")
+                .build();
+        evictor.scheduleWithFixedDelay(
+                new IdleConnectionEvictor(connectionManager, configuration.getIdleTimeout().toMilliseconds()),
+                interval, interval, TimeUnit.MILLISECONDS);
+    }
+
 }
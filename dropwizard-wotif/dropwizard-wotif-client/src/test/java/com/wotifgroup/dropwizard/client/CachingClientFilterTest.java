@@ -0,0 +1,296 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import io.dropwizard.util.Duration;
+import io.dropwizard.util.Size;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.reflect.core.Reflection.method;
+
+public class CachingClientFilterTest {
+
+    private static final URI URI_1 = URI.create("http://hotels/search");
+    private static final String PREFIX = "org.apache.http.client.HttpClient.test.response-cache.";
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ResponseCacheConfiguration configuration = new ResponseCacheConfiguration();
+    private final FakeTicker ticker = new FakeTicker();
+    private final List<ClientRequest> calls = new ArrayList<>();
+    private final List<ClientResponse> responses = new ArrayList<>();
+    private CachingClientFilter filter;
+
+    @Before
+    public void setUp() throws Throwable {
+        configuration.setEnabled(true);
+        filter = filter();
+    }
+
+    @Test
+    public void shouldServeFreshResponseFromCache() throws Throwable {
+        responses.add(response(200, "first", "max-age=60", null));
+
+        assertThat(body(get())).isEqualTo("first");
+        ticker.advance(59, TimeUnit.SECONDS);
+        assertThat(body(get())).isEqualTo("first");
+
+        assertThat(calls).hasSize(1);
+        assertThat(metrics.meter(PREFIX + "hits").getCount()).isEqualTo(1);
+        assertThat(metrics.meter(PREFIX + "misses").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldFetchAgainOnceStale() throws Throwable {
+        responses.add(response(200, "first", "max-age=60", null));
+        responses.add(response(200, "second", "max-age=60", null));
+
+        get();
+        ticker.advance(61, TimeUnit.SECONDS);
+
+        assertThat(body(get())).isEqualTo("second");
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void shouldCapFreshnessAtMaxTtl() throws Throwable {
+        configuration.setMaxTtl(Duration.seconds(10));
+        filter = filter();
+        responses.add(response(200, "first", "max-age=3600", null));
+        responses.add(response(200, "second", "max-age=3600", null));
+
+        get();
+        ticker.advance(11, TimeUnit.SECONDS);
+
+        assertThat(body(get())).isEqualTo("second");
+    }
+
+    @Test
+    public void shouldRevalidateStaleResponseWithETag() throws Throwable {
+        responses.add(response(200, "first", "no-cache", "\"v1\""));
+        responses.add(response(304, "", "max-age=60", "\"v1\""));
+
+        get();
+
+        assertThat(body(get())).isEqualTo("first");
+        assertThat(calls).hasSize(2);
+        assertThat(calls.get(1).getHeaders().getFirst("If-None-Match")).isEqualTo("\"v1\"");
+        assertThat(metrics.meter(PREFIX + "revalidations").getCount()).isEqualTo(1);
+
+        // and the 304's max-age applies from then on
+        assertThat(body(get())).isEqualTo("first");
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void shouldNotCacheNoStoreOrPrivateResponses() throws Throwable {
+        responses.add(response(200, "first", "no-store", "\"v1\""));
+        responses.add(response(200, "second", "private, max-age=60", null));
+        responses.add(response(200, "third", "max-age=60", null));
+
+        assertThat(body(get())).isEqualTo("first");
+        assertThat(body(get())).isEqualTo("second");
+        assertThat(body(get())).isEqualTo("third");
+        assertThat(calls.get(1).getHeaders().containsKey("If-None-Match")).isFalse();
+    }
+
+    @Test
+    public void shouldStreamButNotCacheResponsesBiggerThanMaxEntrySize() throws Throwable {
+        configuration.setMaxEntrySize(Size.bytes(4));
+        filter = filter();
+        responses.add(response(200, "too big to cache", "max-age=60", null));
+        responses.add(response(200, "next", "max-age=60", null));
+
+        assertThat(body(get())).isEqualTo("too big to cache");
+        assertThat(body(get())).isEqualTo("next");
+    }
+
+    @Test
+    public void shouldBypassRequestsOtherThanPlainGets() throws Throwable {
+        responses.add(response(200, "first", "max-age=60", null));
+        responses.add(response(200, "second", "max-age=60", null));
+        responses.add(response(200, "third", "max-age=60", null));
+
+        filter.handle(ClientRequest.create().build(URI_1, "POST"));
+        filter.handle(ClientRequest.create().header("If-None-Match", "\"v0\"").build(URI_1, "GET"));
+
+        assertThat(body(get())).isEqualTo("third");
+        assertThat(calls).hasSize(3);
+    }
+
+    @Test
+    public void shouldKeyOnAcceptHeader() throws Throwable {
+        responses.add(response(200, "json", "max-age=60", null));
+        responses.add(response(200, "xml", "max-age=60", null));
+
+        assertThat(body(filter.handle(ClientRequest.create().accept("application/json").build(URI_1, "GET"))))
+                .isEqualTo("json");
+        assertThat(body(filter.handle(ClientRequest.create().accept("application/xml").build(URI_1, "GET"))))
+                .isEqualTo("xml");
+    }
+
+    @Test
+    public void shouldCoalesceConcurrentGets() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        responses.add(response(200, "shared", "max-age=60", null));
+
+        final List<String> bodies = getConcurrently();
+
+        assertThat(bodies).containsExactly("shared", "shared");
+        assertThat(calls).hasSize(1);
+    }
+
+    @Test
+    public void shouldNotSharePrivateResponsesWithCoalescedGets() throws Throwable {
+        responses.add(response(200, "mine", "private, max-age=60", null));
+        responses.add(response(200, "yours", "private, max-age=60", null));
+
+        final List<String> bodies = getConcurrently();
+
+        assertThat(bodies).containsOnly("mine", "yours");
+        assertThat(calls).hasSize(2);
+    }
+
+    @Test
+    public void shouldBypassRequestsWithCookies() throws Throwable {
+        responses.add(response(200, "first", "max-age=60", null));
+        responses.add(response(200, "second", "max-age=60", null));
+
+        filter.handle(ClientRequest.create().header("Cookie", "session=abc").build(URI_1, "GET"));
+        assertThat(body(get())).isEqualTo("second");
+        assertThat(calls).hasSize(2);
+    }
+
+    /**
+     * Makes two GETs, the second while the first's call is held up, and returns their bodies in order.
+     */
+    private List<String> getConcurrently() throws Throwable {
+        final CountDownLatch release = new CountDownLatch(1);
+        setNext(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                Uninterruptibles.awaitUninterruptibly(release);
+                return next(cr);
+            }
+        });
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Callable<String> get = new Callable<String>() {
+                @Override
+                public String call() throws Exception {
+                    return body(get());
+                }
+            };
+            final Future<String> first = executor.submit(get);
+            final Future<String> second = executor.submit(get);
+            while (metrics.meter(PREFIX + "coalesced").getCount() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            return Arrays.asList(first.get(), second.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private CachingClientFilter filter() throws Throwable {
+        final CachingClientFilter filter = new CachingClientFilter(configuration, null, metrics, "test", ticker);
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(filter)
+                .invoke(new ClientHandler() {
+                    @Override
+                    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                        return next(cr);
+                    }
+                });
+        return filter;
+    }
+
+    private void setNext(ClientHandler next) throws Throwable {
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(filter)
+                .invoke(next);
+    }
+
+    private synchronized ClientResponse next(ClientRequest cr) {
+        calls.add(cr);
+        return responses.remove(0);
+    }
+
+    private ClientResponse get() {
+        return filter.handle(ClientRequest.create().build(URI_1, "GET"));
+    }
+
+    private static ClientResponse response(int status, String body, String cacheControl, String etag) {
+        final InBoundHeaders headers = new InBoundHeaders();
+        headers.putSingle("Cache-Control", cacheControl);
+        if (etag != null) {
+            headers.putSingle("ETag", etag);
+        }
+        return new ClientResponse(status, headers, new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)),
+                null);
+    }
+
+    private static String body(ClientResponse response) throws IOException {
+        return new String(ByteStreams.toByteArray(response.getEntityInputStream()), StandardCharsets.UTF_8);
+    }
+
+    private static final class FakeTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+        void advance(long time, TimeUnit unit) {
+            nanos.addAndGet(unit.toNanos(time));
+        }
+    }
+
+}
@@ -0,0 +1,281 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.reflect.core.Reflection.method;
+import static org.junit.Assert.fail;
+
+public class ConcurrencyLimitClientFilterTest {
+
+    private static final URI TARGET = URI.create("http://hotels:8080/search");
+    private static final String PREFIX = "org.apache.http.client.HttpClient.test.hotels:8080.";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ConcurrencyLimitConfiguration configuration = new ConcurrencyLimitConfiguration();
+    private final FakeTicker ticker = new FakeTicker();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger entered = new AtomicInteger();
+    private volatile long latency = TimeUnit.MILLISECONDS.toNanos(10);
+    private volatile int status = 200;
+    private volatile boolean block;
+    private ConcurrencyLimitClientFilter filter;
+
+    @Before
+    public void setUp() {
+        configuration.setEnabled(true);
+        configuration.setInitialLimit(10);
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldRejectCallsBeyondLimit() throws Throwable {
+        configuration.setInitialLimit(2);
+        filter = filter();
+        block = true;
+        final Future<ClientResponse> first = executor.submit(call());
+        final Future<ClientResponse> second = executor.submit(call());
+        while (entered.get() < 2) {
+            Thread.sleep(1);
+        }
+        assertThat(gauge("concurrency-in-flight")).isEqualTo(2);
+
+        try {
+            filter.handle(get());
+            fail("expected the call to be rejected");
+        } catch (ClientHandlerException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(entered.get()).isEqualTo(2);
+        assertThat(metrics.meter(PREFIX + "concurrency-rejected").getCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(second.get(5, TimeUnit.SECONDS).getStatus()).isEqualTo(200);
+        assertThat(gauge("concurrency-in-flight")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldGrowLimitWhileInUse() throws Throwable {
+        configuration.setInitialLimit(2);
+        filter = filter();
+        filter.handle(get());
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(3);
+        // with the limit at 3 a lone call isn't using enough of it to grow it any further
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(3);
+    }
+
+    @Test
+    public void shouldNotGrowBeyondMaxLimit() throws Throwable {
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        filter = filter();
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldBackOffOnOverloadedStatus() throws Throwable {
+        filter = filter();
+        status = 503;
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+        status = 429;
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(8);
+    }
+
+    @Test
+    public void shouldBackOffOnFailure() throws Throwable {
+        filter = filter();
+        status = -1;
+        try {
+            filter.handle(get());
+            fail("expected a failure");
+        } catch (ClientHandlerException e) {
+            assertThat(e.getMessage()).isEqualTo("connection refused");
+        }
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+        assertThat(gauge("concurrency-in-flight")).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldBackOffWhenLatencyRises() throws Throwable {
+        filter = filter();
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(10);
+
+        // within twice the 10ms seen so far
+        latency = TimeUnit.MILLISECONDS.toNanos(20);
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(10);
+
+        latency = TimeUnit.MILLISECONDS.toNanos(21);
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+    }
+
+    @Test
+    public void shouldNotTakeLowestLatencyFromFastFailures() throws Throwable {
+        filter = filter();
+        status = 503;
+        latency = TimeUnit.MILLISECONDS.toNanos(1);
+        filter.handle(get());
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(8);
+
+        status = 200;
+        latency = TimeUnit.MILLISECONDS.toNanos(10);
+        for (int i = 0; i < 5; i++) {
+            filter.handle(get());
+        }
+        assertThat(gauge("concurrency-limit")).isEqualTo(8);
+    }
+
+    @Test
+    public void shouldKeepLowestLatencyIntoNextWindow() throws Throwable {
+        filter = filter();
+        filter.handle(get());
+        ticker.nanos.addAndGet(TimeUnit.SECONDS.toNanos(30));
+
+        // still measured against the last window's lowest latency
+        latency = TimeUnit.MILLISECONDS.toNanos(50);
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+    }
+
+    @Test
+    public void shouldForgetLowestLatencyAfterTwoWindows() throws Throwable {
+        filter = filter();
+        filter.handle(get());
+        ticker.nanos.addAndGet(TimeUnit.SECONDS.toNanos(60));
+
+        // becomes the new baseline rather than counting as slow
+        latency = TimeUnit.MILLISECONDS.toNanos(50);
+        filter.handle(get());
+        filter.handle(get());
+        assertThat(gauge("concurrency-limit")).isEqualTo(10);
+    }
+
+    @Test
+    public void shouldNotShrinkBelowMinLimit() throws Throwable {
+        configuration.setMinLimit(9);
+        filter = filter();
+        status = 503;
+        for (int i = 0; i < 5; i++) {
+            filter.handle(get());
+        }
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+    }
+
+    @Test
+    public void shouldLimitTargetsSeparately() throws Throwable {
+        filter = filter();
+        status = 503;
+        filter.handle(get());
+        filter.handle(ClientRequest.create().build(URI.create("http://flights/search"), "GET"));
+        assertThat(gauge("concurrency-limit")).isEqualTo(9);
+        assertThat(metrics.getGauges().get("org.apache.http.client.HttpClient.test.flights.concurrency-limit")
+                .getValue()).isEqualTo(9);
+    }
+
+    private ConcurrencyLimitClientFilter filter() throws Throwable {
+        final ConcurrencyLimitClientFilter filter =
+                new ConcurrencyLimitClientFilter(configuration, metrics, "test", ticker);
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(filter)
+                .invoke(new ClientHandler() {
+                    @Override
+                    public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                        entered.incrementAndGet();
+                        if (block) {
+                            Uninterruptibles.awaitUninterruptibly(release);
+                        }
+                        ticker.nanos.addAndGet(latency);
+                        if (status < 0) {
+                            throw new ClientHandlerException("connection refused");
+                        }
+                        return new ClientResponse(status, new InBoundHeaders(), new ByteArrayInputStream(new byte[0]),
+                                null);
+                    }
+                });
+        return filter;
+    }
+
+    private Callable<ClientResponse> call() {
+        return new Callable<ClientResponse>() {
+            @Override
+            public ClientResponse call() {
+                return filter.handle(get());
+            }
+        };
+    }
+
+    private Object gauge(String name) {
+        return metrics.getGauges().get(PREFIX + name).getValue();
+    }
+
+    private static ClientRequest get() {
+        return ClientRequest.create().build(TARGET, "GET");
+    }
+
+    private static final class FakeTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+    }
+
+}
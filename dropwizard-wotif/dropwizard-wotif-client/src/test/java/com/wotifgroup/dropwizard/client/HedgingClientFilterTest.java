@@ -0,0 +1,248 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.core.header.InBoundHeaders;
+import io.dropwizard.util.Duration;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.reflect.core.Reflection.method;
+import static org.junit.Assert.fail;
+
+public class HedgingClientFilterTest {
+
+    private static final URI TARGET = URI.create("http://hotels:8080/search");
+    private static final String PREFIX = "org.apache.http.client.HttpClient.test.hotels:8080.";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final HedgingConfiguration configuration = new HedgingConfiguration();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void setUp() {
+        configuration.setEnabled(true);
+        configuration.setMinSamples(2);
+        configuration.setPercentile(50);
+        configuration.setBudgetPercent(50);
+        configuration.setMinDelay(Duration.milliseconds(1));
+    }
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldHedgeSlowRequestAndCloseLosingResponse() throws Throwable {
+        // the first request after warming up hangs, its hedge (a clone of it) answers straight away
+        final ClientRequest slow = get();
+        final HedgingClientFilter filter = filter(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                calls.incrementAndGet();
+                if (cr == slow) {
+                    Uninterruptibles.awaitUninterruptibly(release);
+                    return response("primary");
+                }
+                return response("hedge");
+            }
+        });
+        warmUp(filter);
+
+        assertThat(body(filter.handle(slow))).isEqualTo("hedge");
+        assertThat(metrics.meter(PREFIX + "hedges").getCount()).isEqualTo(1);
+        // marked by the winning attempt just after it hands over its response
+        while (metrics.meter(PREFIX + "hedge-wins").getCount() == 0) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+        while (metrics.meter(PREFIX + "responses-wasted").getCount() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    public void shouldNotHedgeBeyondBudget() throws Throwable {
+        configuration.setBudgetPercent(1);
+        final HedgingClientFilter filter = filter(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                final int call = calls.incrementAndGet();
+                if (call == 3) {
+                    Uninterruptibles.sleepUninterruptibly(50, TimeUnit.MILLISECONDS);
+                }
+                return response("call " + call);
+            }
+        });
+        warmUp(filter);
+
+        assertThat(body(filter.handle(get()))).isEqualTo("call 3");
+        assertThat(calls.get()).isEqualTo(3);
+        assertThat(metrics.meter(PREFIX + "hedges").getCount()).isEqualTo(0);
+        assertThat(metrics.meter(PREFIX + "hedges-denied").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldTimeOutAfterMultipleOfRecentLatency() throws Throwable {
+        configuration.setAdaptiveTimeout(true);
+        configuration.setTimeoutMultiplier(1);
+        configuration.setMinTimeout(Duration.milliseconds(20));
+        final HedgingClientFilter filter = filter(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                if (calls.incrementAndGet() > 2) {
+                    Uninterruptibles.awaitUninterruptibly(release);
+                }
+                return response("ok");
+            }
+        });
+        warmUp(filter);
+
+        try {
+            filter.handle(get());
+            fail("expected a timeout");
+        } catch (ClientHandlerException e) {
+            assertThat(e.getCause()).isInstanceOf(SocketTimeoutException.class);
+        }
+        assertThat(metrics.meter(PREFIX + "timeouts").getCount()).isEqualTo(1);
+        assertThat(metrics.getGauges().get(PREFIX + "timeout").getValue()).isEqualTo(20L);
+    }
+
+    @Test
+    public void shouldFailOnlyOnceEveryAttemptHasFailed() throws Throwable {
+        final HedgingClientFilter filter = filter(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                final int call = calls.incrementAndGet();
+                if (call == 3) {
+                    Uninterruptibles.awaitUninterruptibly(release);
+                    throw new ClientHandlerException("primary failed");
+                }
+                if (call == 4) {
+                    release.countDown();
+                    throw new ClientHandlerException("hedge failed");
+                }
+                return response("call " + call);
+            }
+        });
+        warmUp(filter);
+
+        try {
+            filter.handle(get());
+            fail("expected a failure");
+        } catch (ClientHandlerException e) {
+            assertThat(e.getMessage()).endsWith("failed");
+        }
+        assertThat(calls.get()).isEqualTo(4);
+    }
+
+    @Test
+    public void shouldMakeOtherRequestsOnCallingThread() throws Throwable {
+        final Thread caller = Thread.currentThread();
+        final HedgingClientFilter filter = filter(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                assertThat(Thread.currentThread()).isSameAs(caller);
+                return response("ok");
+            }
+        });
+        warmUp(filter);
+
+        filter.handle(ClientRequest.create().build(TARGET, "POST"));
+    }
+
+    @Test
+    public void budgetAllowsOnlyPercentageOfRequests() {
+        final HedgingClientFilter.HedgeBudget budget = new HedgingClientFilter.HedgeBudget(10);
+        for (int i = 0; i < 9; i++) {
+            budget.deposit();
+        }
+        assertThat(budget.tryWithdraw()).isFalse();
+        budget.deposit();
+        assertThat(budget.tryWithdraw()).isTrue();
+        assertThat(budget.tryWithdraw()).isFalse();
+    }
+
+    @Test
+    public void budgetIsCapped() {
+        final HedgingClientFilter.HedgeBudget budget = new HedgingClientFilter.HedgeBudget(50);
+        for (int i = 0; i < 1000; i++) {
+            budget.deposit();
+        }
+        int hedges = 0;
+        while (budget.tryWithdraw()) {
+            hedges++;
+        }
+        assertThat(hedges).isEqualTo(10);
+    }
+
+    private HedgingClientFilter filter(ClientHandler next) throws Throwable {
+        final HedgingClientFilter filter = new HedgingClientFilter(configuration, executor, metrics, "test");
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(filter)
+                .invoke(next);
+        return filter;
+    }
+
+    private void warmUp(HedgingClientFilter filter) throws IOException {
+        for (int i = 0; i < configuration.getMinSamples(); i++) {
+            body(filter.handle(get()));
+        }
+    }
+
+    private static ClientRequest get() {
+        return ClientRequest.create().build(TARGET, "GET");
+    }
+
+    private static ClientResponse response(String body) {
+        return new ClientResponse(200, new InBoundHeaders(),
+                new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), null);
+    }
+
+    private static String body(ClientResponse response) throws IOException {
+        return new String(ByteStreams.toByteArray(response.getEntityInputStream()), StandardCharsets.UTF_8);
+    }
+
+}
@@ -25,10 +25,15 @@ import com.sun.jersey.api.client.ClientRequest;
 import com.sun.jersey.api.client.ClientResponse;
 import com.sun.jersey.api.client.filter.ClientFilter;
 import com.sun.jersey.core.util.MultivaluedMapImpl;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import com.wotifgroup.dropwizard.tracing.Span;
+import com.wotifgroup.dropwizard.tracing.SpanBuffer;
 import org.junit.Test;
 import org.slf4j.MDC;
 
 import javax.ws.rs.core.MultivaluedMap;
+import java.net.URI;
+import java.util.List;
 
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.reflect.core.Reflection.method;
@@ -99,4 +104,39 @@ public class RequestTracingClientFilterTest {
         assertThat(headers.getFirst("X-Opaque-ID")).isEqualTo(expected);
     }
 
+    @Test
+    public void shouldRecordSpanOfCall() throws Throwable {
+        final MultivaluedMap headers = new MultivaluedMapImpl();
+        final SpanBuffer spans = new SpanBuffer(4);
+        final RequestTracingClientFilter filter = new RequestTracingClientFilter();
+        final ClientResponse response = mock(ClientResponse.class);
+        when(response.getStatus()).thenReturn(503);
+        final ClientFilter testFilter = new ClientFilter() {
+            @Override
+            public ClientResponse handle(final ClientRequest cr) throws ClientHandlerException {
+                return response;
+            }
+        };
+
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(filter)
+                .invoke(testFilter);
+
+        final ClientRequest request = mock(ClientRequest.class);
+        when(request.getHeaders()).thenReturn(headers);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getURI()).thenReturn(URI.create("http://hotels:8080/search/brisbane?checkIn=today"));
+
+        try (RequestContext.Scope ignored = new RequestContext("trace", spans).attach()) {
+            filter.handle(request);
+        }
+
+        final List<Span> recorded = spans.snapshot();
+        assertThat(recorded).hasSize(1);
+        assertThat(recorded.get(0).getRequestId()).isEqualTo("trace");
+        assertThat(recorded.get(0).getKind()).isEqualTo(Span.Kind.CLIENT);
+        assertThat(recorded.get(0).getName()).isEqualTo("GET hotels:8080/search/brisbane");
+        assertThat(recorded.get(0).getStatus()).isEqualTo(503);
+    }
+
 }
@@ -0,0 +1,149 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientHandlerException;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.protocol.HttpCoreContext;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.reflect.core.Reflection.method;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@SuppressWarnings("deprecation")
+public class RouteConnectionMetricsTest {
+
+    private static final String PREFIX = "org.apache.http.client.HttpClient.test.hotels:8080.";
+
+    private final MetricRegistry registry = new MetricRegistry();
+    private final org.apache.http.impl.conn.PoolingClientConnectionManager connectionManager =
+            new org.apache.http.impl.conn.PoolingClientConnectionManager();
+    private final RouteConnectionMetrics metrics = new RouteConnectionMetrics(registry, "test", connectionManager);
+    private final HttpConnectionMetrics connectionMetrics = mock(HttpConnectionMetrics.class);
+    private final HttpContext context = new BasicHttpContext();
+
+    @After
+    public void tearDown() {
+        connectionManager.shutdown();
+    }
+
+    @Test
+    public void shouldTimeLeaseAndCountNewConnections() throws Throwable {
+        givenConnection(0);
+
+        handle();
+
+        assertThat(registry.timer(PREFIX + "lease").getCount()).isEqualTo(1);
+        assertThat(registry.meter(PREFIX + "connections-created").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldNotCountReusedConnections() throws Throwable {
+        givenConnection(3);
+
+        handle();
+
+        assertThat(registry.timer(PREFIX + "lease").getCount()).isEqualTo(1);
+        assertThat(registry.meter(PREFIX + "connections-created").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldOnlyTimeFirstLeaseOfRequest() throws Throwable {
+        givenConnection(0);
+        setNext(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                // e.g. a redirect
+                metrics.process(new BasicHttpRequest("GET", "/"), context);
+                metrics.process(new BasicHttpRequest("GET", "/"), context);
+                return null;
+            }
+        });
+
+        metrics.handle(mock(ClientRequest.class));
+
+        assertThat(registry.timer(PREFIX + "lease").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void shouldRegisterPoolGaugesForRoute() throws Throwable {
+        givenConnection(0);
+
+        handle();
+
+        assertThat(registry.getGauges().keySet()).contains(PREFIX + "leased-connections",
+                PREFIX + "pending-connections", PREFIX + "available-connections");
+        assertThat(((Gauge) registry.getGauges().get(PREFIX + "leased-connections")).getValue()).isEqualTo(0);
+    }
+
+    @Test
+    public void shouldShareMetricsBetweenRoutesToSameHost() throws Throwable {
+        givenConnection(0);
+        handle();
+        context.setAttribute(HttpClientContext.HTTP_ROUTE,
+                new HttpRoute(new HttpHost("hotels", 8080), null, new HttpHost("proxy", 3128), false));
+
+        handle();
+
+        assertThat(registry.timer(PREFIX + "lease").getCount()).isEqualTo(2);
+        assertThat(((Gauge) registry.getGauges().get(PREFIX + "leased-connections")).getValue()).isEqualTo(0);
+    }
+
+    private void givenConnection(long requestCount) {
+        final HttpClientConnection connection = mock(HttpClientConnection.class);
+        when(connection.getMetrics()).thenReturn(connectionMetrics);
+        when(connectionMetrics.getRequestCount()).thenReturn(requestCount);
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, new HttpRoute(new HttpHost("hotels", 8080)));
+        context.setAttribute(HttpCoreContext.HTTP_CONNECTION, connection);
+    }
+
+    private void handle() throws Throwable {
+        setNext(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest cr) throws ClientHandlerException {
+                metrics.process(new BasicHttpRequest("GET", "/"), context);
+                return null;
+            }
+        });
+        metrics.handle(mock(ClientRequest.class));
+    }
+
+    private void setNext(ClientHandler next) throws Throwable {
+        method("setNext").withParameterTypes(ClientHandler.class)
+                .in(metrics)
+                .invoke(next);
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * dropwizard-wotif-client
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.client;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientHandler;
+import com.sun.jersey.api.client.ClientRequest;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.UniformInterfaceException;
+import com.sun.jersey.core.header.InBoundHeaders;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class WotifAsyncClientTest {
+
+    private static final URI TARGET = URI.create("http://hotels:8080/search");
+    private static final String PREFIX = "org.apache.http.client.HttpClient.test.hotels:8080.";
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final AsyncClientConfiguration configuration = new AsyncClientConfiguration();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final List<String> requestIds = new ArrayList<>();
+    private int status = 200;
+    private Client client;
+
+    @After
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldRunCallsWithCallersRequestContext() throws Exception {
+        release.countDown();
+        final ListenableFuture<ClientResponse> future;
+        try (RequestContext.Scope ignored = new RequestContext("abc123").attach()) {
+            future = asyncClient().handle(ClientRequest.create().build(TARGET, "GET"));
+        }
+        assertThat(future.get(5, TimeUnit.SECONDS).getEntity(String.class)).isEqualTo("hello");
+        synchronized (requestIds) {
+            assertThat(requestIds).containsExactly("abc123");
+        }
+    }
+
+    @Test
+    public void shouldGetEntity() throws Exception {
+        release.countDown();
+        assertThat(asyncClient().get(TARGET, String.class).get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+    }
+
+    @Test
+    public void shouldFailGetOnErrorStatus() throws Exception {
+        release.countDown();
+        status = 503;
+        try {
+            asyncClient().get(TARGET, String.class).get(5, TimeUnit.SECONDS);
+            fail("expected a UniformInterfaceException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(UniformInterfaceException.class);
+            assertThat(((UniformInterfaceException) e.getCause()).getResponse().getStatus()).isEqualTo(503);
+        }
+    }
+
+    @Test
+    public void shouldQueueCallsPastPerTargetLimit() throws Exception {
+        configuration.setMaxInFlightPerTarget(2);
+        final WotifAsyncClient asyncClient = asyncClient();
+        final List<ListenableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(asyncClient.get(TARGET, String.class));
+        }
+        // another target has a limit of its own
+        final ListenableFuture<String> other = asyncClient.get(URI.create("http://flights/search"), String.class);
+
+        waitFor(3);
+        assertThat(gauge("async-in-flight")).isEqualTo(2);
+        assertThat(gauge("async-queued")).isEqualTo(3);
+
+        release.countDown();
+        for (ListenableFuture<String> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+        }
+        assertThat(other.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+        assertThat(maxInFlight.get()).isEqualTo(3);
+        // the slot is given back just after the future completes
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!Integer.valueOf(0).equals(gauge("async-in-flight")) && System.nanoTime() < deadline) {
+            Uninterruptibles.sleepUninterruptibly(5, TimeUnit.MILLISECONDS);
+        }
+        assertThat(gauge("async-in-flight")).isEqualTo(0);
+        assertThat(metrics.timer(PREFIX + "async-queue-wait").getCount()).isEqualTo(5);
+    }
+
+    @Test
+    public void shouldRejectCallsPastQueueLimit() throws Exception {
+        configuration.setMaxInFlightPerTarget(1);
+        configuration.setMaxQueuedPerTarget(1);
+        final WotifAsyncClient asyncClient = asyncClient();
+        final ListenableFuture<String> first = asyncClient.get(TARGET, String.class);
+        final ListenableFuture<String> second = asyncClient.get(TARGET, String.class);
+        final ListenableFuture<String> third = asyncClient.get(TARGET, String.class);
+
+        try {
+            third.get(5, TimeUnit.SECONDS);
+            fail("expected a RejectedExecutionException");
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(RejectedExecutionException.class);
+        }
+        assertThat(metrics.meter(PREFIX + "async-rejected").getCount()).isEqualTo(1);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+        assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+    }
+
+    @Test
+    public void shouldSkipCallsCancelledWhileQueued() throws Exception {
+        configuration.setMaxInFlightPerTarget(1);
+        final WotifAsyncClient asyncClient = asyncClient();
+        final ListenableFuture<String> first = asyncClient.get(TARGET, String.class);
+        final ListenableFuture<String> second = asyncClient.get(TARGET, String.class);
+        final ListenableFuture<String> third = asyncClient.get(TARGET, String.class);
+        second.cancel(false);
+
+        release.countDown();
+        assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+        assertThat(third.get(5, TimeUnit.SECONDS)).isEqualTo("hello");
+        assertThat(maxInFlight.get()).isEqualTo(1);
+        synchronized (requestIds) {
+            assertThat(requestIds).hasSize(2);
+        }
+    }
+
+    private WotifAsyncClient asyncClient() {
+        client = new Client(new ClientHandler() {
+            @Override
+            public ClientResponse handle(ClientRequest request) {
+                synchronized (requestIds) {
+                    requestIds.add(RequestContext.currentRequestId());
+                }
+                final int now = inFlight.incrementAndGet();
+                synchronized (maxInFlight) {
+                    maxInFlight.set(Math.max(maxInFlight.get(), now));
+                }
+                try {
+                    Uninterruptibles.awaitUninterruptibly(release);
+                    return new ClientResponse(status, new InBoundHeaders(),
+                            new ByteArrayInputStream("hello".getBytes(StandardCharsets.UTF_8)),
+                            client.getMessageBodyWorkers());
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+        });
+        return new WotifAsyncClient(client, executor, configuration, metrics, "test");
+    }
+
+    private Object gauge(String name) {
+        final Gauge<?> gauge = metrics.getGauges().get(PREFIX + name);
+        return gauge.getValue();
+    }
+
+    private void waitFor(int calls) {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.get() < calls && System.nanoTime() < deadline) {
+            Uninterruptibles.sleepUninterruptibly(5, TimeUnit.MILLISECONDS);
+        }
+        assertThat(inFlight.get()).isEqualTo(calls);
+    }
+
+}
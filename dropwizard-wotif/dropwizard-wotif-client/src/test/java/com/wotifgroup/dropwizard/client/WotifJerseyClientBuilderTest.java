@@ -21,7 +21,11 @@ package com.wotifgroup.dropwizard.client;
 
 import com.codahale.metrics.MetricRegistry;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.jersey.client.apache4.ApacheHttpClient4;
+import io.dropwizard.client.JerseyClientConfiguration;
 import io.dropwizard.setup.Environment;
+import org.apache.http.impl.DefaultConnectionReuseStrategy;
+import org.apache.http.impl.NoConnectionReuseStrategy;
 import org.junit.Test;
 
 import javax.validation.Validation;
@@ -42,4 +46,33 @@ public class WotifJerseyClientBuilderTest {
         assertThat(new WotifJerseyClientBuilder(env, "1.2.3").build("test").getHeadHandler() instanceof UserAgentClientFilter).isTrue();
     }
 
+    @Test
+    @SuppressWarnings("deprecation")
+    public void shouldReuseConnectionsAndAddRouteMetricsWithWotifConfiguration() {
+        final Environment env = new Environment("test", new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), new MetricRegistry(), getClass().getClassLoader());
+        final ApacheHttpClient4 client = (ApacheHttpClient4) new WotifJerseyClientBuilder(env, "1.2.3")
+                .using(new WotifClientConfiguration())
+                .build("test");
+        final org.apache.http.impl.client.AbstractHttpClient httpClient =
+                (org.apache.http.impl.client.AbstractHttpClient) client.getClientHandler().getHttpClient();
+
+        assertThat(httpClient.getConnectionReuseStrategy()).isInstanceOf(DefaultConnectionReuseStrategy.class);
+        assertThat(httpClient.getRequestInterceptor(httpClient.getRequestInterceptorCount() - 1))
+                .isInstanceOf(RouteConnectionMetrics.class);
+        assertThat(client.getHeadHandler() instanceof UserAgentClientFilter).isTrue();
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void shouldNotReuseConnectionsWithDropwizardDefaults() {
+        final Environment env = new Environment("test", new ObjectMapper(), Validation.buildDefaultValidatorFactory().getValidator(), new MetricRegistry(), getClass().getClassLoader());
+        final ApacheHttpClient4 client = (ApacheHttpClient4) new WotifJerseyClientBuilder(env, "1.2.3")
+                .using(new JerseyClientConfiguration())
+                .build("test");
+        final org.apache.http.impl.client.AbstractHttpClient httpClient =
+                (org.apache.http.impl.client.AbstractHttpClient) client.getClientHandler().getHttpClient();
+
+        assertThat(httpClient.getConnectionReuseStrategy()).isInstanceOf(NoConnectionReuseStrategy.class);
+    }
+
 }
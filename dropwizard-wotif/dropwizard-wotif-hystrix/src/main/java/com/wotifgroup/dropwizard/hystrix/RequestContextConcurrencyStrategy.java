@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * dropwizard-wotif-hystrix
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.hystrix;
+
+import com.netflix.hystrix.HystrixThreadPoolKey;
+import com.netflix.hystrix.strategy.concurrency.HystrixConcurrencyStrategy;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariable;
+import com.netflix.hystrix.strategy.concurrency.HystrixRequestVariableLifecycle;
+import com.netflix.hystrix.strategy.properties.HystrixProperty;
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Concurrency strategy that runs commands on Hystrix thread pools with the {@link RequestContext} of the calling
+ * thread, so the request ID is still sent downstream and logged. Anything else is left to the given strategy.
+ */
+public class RequestContextConcurrencyStrategy extends HystrixConcurrencyStrategy {
+
+    private final HystrixConcurrencyStrategy delegate;
+
+    public RequestContextConcurrencyStrategy() {
+        this(null);
+    }
+
+    /**
+     * @param delegate strategy for thread pools, queues and request variables, or null for the Hystrix defaults
+     */
+    public RequestContextConcurrencyStrategy(HystrixConcurrencyStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public ThreadPoolExecutor getThreadPool(HystrixThreadPoolKey threadPoolKey, HystrixProperty<Integer> corePoolSize,
+                                            HystrixProperty<Integer> maximumPoolSize,
+                                            HystrixProperty<Integer> keepAliveTime, TimeUnit unit,
+                                            BlockingQueue<Runnable> workQueue) {
+        if (delegate == null) {
+            return super.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+        }
+        return delegate.getThreadPool(threadPoolKey, corePoolSize, maximumPoolSize, keepAliveTime, unit, workQueue);
+    }
+
+    @Override
+    public BlockingQueue<Runnable> getBlockingQueue(int maxQueueSize) {
+        return delegate == null ? super.getBlockingQueue(maxQueueSize) : delegate.getBlockingQueue(maxQueueSize);
+    }
+
+    @Override
+    public <T> Callable<T> wrapCallable(Callable<T> callable) {
+        final Callable<T> wrapped = RequestContext.wrap(callable);
+        return delegate == null ? wrapped : delegate.wrapCallable(wrapped);
+    }
+
+    @Override
+    public <T> HystrixRequestVariable<T> getRequestVariable(HystrixRequestVariableLifecycle<T> rv) {
+        return delegate == null ? super.getRequestVariable(rv) : delegate.getRequestVariable(rv);
+    }
+
+}
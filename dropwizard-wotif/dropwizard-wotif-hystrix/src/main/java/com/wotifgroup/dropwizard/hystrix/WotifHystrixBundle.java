@@ -25,10 +25,13 @@ import com.netflix.hystrix.strategy.HystrixPlugins;
 import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
 
 public class WotifHystrixBundle<T> implements ConfiguredBundle<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WotifHystrixBundle.class);
     private static final String STREAM_NAME = "Hystrix Stream";
     private static final String STREAM_URL = "/metrics/hystrix.stream";
     private static final String CIRCUIT_BREAKERS_HEALTHCHECK_NAME = "HystrixCircuitBreakers";
@@ -59,6 +62,7 @@ public class WotifHystrixBundle<T> implements ConfiguredBundle<T> {
     @Override
     public void run(T configuration, Environment environment) {
         HystrixPlugins.getInstance().registerMetricsPublisher(new HystrixCodaHaleMetricsPublisher(environment.metrics()));
+        registerConcurrencyStrategy();
 
         HystrixMetricsStreamServlet servlet = new HystrixMetricsStreamServlet();
         environment.admin().addServlet(STREAM_NAME, servlet).addMapping(STREAM_URL);
@@ -70,4 +74,25 @@ public class WotifHystrixBundle<T> implements ConfiguredBundle<T> {
         environment.healthChecks().register(CIRCUIT_BREAKERS_HEALTHCHECK_NAME,
                 new HystrixCircuitBreakersHealthCheck(heathCheckCommands));
     }
+
+    /**
+     * Commands run on Hystrix threads, which would otherwise lose the request ID. Hystrix only takes one strategy, and
+     * only before it's first used, so an application with a strategy of its own should register it wrapped in a
+     * {@link RequestContextConcurrencyStrategy} before this bundle runs.
+     *
+     * @return whether commands run with the caller's request context
+     */
+    static boolean registerConcurrencyStrategy() {
+        try {
+            HystrixPlugins.getInstance().registerConcurrencyStrategy(new RequestContextConcurrencyStrategy());
+            return true;
+        } catch (IllegalStateException e) {
+            if (HystrixPlugins.getInstance().getConcurrencyStrategy() instanceof RequestContextConcurrencyStrategy) {
+                return true;
+            }
+            LOGGER.warn("Hystrix already has a concurrency strategy, so commands won't carry the request ID. "
+                    + "Register it wrapped in a RequestContextConcurrencyStrategy before Hystrix is used to fix this");
+            return false;
+        }
+    }
 }
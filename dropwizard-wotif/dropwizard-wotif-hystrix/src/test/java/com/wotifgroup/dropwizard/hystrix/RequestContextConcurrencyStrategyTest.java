@@ -0,0 +1,70 @@
+/*
+ * #%L
+ * dropwizard-wotif-hystrix
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.hystrix;
+
+import com.wotifgroup.dropwizard.tracing.RequestContext;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestContextConcurrencyStrategyTest {
+
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    private final RequestContextConcurrencyStrategy strategy = new RequestContextConcurrencyStrategy();
+
+    private final Callable<String> currentRequestId = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+            return RequestContext.currentRequestId() + "/" + MDC.get(RequestContext.REQUEST_ID);
+        }
+    };
+
+    @After
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Test
+    public void shouldRunCallableWithCallersContext() throws Exception {
+        final Callable<String> wrapped;
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            wrapped = strategy.wrapCallable(currentRequestId);
+        }
+
+        assertEquals("abc/abc", pool.submit(wrapped).get());
+        assertEquals("null/null", pool.submit(currentRequestId).get());
+    }
+
+    @Test
+    public void shouldNotLeakContextBetweenCallables() throws Exception {
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            pool.submit(strategy.wrapCallable(currentRequestId)).get();
+        }
+
+        assertEquals("null/null", pool.submit(strategy.wrapCallable(currentRequestId)).get());
+    }
+
+}
@@ -0,0 +1,37 @@
+/*
+ * #%L
+ * dropwizard-wotif-hystrix
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.hystrix;
+
+import com.netflix.hystrix.strategy.HystrixPlugins;
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+
+public class WotifHystrixBundleTest {
+
+    @Test
+    public void shouldCarryOnWhenHystrixAlreadyHasConcurrencyStrategy() {
+        // Settles on the default strategy, as using Hystrix before the bundle runs would
+        HystrixPlugins.getInstance().getConcurrencyStrategy();
+
+        assertFalse(WotifHystrixBundle.registerConcurrencyStrategy());
+    }
+
+}
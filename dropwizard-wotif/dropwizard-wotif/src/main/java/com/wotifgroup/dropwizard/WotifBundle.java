@@ -20,23 +20,47 @@
 package com.wotifgroup.dropwizard;
 
 import ch.qos.logback.classic.Logger;
+import com.codahale.metrics.Gauge;
 import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.google.common.base.Optional;
 import com.google.common.base.Strings;
 import com.google.common.io.Files;
+import com.sun.jersey.api.core.ResourceConfig;
+import com.wotifgroup.dropwizard.compression.CompressionConfiguration;
+import com.wotifgroup.dropwizard.compression.CompressionFilter;
+import com.wotifgroup.dropwizard.conditional.ConditionalGetCache;
+import com.wotifgroup.dropwizard.conditional.ConditionalGetConfiguration;
+import com.wotifgroup.dropwizard.conditional.ConditionalGetFilter;
 import com.wotifgroup.dropwizard.jmx.JmxConnectorFactory;
 import com.wotifgroup.dropwizard.jmx.ManagedJmxConnectorServer;
+import com.wotifgroup.dropwizard.loadshedding.LoadSheddingConfiguration;
+import com.wotifgroup.dropwizard.loadshedding.LoadSheddingFilter;
 import com.wotifgroup.dropwizard.logging.CardMaskingConfigurer;
 import com.wotifgroup.dropwizard.logging.LogTask;
 import com.wotifgroup.dropwizard.logging.MarkLogTask;
+import com.wotifgroup.dropwizard.logging.RequestLogFilterTask;
 import com.wotifgroup.dropwizard.logging.StartupShutdownLogger;
 import com.wotifgroup.dropwizard.logging.WotifFormatRequestLogFactory;
+import com.wotifgroup.dropwizard.poolstatus.AgentCheckResponder;
 import com.wotifgroup.dropwizard.poolstatus.EnterPoolTask;
 import com.wotifgroup.dropwizard.poolstatus.ExitPoolTask;
+import com.wotifgroup.dropwizard.poolstatus.PoolStatusHandler;
+import com.wotifgroup.dropwizard.poolstatus.PoolWeightConfiguration;
+import com.wotifgroup.dropwizard.tracing.IdGenerationStrategy;
 import com.wotifgroup.dropwizard.tracing.RequestTracingFilter;
+import com.wotifgroup.dropwizard.tracing.SpanBuffer;
+import com.wotifgroup.dropwizard.tracing.SpansServlet;
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
 import com.wotifgroup.dropwizard.version.ProjectId;
 import com.wotifgroup.dropwizard.version.WhoAmITask;
+import com.wotifgroup.dropwizard.warmup.WarmUp;
+import com.wotifgroup.dropwizard.warmup.WarmUpConfiguration;
+import com.wotifgroup.dropwizard.warmup.WarmUpRunner;
+import com.wotifgroup.poolstatusservlet.AgentCheckServlet;
+import com.wotifgroup.poolstatusservlet.InFlightRequestFilter;
 import com.wotifgroup.poolstatusservlet.PoolStatus;
 import com.wotifgroup.poolstatusservlet.PoolStatusServlet;
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
 import io.dropwizard.ConfiguredBundle;
 import io.dropwizard.jetty.ConnectorFactory;
 import io.dropwizard.jetty.HttpsConnectorFactory;
@@ -51,6 +75,9 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
 
 /**
  * Bundle of standard functionality for Wotif Dropwizard applications.
@@ -59,6 +86,8 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
 
     private final ProjectId projectId;
     private PoolStatus poolStatus;
+    private ConditionalGetCache conditionalGetCache;
+    private WarmUpRunner warmUpRunner;
     private CardMaskingConfigurer cardMaskingConfigurer = new CardMaskingConfigurer();
 
     public WotifBundle(ProjectId projectId) {
@@ -76,11 +105,16 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
 
     @Override
     public void run(WotifConfiguration configuration, Environment environment) throws Exception {
-        tracing(environment);
+        final TrustedNetworks trustedNetworks = TrustedNetworks.parse(configuration.getTrustedNetworks());
+        tracing(configuration, environment, trustedNetworks);
         jmx(configuration, environment);
-        poolStatus(environment);
+        poolStatus(configuration, environment);
+        warmUp(configuration, environment);
+        loadShedding(configuration, environment);
+        compression(configuration, environment);
+        conditionalGet(configuration, environment);
         logging(environment);
-        setWotifFormatRequestLog(configuration);
+        setWotifFormatRequestLog(configuration, environment, trustedNetworks);
         version(environment);
         configureKeyStore(configuration);
 
@@ -111,9 +145,16 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
 
     }
 
-    private void tracing(Environment environment) {
-        environment.servlets().addFilter("request tracing", RequestTracingFilter.class)
+    private void tracing(WotifConfiguration configuration, Environment environment, TrustedNetworks trustedNetworks) {
+        final IdGenerationStrategy idGenerator = configuration.getRequestTracingConfiguration().buildIdGenerator();
+        final Optional<SpanBuffer> spans = configuration.getRequestTracingConfiguration().buildSpanBuffer();
+        environment.servlets().addFilter("request tracing",
+                new RequestTracingFilter(idGenerator, trustedNetworks, spans.orNull()))
                 .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+        if (spans.isPresent()) {
+            environment.admin().addServlet("spans", new SpansServlet(spans.get(), environment.getObjectMapper()))
+                    .addMapping("/tracing/spans");
+        }
     }
 
     private void jmx(WotifConfiguration configuration, Environment environment) {
@@ -123,12 +164,100 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
         environment.lifecycle().manage(jmxConnector);
     }
 
-    private void poolStatus(Environment environment) {
+    private void poolStatus(WotifConfiguration configuration, Environment environment) {
         poolStatus = new PoolStatus();
+        poolWeight(configuration.getPoolWeightConfiguration(), environment);
         environment.admin().addTask(new EnterPoolTask(getPoolStatus()));
         environment.admin().addTask(new ExitPoolTask(getPoolStatus()));
         environment.servlets().addServlet("pool_status.txt", new PoolStatusServlet(getPoolStatus()))
                 .addMapping("/pool_status.txt");
+        environment.servlets().addServlet("agent_check.txt", new AgentCheckServlet(getPoolStatus()))
+                .addMapping("/agent_check.txt");
+        if (configuration.isPoolStatusHandler()) {
+            // Answers probes ahead of every filter, including the ones added below
+            environment.getApplicationContext().insertHandler(new PoolStatusHandler(getPoolStatus()));
+        }
+        // Counts the requests an exit-pool task with a drain waits for
+        environment.servlets().addFilter("in flight requests", new InFlightRequestFilter(getPoolStatus()))
+                .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+    }
+
+    private void poolWeight(PoolWeightConfiguration poolWeight, Environment environment) {
+        final PoolStatus pool = getPoolStatus();
+        pool.setSlowStart(poolWeight.getSlowStart().getQuantity(), poolWeight.getSlowStart().getUnit());
+        pool.setRefreshInterval(poolWeight.getRefreshInterval().getQuantity(), poolWeight.getRefreshInterval().getUnit());
+        for (SaturationSignal signal : poolWeight.buildSaturationSignals(environment.metrics())) {
+            pool.addSaturationSignal(signal);
+        }
+        environment.metrics().register(name(PoolStatus.class, "weight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return pool.weight();
+            }
+        });
+        environment.metrics().register(name(PoolStatus.class, "saturation"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return pool.saturation();
+            }
+        });
+        if (poolWeight.getAgentCheckPort().isPresent()) {
+            environment.lifecycle().manage(new AgentCheckResponder(pool, poolWeight.getAgentCheckPort().get()));
+        }
+    }
+
+    private void warmUp(WotifConfiguration configuration, Environment environment) throws IOException {
+        final WarmUpConfiguration warmUp = configuration.getWarmUpConfiguration();
+        if (warmUp.isEnabled()) {
+            warmUpRunner = new WarmUpRunner(warmUp, getPoolStatus(), environment.metrics(),
+                    configuration.getServerFactory());
+            environment.lifecycle().addServerLifecycleListener(warmUpRunner);
+        }
+    }
+
+    private void loadShedding(WotifConfiguration configuration, Environment environment) {
+        final LoadSheddingConfiguration loadShedding = configuration.getLoadSheddingConfiguration();
+        if (loadShedding.isEnabled()) {
+            final LoadSheddingFilter filter = new LoadSheddingFilter(loadShedding, environment.metrics(),
+                    getPoolStatus());
+            // Registered after the request tracing filter, so shed requests still get request IDs
+            environment.servlets().addFilter("load shedding", filter)
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+            if (loadShedding.getExitPoolAfter().isPresent()) {
+                // No requests may reach the filter while out of the pool, least of all with the pool status handler
+                // answering the load balancer's checks, so re-entering can't wait for them
+                environment.lifecycle().scheduledExecutorService("load-shedding-%d").build()
+                        .scheduleWithFixedDelay(new Runnable() {
+                            @Override
+                            public void run() {
+                                filter.updatePoolStatus();
+                            }
+                        }, 1, 1, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    private void compression(WotifConfiguration configuration, Environment environment) {
+        final CompressionConfiguration compression = configuration.getCompressionConfiguration();
+        if (compression.isEnabled()) {
+            // The server's only built after the bundles have run, so this still takes effect
+            ((AbstractServerFactory) configuration.getServerFactory()).getGzipFilterFactory().setEnabled(false);
+            environment.servlets().addFilter("compression", new CompressionFilter(compression, environment.metrics()))
+                    .addMappingForUrlPatterns(EnumSet.of(DispatcherType.REQUEST), false, "/*");
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void conditionalGet(WotifConfiguration configuration, Environment environment) {
+        final ConditionalGetConfiguration conditionalGet = configuration.getConditionalGetConfiguration();
+        // Made even when disabled, so resources can invalidate without checking
+        conditionalGetCache = new ConditionalGetCache(conditionalGet);
+        if (conditionalGet.isEnabled()) {
+            final ConditionalGetFilter filter = new ConditionalGetFilter(getConditionalGetCache(), environment.metrics());
+            final ResourceConfig resourceConfig = environment.jersey().getResourceConfig();
+            resourceConfig.getContainerRequestFilters().add(filter);
+            resourceConfig.getContainerResponseFilters().add(filter);
+        }
     }
 
     private void logging(Environment environment) {
@@ -139,9 +268,14 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
         cardMaskingConfigurer.addCardMasking(root);
     }
 
-    private void setWotifFormatRequestLog(WotifConfiguration configuration) {
+    private void setWotifFormatRequestLog(WotifConfiguration configuration, Environment environment,
+                                          TrustedNetworks trustedNetworks) {
         AbstractServerFactory serverFactory = (AbstractServerFactory) configuration.getServerFactory();
-        serverFactory.setRequestLogFactory(new WotifFormatRequestLogFactory(serverFactory.getRequestLogFactory()));
+        WotifFormatRequestLogFactory requestLogFactory = new WotifFormatRequestLogFactory(
+                serverFactory.getRequestLogFactory(), configuration.getRequestLogConfiguration(), environment.metrics(),
+                trustedNetworks);
+        serverFactory.setRequestLogFactory(requestLogFactory);
+        environment.admin().addTask(new RequestLogFilterTask(requestLogFactory.getFilter()));
     }
 
     private void version(final Environment environment) {
@@ -152,6 +286,23 @@ public class WotifBundle implements ConfiguredBundle<WotifConfiguration> {
         return poolStatus;
     }
 
+    /**
+     * Adds a warm up to run before entering the pool, if warming up is enabled. Warm ups run in the order they're added,
+     * once the server has started, so should be added from the application's run method.
+     */
+    public void addWarmUp(String name, WarmUp warmUp) {
+        if (warmUpRunner != null) {
+            warmUpRunner.add(name, warmUp);
+        }
+    }
+
+    /**
+     * @return the cache of validators for resources to invalidate when they change, see {@link ConditionalGetCache}
+     */
+    public ConditionalGetCache getConditionalGetCache() {
+        return conditionalGetCache;
+    }
+
     public ProjectId getProjectId() {
         return projectId;
     }
@@ -22,11 +22,22 @@ package com.wotifgroup.dropwizard;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
+import com.wotifgroup.dropwizard.compression.CompressionConfiguration;
+import com.wotifgroup.dropwizard.conditional.ConditionalGetConfiguration;
 import com.wotifgroup.dropwizard.jmx.JmxConnectorConfiguration;
+import com.wotifgroup.dropwizard.loadshedding.LoadSheddingConfiguration;
+import com.wotifgroup.dropwizard.logging.RequestLogConfiguration;
+import com.wotifgroup.dropwizard.poolstatus.PoolWeightConfiguration;
+import com.wotifgroup.dropwizard.tracing.RequestTracingConfiguration;
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
+import com.wotifgroup.dropwizard.warmup.WarmUpConfiguration;
 import io.dropwizard.Configuration;
+import io.dropwizard.validation.ValidationMethod;
 
 import javax.validation.Valid;
 import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Configuration extension for Wotif projects.
@@ -38,6 +49,48 @@ public class WotifConfiguration extends Configuration {
     @JsonProperty("jmx")
     private JmxConnectorConfiguration jmx = new JmxConnectorConfiguration();
 
+    @Valid
+    @NotNull
+    @JsonProperty("requestLogging")
+    private RequestLogConfiguration requestLogging = new RequestLogConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("requestTracing")
+    private RequestTracingConfiguration requestTracing = new RequestTracingConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("loadShedding")
+    private LoadSheddingConfiguration loadShedding = new LoadSheddingConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("compression")
+    private CompressionConfiguration compression = new CompressionConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("conditionalGet")
+    private ConditionalGetConfiguration conditionalGet = new ConditionalGetConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("warmUp")
+    private WarmUpConfiguration warmUp = new WarmUpConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty("poolWeight")
+    private PoolWeightConfiguration poolWeight = new PoolWeightConfiguration();
+
+    @JsonProperty("poolStatusHandler")
+    private boolean poolStatusHandler = false;
+
+    @NotNull
+    @JsonProperty("trustedNetworks")
+    private List<String> trustedNetworks = new ArrayList<>(TrustedNetworks.SITE_LOCAL);
+
     @JsonProperty("keyStorePassFile")
     private Optional<String> keyStorePassFile = Optional.absent();
 
@@ -53,6 +106,100 @@ public class WotifConfiguration extends Configuration {
         return jmx;
     }
 
+    /**
+     * Returns the Wotif-specific request log section of the configuration file.
+     *
+     * @return request log configuration parameters
+     */
+    public RequestLogConfiguration getRequestLogConfiguration() {
+        return requestLogging;
+    }
+
+    /**
+     * Returns the request tracing section of the configuration file.
+     *
+     * @return request tracing configuration parameters
+     */
+    public RequestTracingConfiguration getRequestTracingConfiguration() {
+        return requestTracing;
+    }
+
+    /**
+     * Returns the load shedding section of the configuration file.
+     *
+     * @return load shedding configuration parameters
+     */
+    public LoadSheddingConfiguration getLoadSheddingConfiguration() {
+        return loadShedding;
+    }
+
+    /**
+     * Returns the response compression section of the configuration file.
+     *
+     * @return response compression configuration parameters
+     */
+    public CompressionConfiguration getCompressionConfiguration() {
+        return compression;
+    }
+
+    /**
+     * Returns the conditional GET section of the configuration file.
+     *
+     * @return conditional GET configuration parameters
+     */
+    public ConditionalGetConfiguration getConditionalGetConfiguration() {
+        return conditionalGet;
+    }
+
+    /**
+     * Returns the warm up section of the configuration file.
+     *
+     * @return warm up configuration parameters
+     */
+    public WarmUpConfiguration getWarmUpConfiguration() {
+        return warmUp;
+    }
+
+    /**
+     * Returns the pool weight section of the configuration file.
+     *
+     * @return pool weight configuration parameters
+     */
+    public PoolWeightConfiguration getPoolWeightConfiguration() {
+        return poolWeight;
+    }
+
+    /**
+     * Whether load balancer probes of the pool status and agent check are answered by
+     * {@link com.wotifgroup.dropwizard.poolstatus.PoolStatusHandler}, ahead of the application's filters and servlets.
+     * Off by default, so probes go through the same filters as requests, and show in their metrics.
+     *
+     * @return whether the pool status handler is used
+     */
+    public boolean isPoolStatusHandler() {
+        return poolStatusHandler;
+    }
+
+    /**
+     * Returns the CIDR blocks of the networks trusted to send request IDs and X-Forwarded-For headers. Defaults to the
+     * loopback and site-local networks.
+     *
+     * @return trusted networks
+     */
+    public List<String> getTrustedNetworks() {
+        return trustedNetworks;
+    }
+
+    @ValidationMethod(message = "trustedNetworks must be CIDR blocks such as 10.0.0.0/8")
+    public boolean isTrustedNetworksValid() {
+        try {
+            TrustedNetworks.parse(trustedNetworks);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
     /**
      * Returns the key store password file for the SSL cert. (optional)
      *
@@ -75,6 +222,15 @@ public class WotifConfiguration extends Configuration {
     public String toString() {
         return Objects.toStringHelper(this)
                 .add("jmx", jmx)
+                .add("requestLogging", requestLogging)
+                .add("requestTracing", requestTracing)
+                .add("loadShedding", loadShedding)
+                .add("compression", compression)
+                .add("conditionalGet", conditionalGet)
+                .add("warmUp", warmUp)
+                .add("poolWeight", poolWeight)
+                .add("poolStatusHandler", poolStatusHandler)
+                .add("trustedNetworks", trustedNetworks)
                 .add("keyStorePassFile", keyStorePassFile)
                 .toString();
     }
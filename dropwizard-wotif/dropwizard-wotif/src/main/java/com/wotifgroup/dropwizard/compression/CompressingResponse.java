@@ -0,0 +1,501 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Response that holds back the first {@link CompressionConfiguration#getMinSize()} bytes of the body, then decides
+ * whether to gzip it from its status and headers, and streams it through a pooled {@link Deflater} if so.
+ */
+class CompressingResponse extends HttpServletResponseWrapper {
+
+    private static final int NOT_MODIFIED = HttpServletResponse.SC_NOT_MODIFIED;
+    private static final String CONTENT_LENGTH = HttpHeaders.CONTENT_LENGTH;
+    private static final String CONTENT_ENCODING = HttpHeaders.CONTENT_ENCODING;
+    private static final String ETAG = HttpHeaders.ETAG;
+    private static final String VARY = HttpHeaders.VARY;
+    private static final String ACCEPT_ENCODING = HttpHeaders.ACCEPT_ENCODING;
+
+    // Fixed gzip header: deflate, no flags, no modification time, no extra flags, unknown OS
+    private static final byte[] GZIP_HEADER = {0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff};
+
+    private enum State { UNDECIDED, IDENTITY, GZIP, CACHED, DONE }
+
+    private final CompressionFilter filter;
+    private final boolean acceptsGzip;
+    private final boolean conditionalUnmarked;
+    private final String cacheKey;
+
+    private int status = SC_OK;
+    private long contentLength = -1;
+    private CompressingOutputStream out;
+    private PrintWriter writer;
+
+    /**
+     * @param acceptsGzip whether the client accepts gzip and the response may be compressed
+     * @param conditionalUnmarked whether the request's conditional headers had marked ETags, so the client holds the
+     *                            compressed representation
+     * @param cacheKey key to cache the compressed body under, with its ETag, or null to not cache it
+     */
+    CompressingResponse(HttpServletResponse response, CompressionFilter filter, boolean acceptsGzip,
+                        boolean conditionalUnmarked, String cacheKey) {
+        super(response);
+        this.filter = filter;
+        this.acceptsGzip = acceptsGzip;
+        this.conditionalUnmarked = conditionalUnmarked;
+        this.cacheKey = cacheKey;
+    }
+
+    @Override
+    public void setStatus(int sc) {
+        status = sc;
+        super.setStatus(sc);
+        if (sc == NOT_MODIFIED) {
+            notModified();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void setStatus(int sc, String sm) {
+        status = sc;
+        super.setStatus(sc, sm);
+        if (sc == NOT_MODIFIED) {
+            notModified();
+        }
+    }
+
+    @Override
+    public void sendError(int sc, String msg) throws IOException {
+        status = sc;
+        discard();
+        super.sendError(sc, msg);
+    }
+
+    @Override
+    public void sendError(int sc) throws IOException {
+        status = sc;
+        discard();
+        super.sendError(sc);
+    }
+
+    @Override
+    public void sendRedirect(String location) throws IOException {
+        status = SC_FOUND;
+        discard();
+        super.sendRedirect(location);
+    }
+
+    @Override
+    public void setContentLength(int len) {
+        contentLength = len;
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = value == null ? -1 : Long.parseLong(value);
+        } else if (status == NOT_MODIFIED && ETAG.equalsIgnoreCase(name) && value != null) {
+            super.setHeader(name, notModifiedEtag(value));
+        } else {
+            super.setHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addHeader(String name, String value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = Long.parseLong(value);
+        } else if (status == NOT_MODIFIED && ETAG.equalsIgnoreCase(name)) {
+            super.addHeader(name, notModifiedEtag(value));
+        } else {
+            super.addHeader(name, value);
+        }
+    }
+
+    @Override
+    public void setIntHeader(String name, int value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = value;
+        } else {
+            super.setIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public void addIntHeader(String name, int value) {
+        if (CONTENT_LENGTH.equalsIgnoreCase(name)) {
+            contentLength = value;
+        } else {
+            super.addIntHeader(name, value);
+        }
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("getWriter() has already been called");
+        }
+        return stream();
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (writer == null) {
+            if (out != null) {
+                throw new IllegalStateException("getOutputStream() has already been called");
+            }
+            writer = new PrintWriter(new OutputStreamWriter(stream(), charset(getCharacterEncoding())));
+        }
+        return writer;
+    }
+
+    /**
+     * Looks up a charset, failing the way the String overloads of the readers and writers do when it isn't supported.
+     */
+    static Charset charset(String encoding) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(encoding);
+        } catch (IllegalArgumentException e) {
+            throw new UnsupportedEncodingException(encoding);
+        }
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        if (out != null) {
+            out.flush();
+        } else {
+            super.flushBuffer();
+        }
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        discard();
+        status = SC_OK;
+        contentLength = -1;
+    }
+
+    @Override
+    public void resetBuffer() {
+        super.resetBuffer();
+        discard();
+    }
+
+    /**
+     * Completes the body once the application's done with it.
+     */
+    void finish() throws IOException {
+        if (writer != null) {
+            writer.close();
+        } else if (out != null) {
+            out.close();
+        } else if (contentLength >= 0 && !isCommitted()) {
+            super.setHeader(CONTENT_LENGTH, Long.toString(contentLength));
+        }
+    }
+
+    /**
+     * Returns the Deflater to the pool, if the response still has it because it failed.
+     */
+    void release() {
+        if (out != null) {
+            out.release();
+        }
+    }
+
+    private CompressingOutputStream stream() {
+        if (out == null) {
+            out = new CompressingOutputStream();
+        }
+        return out;
+    }
+
+    private void discard() {
+        if (out != null) {
+            out.discard();
+            out = null;
+        }
+        writer = null;
+    }
+
+    private void notModified() {
+        final String etag = getHeader(ETAG);
+        if (etag != null) {
+            super.setHeader(ETAG, notModifiedEtag(etag));
+        }
+    }
+
+    /**
+     * A 304 has no body to compress, but should still carry the ETag of the representation the client holds.
+     */
+    private String notModifiedEtag(String etag) {
+        if (conditionalUnmarked && EntityTags.isStrong(etag) && !etag.endsWith(EntityTags.SUFFIX + "\"")) {
+            addVary();
+            return EntityTags.mark(etag);
+        }
+        return etag;
+    }
+
+    private void addVary() {
+        final String vary = getHeader(VARY);
+        if (vary == null) {
+            super.addHeader(VARY, ACCEPT_ENCODING);
+        } else if (!vary.contains("*") && !vary.toLowerCase(Locale.ENGLISH).contains("accept-encoding")) {
+            super.setHeader(VARY, vary + ", " + ACCEPT_ENCODING);
+        }
+    }
+
+    private boolean isCompressible() {
+        return acceptsGzip
+                && status >= SC_OK && status < SC_MULTIPLE_CHOICES
+                && status != SC_NO_CONTENT && status != SC_PARTIAL_CONTENT
+                && getHeader(CONTENT_ENCODING) == null
+                && getHeader("Content-Range") == null;
+    }
+
+    private final class CompressingOutputStream extends ServletOutputStream {
+
+        private final byte[] single = new byte[1];
+        private State state = State.UNDECIDED;
+        private byte[] buffer;
+        private int buffered;
+        private ServletOutputStream target;
+
+        private Deflater deflater;
+        private CRC32 crc;
+        private byte[] deflated;
+        private long inputBytes;
+        private long outputBytes;
+        private long deflateNanos;
+        private String cacheEntryKey;
+        private ByteArrayOutputStream cacheEntry;
+
+        @Override
+        public void write(int b) throws IOException {
+            single[0] = (byte) b;
+            write(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            switch (state) {
+                case UNDECIDED:
+                    if (buffered + len < filter.minSize) {
+                        if (buffer == null) {
+                            buffer = new byte[filter.minSize];
+                        }
+                        System.arraycopy(b, off, buffer, buffered, len);
+                        buffered += len;
+                        return;
+                    }
+                    decide(true, false);
+                    write(b, off, len);
+                    return;
+                case IDENTITY:
+                    target().write(b, off, len);
+                    return;
+                case GZIP:
+                    deflate(b, off, len);
+                    return;
+                case CACHED:
+                    // The cached body's already been sent
+                    return;
+                default:
+                    throw new IOException("Closed");
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            switch (state) {
+                case UNDECIDED:
+                    // The body's being streamed, so only compressed if it's known to be big enough
+                    decide(contentLength >= filter.minSize, false);
+                    flush();
+                    return;
+                case GZIP:
+                    int n;
+                    do {
+                        final long start = System.nanoTime();
+                        n = deflater.deflate(deflated, 0, deflated.length, Deflater.SYNC_FLUSH);
+                        deflateNanos += System.nanoTime() - start;
+                        emit(deflated, n);
+                    } while (n == deflated.length);
+                    target().flush();
+                    return;
+                case IDENTITY:
+                    target().flush();
+                    return;
+                default:
+                    return;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (state == State.DONE) {
+                return;
+            }
+            if (state == State.UNDECIDED) {
+                decide(false, true);
+            }
+            if (state == State.GZIP) {
+                final long start = System.nanoTime();
+                deflater.finish();
+                while (!deflater.finished()) {
+                    final int n = deflater.deflate(deflated);
+                    emit(deflated, n);
+                }
+                deflateNanos += System.nanoTime() - start;
+                final long checksum = crc.getValue();
+                final byte[] trailer = {
+                        (byte) checksum, (byte) (checksum >> 8), (byte) (checksum >> 16), (byte) (checksum >> 24),
+                        (byte) inputBytes, (byte) (inputBytes >> 8), (byte) (inputBytes >> 16),
+                        (byte) (inputBytes >> 24)};
+                emit(trailer, trailer.length);
+                release();
+                filter.compressed(inputBytes, outputBytes, deflateNanos);
+                if (cacheEntry != null) {
+                    filter.cache(cacheEntryKey, cacheEntry.toByteArray());
+                }
+            }
+            state = State.DONE;
+            target().close();
+        }
+
+        /**
+         * @param large whether the body is at least the minimum size to compress
+         * @param complete whether the body's complete, so its length is known
+         */
+        private void decide(boolean large, boolean complete) throws IOException {
+            if (filter.isCompressible(getContentType())) {
+                // Even if this response isn't compressed, another one for the same resource could be
+                addVary();
+            }
+            if (large && isCompressible() && filter.isCompressible(getContentType())) {
+                CompressingResponse.super.setHeader(CONTENT_ENCODING, "gzip");
+                final String etag = getHeader(ETAG);
+                if (etag != null) {
+                    CompressingResponse.super.setHeader(ETAG, EntityTags.mark(etag));
+                }
+                final byte[] cached = cacheKey != null && etag != null && EntityTags.isStrong(etag)
+                        ? filter.cached(cacheKey + ' ' + etag) : null;
+                if (cached != null) {
+                    state = State.CACHED;
+                    CompressingResponse.super.setHeader(CONTENT_LENGTH, Integer.toString(cached.length));
+                    target().write(cached);
+                    return;
+                }
+                if (cacheKey != null && etag != null && EntityTags.isStrong(etag)) {
+                    cacheEntryKey = cacheKey + ' ' + etag;
+                    cacheEntry = new ByteArrayOutputStream();
+                }
+                state = State.GZIP;
+                deflater = filter.acquireDeflater();
+                crc = new CRC32();
+                deflated = new byte[filter.bufferSize];
+                emit(GZIP_HEADER, GZIP_HEADER.length);
+                if (buffered > 0) {
+                    deflate(buffer, 0, buffered);
+                }
+            } else {
+                state = State.IDENTITY;
+                if (contentLength >= 0 || complete) {
+                    CompressingResponse.super.setHeader(CONTENT_LENGTH,
+                            Long.toString(contentLength >= 0 ? contentLength : buffered));
+                }
+                if (buffered > 0) {
+                    target().write(buffer, 0, buffered);
+                }
+            }
+            buffer = null;
+        }
+
+        private void deflate(byte[] b, int off, int len) throws IOException {
+            crc.update(b, off, len);
+            inputBytes += len;
+            deflater.setInput(b, off, len);
+            while (!deflater.needsInput()) {
+                final long start = System.nanoTime();
+                final int n = deflater.deflate(deflated);
+                deflateNanos += System.nanoTime() - start;
+                if (n > 0) {
+                    emit(deflated, n);
+                }
+            }
+        }
+
+        private void emit(byte[] b, int len) throws IOException {
+            target().write(b, 0, len);
+            outputBytes += len;
+            if (cacheEntry != null) {
+                if (cacheEntry.size() + len > filter.maxCacheEntrySize) {
+                    cacheEntry = null;
+                } else {
+                    cacheEntry.write(b, 0, len);
+                }
+            }
+        }
+
+        private ServletOutputStream target() throws IOException {
+            if (target == null) {
+                target = CompressingResponse.super.getOutputStream();
+            }
+            return target;
+        }
+
+        private void release() {
+            if (deflater != null) {
+                filter.releaseDeflater(deflater);
+                deflater = null;
+            }
+        }
+
+        private void discard() {
+            release();
+            if (state == State.GZIP || state == State.CACHED) {
+                // Not sent, so neither are the headers
+                CompressingResponse.super.setHeader(CONTENT_ENCODING, null);
+            }
+            state = State.DONE;
+            buffer = null;
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableSet;
+import io.dropwizard.util.Size;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Configuration for {@link CompressionFilter}, which is off by default. Enabling it disables Dropwizard's own gzip
+ * filter.
+ */
+public class CompressionConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @NotNull
+    @JsonProperty
+    private Size minSize = Size.bytes(256);
+
+    @Min(-1)
+    @Max(9)
+    @JsonProperty
+    private int compressionLevel = -1;
+
+    @NotNull
+    @JsonProperty
+    private Size bufferSize = Size.kilobytes(8);
+
+    @NotNull
+    @JsonProperty
+    private Set<String> compressedMimeTypes = new HashSet<>(ImmutableSet.of(
+            "text/*", "application/json", "application/javascript", "application/xml", "application/xhtml+xml",
+            "image/svg+xml"));
+
+    @Min(0)
+    @JsonProperty
+    private int deflaterPoolSize = 64;
+
+    @NotNull
+    @JsonProperty
+    private Size cacheSize = Size.bytes(0);
+
+    @NotNull
+    @JsonProperty
+    private Size maxCacheEntrySize = Size.kilobytes(256);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Responses smaller than this are sent as they are.
+     */
+    public Size getMinSize() {
+        return minSize;
+    }
+
+    public void setMinSize(Size minSize) {
+        this.minSize = minSize;
+    }
+
+    /**
+     * From 1 (fastest) to 9 (smallest), or -1 for zlib's default.
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Size of the buffer compressed output is written through.
+     */
+    public Size getBufferSize() {
+        return bufferSize;
+    }
+
+    public void setBufferSize(Size bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Content types worth compressing, where {@code type/*} matches all subtypes.
+     */
+    public Set<String> getCompressedMimeTypes() {
+        return compressedMimeTypes;
+    }
+
+    public void setCompressedMimeTypes(Set<String> compressedMimeTypes) {
+        this.compressedMimeTypes = compressedMimeTypes;
+    }
+
+    /**
+     * Most idle Deflaters kept for reuse. Each holds on to native zlib memory until it's garbage collected or ended,
+     * so making a new one for every response is expensive.
+     */
+    public int getDeflaterPoolSize() {
+        return deflaterPoolSize;
+    }
+
+    public void setDeflaterPoolSize(int deflaterPoolSize) {
+        this.deflaterPoolSize = deflaterPoolSize;
+    }
+
+    /**
+     * Total size of the compressed responses kept to be sent again instead of compressing the same response again, or
+     * zero to not keep any. Only GET responses with strong ETags are kept.
+     */
+    public Size getCacheSize() {
+        return cacheSize;
+    }
+
+    public void setCacheSize(Size cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public Size getMaxCacheEntrySize() {
+        return maxCacheEntrySize;
+    }
+
+    public void setMaxCacheEntrySize(Size maxCacheEntrySize) {
+        this.maxCacheEntrySize = maxCacheEntrySize;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("minSize", minSize)
+                .add("compressionLevel", compressionLevel)
+                .add("bufferSize", bufferSize)
+                .add("compressedMimeTypes", compressedMimeTypes)
+                .add("deflaterPoolSize", deflaterPoolSize)
+                .add("cacheSize", cacheSize)
+                .add("maxCacheEntrySize", maxCacheEntrySize)
+                .toString();
+    }
+
+}
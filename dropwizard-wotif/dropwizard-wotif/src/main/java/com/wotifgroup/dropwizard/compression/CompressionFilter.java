@@ -0,0 +1,326 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableSet;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.ws.rs.core.HttpHeaders;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Filter that gzips responses for clients that accept it, replacing Dropwizard's gzip filter and the need for
+ * {@link com.wotifgroup.server.filter.FixEtagFilter}.
+ *
+ * <p>Responses are compressed when they're successful, have a compressible content type, aren't already encoded and
+ * are at least the minimum size, and always get {@code Vary: Accept-Encoding} when their content type is compressible.
+ * The strong ETags of compressed responses are suffixed with {@value EntityTags#SUFFIX}, and the suffix removed from
+ * the ETags in If-None-Match and If-Match before the application sees them. A 304 answering a request with suffixed
+ * ETags gets the suffixed ETag back, as that's the representation the client holds. Gzipped request bodies are
+ * inflated, as Dropwizard's filter does.</p>
+ *
+ * <p>Compression uses pooled Deflaters, so no native zlib state is allocated per response. GET responses with strong
+ * ETags can be kept once compressed, and sent again for the same URI and ETag without compressing them again. This
+ * relies on a strong ETag meaning the same bytes, as it should.</p>
+ *
+ * <p>Metrics are named {@code com.wotifgroup.dropwizard.compression.CompressionFilter.<metric>}: a compression-ratio
+ * histogram of compressed sizes as a percentage of the original, a deflate-time timer of the time spent compressing
+ * each response, compressed and cache-hits meters, and an idle-deflaters gauge.</p>
+ */
+public class CompressionFilter implements Filter {
+
+    final int minSize;
+    final int bufferSize;
+    final int maxCacheEntrySize;
+
+    private final Set<String> mimeTypes;
+    private final DeflaterPool deflaters;
+    private final Cache<String, byte[]> cache;
+
+    private final Histogram compressionRatio;
+    private final Timer deflateTime;
+    private final Meter compressed;
+    private final Meter cacheHits;
+
+    public CompressionFilter(CompressionConfiguration configuration, MetricRegistry metrics) {
+        this.minSize = (int) configuration.getMinSize().toBytes();
+        this.bufferSize = (int) configuration.getBufferSize().toBytes();
+        this.maxCacheEntrySize = (int) configuration.getMaxCacheEntrySize().toBytes();
+        this.mimeTypes = ImmutableSet.copyOf(configuration.getCompressedMimeTypes());
+        this.deflaters = new DeflaterPool(configuration.getCompressionLevel(), configuration.getDeflaterPoolSize());
+        this.cache = configuration.getCacheSize().toBytes() > 0
+                ? CacheBuilder.newBuilder()
+                        .maximumWeight(configuration.getCacheSize().toBytes())
+                        .weigher(new Weigher<String, byte[]>() {
+                            @Override
+                            public int weigh(String key, byte[] value) {
+                                return key.length() * 2 + value.length;
+                            }
+                        })
+                        .<String, byte[]>build()
+                : null;
+
+        this.compressionRatio = metrics.histogram(name(CompressionFilter.class, "compression-ratio"));
+        this.deflateTime = metrics.timer(name(CompressionFilter.class, "deflate-time"));
+        this.compressed = metrics.meter(name(CompressionFilter.class, "compressed"));
+        this.cacheHits = metrics.meter(name(CompressionFilter.class, "cache-hits"));
+        metrics.register(name(CompressionFilter.class, "idle-deflaters"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return deflaters.idle();
+            }
+        });
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // Nothing to do
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) request;
+        final String ifNoneMatch = unmark(httpRequest, HttpHeaders.IF_NONE_MATCH);
+        final String ifMatch = unmark(httpRequest, HttpHeaders.IF_MATCH);
+        final boolean gzippedBody = "gzip".equalsIgnoreCase(httpRequest.getHeader(HttpHeaders.CONTENT_ENCODING));
+        if (ifNoneMatch != null || ifMatch != null || gzippedBody) {
+            httpRequest = new UnmarkedRequest(httpRequest, ifNoneMatch, ifMatch, gzippedBody);
+        }
+
+        final String method = httpRequest.getMethod();
+        final boolean acceptsGzip = !"HEAD".equals(method)
+                && acceptsGzip(httpRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        final String cacheKey = cache != null && acceptsGzip && "GET".equals(method) ? requestUri(httpRequest) : null;
+        final CompressingResponse compressing = new CompressingResponse((HttpServletResponse) response, this,
+                acceptsGzip, ifNoneMatch != null || ifMatch != null, cacheKey);
+        try {
+            chain.doFilter(httpRequest, compressing);
+            // An asynchronous response is finished by whoever completes it
+            if (!httpRequest.isAsyncStarted()) {
+                compressing.finish();
+            }
+        } finally {
+            compressing.release();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+
+    /**
+     * @return whether the Accept-Encoding header allows gzip, with a non-zero quality
+     */
+    @VisibleForTesting
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String element : acceptEncoding.split(",")) {
+            final int params = element.indexOf(';');
+            final String coding = (params < 0 ? element : element.substring(0, params)).trim();
+            if ("gzip".equalsIgnoreCase(coding) || "*".equals(coding)) {
+                return params < 0 || !isZeroQuality(element.substring(params + 1));
+            }
+        }
+        return false;
+    }
+
+    private static boolean isZeroQuality(String params) {
+        for (String param : params.split(";")) {
+            final String trimmed = param.trim();
+            if (trimmed.startsWith("q=")) {
+                try {
+                    return Double.parseDouble(trimmed.substring(2)) == 0;
+                } catch (NumberFormatException e) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isCompressible(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        final int params = contentType.indexOf(';');
+        final String mimeType = (params < 0 ? contentType : contentType.substring(0, params))
+                .trim().toLowerCase(Locale.ENGLISH);
+        final int slash = mimeType.indexOf('/');
+        return mimeTypes.contains(mimeType) || (slash > 0 && mimeTypes.contains(mimeType.substring(0, slash) + "/*"));
+    }
+
+    Deflater acquireDeflater() {
+        return deflaters.acquire();
+    }
+
+    void releaseDeflater(Deflater deflater) {
+        deflaters.release(deflater);
+    }
+
+    void compressed(long inputBytes, long outputBytes, long deflateNanos) {
+        compressed.mark();
+        deflateTime.update(deflateNanos, TimeUnit.NANOSECONDS);
+        if (inputBytes > 0) {
+            compressionRatio.update((int) (outputBytes * 100 / inputBytes));
+        }
+    }
+
+    byte[] cached(String key) {
+        final byte[] body = cache.getIfPresent(key);
+        if (body != null) {
+            cacheHits.mark();
+        }
+        return body;
+    }
+
+    void cache(String key, byte[] body) {
+        cache.put(key, body);
+    }
+
+    private static String unmark(HttpServletRequest request, String header) {
+        final String value = request.getHeader(header);
+        return value == null ? null : EntityTags.unmark(value);
+    }
+
+    private static String requestUri(HttpServletRequest request) {
+        final String query = request.getQueryString();
+        return query == null ? request.getRequestURI() : request.getRequestURI() + '?' + query;
+    }
+
+    /**
+     * Request with the ETag suffixes removed from its conditional headers, and its body inflated if it was gzipped.
+     */
+    private static final class UnmarkedRequest extends HttpServletRequestWrapper {
+
+        private final String ifNoneMatch;
+        private final String ifMatch;
+        private final boolean gzippedBody;
+        private ServletInputStream inflated;
+
+        private UnmarkedRequest(HttpServletRequest request, String ifNoneMatch, String ifMatch,
+                                boolean gzippedBody) {
+            super(request);
+            this.ifNoneMatch = ifNoneMatch;
+            this.ifMatch = ifMatch;
+            this.gzippedBody = gzippedBody;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            final String replaced = replaced(name);
+            return replaced != null ? replaced : super.getHeader(name);
+        }
+
+        @Override
+        public Enumeration<String> getHeaders(String name) {
+            final String replaced = replaced(name);
+            return replaced != null ? Collections.enumeration(Collections.singleton(replaced)) : super.getHeaders(name);
+        }
+
+        @Override
+        public int getContentLength() {
+            return gzippedBody ? -1 : super.getContentLength();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (!gzippedBody) {
+                return super.getInputStream();
+            }
+            if (inflated == null) {
+                final InputStream in = new GZIPInputStream(super.getInputStream());
+                inflated = new ServletInputStream() {
+                    @Override
+                    public int read() throws IOException {
+                        return in.read();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        return in.read(b, off, len);
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        in.close();
+                    }
+                };
+            }
+            return inflated;
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            if (!gzippedBody) {
+                return super.getReader();
+            }
+            final String encoding = getCharacterEncoding();
+            return new BufferedReader(encoding == null
+                    ? new InputStreamReader(getInputStream(), StandardCharsets.ISO_8859_1)
+                    : new InputStreamReader(getInputStream(), CompressingResponse.charset(encoding)));
+        }
+
+        private String replaced(String name) {
+            if (ifNoneMatch != null && HttpHeaders.IF_NONE_MATCH.equalsIgnoreCase(name)) {
+                return ifNoneMatch;
+            }
+            if (ifMatch != null && HttpHeaders.IF_MATCH.equalsIgnoreCase(name)) {
+                return ifMatch;
+            }
+            return null;
+        }
+    }
+
+}
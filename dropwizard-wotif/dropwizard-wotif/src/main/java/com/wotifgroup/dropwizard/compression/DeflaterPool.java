@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+import java.util.zip.Deflater;
+
+/**
+ * Keeps idle raw (no zlib header or trailer) Deflaters for reuse, as each new one allocates native zlib state that's
+ * only freed once it's ended or garbage collected.
+ */
+class DeflaterPool {
+
+    private final int level;
+    private final BlockingQueue<Deflater> idle;
+
+    DeflaterPool(int level, int size) {
+        this.level = level;
+        // Offering to a SynchronousQueue with nothing waiting on it fails, so none are kept
+        this.idle = size > 0 ? new ArrayBlockingQueue<Deflater>(size) : new SynchronousQueue<Deflater>();
+    }
+
+    Deflater acquire() {
+        final Deflater deflater = idle.poll();
+        return deflater != null ? deflater : new Deflater(level, true);
+    }
+
+    void release(Deflater deflater) {
+        deflater.reset();
+        if (!idle.offer(deflater)) {
+            deflater.end();
+        }
+    }
+
+    int idle() {
+        return idle.size();
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+/**
+ * Marks the ETags of compressed responses, so that they differ from those of the uncompressed ones as they should, and
+ * unmarks them again in conditional requests, so that the application sees the ETags it gave out.
+ *
+ * <p>Only strong ETags are marked. Weak ETags only promise an equivalent representation, which the compressed one
+ * is, so they're left as they are.</p>
+ */
+final class EntityTags {
+
+    static final String SUFFIX = "-gzip";
+
+    private EntityTags() {
+    }
+
+    /**
+     * @return the strong ETag with the suffix added, or the weak ETag as it is
+     */
+    static String mark(String etag) {
+        if (etag.startsWith("W/")) {
+            return etag;
+        }
+        if (etag.length() > 1 && etag.endsWith("\"")) {
+            return etag.substring(0, etag.length() - 1) + SUFFIX + "\"";
+        }
+        // Not quoted as it should be, but marked the same way it'll be unmarked
+        return etag + SUFFIX;
+    }
+
+    /**
+     * @param header an If-None-Match or If-Match header, which may list several ETags
+     * @return the header with the suffix removed from any strong ETags that have it, or null if none did
+     */
+    static String unmark(String header) {
+        if (!header.contains(SUFFIX)) {
+            return null;
+        }
+        final StringBuilder unmarked = new StringBuilder(header.length());
+        boolean changed = false;
+        for (String element : header.split(",")) {
+            String etag = element.trim();
+            if (!etag.startsWith("W/")) {
+                if (etag.endsWith(SUFFIX + "\"")) {
+                    etag = etag.substring(0, etag.length() - SUFFIX.length() - 1) + "\"";
+                    changed = true;
+                } else if (etag.endsWith(SUFFIX)) {
+                    etag = etag.substring(0, etag.length() - SUFFIX.length());
+                    changed = true;
+                }
+            }
+            if (unmarked.length() > 0) {
+                unmarked.append(", ");
+            }
+            unmarked.append(etag);
+        }
+        return changed ? unmarked.toString() : null;
+    }
+
+    static boolean isStrong(String etag) {
+        return !etag.startsWith("W/");
+    }
+
+}
@@ -0,0 +1,180 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.conditional;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import com.sun.jersey.spi.container.ContainerRequest;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The current validators of the responses {@link ConditionalGetFilter} has seen, by path. Resources whose responses
+ * change other than through a GET of their own should invalidate their paths when they do, so that clients revalidating
+ * the old representation get it again rather than a 304; otherwise clients can be told their copies are current for up
+ * to the configured time to live after they stop being.
+ *
+ * <p>Paths are as requested, including any context path, such as {@code UriInfo.getRequestUri().getRawPath()}.
+ * Invalidating a path invalidates it with any query string.</p>
+ */
+public class ConditionalGetCache {
+
+    /**
+     * Most representations kept for each path, those of different query strings and varying request headers together.
+     */
+    static final int MAX_REPRESENTATIONS = 16;
+
+    private final Cache<String, List<Representation>> entries;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public ConditionalGetCache(ConditionalGetConfiguration configuration) {
+        this.entries = CacheBuilder.newBuilder()
+                .maximumWeight(configuration.getMaxEntries())
+                .weigher(new Weigher<String, List<Representation>>() {
+                    @Override
+                    public int weigh(String path, List<Representation> representations) {
+                        return representations.size();
+                    }
+                })
+                .expireAfterWrite(configuration.getTimeToLive().toMilliseconds(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    /**
+     * Forgets the validators of every representation of the resource at the path.
+     */
+    public void invalidate(String path) {
+        invalidations.incrementAndGet();
+        entries.invalidate(path);
+    }
+
+    /**
+     * Forgets the validators of every representation of the resource at the URI's path.
+     */
+    public void invalidate(URI uri) {
+        invalidate(uri.getRawPath());
+    }
+
+    public void invalidateAll() {
+        invalidations.incrementAndGet();
+        entries.invalidateAll();
+    }
+
+    /**
+     * @return the number of paths with validators
+     */
+    public long size() {
+        return entries.size();
+    }
+
+    /**
+     * @return a count of invalidations, for telling whether there's been one since a response started being made
+     */
+    long invalidations() {
+        return invalidations.get();
+    }
+
+    Representation get(ContainerRequest request) {
+        final List<Representation> representations = entries.getIfPresent(path(request));
+        if (representations == null) {
+            return null;
+        }
+        final String query = Representation.query(request);
+        for (Representation representation : representations) {
+            if (representation.matches(query, request)) {
+                return representation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Replaces the validators of the same representation, unless there's been an invalidation since the response they
+     * came from started being made, which may have been for a change the response doesn't reflect.
+     */
+    void put(ContainerRequest request, Representation representation, long invalidationsBefore) {
+        final String path = path(request);
+        final ConcurrentMap<String, List<Representation>> map = entries.asMap();
+        while (true) {
+            final List<Representation> current = map.get(path);
+            if (current == null) {
+                if (map.putIfAbsent(path, ImmutableList.of(representation)) == null) {
+                    break;
+                }
+                continue;
+            }
+            final ImmutableList.Builder<Representation> updated = ImmutableList.builder();
+            updated.add(representation);
+            int kept = 1;
+            for (Representation existing : current) {
+                if (kept < MAX_REPRESENTATIONS && !existing.sameAs(representation)) {
+                    updated.add(existing);
+                    kept++;
+                }
+            }
+            if (map.replace(path, current, updated.build())) {
+                break;
+            }
+        }
+        if (invalidations.get() != invalidationsBefore) {
+            // Made with or without the change, and there's no telling which
+            entries.invalidate(path);
+        }
+    }
+
+    /**
+     * Forgets the validators of the representation the request is for, such as when it's no longer there.
+     */
+    void remove(ContainerRequest request) {
+        final String query = Representation.query(request);
+        final ConcurrentMap<String, List<Representation>> map = entries.asMap();
+        final String path = path(request);
+        while (true) {
+            final List<Representation> current = map.get(path);
+            if (current == null) {
+                return;
+            }
+            final ImmutableList.Builder<Representation> updated = ImmutableList.builder();
+            for (Representation existing : current) {
+                if (!existing.matches(query, request)) {
+                    updated.add(existing);
+                }
+            }
+            final List<Representation> remaining = updated.build();
+            if (remaining.size() == current.size()) {
+                return;
+            }
+            if (remaining.isEmpty() ? map.remove(path, current) : map.replace(path, current, remaining)) {
+                return;
+            }
+        }
+    }
+
+    private static String path(ContainerRequest request) {
+        return request.getRequestUri().getRawPath();
+    }
+
+}
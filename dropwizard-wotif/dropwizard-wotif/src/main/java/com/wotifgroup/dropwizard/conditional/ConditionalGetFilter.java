@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.conditional;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.sun.jersey.spi.container.ContainerRequest;
+import com.sun.jersey.spi.container.ContainerRequestFilter;
+import com.sun.jersey.spi.container.ContainerResponse;
+import com.sun.jersey.spi.container.ContainerResponseFilter;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Answers conditional GETs and HEADs for representations that haven't changed with a 304, before the resource method
+ * has to make the response only for Jersey to throw it away. The validators (ETag and Last-Modified) of every
+ * successful GET response are kept in a {@link ConditionalGetCache}, by URI and the values of the request headers the
+ * response varies on, and replaced by each new response. If-None-Match and If-Modified-Since are checked against them
+ * with Jersey's own precondition evaluation.
+ *
+ * <p>Responses that set cookies, can't be stored or vary on everything aren't kept, and any other GET response
+ * forgets what was kept for its representation. Registered as both a container request and response filter.</p>
+ *
+ * <p>Metrics are named {@code com.wotifgroup.dropwizard.conditional.ConditionalGetFilter.<metric>}: not-modified, and
+ * the number of paths with validators kept.</p>
+ */
+public class ConditionalGetFilter implements ContainerRequestFilter, ContainerResponseFilter {
+
+    private static final String INVALIDATIONS = ConditionalGetFilter.class.getName() + ".invalidations";
+
+    private final ConditionalGetCache cache;
+    private final Meter notModified;
+
+    public ConditionalGetFilter(final ConditionalGetCache cache, MetricRegistry metrics) {
+        this.cache = cache;
+        this.notModified = metrics.meter(name(ConditionalGetFilter.class, "not-modified"));
+        metrics.register(name(ConditionalGetFilter.class, "paths"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return cache.size();
+            }
+        });
+    }
+
+    @Override
+    public ContainerRequest filter(ContainerRequest request) {
+        if (!isGetOrHead(request)) {
+            return request;
+        }
+        // Taken before the resource runs, so an invalidation while it does is noticed
+        request.getProperties().put(INVALIDATIONS, cache.invalidations());
+        if (request.getHeaderValue(HttpHeaders.IF_NONE_MATCH) == null
+                && request.getHeaderValue(HttpHeaders.IF_MODIFIED_SINCE) == null) {
+            return request;
+        }
+        final Representation representation = cache.get(request);
+        if (representation == null) {
+            return request;
+        }
+        final Response response = representation.notModified(request);
+        if (response == null) {
+            return request;
+        }
+        notModified.mark();
+        throw new WebApplicationException(response);
+    }
+
+    @Override
+    public ContainerResponse filter(ContainerRequest request, ContainerResponse response) {
+        final Long invalidations = (Long) request.getProperties().get(INVALIDATIONS);
+        if (invalidations == null || !"GET".equals(request.getMethod())) {
+            return response;
+        }
+        final int status = response.getStatus();
+        if (status == Response.Status.NOT_MODIFIED.getStatusCode()) {
+            return response;
+        }
+        final Representation representation = status == Response.Status.OK.getStatusCode()
+                ? Representation.of(request, response.getHttpHeaders())
+                : null;
+        if (representation == null) {
+            cache.remove(request);
+        } else {
+            cache.put(request, representation, invalidations);
+        }
+        return response;
+    }
+
+    private static boolean isGetOrHead(ContainerRequest request) {
+        return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+    }
+
+}
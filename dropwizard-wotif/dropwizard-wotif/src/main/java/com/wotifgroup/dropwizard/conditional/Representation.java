@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.conditional;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.sun.jersey.core.header.reader.HttpHeaderReader;
+import com.sun.jersey.spi.container.ContainerRequest;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The validators of one representation of a resource: its query string, the request headers it varies on and their
+ * values, its ETag and Last-Modified, and the headers a 304 for it must repeat.
+ */
+final class Representation {
+
+    /**
+     * Besides ETag and Last-Modified, the headers a 304 must send if the full response would have (RFC 7232 4.1).
+     * Expires is left out, as the original would be out of date.
+     */
+    private static final List<String> REPEATED_HEADERS = ImmutableList.of(
+            HttpHeaders.CACHE_CONTROL, HttpHeaders.CONTENT_LOCATION, HttpHeaders.VARY);
+
+    private static final Splitter LIST = Splitter.on(',').trimResults().omitEmptyStrings();
+    private static final Joiner VALUES = Joiner.on(',');
+
+    private final String query;
+    private final List<String> vary;
+    private final List<String> varyValues;
+    private final EntityTag etag;
+    private final Date lastModified;
+    private final Map<String, List<Object>> headers;
+
+    private Representation(String query, List<String> vary, List<String> varyValues, EntityTag etag,
+                           Date lastModified, Map<String, List<Object>> headers) {
+        this.query = query;
+        this.vary = vary;
+        this.varyValues = varyValues;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.headers = headers;
+    }
+
+    /**
+     * @return the validators of a response to the request, or null if it has none or its validators can't be used
+     * for other requests
+     */
+    static Representation of(ContainerRequest request, MultivaluedMap<String, Object> responseHeaders) {
+        if (responseHeaders.containsKey("Set-Cookie")) {
+            return null;
+        }
+        for (Object cacheControl : get(responseHeaders, HttpHeaders.CACHE_CONTROL)) {
+            if (cacheControl.toString().toLowerCase(Locale.ENGLISH).contains("no-store")) {
+                return null;
+            }
+        }
+        final List<String> vary = new ArrayList<>();
+        for (Object value : get(responseHeaders, HttpHeaders.VARY)) {
+            for (String name : LIST.split(value.toString())) {
+                if ("*".equals(name)) {
+                    return null;
+                }
+                vary.add(name);
+            }
+        }
+        final EntityTag etag;
+        final Date lastModified;
+        try {
+            etag = etag(responseHeaders.getFirst(HttpHeaders.ETAG));
+            lastModified = date(responseHeaders.getFirst(HttpHeaders.LAST_MODIFIED));
+        } catch (ParseException | IllegalArgumentException e) {
+            return null;
+        }
+        if (etag == null && lastModified == null) {
+            return null;
+        }
+        final ImmutableMap.Builder<String, List<Object>> headers = ImmutableMap.builder();
+        for (String name : REPEATED_HEADERS) {
+            final List<Object> values = responseHeaders.get(name);
+            if (values != null && !values.isEmpty()) {
+                headers.put(name, ImmutableList.copyOf(values));
+            }
+        }
+        return new Representation(query(request), ImmutableList.copyOf(vary), varyValues(request, vary), etag,
+                lastModified, headers.build());
+    }
+
+    static String query(ContainerRequest request) {
+        return Strings.nullToEmpty(request.getRequestUri().getRawQuery());
+    }
+
+    /**
+     * @return whether this is the representation the request is for
+     */
+    boolean matches(String requestQuery, ContainerRequest request) {
+        return query.equals(requestQuery) && varyValues.equals(varyValues(request, vary));
+    }
+
+    /**
+     * @return whether this is the same representation as the other, though perhaps with different validators
+     */
+    boolean sameAs(Representation other) {
+        return query.equals(other.query) && vary.equals(other.vary) && varyValues.equals(other.varyValues);
+    }
+
+    /**
+     * @return a 304 if the request's preconditions say the client's copy of this representation is current, or null
+     */
+    Response notModified(ContainerRequest request) {
+        final Response.ResponseBuilder builder;
+        if (etag == null) {
+            builder = request.evaluatePreconditions(lastModified);
+        } else if (lastModified == null) {
+            builder = request.evaluatePreconditions(etag);
+        } else {
+            builder = request.evaluatePreconditions(lastModified, etag);
+        }
+        if (builder == null) {
+            return null;
+        }
+        final Response response = builder.build();
+        if (response.getStatus() != Response.Status.NOT_MODIFIED.getStatusCode()) {
+            // A failed If-Match or If-Unmodified-Since is left to the resource
+            return null;
+        }
+        final Response.ResponseBuilder notModified = Response.notModified();
+        if (etag != null) {
+            notModified.tag(etag);
+        }
+        if (lastModified != null) {
+            notModified.lastModified(lastModified);
+        }
+        for (Map.Entry<String, List<Object>> header : headers.entrySet()) {
+            for (Object value : header.getValue()) {
+                notModified.header(header.getKey(), value);
+            }
+        }
+        return notModified.build();
+    }
+
+    private static List<String> varyValues(ContainerRequest request, List<String> vary) {
+        if (vary.isEmpty()) {
+            return ImmutableList.of();
+        }
+        final List<String> values = new ArrayList<>(vary.size());
+        for (String name : vary) {
+            final List<String> value = request.getRequestHeader(name);
+            values.add(value == null ? "" : VALUES.join(value));
+        }
+        return values;
+    }
+
+    private static List<Object> get(MultivaluedMap<String, Object> headers, String name) {
+        final List<Object> values = headers.get(name);
+        return values == null ? ImmutableList.of() : values;
+    }
+
+    private static EntityTag etag(Object value) {
+        if (value == null || value instanceof EntityTag) {
+            return (EntityTag) value;
+        }
+        return EntityTag.valueOf(value.toString());
+    }
+
+    private static Date date(Object value) throws ParseException {
+        if (value == null || value instanceof Date) {
+            return (Date) value;
+        }
+        return HttpHeaderReader.readDate(value.toString());
+    }
+
+}
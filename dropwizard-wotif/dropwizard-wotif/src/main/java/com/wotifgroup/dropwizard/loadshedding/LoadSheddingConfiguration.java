@@ -0,0 +1,191 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.loadshedding;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Configuration for {@link LoadSheddingFilter}, which is off by default.
+ */
+public class LoadSheddingConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(1)
+    @JsonProperty
+    private int initialLimit = 100;
+
+    @Min(1)
+    @JsonProperty
+    private int minLimit = 10;
+
+    @Min(1)
+    @JsonProperty
+    private int maxLimit = 1000;
+
+    @DecimalMin("0.5")
+    @DecimalMax("0.99")
+    @JsonProperty
+    private double backoffRatio = 0.9;
+
+    @DecimalMin("1")
+    @JsonProperty
+    private double latencyTolerance = 2;
+
+    @NotNull
+    @JsonProperty
+    private Duration maxQueueWait = Duration.milliseconds(50);
+
+    @NotNull
+    @JsonProperty
+    private List<String> exemptPaths = new ArrayList<>(Arrays.asList("/pool_status.txt", "/agent_check.txt"));
+
+    @JsonProperty
+    private Duration exitPoolAfter = null;
+
+    @ValidationMethod(message = "must have minLimit <= initialLimit <= maxLimit")
+    public boolean isLimitRangeValid() {
+        return minLimit <= initialLimit && initialLimit <= maxLimit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The limit on requests in flight at startup.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * Should be no more than the server's maxThreads, as requests beyond that queue in Jetty anyway.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * How much of the limit is kept each time it's cut.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * How many times the long term average latency the short term average can reach before the limit is cut.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * How long a request can wait between arriving and reaching the filter before the limit is cut.
+     */
+    public Duration getMaxQueueWait() {
+        return maxQueueWait;
+    }
+
+    public void setMaxQueueWait(Duration maxQueueWait) {
+        this.maxQueueWait = maxQueueWait;
+    }
+
+    /**
+     * Paths that are never shed, such as the load balancer's health check. Admin requests don't pass through the
+     * filter at all.
+     */
+    public List<String> getExemptPaths() {
+        return exemptPaths;
+    }
+
+    public void setExemptPaths(List<String> exemptPaths) {
+        this.exemptPaths = exemptPaths;
+    }
+
+    /**
+     * How long requests must have been shed for before exiting the load balancer pool, which is re-entered once no
+     * requests have been shed for as long again. Absent by default, so the pool status is left alone.
+     */
+    public Optional<Duration> getExitPoolAfter() {
+        return Optional.fromNullable(exitPoolAfter);
+    }
+
+    public void setExitPoolAfter(Duration exitPoolAfter) {
+        this.exitPoolAfter = exitPoolAfter;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("initialLimit", initialLimit)
+                .add("minLimit", minLimit)
+                .add("maxLimit", maxLimit)
+                .add("backoffRatio", backoffRatio)
+                .add("latencyTolerance", latencyTolerance)
+                .add("maxQueueWait", maxQueueWait)
+                .add("exemptPaths", exemptPaths)
+                .add("exitPoolAfter", exitPoolAfter)
+                .toString();
+    }
+
+}
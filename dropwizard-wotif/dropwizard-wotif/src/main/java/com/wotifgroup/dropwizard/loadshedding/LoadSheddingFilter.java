@@ -0,0 +1,317 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.loadshedding;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableSet;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import org.eclipse.jetty.server.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Filter that limits how many requests are in flight at once, answering requests beyond the limit with a 503 straight
+ * away rather than letting them queue up behind the rest and slowing everything down.
+ *
+ * <p>The limit adapts to how the application copes (additive increase, multiplicative decrease). It grows by one for
+ * each limit's worth of requests served while at least half the limit is in use, and is cut by the backoff ratio, at
+ * most every 100ms, when a request waited too long to reach the filter or the short term average latency climbs past
+ * the tolerated multiple of the long term average. Latency climbing is the first sign of requests queueing for
+ * something inside the application, be it threads, connections or locks.</p>
+ *
+ * <p>Exempt paths, such as the load balancer's pool status check, are never shed. Given a {@link PoolStatus} and a
+ * configured period, the filter also exits the load balancer pool once requests have been shed for that long, so the
+ * load balancer sends the traffic elsewhere, and re-enters it once none have been shed for as long again, unless the
+ * pool has been entered or exited meanwhile by anything else, such as {@link
+ * com.wotifgroup.dropwizard.poolstatus.ExitPoolTask} during a deploy. The check
+ * is made on each request, and should also be made regularly by calling {@link #updatePoolStatus()}, as no requests
+ * may reach the filter while it's out of the pool, such as when the load balancer's checks are answered by
+ * {@link com.wotifgroup.dropwizard.poolstatus.PoolStatusHandler}. Asynchronous requests are counted as in flight
+ * until the chain returns, not until they complete.</p>
+ *
+ * <p>Metrics are named {@code com.wotifgroup.dropwizard.loadshedding.LoadSheddingFilter.<metric>}: limit and in-flight
+ * gauges, rejected and pool-exits meters, and queue-wait and latency timers for the signals the limit follows.</p>
+ */
+public class LoadSheddingFilter implements Filter {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadSheddingFilter.class);
+
+    @VisibleForTesting
+    static final long CUT_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+    // Requests shed less than this far apart count as the same spell of overload
+    @VisibleForTesting
+    static final long SHEDDING_GAP = TimeUnit.SECONDS.toNanos(1);
+
+    // Weights of the latest request's latency in the short and long term moving averages, which roughly cover the
+    // last 10 and 1000 requests
+    private static final double SHORT_TERM_WEIGHT = 0.1;
+    private static final double LONG_TERM_WEIGHT = 0.001;
+
+    private final LoadSheddingConfiguration configuration;
+    private final PoolStatus poolStatus;
+    private final Clock clock;
+    private final Set<String> exemptPaths;
+    private final long maxQueueWaitMillis;
+    private final long exitPoolAfterNanos;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Doubles held as their bits, so that each request can update them without locking
+    private final AtomicLong limit;
+    private final AtomicLong shortTermLatency = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong longTermLatency = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+    private final AtomicLong nextCut;
+
+    private final Timer latencyTimer;
+    private final Timer queueWaitTimer;
+    private final Meter rejected;
+    private final Meter poolExits;
+
+    // guarded by this, but read without locking to keep the check on each request cheap
+    private volatile boolean shedding;
+    private volatile boolean exitedPool;
+    private long sheddingSince;
+    private int exitChangeCount;
+    // written without locking by each request shed, as being a little out of date doesn't matter
+    private volatile long lastShed;
+
+    /**
+     * @param poolStatus the pool to exit when overloaded for long enough, or null to leave it alone
+     */
+    public LoadSheddingFilter(LoadSheddingConfiguration configuration, MetricRegistry metrics, PoolStatus poolStatus) {
+        this(configuration, metrics, poolStatus, Clock.defaultClock());
+    }
+
+    @VisibleForTesting
+    LoadSheddingFilter(LoadSheddingConfiguration configuration, MetricRegistry metrics, PoolStatus poolStatus,
+                       Clock clock) {
+        this.configuration = configuration;
+        this.poolStatus = poolStatus;
+        this.clock = clock;
+        this.exemptPaths = ImmutableSet.copyOf(configuration.getExemptPaths());
+        this.maxQueueWaitMillis = configuration.getMaxQueueWait().toMilliseconds();
+        this.exitPoolAfterNanos = poolStatus != null && configuration.getExitPoolAfter().isPresent()
+                ? TimeUnit.MILLISECONDS.toNanos(configuration.getExitPoolAfter().get().toMilliseconds()) : -1;
+        this.limit = new AtomicLong(Double.doubleToRawLongBits(configuration.getInitialLimit()));
+        this.nextCut = new AtomicLong(clock.getTick());
+
+        this.latencyTimer = metrics.timer(name(LoadSheddingFilter.class, "latency"));
+        this.queueWaitTimer = metrics.timer(name(LoadSheddingFilter.class, "queue-wait"));
+        this.rejected = metrics.meter(name(LoadSheddingFilter.class, "rejected"));
+        this.poolExits = metrics.meter(name(LoadSheddingFilter.class, "pool-exits"));
+        metrics.register(name(LoadSheddingFilter.class, "limit"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return (int) limit();
+            }
+        });
+        metrics.register(name(LoadSheddingFilter.class, "in-flight"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return inFlight.get();
+            }
+        });
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+        // Nothing to do
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        final long start = clock.getTick();
+        if (exitPoolAfterNanos >= 0 && (shedding || exitedPool)) {
+            updatePoolStatus(start);
+        }
+        if (!(request instanceof HttpServletRequest && response instanceof HttpServletResponse)
+                || exemptPaths.contains(path((HttpServletRequest) request))) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        final long queueWait = request instanceof Request
+                ? Math.max(0, clock.getTime() - ((Request) request).getTimeStamp()) : 0;
+        queueWaitTimer.update(queueWait, TimeUnit.MILLISECONDS);
+
+        final int admitted = inFlight.incrementAndGet();
+        if (admitted > (int) limit()) {
+            inFlight.decrementAndGet();
+            shed(start, (HttpServletResponse) response);
+            return;
+        }
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            inFlight.decrementAndGet();
+            final long latency = clock.getTick() - start;
+            latencyTimer.update(latency, TimeUnit.NANOSECONDS);
+            adjustLimit(admitted, latency, queueWait, start);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        // Nothing to do
+    }
+
+    private static String path(HttpServletRequest request) {
+        final String pathInfo = request.getPathInfo();
+        return pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+    }
+
+    private void shed(long now, HttpServletResponse response) {
+        rejected.mark();
+        if (exitPoolAfterNanos >= 0) {
+            // Only locks to start a spell of shedding, not for each request shed during it
+            if (!shedding || now - lastShed >= SHEDDING_GAP) {
+                synchronized (this) {
+                    if (!shedding || now - lastShed >= SHEDDING_GAP) {
+                        sheddingSince = now;
+                        lastShed = now;
+                        shedding = true;
+                    }
+                }
+            }
+            lastShed = now;
+        }
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader("Retry-After", "1");
+    }
+
+    private void adjustLimit(int admitted, long latency, long queueWait, long now) {
+        final double shortTerm = average(shortTermLatency, latency, SHORT_TERM_WEIGHT);
+        final double longTerm = average(longTermLatency, latency, LONG_TERM_WEIGHT);
+
+        if (queueWait > maxQueueWaitMillis || shortTerm > configuration.getLatencyTolerance() * longTerm) {
+            // Waits a while between cuts, as it takes a while for the last one to show in the latency
+            final long next = nextCut.get();
+            if (now - next >= 0 && nextCut.compareAndSet(next, now + CUT_INTERVAL)) {
+                cutLimit();
+            }
+        } else {
+            growLimit(admitted);
+        }
+    }
+
+    private void cutLimit() {
+        while (true) {
+            final long current = limit.get();
+            final double cut = Math.max(configuration.getMinLimit(),
+                    Double.longBitsToDouble(current) * configuration.getBackoffRatio());
+            if (limit.compareAndSet(current, Double.doubleToRawLongBits(cut))) {
+                return;
+            }
+        }
+    }
+
+    private void growLimit(int admitted) {
+        while (true) {
+            final long current = limit.get();
+            final double value = Double.longBitsToDouble(current);
+            if (admitted * 2 < value) {
+                return;
+            }
+            final double grown = Math.min(configuration.getMaxLimit(), value + 1 / value);
+            if (limit.compareAndSet(current, Double.doubleToRawLongBits(grown))) {
+                return;
+            }
+        }
+    }
+
+    private double limit() {
+        return Double.longBitsToDouble(limit.get());
+    }
+
+    /**
+     * Adds a latency to a moving average, which starts at the first latency added.
+     *
+     * @return the new average
+     */
+    private static double average(AtomicLong average, long latency, double weight) {
+        while (true) {
+            final long current = average.get();
+            final double value = Double.longBitsToDouble(current);
+            final double updated = Double.isNaN(value) ? latency : value + weight * (latency - value);
+            if (average.compareAndSet(current, Double.doubleToRawLongBits(updated))) {
+                return updated;
+            }
+        }
+    }
+
+    /**
+     * Exits or re-enters the pool if it's time to, whether or not requests are coming in. Safe to call from any thread,
+     * at the same time as requests are being filtered.
+     */
+    public void updatePoolStatus() {
+        if (exitPoolAfterNanos >= 0 && (shedding || exitedPool)) {
+            updatePoolStatus(clock.getTick());
+        }
+    }
+
+    // Synchronized, as the flags read without locking beforehand only say whether it's worth checking
+    private synchronized void updatePoolStatus(long now) {
+        if (shedding && now - lastShed >= SHEDDING_GAP) {
+            shedding = false;
+        }
+        if (!exitedPool && shedding && now - sheddingSince >= exitPoolAfterNanos) {
+            // Only re-entered later if it was this that took it out, and nothing has entered or exited it since
+            final int changeCount = poolStatus.changeCount();
+            exitedPool = poolStatus.exit() == PoolStatus.State.ALIVE;
+            if (exitedPool) {
+                exitChangeCount = changeCount + 1;
+                poolExits.mark();
+                LOGGER.warn("Shedding load for the last {}ms, exiting pool",
+                        TimeUnit.NANOSECONDS.toMillis(now - sheddingSince));
+            }
+        } else if (exitedPool && now - lastShed >= exitPoolAfterNanos) {
+            exitedPool = false;
+            if (poolStatus.enterUnlessChangedSince(exitChangeCount)) {
+                LOGGER.info("No load shed for the last {}ms, re-entering pool",
+                        TimeUnit.NANOSECONDS.toMillis(now - lastShed));
+            } else {
+                LOGGER.info("No load shed for the last {}ms, but the pool has been entered or exited since, "
+                        + "so leaving it be", TimeUnit.NANOSECONDS.toMillis(now - lastShed));
+            }
+        }
+    }
+
+}
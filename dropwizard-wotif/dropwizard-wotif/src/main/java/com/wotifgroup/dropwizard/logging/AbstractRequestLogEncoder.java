@@ -0,0 +1,59 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
+import org.eclipse.jetty.server.Request;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Settings shared by the {@link RequestLogEncoder}s: the cookies to include, and the networks whose X-Forwarded-For
+ * headers are believed.
+ */
+public abstract class AbstractRequestLogEncoder implements RequestLogEncoder {
+
+    protected final Set<String> cookies;
+
+    private TrustedNetworks trustedProxies = TrustedNetworks.any();
+
+    protected AbstractRequestLogEncoder(List<String> cookies) {
+        this.cookies = new HashSet<>(cookies);
+    }
+
+    /**
+     * Networks of the proxies whose X-Forwarded-For header is logged in place of their own address. Defaults to any
+     * address.
+     */
+    public void setTrustedProxies(TrustedNetworks trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public TrustedNetworks getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    protected String remoteAddress(Request request) {
+        return RequestLogFields.remoteAddress(request, trustedProxies);
+    }
+
+}
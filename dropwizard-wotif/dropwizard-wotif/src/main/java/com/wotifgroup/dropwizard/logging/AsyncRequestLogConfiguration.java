@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.util.Size;
+import io.dropwizard.util.SizeUnit;
+import io.dropwizard.validation.MaxSize;
+import io.dropwizard.validation.MinSize;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Settings for writing request log lines from a background thread, see {@link AsyncRequestLogSink}.
+ */
+public class AsyncRequestLogConfiguration {
+
+    public enum OverflowPolicy {
+        /**
+         * Lines logged while the queue is full are discarded and counted.
+         */
+        DROP,
+        /**
+         * Request threads wait for space in the queue.
+         */
+        BLOCK
+    }
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @Min(2)
+    @Max(1 << 20)
+    @JsonProperty
+    private int queueSize = 8192;
+
+    @NotNull
+    @JsonProperty
+    private OverflowPolicy overflowPolicy = OverflowPolicy.DROP;
+
+    @NotNull
+    @MinSize(value = 4, unit = SizeUnit.KILOBYTES)
+    @MaxSize(value = 16, unit = SizeUnit.MEGABYTES)
+    @JsonProperty
+    private Size batchSize = Size.kilobytes(64);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Number of lines the queue can hold, rounded up to a power of two.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Maximum number of bytes handed to the file in a single write.
+     */
+    public Size getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Size batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("queueSize", queueSize)
+                .add("overflowPolicy", overflowPolicy)
+                .add("batchSize", batchSize)
+                .toString();
+    }
+
+}
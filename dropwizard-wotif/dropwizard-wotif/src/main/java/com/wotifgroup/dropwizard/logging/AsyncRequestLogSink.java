@@ -0,0 +1,227 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Takes request log lines off the request threads. Lines are copied into a bounded multi-producer, single-consumer
+ * ring buffer, and a single writer thread drains the ring in batches into large sequential writes on the delegate
+ * sink.
+ *
+ * <p>Request threads claim a slot with a CAS on the tail sequence and publish it by writing the slot's sequence
+ * number; the writer never takes a lock, and request threads never wait for the disk. When the ring is full, lines
+ * are either dropped and counted, or the request thread waits for the writer to catch up, depending on the
+ * {@link AsyncRequestLogConfiguration.OverflowPolicy}.</p>
+ */
+public class AsyncRequestLogSink implements RequestLogSink {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncRequestLogSink.class);
+
+    private static final int SLOT_SIZE = 512;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final int MAX_STOPPED_WAITS = 100;
+
+    private final RequestLogSink delegate;
+    private final AsyncRequestLogConfiguration.OverflowPolicy overflowPolicy;
+    private final int capacity;
+    private final int mask;
+    private final byte[][] slots;
+    private final int[] lengths;
+    private final AtomicLongArray published;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private final ByteBuffer batch;
+
+    private final Counter dropped;
+    private final Timer flushes;
+
+    private volatile boolean running;
+    private volatile Thread writer;
+
+    public AsyncRequestLogSink(RequestLogSink delegate, AsyncRequestLogConfiguration configuration,
+                               MetricRegistry metrics, String name) {
+        this.delegate = delegate;
+        this.overflowPolicy = configuration.getOverflowPolicy();
+        this.capacity = Integer.highestOneBit(configuration.getQueueSize() - 1) << 1;
+        this.mask = capacity - 1;
+        this.slots = new byte[capacity][];
+        this.lengths = new int[capacity];
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new byte[SLOT_SIZE];
+            published.set(i, -1);
+        }
+        this.batch = ByteBuffer.allocateDirect((int) configuration.getBatchSize().toBytes());
+
+        this.dropped = metrics.counter(name(AsyncRequestLogSink.class, name, "dropped"));
+        this.flushes = metrics.timer(name(AsyncRequestLogSink.class, name, "flushes"));
+        metrics.register(name(AsyncRequestLogSink.class, name, "queue-depth"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return getQueueDepth();
+            }
+        });
+    }
+
+    @Override
+    public void open() throws IOException {
+        delegate.open();
+        running = true;
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        }, "request-log-writer");
+        thread.setDaemon(true);
+        thread.start();
+        writer = thread;
+    }
+
+    @Override
+    public void write(ByteBuffer line) throws IOException {
+        final int length = line.remaining();
+        long seq;
+        while (true) {
+            seq = tail.get();
+            if (seq - head >= capacity) {
+                if (overflowPolicy == AsyncRequestLogConfiguration.OverflowPolicy.DROP || !running) {
+                    dropped.inc();
+                    return;
+                }
+                LockSupport.parkNanos(FULL_PARK_NANOS);
+            } else if (tail.compareAndSet(seq, seq + 1)) {
+                break;
+            }
+        }
+
+        final int index = (int) (seq & mask);
+        byte[] slot = slots[index];
+        if (slot.length < length) {
+            // Rare: keep the bigger slot around rather than allocating again next time round the ring
+            slot = new byte[length];
+            slots[index] = slot;
+        }
+        line.get(slot, 0, length);
+        lengths[index] = length;
+        published.lazySet(index, seq);
+    }
+
+    private void drain() {
+        int stoppedWaits = 0;
+        while (running || head != tail.get()) {
+            final long next = copyBatch();
+            if (next != head) {
+                // the lines have been copied out, so the slots can be reused before the write completes
+                head = next;
+                flush();
+            } else if (running) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else if (++stoppedWaits < MAX_STOPPED_WAITS) {
+                // give threads that claimed a slot just before stopping a chance to publish it
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            } else {
+                LOGGER.warn("Abandoning {} unpublished request log lines", tail.get() - head);
+                return;
+            }
+        }
+    }
+
+    private long copyBatch() {
+        long next = head;
+        batch.clear();
+        while (true) {
+            final int index = (int) (next & mask);
+            if (published.get(index) != next) {
+                break;
+            }
+            final int length = lengths[index];
+            if (length > batch.remaining()) {
+                if (batch.position() > 0) {
+                    break;
+                }
+                // a single line bigger than the whole batch goes out on its own
+                writeQuietly(ByteBuffer.wrap(slots[index], 0, length));
+            } else {
+                batch.put(slots[index], 0, length);
+            }
+            next++;
+        }
+        batch.flip();
+        return next;
+    }
+
+    private void flush() {
+        if (!batch.hasRemaining()) {
+            return;
+        }
+        final Timer.Context context = flushes.time();
+        try {
+            writeQuietly(batch);
+        } finally {
+            context.stop();
+        }
+    }
+
+    private void writeQuietly(ByteBuffer buf) {
+        try {
+            delegate.write(buf);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to write request log", e);
+        }
+    }
+
+    public long getQueueDepth() {
+        return tail.get() - head;
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        final Thread thread = writer;
+        if (thread != null) {
+            writer = null;
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        delegate.close();
+    }
+
+}
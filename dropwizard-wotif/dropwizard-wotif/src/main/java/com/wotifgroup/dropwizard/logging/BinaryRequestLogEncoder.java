@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import javax.servlet.http.Cookie;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * Encodes request log records in a compact, length-prefixed binary form. All numbers are big-endian, and strings are
+ * an unsigned 16 bit byte count followed by UTF-8 (a count of 0xFFFF means null). Each record is:
+ *
+ * <pre>
+ *   int32   length of the rest of the record
+ *   int8    format version (1)
+ *   int64   timestamp, epoch millis
+ *   int32   latency, millis
+ *   int16   status
+ *   int64   response length, -1 if unknown
+ *   string  remote address
+ *   string  user
+ *   string  method
+ *   string  uri
+ *   string  protocol
+ *   string  referer
+ *   string  user agent
+ *   string  request id
+ *   int16   number of cookies, followed by a name and value string for each
+ * </pre>
+ */
+public class BinaryRequestLogEncoder extends AbstractRequestLogEncoder {
+
+    static final byte VERSION = 1;
+    static final int NULL_LENGTH = 0xFFFF;
+    private static final int MAX_STRING_LENGTH = 0xFFFE;
+
+    public BinaryRequestLogEncoder(List<String> cookies) {
+        super(cookies);
+    }
+
+    @Override
+    public void encode(Request request, Response response, ByteBuffer buf) {
+        buf.order(ByteOrder.BIG_ENDIAN);
+        final int start = buf.position();
+        buf.putInt(0);
+        buf.put(VERSION);
+        buf.putLong(request.getTimeStamp());
+        buf.putInt((int) Math.min(Integer.MAX_VALUE, RequestLogFields.latency(request)));
+        buf.putShort((short) RequestLogFields.status(response));
+        buf.putLong(RequestLogFields.responseLength(response));
+        putString(buf, remoteAddress(request));
+        putString(buf, RequestLogFields.user(request));
+        putString(buf, request.getMethod());
+        putString(buf, request.getUri().toString());
+        putString(buf, request.getProtocol());
+        putString(buf, RequestLogFields.referer(request));
+        putString(buf, RequestLogFields.userAgent(request));
+        putString(buf, RequestLogFields.requestId(request));
+
+        final int countPosition = buf.position();
+        buf.putShort((short) 0);
+        final Cookie[] requestCookies = request.getCookies();
+        if (requestCookies != null) {
+            int count = 0;
+            for (Cookie cookie : requestCookies) {
+                if (cookies.contains(cookie.getName())) {
+                    putString(buf, cookie.getName());
+                    putString(buf, cookie.getValue());
+                    count++;
+                }
+            }
+            buf.putShort(countPosition, (short) count);
+        }
+
+        buf.putInt(start, buf.position() - start - 4);
+    }
+
+    /**
+     * Writes the string after a placeholder length, then goes back and fills the length in, so that the string doesn't
+     * need to be encoded twice. Strings too long for the length field are truncated.
+     */
+    private static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            buf.putShort((short) NULL_LENGTH);
+            return;
+        }
+        final int lengthPosition = buf.position();
+        buf.putShort((short) 0);
+        Utf8Encoding.putString(buf, s);
+        int length = buf.position() - lengthPosition - 2;
+        if (length > MAX_STRING_LENGTH) {
+            length = MAX_STRING_LENGTH;
+            buf.position(lengthPosition + 2 + length);
+        }
+        buf.putShort(lengthPosition, (short) length);
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Request;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Copies the configured cookies into a log line straight from the raw Cookie headers, as {@code name=value} pairs
+ * separated by {@code "; "}. Unlike {@link Request#getCookies()} this doesn't parse every cookie into a
+ * {@link javax.servlet.http.Cookie}; the header is scanned once and only the matching values are copied.
+ *
+ * <p>Cookies are split on ; and , outside of quotes, and quoted values are unquoted, as Jetty's CookieCutter does.</p>
+ */
+class CookieMatcher {
+
+    // configured names, indexed by length, so that most cookies are rejected by a single array lookup
+    private final String[][] namesByLength;
+
+    CookieMatcher(Collection<String> names) {
+        final List<List<String>> byLength = new ArrayList<>();
+        for (String name : new LinkedHashSet<>(names)) {
+            while (byLength.size() <= name.length()) {
+                byLength.add(new ArrayList<String>());
+            }
+            byLength.get(name.length()).add(name);
+        }
+        namesByLength = new String[byLength.size()][];
+        for (int i = 0; i < namesByLength.length; i++) {
+            namesByLength[i] = byLength.get(i).toArray(new String[byLength.get(i).size()]);
+        }
+    }
+
+    void appendTo(StringBuilder buf, Request request) {
+        write(request, buf, CHARS);
+    }
+
+    void putTo(ByteBuffer buf, Request request) {
+        write(request, buf, BYTES);
+    }
+
+    private <T> void write(Request request, T target, Writer<T> writer) {
+        final HttpFields fields = request.getHttpFields();
+        boolean first = true;
+        for (int i = 0; i < fields.size(); i++) {
+            final HttpField field = fields.getField(i);
+            if (field.getHeader() != HttpHeader.COOKIE || field.getValue() == null) {
+                continue;
+            }
+            final String header = field.getValue();
+            final int length = header.length();
+            int pos = 0;
+            while (pos < length) {
+                final int end = cookieEnd(header, pos);
+                final int nameStart = skipWhitespace(header, pos, end);
+                final int equals = header.indexOf('=', nameStart);
+                if (equals >= 0 && equals < end) {
+                    final String name = match(header, nameStart, trimWhitespace(header, nameStart, equals));
+                    if (name != null) {
+                        int valueStart = skipWhitespace(header, equals + 1, end);
+                        int valueEnd = trimWhitespace(header, valueStart, end);
+                        if (valueEnd - valueStart >= 2 && header.charAt(valueStart) == '"'
+                                && header.charAt(valueEnd - 1) == '"') {
+                            valueStart++;
+                            valueEnd--;
+                        }
+                        if (!first) {
+                            writer.separator(target);
+                        }
+                        writer.cookie(target, name, header, valueStart, valueEnd);
+                        first = false;
+                    }
+                }
+                pos = end + 1;
+            }
+        }
+    }
+
+    private String match(String header, int start, int end) {
+        final int length = end - start;
+        if (length >= namesByLength.length) {
+            return null;
+        }
+        for (String name : namesByLength[length]) {
+            if (header.regionMatches(start, name, 0, length)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the index of the separator ending the cookie starting at pos, or the header length
+     */
+    private static int cookieEnd(String header, int pos) {
+        boolean quoted = false;
+        for (int i = pos; i < header.length(); i++) {
+            final char c = header.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == ';' || c == ',')) {
+                return i;
+            }
+        }
+        return header.length();
+    }
+
+    private static int skipWhitespace(String header, int start, int end) {
+        while (start < end && Character.isWhitespace(header.charAt(start))) {
+            start++;
+        }
+        return start;
+    }
+
+    private static int trimWhitespace(String header, int start, int end) {
+        while (end > start && Character.isWhitespace(header.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    private interface Writer<T> {
+
+        void separator(T target);
+
+        void cookie(T target, String name, String header, int valueStart, int valueEnd);
+
+    }
+
+    private static final Writer<StringBuilder> CHARS = new Writer<StringBuilder>() {
+        @Override
+        public void separator(StringBuilder buf) {
+            buf.append("; ");
+        }
+
+        @Override
+        public void cookie(StringBuilder buf, String name, String header, int valueStart, int valueEnd) {
+            buf.append(name).append('=').append(header, valueStart, valueEnd);
+        }
+    };
+
+    private static final Writer<ByteBuffer> BYTES = new Writer<ByteBuffer>() {
+        @Override
+        public void separator(ByteBuffer buf) {
+            buf.put((byte) ';').put((byte) ' ');
+        }
+
+        @Override
+        public void cookie(ByteBuffer buf, String name, String header, int valueStart, int valueEnd) {
+            Utf8Encoding.putString(buf, name);
+            buf.put((byte) '=');
+            Utf8Encoding.putString(buf, header, valueStart, valueEnd);
+        }
+    };
+
+}
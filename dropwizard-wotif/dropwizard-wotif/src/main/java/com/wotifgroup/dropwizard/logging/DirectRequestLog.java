@@ -0,0 +1,121 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.RequestLog;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Request log that encodes each record straight into a reused, per-thread direct {@link ByteBuffer} and hands it to a
+ * {@link RequestLogSink}. Unlike {@link WotifFormatRequestLog} this doesn't go through logback, so no String or
+ * logging event is created per request.
+ */
+public class DirectRequestLog extends AbstractLifeCycle implements RequestLog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DirectRequestLog.class);
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        }
+    };
+
+    private final RequestLogEncoder encoder;
+    private final RequestLogSink sink;
+    private final RequestLogFilter filter;
+    private final RouteTimers routeTimers;
+
+    public DirectRequestLog(RequestLogEncoder encoder, RequestLogSink sink) {
+        this(encoder, sink, new RequestLogFilter(RequestLogRules.LOG_ALL), RouteTimers.disabled());
+    }
+
+    public DirectRequestLog(RequestLogEncoder encoder, RequestLogSink sink, RequestLogFilter filter,
+                            RouteTimers routeTimers) {
+        this.encoder = encoder;
+        this.sink = sink;
+        this.filter = filter;
+        this.routeTimers = routeTimers;
+    }
+
+    @Override
+    public void log(Request request, Response response) {
+        if (!isRunning()) {
+            return;
+        }
+        // Nothing here is allowed to fail the request being logged
+        try {
+            routeTimers.record(request, RequestLogFields.status(response), RequestLogFields.latency(request));
+            if (!filter.shouldLog(request, response)) {
+                return;
+            }
+            final ByteBuffer buf = encode(request, response);
+            if (buf != null) {
+                sink.write(buf);
+            }
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to write request log", e);
+        }
+    }
+
+    private ByteBuffer encode(Request request, Response response) {
+        ByteBuffer buf = BUFFERS.get();
+        while (true) {
+            buf.clear();
+            try {
+                encoder.encode(request, response, buf);
+                buf.flip();
+                return buf;
+            } catch (BufferOverflowException e) {
+                // Only very long URIs, user agents or cookies get here, so it's fine to grow the buffer for this thread
+                if (buf.capacity() >= MAX_BUFFER_SIZE) {
+                    LOGGER.warn("Dropping request log line longer than {} bytes", MAX_BUFFER_SIZE);
+                    return null;
+                }
+                buf = ByteBuffer.allocateDirect(buf.capacity() * 2);
+                BUFFERS.set(buf);
+            }
+        }
+    }
+
+    @Override
+    protected void doStart() throws Exception {
+        sink.open();
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        sink.close();
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Appends request log lines to a file. Writes from a direct buffer go straight to the channel without being copied.
+ */
+public class FileChannelRequestLogSink implements RequestLogSink {
+
+    private final Path path;
+    private volatile FileChannel channel;
+
+    public FileChannelRequestLogSink(Path path) {
+        this.path = path;
+    }
+
+    @Override
+    public void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void write(ByteBuffer line) throws IOException {
+        final FileChannel channel = this.channel;
+        if (channel == null) {
+            throw new IOException("Request log file " + path + " is not open");
+        }
+        while (line.hasRemaining()) {
+            channel.write(line);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        final FileChannel channel = this.channel;
+        if (channel != null) {
+            this.channel = null;
+            channel.close();
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+}
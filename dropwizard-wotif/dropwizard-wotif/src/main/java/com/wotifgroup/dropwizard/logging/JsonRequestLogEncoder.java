@@ -0,0 +1,178 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import javax.servlet.http.Cookie;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Encodes request log records as one JSON object per line, e.g.
+ *
+ * <pre>
+ * {"remoteAddress":"10.1.1.1","user":null,"timestamp":1420070400000,"method":"GET","uri":"/hotels/1","protocol":"HTTP/1.1",
+ *  "status":200,"responseLength":1234,"referer":null,"userAgent":"curl/7.30","latency":12,"requestId":"3w5e11264sgsg",
+ *  "cookies":{"wotif_session":"abc123"}}
+ * </pre>
+ *
+ * <p>Each thread reuses its own {@link JsonGenerator}, which streams straight into the target buffer.</p>
+ */
+public class JsonRequestLogEncoder extends AbstractRequestLogEncoder {
+
+    private static final SerializedString REMOTE_ADDRESS = new SerializedString("remoteAddress");
+    private static final SerializedString USER = new SerializedString("user");
+    private static final SerializedString TIMESTAMP = new SerializedString("timestamp");
+    private static final SerializedString METHOD = new SerializedString("method");
+    private static final SerializedString URI = new SerializedString("uri");
+    private static final SerializedString PROTOCOL = new SerializedString("protocol");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString RESPONSE_LENGTH = new SerializedString("responseLength");
+    private static final SerializedString REFERER = new SerializedString("referer");
+    private static final SerializedString USER_AGENT = new SerializedString("userAgent");
+    private static final SerializedString LATENCY = new SerializedString("latency");
+    private static final SerializedString REQUEST_ID = new SerializedString("requestId");
+    private static final SerializedString COOKIES = new SerializedString("cookies");
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    private final ThreadLocal<Generator> generators = new ThreadLocal<Generator>() {
+        @Override
+        protected Generator initialValue() {
+            return new Generator(jsonFactory);
+        }
+    };
+
+    public JsonRequestLogEncoder(List<String> cookies) {
+        super(cookies);
+    }
+
+    @Override
+    public void encode(Request request, Response response, ByteBuffer buf) {
+        final Generator generator = generators.get();
+        generator.out.buf = buf;
+        try {
+            write(generator.json, request, response);
+            generator.json.flush();
+            buf.put((byte) '\n');
+        } catch (IOException | RuntimeException e) {
+            // the generator may be left part way through a record, so start again with a new one
+            generators.remove();
+            if (e instanceof RuntimeException) {
+                throw (RuntimeException) e;
+            }
+            throw new IllegalStateException("Unable to encode request log record", e);
+        } finally {
+            generator.out.buf = null;
+        }
+    }
+
+    private void write(JsonGenerator json, Request request, Response response) throws IOException {
+        json.writeStartObject();
+        json.writeFieldName(REMOTE_ADDRESS);
+        json.writeString(remoteAddress(request));
+        json.writeFieldName(USER);
+        json.writeString(RequestLogFields.user(request));
+        json.writeFieldName(TIMESTAMP);
+        json.writeNumber(request.getTimeStamp());
+        json.writeFieldName(METHOD);
+        json.writeString(request.getMethod());
+        json.writeFieldName(URI);
+        json.writeString(request.getUri().toString());
+        json.writeFieldName(PROTOCOL);
+        json.writeString(request.getProtocol());
+        json.writeFieldName(STATUS);
+        json.writeNumber(RequestLogFields.status(response));
+        json.writeFieldName(RESPONSE_LENGTH);
+        final long responseLength = RequestLogFields.responseLength(response);
+        if (responseLength >= 0) {
+            json.writeNumber(responseLength);
+        } else {
+            json.writeNull();
+        }
+        json.writeFieldName(REFERER);
+        json.writeString(RequestLogFields.referer(request));
+        json.writeFieldName(USER_AGENT);
+        json.writeString(RequestLogFields.userAgent(request));
+        json.writeFieldName(LATENCY);
+        json.writeNumber(RequestLogFields.latency(request));
+        json.writeFieldName(REQUEST_ID);
+        json.writeString(RequestLogFields.requestId(request));
+        json.writeFieldName(COOKIES);
+        json.writeStartObject();
+        final Cookie[] requestCookies = request.getCookies();
+        if (requestCookies != null) {
+            for (Cookie cookie : requestCookies) {
+                if (cookies.contains(cookie.getName())) {
+                    json.writeStringField(cookie.getName(), cookie.getValue());
+                }
+            }
+        }
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static class Generator {
+
+        private final BufferOutputStream out = new BufferOutputStream();
+        private final JsonGenerator json;
+
+        Generator(JsonFactory jsonFactory) {
+            try {
+                json = jsonFactory.createGenerator(out, JsonEncoding.UTF8);
+            } catch (IOException e) {
+                throw new IllegalStateException("Unable to create JSON generator", e);
+            }
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // records are separated by newlines, which are written after each one
+            json.setRootValueSeparator(null);
+        }
+
+    }
+
+    /**
+     * Output stream that writes into whichever buffer is currently being encoded into.
+     */
+    private static class BufferOutputStream extends OutputStream {
+
+        private ByteBuffer buf;
+
+        @Override
+        public void write(int b) {
+            buf.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            buf.put(b, off, len);
+        }
+
+    }
+
+}
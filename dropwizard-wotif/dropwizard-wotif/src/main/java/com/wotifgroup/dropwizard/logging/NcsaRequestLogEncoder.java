@@ -0,0 +1,162 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import javax.servlet.http.Cookie;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static com.wotifgroup.dropwizard.logging.Utf8Encoding.putAscii;
+import static com.wotifgroup.dropwizard.logging.Utf8Encoding.putLong;
+import static com.wotifgroup.dropwizard.logging.Utf8Encoding.putString;
+
+/**
+ * Encodes request log lines in the same format as {@link WotifFormatRequestLog}, but writes the line as UTF-8 straight
+ * into a {@link ByteBuffer} rather than building up a String first.
+ */
+public class NcsaRequestLogEncoder extends AbstractRequestLogEncoder {
+
+    private static final String TIME_ZONE_ID = "GMT+10";
+    private static final String DATE_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+
+    private final TimestampCache logDateCache;
+
+    // set when the configured cookies are copied from the raw Cookie headers instead of Request#getCookies
+    private CookieMatcher cookieMatcher;
+
+    public NcsaRequestLogEncoder(List<String> cookies) {
+        super(cookies);
+        logDateCache = new TimestampCache(DATE_FORMAT, TimeZone.getTimeZone(TIME_ZONE_ID), Locale.getDefault());
+    }
+
+    /**
+     * Whether the configured cookies are found by scanning the raw Cookie headers, rather than having Jetty parse every
+     * cookie. See {@link CookieMatcher}.
+     */
+    public void setScanCookieHeader(boolean scanCookieHeader) {
+        cookieMatcher = scanCookieHeader ? new CookieMatcher(cookies) : null;
+    }
+
+    public boolean isScanCookieHeader() {
+        return cookieMatcher != null;
+    }
+
+    @Override
+    public void encode(Request request, Response response, ByteBuffer buf) {
+        putString(buf, remoteAddress(request));
+        putAscii(buf, " - ");
+        final String user = RequestLogFields.user(request);
+        if (user != null) {
+            putString(buf, user);
+        } else {
+            buf.put((byte) '-');
+        }
+
+        putAscii(buf, " [");
+        logDateCache.putTo(buf, request.getTimeStamp());
+
+        putAscii(buf, "] \"");
+        putString(buf, request.getMethod());
+        buf.put((byte) ' ');
+        // HttpURI caches its string form, so this doesn't allocate a new String per call
+        putString(buf, request.getUri().toString());
+        buf.put((byte) ' ');
+        putString(buf, request.getProtocol());
+        putAscii(buf, "\" ");
+
+        final int status = RequestLogFields.status(response);
+        buf.put((byte) ('0' + ((status / 100) % 10)));
+        buf.put((byte) ('0' + ((status / 10) % 10)));
+        buf.put((byte) ('0' + (status % 10)));
+
+        final long responseLength = RequestLogFields.responseLength(response);
+        if (responseLength >= 0) {
+            buf.put((byte) ' ');
+            putLong(buf, responseLength);
+            buf.put((byte) ' ');
+        } else {
+            putAscii(buf, " - ");
+        }
+
+        // Same as org.eclipse.jetty.server.AbstractNCSARequestLog#logExtended, including the missing space after the
+        // user agent when one is present.
+        final String referer = RequestLogFields.referer(request);
+        if (referer == null) {
+            putAscii(buf, "\"-\" ");
+        } else {
+            buf.put((byte) '"');
+            putString(buf, referer);
+            putAscii(buf, "\" ");
+        }
+
+        final String agent = RequestLogFields.userAgent(request);
+        if (agent == null) {
+            putAscii(buf, "\"-\" ");
+        } else {
+            buf.put((byte) '"');
+            putString(buf, agent);
+            buf.put((byte) '"');
+        }
+
+        // Response time is duplicated for compatibility with the legacy format, see WotifFormatRequestLog
+        final long latency = RequestLogFields.latency(request);
+        buf.put((byte) ' ');
+        putLong(buf, latency);
+        buf.put((byte) ' ');
+        putLong(buf, latency);
+
+        // A missing ID is written as "null", as WotifFormatRequestLog does
+        buf.put((byte) ' ');
+        putString(buf, RequestLogFields.requestId(request));
+
+        putAscii(buf, " \"");
+        if (cookieMatcher != null) {
+            cookieMatcher.putTo(buf, request);
+        } else {
+            putCookies(buf, request.getCookies());
+        }
+        buf.put((byte) '"');
+        buf.put((byte) '\n');
+    }
+
+    private void putCookies(ByteBuffer buf, Cookie[] requestCookies) {
+        if (requestCookies == null) {
+            return;
+        }
+        boolean firstCookie = true;
+        for (Cookie cookie : requestCookies) {
+            if (cookies.contains(cookie.getName())) {
+                if (!firstCookie) {
+                    putAscii(buf, "; ");
+                }
+                putString(buf, cookie.getName());
+                buf.put((byte) '=');
+                putString(buf, cookie.getValue());
+                firstCookie = false;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,202 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wotif-specific request log settings, on top of the appenders configured in the server's requestLog section.
+ */
+public class RequestLogConfiguration {
+
+    public enum Output {
+        /**
+         * Lines are written through the logback appenders configured for the server's request log (the default).
+         */
+        APPENDERS,
+        /**
+         * Lines are encoded straight into direct buffers and appended to {@link #getCurrentLogFilename()}, bypassing
+         * logback.
+         */
+        FILE
+    }
+
+    public enum Format {
+        /**
+         * The Wotif NCSA-style text format, see {@link WotifFormatRequestLog}.
+         */
+        NCSA,
+        /**
+         * One JSON object per line, see {@link JsonRequestLogEncoder}.
+         */
+        JSON,
+        /**
+         * Length-prefixed binary records, see {@link BinaryRequestLogEncoder}.
+         */
+        BINARY
+    }
+
+    @NotNull
+    @JsonProperty
+    private Output output = Output.APPENDERS;
+
+    @NotNull
+    @JsonProperty
+    private Format format = Format.NCSA;
+
+    @JsonProperty
+    private String currentLogFilename = null;
+
+    @NotNull
+    @JsonProperty
+    private List<String> cookies = new ArrayList<>();
+
+    @JsonProperty
+    private boolean scanCookieHeader = false;
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private AsyncRequestLogConfiguration async = new AsyncRequestLogConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RequestLogFilterConfiguration filter = new RequestLogFilterConfiguration();
+
+    @Valid
+    @NotNull
+    @JsonProperty
+    private RouteMetricsConfiguration routeMetrics = new RouteMetricsConfiguration();
+
+    @ValidationMethod(message = "must have currentLogFilename if output is file")
+    public boolean isCurrentLogFilenameDefined() {
+        return output != Output.FILE || currentLogFilename != null;
+    }
+
+    @ValidationMethod(message = "must have output file if format is not ncsa")
+    public boolean isFormatSupportedByOutput() {
+        return format == Format.NCSA || output == Output.FILE;
+    }
+
+    public Output getOutput() {
+        return output;
+    }
+
+    public void setOutput(Output output) {
+        this.output = output;
+    }
+
+    public Format getFormat() {
+        return format;
+    }
+
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    public Optional<String> getCurrentLogFilename() {
+        return Optional.fromNullable(currentLogFilename);
+    }
+
+    public void setCurrentLogFilename(String currentLogFilename) {
+        this.currentLogFilename = currentLogFilename;
+    }
+
+    /**
+     * Names of the cookies whose values are included at the end of each log line.
+     */
+    public List<String> getCookies() {
+        return cookies;
+    }
+
+    public void setCookies(List<String> cookies) {
+        this.cookies = cookies;
+    }
+
+    /**
+     * Whether the cookies are copied straight from the raw Cookie headers, rather than having Jetty parse every cookie
+     * in the request. Only applies to the ncsa format.
+     */
+    public boolean isScanCookieHeader() {
+        return scanCookieHeader;
+    }
+
+    public void setScanCookieHeader(boolean scanCookieHeader) {
+        this.scanCookieHeader = scanCookieHeader;
+    }
+
+    /**
+     * Settings for writing the log file from a background thread. Only applies to {@link Output#FILE}; the logback
+     * appenders used by {@link Output#APPENDERS} are already asynchronous.
+     */
+    public AsyncRequestLogConfiguration getAsync() {
+        return async;
+    }
+
+    public void setAsync(AsyncRequestLogConfiguration async) {
+        this.async = async;
+    }
+
+    /**
+     * Rules deciding which requests are logged. These can be changed at runtime with {@link RequestLogFilterTask}.
+     */
+    public RequestLogFilterConfiguration getFilter() {
+        return filter;
+    }
+
+    public void setFilter(RequestLogFilterConfiguration filter) {
+        this.filter = filter;
+    }
+
+    /**
+     * Settings for latency timers by route and status class, recorded for every request whether or not it's logged.
+     */
+    public RouteMetricsConfiguration getRouteMetrics() {
+        return routeMetrics;
+    }
+
+    public void setRouteMetrics(RouteMetricsConfiguration routeMetrics) {
+        this.routeMetrics = routeMetrics;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("output", output)
+                .add("format", format)
+                .add("currentLogFilename", currentLogFilename)
+                .add("cookies", cookies)
+                .add("scanCookieHeader", scanCookieHeader)
+                .add("async", async)
+                .add("filter", filter)
+                .add("routeMetrics", routeMetrics)
+                .toString();
+    }
+
+}
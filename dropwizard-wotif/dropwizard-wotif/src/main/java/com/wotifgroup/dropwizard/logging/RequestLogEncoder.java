@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes a request log record straight into a buffer, for {@link DirectRequestLog}.
+ */
+public interface RequestLogEncoder {
+
+    /**
+     * Encodes a single record, including any trailing delimiter, into the buffer.
+     *
+     * @throws java.nio.BufferOverflowException if the record doesn't fit into the remaining space in the buffer
+     */
+    void encode(Request request, Response response, ByteBuffer buf);
+
+}
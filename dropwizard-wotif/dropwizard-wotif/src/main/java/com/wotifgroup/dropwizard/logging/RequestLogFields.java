@@ -0,0 +1,96 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.server.Authentication;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Extracts the values that make up a request log record, shared by the {@link RequestLogEncoder}s so that every
+ * format carries the same information.
+ */
+final class RequestLogFields {
+
+    private RequestLogFields() {
+    }
+
+    /**
+     * @return the X-Forwarded-For header if the request came from a trusted proxy and has one, otherwise the address of
+     * whatever made the request
+     */
+    static String remoteAddress(Request request, TrustedNetworks trustedProxies) {
+        final String remoteAddr = request.getRemoteAddr();
+        if (trustedProxies.isTrusted(remoteAddr)) {
+            final String forwardedFor = request.getHeader(HttpHeader.X_FORWARDED_FOR.toString());
+            if (forwardedFor != null) {
+                return forwardedFor;
+            }
+        }
+        return remoteAddr;
+    }
+
+    /**
+     * @return the authenticated user's name, or null if the request isn't authenticated
+     */
+    static String user(Request request) {
+        final Authentication authentication = request.getAuthentication();
+        if (authentication instanceof Authentication.User) {
+            return ((Authentication.User) authentication).getUserIdentity().getUserPrincipal().getName();
+        }
+        return null;
+    }
+
+    static int status(Response response) {
+        final int status = response.getStatus();
+        return status <= 0 ? 404 : status;
+    }
+
+    /**
+     * @return the response length, or -1 if it isn't known
+     */
+    static long responseLength(Response response) {
+        final long responseLength = response.getLongContentLength();
+        return responseLength < 0 ? response.getContentCount() : responseLength;
+    }
+
+    static long latency(Request request) {
+        return System.currentTimeMillis() - request.getTimeStamp();
+    }
+
+    static String referer(Request request) {
+        return request.getHeader(HttpHeader.REFERER.toString());
+    }
+
+    static String userAgent(Request request) {
+        return request.getHeader(HttpHeader.USER_AGENT.toString());
+    }
+
+    /**
+     * @return the request's ID, or null if it wasn't given one
+     */
+    static String requestId(Request request) {
+        final Object requestId = request.getAttribute("requestId");
+        return requestId == null ? null : requestId.toString();
+    }
+
+}
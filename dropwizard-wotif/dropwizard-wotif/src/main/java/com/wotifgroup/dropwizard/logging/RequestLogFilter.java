@@ -0,0 +1,58 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+/**
+ * Holds the {@link RequestLogRules} currently in force, so that they can be replaced at runtime by
+ * {@link RequestLogFilterTask} without the request logs needing to be rebuilt.
+ */
+public class RequestLogFilter {
+
+    private final RequestLogRules configuredRules;
+    private volatile RequestLogRules rules;
+
+    public RequestLogFilter(RequestLogRules rules) {
+        this.configuredRules = rules;
+        this.rules = rules;
+    }
+
+    public boolean shouldLog(Request request, Response response) {
+        return rules.shouldLog(request, response);
+    }
+
+    public RequestLogRules getRules() {
+        return rules;
+    }
+
+    public void setRules(RequestLogRules rules) {
+        this.rules = rules;
+    }
+
+    /**
+     * Goes back to the rules this filter was created with.
+     */
+    public void reset() {
+        this.rules = configuredRules;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings deciding which requests are written to the request log, see {@link RequestLogRules}. By default every
+ * request is logged.
+ */
+public class RequestLogFilterConfiguration {
+
+    @NotNull
+    @JsonProperty
+    private List<String> excludedPaths = new ArrayList<>();
+
+    @NotNull
+    @JsonProperty
+    private Map<String, Integer> sampleRates = new LinkedHashMap<>();
+
+    @JsonProperty
+    private Duration slowThreshold = null;
+
+    @JsonProperty
+    private boolean alwaysLogErrors = true;
+
+    @ValidationMethod(message = "sampleRates must map status classes (1xx to 5xx) to rates of at least 1")
+    public boolean isSampleRatesValid() {
+        for (Map.Entry<String, Integer> entry : sampleRates.entrySet()) {
+            if (RequestLogRules.parseStatusClass(entry.getKey()) < 0 || entry.getValue() == null || entry.getValue() < 1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Path prefixes, such as /pool_status.txt, of requests that aren't logged.
+     */
+    public List<String> getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    public void setExcludedPaths(List<String> excludedPaths) {
+        this.excludedPaths = excludedPaths;
+    }
+
+    /**
+     * Only one in every N requests is logged for each status class given here, e.g. {@code 2xx: 10}. Status classes
+     * that aren't given are always logged.
+     */
+    public Map<String, Integer> getSampleRates() {
+        return sampleRates;
+    }
+
+    public void setSampleRates(Map<String, Integer> sampleRates) {
+        this.sampleRates = sampleRates;
+    }
+
+    /**
+     * Requests taking at least this long are always logged.
+     */
+    public Optional<Duration> getSlowThreshold() {
+        return Optional.fromNullable(slowThreshold);
+    }
+
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Whether 5xx responses are always logged, regardless of excluded paths and sampling.
+     */
+    public boolean isAlwaysLogErrors() {
+        return alwaysLogErrors;
+    }
+
+    public void setAlwaysLogErrors(boolean alwaysLogErrors) {
+        this.alwaysLogErrors = alwaysLogErrors;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("excludedPaths", excludedPaths)
+                .add("sampleRates", sampleRates)
+                .add("slowThreshold", slowThreshold)
+                .add("alwaysLogErrors", alwaysLogErrors)
+                .toString();
+    }
+
+}
@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows or changes the rules deciding which requests are logged, e.g.
+ *
+ * <pre>
+ * POST /tasks/request-log-filter?exclude=/pool_status.txt&amp;exclude=/healthcheck&amp;sample=2xx:10&amp;slowThreshold=500
+ * </pre>
+ *
+ * <p>Parameters that aren't given are left as they are. An empty exclude or sample parameter clears that rule, a
+ * slowThreshold of -1 disables it, and reset goes back to the configured rules.</p>
+ */
+public class RequestLogFilterTask extends Task {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestLogFilterTask.class);
+
+    private final RequestLogFilter filter;
+
+    public RequestLogFilterTask(RequestLogFilter filter) {
+        super("request-log-filter");
+        this.filter = filter;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
+        if (parameters.containsKey("reset")) {
+            filter.reset();
+            LOGGER.info("Request log rules reset to {}", filter.getRules());
+        } else if (!parameters.isEmpty()) {
+            final RequestLogRules rules = update(filter.getRules(), parameters);
+            filter.setRules(rules);
+            LOGGER.info("Request log rules changed to {}", rules);
+        }
+        output.printf("%s\n", filter.getRules());
+    }
+
+    private static RequestLogRules update(RequestLogRules rules, ImmutableMultimap<String, String> parameters) {
+        List<String> excludedPaths = rules.getExcludedPaths();
+        if (parameters.containsKey("exclude")) {
+            excludedPaths = new ArrayList<>();
+            for (String path : parameters.get("exclude")) {
+                if (!path.trim().isEmpty()) {
+                    excludedPaths.add(path.trim());
+                }
+            }
+        }
+
+        Map<Integer, Integer> sampleRates = rules.getSampleRates();
+        if (parameters.containsKey("sample")) {
+            sampleRates = parseSampleRates(parameters.get("sample"));
+        }
+
+        long slowThresholdMillis = rules.getSlowThresholdMillis();
+        if (parameters.containsKey("slowThreshold")) {
+            slowThresholdMillis = Long.parseLong(parameters.get("slowThreshold").iterator().next().trim());
+        }
+
+        boolean alwaysLogErrors = rules.isAlwaysLogErrors();
+        if (parameters.containsKey("alwaysLogErrors")) {
+            alwaysLogErrors = Boolean.parseBoolean(parameters.get("alwaysLogErrors").iterator().next().trim());
+        }
+
+        return new RequestLogRules(excludedPaths, sampleRates, slowThresholdMillis, alwaysLogErrors);
+    }
+
+    private static Map<Integer, Integer> parseSampleRates(Collection<String> values) {
+        final Map<Integer, Integer> sampleRates = new LinkedHashMap<>();
+        for (String value : values) {
+            if (value.trim().isEmpty()) {
+                continue;
+            }
+            final int separator = value.indexOf(':');
+            final int statusClass = separator < 0 ? -1 : RequestLogRules.parseStatusClass(value.substring(0, separator).trim());
+            if (statusClass < 0) {
+                throw new IllegalArgumentException("Expected sample in the form 2xx:10, got " + value);
+            }
+            sampleRates.put(statusClass, Integer.parseInt(value.substring(separator + 1).trim()));
+        }
+        return sampleRates;
+    }
+
+}
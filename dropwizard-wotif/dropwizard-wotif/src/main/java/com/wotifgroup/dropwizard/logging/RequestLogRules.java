@@ -0,0 +1,166 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Immutable set of rules deciding whether a request is written to the request log. In order:
+ * <ol>
+ *     <li>5xx responses are logged, if errors are always logged</li>
+ *     <li>requests at least as slow as the slow threshold are logged</li>
+ *     <li>requests with a path starting with an excluded prefix are not logged</li>
+ *     <li>one in N requests are logged, where N is the sample rate for the response's status class</li>
+ * </ol>
+ */
+public class RequestLogRules {
+
+    /**
+     * Rules that log every request.
+     */
+    public static final RequestLogRules LOG_ALL = new RequestLogRules(ImmutableList.<String>of(),
+            ImmutableMap.<Integer, Integer>of(), -1, true);
+
+    private static final int STATUS_CLASSES = 6;
+
+    private final List<String> excludedPaths;
+    private final Map<Integer, Integer> sampleRates;
+    private final long slowThresholdMillis;
+    private final boolean alwaysLogErrors;
+
+    // flattened copies of the above, checked for every request
+    private final String[] excludedPathArray;
+    private final int[] sampleRateArray = new int[STATUS_CLASSES];
+
+    /**
+     * @param excludedPaths path prefixes of requests that aren't logged
+     * @param sampleRates one in how many requests are logged, by status class (1 to 5)
+     * @param slowThresholdMillis latency at which requests are always logged, or -1 for none
+     * @param alwaysLogErrors whether 5xx responses are always logged
+     */
+    public RequestLogRules(List<String> excludedPaths, Map<Integer, Integer> sampleRates, long slowThresholdMillis,
+                           boolean alwaysLogErrors) {
+        this.excludedPaths = ImmutableList.copyOf(excludedPaths);
+        this.sampleRates = ImmutableMap.copyOf(sampleRates);
+        this.slowThresholdMillis = slowThresholdMillis;
+        this.alwaysLogErrors = alwaysLogErrors;
+        this.excludedPathArray = this.excludedPaths.toArray(new String[this.excludedPaths.size()]);
+        for (Map.Entry<Integer, Integer> entry : this.sampleRates.entrySet()) {
+            if (entry.getKey() < 1 || entry.getKey() >= STATUS_CLASSES) {
+                throw new IllegalArgumentException("Invalid status class " + entry.getKey());
+            }
+            if (entry.getValue() < 1) {
+                throw new IllegalArgumentException("Invalid sample rate " + entry.getValue());
+            }
+            sampleRateArray[entry.getKey()] = entry.getValue();
+        }
+    }
+
+    public static RequestLogRules from(RequestLogFilterConfiguration configuration) {
+        final ImmutableMap.Builder<Integer, Integer> sampleRates = ImmutableMap.builder();
+        for (Map.Entry<String, Integer> entry : configuration.getSampleRates().entrySet()) {
+            sampleRates.put(parseStatusClass(entry.getKey()), entry.getValue());
+        }
+        return new RequestLogRules(configuration.getExcludedPaths(), sampleRates.build(),
+                configuration.getSlowThreshold().isPresent() ? configuration.getSlowThreshold().get().toMilliseconds() : -1,
+                configuration.isAlwaysLogErrors());
+    }
+
+    /**
+     * @return the status class of a string such as "2xx", or -1 if it isn't one
+     */
+    static int parseStatusClass(String statusClass) {
+        if (statusClass == null || statusClass.length() != 3 || Character.toLowerCase(statusClass.charAt(1)) != 'x'
+                || Character.toLowerCase(statusClass.charAt(2)) != 'x') {
+            return -1;
+        }
+        final int c = statusClass.charAt(0) - '0';
+        return c >= 1 && c < STATUS_CLASSES ? c : -1;
+    }
+
+    public boolean shouldLog(Request request, Response response) {
+        final int status = RequestLogFields.status(response);
+        if (alwaysLogErrors && status >= 500) {
+            return true;
+        }
+        if (slowThresholdMillis >= 0 && RequestLogFields.latency(request) >= slowThresholdMillis) {
+            return true;
+        }
+        if (excludedPathArray.length > 0) {
+            final String path = request.getRequestURI();
+            if (path != null) {
+                for (String excludedPath : excludedPathArray) {
+                    if (path.startsWith(excludedPath)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        final int statusClass = status / 100;
+        if (statusClass < 1 || statusClass >= STATUS_CLASSES) {
+            return true;
+        }
+        final int sampleRate = sampleRateArray[statusClass];
+        return sampleRate <= 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0;
+    }
+
+    public List<String> getExcludedPaths() {
+        return excludedPaths;
+    }
+
+    public Map<Integer, Integer> getSampleRates() {
+        return sampleRates;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public boolean isAlwaysLogErrors() {
+        return alwaysLogErrors;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("excludedPaths=").append(excludedPaths);
+        sb.append(", sampleRates={");
+        boolean first = true;
+        for (Map.Entry<Integer, Integer> entry : sampleRates.entrySet()) {
+            if (!first) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey()).append("xx=").append(entry.getValue());
+            first = false;
+        }
+        sb.append('}');
+        sb.append(", slowThresholdMillis=").append(slowThresholdMillis);
+        sb.append(", alwaysLogErrors=").append(alwaysLogErrors);
+        return sb.toString();
+    }
+
+}
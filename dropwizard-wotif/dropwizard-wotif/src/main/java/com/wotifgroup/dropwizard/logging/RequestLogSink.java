@@ -0,0 +1,39 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Destination for encoded request log lines written by {@link DirectRequestLog}.
+ */
+public interface RequestLogSink extends Closeable {
+
+    void open() throws IOException;
+
+    /**
+     * Writes the remaining bytes of the buffer. The buffer is reused by the caller once this returns, so implementations
+     * must not hold on to it.
+     */
+    void write(ByteBuffer line) throws IOException;
+
+}
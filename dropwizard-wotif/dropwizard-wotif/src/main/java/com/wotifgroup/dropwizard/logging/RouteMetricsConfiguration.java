@@ -0,0 +1,81 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import io.dropwizard.validation.ValidationMethod;
+
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings for recording request latency by route and status class, see {@link RouteTimers}.
+ */
+public class RouteMetricsConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @NotNull
+    @JsonProperty
+    private List<String> routes = new ArrayList<>();
+
+    @ValidationMethod(message = "routes must start with /")
+    public boolean isRoutesValid() {
+        for (String route : routes) {
+            if (route == null || !route.startsWith("/")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Route templates such as /hotels/{id}/rooms, where a {name} segment matches any single path segment. Requests
+     * that don't match any of them are recorded against a single "other" route, so that the number of timers is
+     * bounded.
+     */
+    public List<String> getRoutes() {
+        return routes;
+    }
+
+    public void setRoutes(List<String> routes) {
+        this.routes = routes;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("routes", routes)
+                .toString();
+    }
+
+}
@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.eclipse.jetty.server.Request;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Records request latency into a {@link Timer} per route template and status class, e.g.
+ * {@code com.wotifgroup.dropwizard.logging.RouteTimers./hotels/{id}/rooms.2xx}.
+ *
+ * <p>Every timer is registered up front, and the route templates are compiled into a tree of path segments which is
+ * matched against the request URI in place, so finding the timer for a request doesn't allocate.</p>
+ */
+public class RouteTimers {
+
+    static final String OTHER_ROUTE = "other";
+
+    private static final String[] STATUS_CLASSES = {null, "1xx", "2xx", "3xx", "4xx", "5xx"};
+
+    private final boolean enabled;
+    private final Node root = new Node();
+    private final Route other;
+
+    public RouteTimers(RouteMetricsConfiguration configuration, MetricRegistry metrics) {
+        this.enabled = configuration.isEnabled();
+        if (enabled) {
+            for (String template : configuration.getRoutes()) {
+                add(template, metrics);
+            }
+            this.other = new Route(OTHER_ROUTE, metrics);
+        } else {
+            this.other = null;
+        }
+    }
+
+    /**
+     * @return route timers that don't record anything
+     */
+    public static RouteTimers disabled() {
+        return new RouteTimers(new RouteMetricsConfiguration(), null);
+    }
+
+    public void record(Request request, int status, long latencyMillis) {
+        if (!enabled) {
+            return;
+        }
+        final int statusClass = status / 100;
+        if (statusClass < 1 || statusClass >= STATUS_CLASSES.length) {
+            return;
+        }
+        route(request.getRequestURI()).timers[statusClass].update(latencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the template of the route matching the path, or "other" if none match
+     */
+    String template(String path) {
+        return route(path).template;
+    }
+
+    private Route route(String path) {
+        final Route route = path == null ? null : match(root, path, 0);
+        return route != null ? route : other;
+    }
+
+    private void add(String template, MetricRegistry metrics) {
+        Node node = root;
+        for (String segment : template.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            node = segment.startsWith("{") && segment.endsWith("}") ? node.variableChild() : node.literalChild(segment);
+        }
+        if (node.route == null) {
+            node.route = new Route(template, metrics);
+        }
+    }
+
+    /**
+     * Matches the path from pos against the node's children, preferring literal segments over variables and
+     * backtracking if a literal match doesn't lead to a route.
+     */
+    private static Route match(Node node, String path, int pos) {
+        final int length = path.length();
+        while (pos < length && path.charAt(pos) == '/') {
+            pos++;
+        }
+        if (pos >= length) {
+            return node.route;
+        }
+
+        // the segment ends at the next /, ignoring any ;parameters
+        int segmentEnd = pos;
+        while (segmentEnd < length && path.charAt(segmentEnd) != '/' && path.charAt(segmentEnd) != ';') {
+            segmentEnd++;
+        }
+        int next = segmentEnd;
+        while (next < length && path.charAt(next) != '/') {
+            next++;
+        }
+
+        final int segmentLength = segmentEnd - pos;
+        for (int i = 0; i < node.literals.size(); i++) {
+            final String literal = node.literals.get(i);
+            if (literal.length() == segmentLength && path.regionMatches(pos, literal, 0, segmentLength)) {
+                final Route route = match(node.literalChildren.get(i), path, next);
+                if (route != null) {
+                    return route;
+                }
+            }
+        }
+        if (node.variable != null && segmentLength > 0) {
+            return match(node.variable, path, next);
+        }
+        return null;
+    }
+
+    private static class Node {
+
+        private final List<String> literals = new ArrayList<>();
+        private final List<Node> literalChildren = new ArrayList<>();
+        private Node variable;
+        private Route route;
+
+        Node literalChild(String segment) {
+            final int i = literals.indexOf(segment);
+            if (i >= 0) {
+                return literalChildren.get(i);
+            }
+            final Node child = new Node();
+            literals.add(segment);
+            literalChildren.add(child);
+            return child;
+        }
+
+        Node variableChild() {
+            if (variable == null) {
+                variable = new Node();
+            }
+            return variable;
+        }
+
+    }
+
+    private static class Route {
+
+        private final String template;
+        private final Timer[] timers = new Timer[STATUS_CLASSES.length];
+
+        Route(String template, MetricRegistry metrics) {
+            this.template = template;
+            for (int i = 1; i < STATUS_CLASSES.length; i++) {
+                timers[i] = metrics.timer(name(RouteTimers.class, template, STATUS_CLASSES[i]));
+            }
+        }
+
+    }
+
+}
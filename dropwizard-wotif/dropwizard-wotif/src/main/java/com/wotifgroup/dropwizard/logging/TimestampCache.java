@@ -0,0 +1,89 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Formats timestamps to the second, caching the last formatted second per thread as both chars and UTF-8 bytes.
+ *
+ * <p>Unlike {@link org.eclipse.jetty.util.DateCache}, which is shared between threads and returns a String, nothing
+ * here is shared or allocated until a thread sees a new second.</p>
+ */
+class TimestampCache {
+
+    private final String format;
+    private final TimeZone timeZone;
+    private final Locale locale;
+
+    private final ThreadLocal<Entry> entries = new ThreadLocal<Entry>() {
+        @Override
+        protected Entry initialValue() {
+            final SimpleDateFormat dateFormat = new SimpleDateFormat(format, locale);
+            dateFormat.setTimeZone(timeZone);
+            return new Entry(dateFormat);
+        }
+    };
+
+    TimestampCache(String format, TimeZone timeZone, Locale locale) {
+        this.format = format;
+        this.timeZone = timeZone;
+        this.locale = locale;
+    }
+
+    void appendTo(StringBuilder buf, long millis) {
+        buf.append(entry(millis).chars);
+    }
+
+    void putTo(ByteBuffer buf, long millis) {
+        buf.put(entry(millis).bytes);
+    }
+
+    private Entry entry(long millis) {
+        final Entry entry = entries.get();
+        final long second = millis / 1000;
+        if (second != entry.second) {
+            final String formatted = entry.dateFormat.format(new Date(second * 1000));
+            entry.chars = formatted.toCharArray();
+            entry.bytes = formatted.getBytes(StandardCharsets.UTF_8);
+            entry.second = second;
+        }
+        return entry;
+    }
+
+    private static class Entry {
+
+        private final SimpleDateFormat dateFormat;
+        private long second = Long.MIN_VALUE;
+        private char[] chars;
+        private byte[] bytes;
+
+        Entry(SimpleDateFormat dateFormat) {
+            this.dateFormat = dateFormat;
+        }
+
+    }
+
+}
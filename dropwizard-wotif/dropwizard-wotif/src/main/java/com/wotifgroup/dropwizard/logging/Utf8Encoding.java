@@ -0,0 +1,102 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Writes strings and numbers into byte buffers without creating intermediate Strings or byte arrays.
+ */
+final class Utf8Encoding {
+
+    private Utf8Encoding() {
+    }
+
+    /**
+     * Writes a string known to only contain 7-bit ASCII characters.
+     */
+    static void putAscii(ByteBuffer buf, String s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            buf.put((byte) s.charAt(i));
+        }
+    }
+
+    /**
+     * Writes an arbitrary string as UTF-8, or "null" if it is null (as StringBuilder#append would).
+     */
+    static void putString(ByteBuffer buf, String s) {
+        if (s == null) {
+            putAscii(buf, "null");
+            return;
+        }
+        putString(buf, s, 0, s.length());
+    }
+
+    /**
+     * Writes the characters of a string from start (inclusive) to end (exclusive) as UTF-8.
+     */
+    static void putString(ByteBuffer buf, String s, int start, int end) {
+        for (int i = start, n = end; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                buf.put((byte) c);
+            } else if (c < 0x800) {
+                buf.put((byte) (0xc0 | (c >> 6)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, s.charAt(++i));
+                buf.put((byte) (0xf0 | (codePoint >> 18)));
+                buf.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+                buf.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+                buf.put((byte) (0x80 | (codePoint & 0x3f)));
+            } else if (Character.isSurrogate(c)) {
+                // unpaired surrogate, same replacement as String#getBytes
+                buf.put((byte) '?');
+            } else {
+                buf.put((byte) (0xe0 | (c >> 12)));
+                buf.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+                buf.put((byte) (0x80 | (c & 0x3f)));
+            }
+        }
+    }
+
+    /**
+     * Writes the decimal digits of a number without going through Long#toString.
+     */
+    static void putLong(ByteBuffer buf, long value) {
+        if (value < 0) {
+            buf.put((byte) '-');
+            if (value == Long.MIN_VALUE) {
+                putAscii(buf, "9223372036854775808");
+                return;
+            }
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        while (divisor > 0) {
+            buf.put((byte) ('0' + (value / divisor) % 10));
+            divisor /= 10;
+        }
+    }
+
+}
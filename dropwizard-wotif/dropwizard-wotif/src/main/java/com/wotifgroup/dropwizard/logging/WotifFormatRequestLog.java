@@ -21,12 +21,11 @@ package com.wotifgroup.dropwizard.logging;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
 import io.dropwizard.jetty.Slf4jRequestLog;
-import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.server.Authentication;
 import org.eclipse.jetty.server.Request;
 import org.eclipse.jetty.server.Response;
-import org.eclipse.jetty.util.DateCache;
 
 import javax.servlet.http.Cookie;
 import java.io.IOException;
@@ -42,6 +41,7 @@ import java.util.TimeZone;
  */
 public class WotifFormatRequestLog extends Slf4jRequestLog {
     private static final String TIME_ZONE_ID = "GMT+10";
+    private static final String DATE_FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
 
     // org.eclipse.jetty.server.AbstractNCSARequestLog#_buffers is private, so is replicated here
     private static ThreadLocal<StringBuilder> buffers = new ThreadLocal<StringBuilder>() {
@@ -50,16 +50,31 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
             return new StringBuilder(256);
         }
     };
-    // org.eclipse.jetty.server.AbstractNCSARequestLog#_logDateCache is private, so is replicated here
-    private final DateCache logDateCache;
+    // Replaces org.eclipse.jetty.server.AbstractNCSARequestLog#_logDateCache, which is shared between threads
+    private final TimestampCache logDateCache;
 
     private final Set<String> cookies;
 
+    // set when the configured cookies are copied from the raw Cookie headers instead of Request#getCookies
+    private CookieMatcher cookieMatcher;
+
+    private TrustedNetworks trustedProxies = TrustedNetworks.any();
+
+    private final RequestLogFilter filter;
+
+    private final RouteTimers routeTimers;
+
     public WotifFormatRequestLog(AppenderAttachableImpl<ILoggingEvent> appenders, List<String> cookies) {
+        this(appenders, cookies, new RequestLogFilter(RequestLogRules.LOG_ALL), RouteTimers.disabled());
+    }
+
+    public WotifFormatRequestLog(AppenderAttachableImpl<ILoggingEvent> appenders, List<String> cookies,
+                                 RequestLogFilter filter, RouteTimers routeTimers) {
         super(appenders, TimeZone.getTimeZone(TIME_ZONE_ID));
-        logDateCache = new DateCache("dd/MMM/yyyy:HH:mm:ss Z", Locale.getDefault());
-        logDateCache.setTimeZoneID(TIME_ZONE_ID);
+        logDateCache = new TimestampCache(DATE_FORMAT, TimeZone.getTimeZone(TIME_ZONE_ID), Locale.getDefault());
         this.cookies = new HashSet<>(cookies);
+        this.filter = filter;
+        this.routeTimers = routeTimers;
     }
 
     @Override
@@ -69,16 +84,17 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
                 return;
             }
 
-            StringBuilder buf = buffers.get();
-            buf.setLength(0);
-
-            String addr = request.getHeader(HttpHeader.X_FORWARDED_FOR.toString());
+            long latency = System.currentTimeMillis() - request.getTimeStamp();
+            routeTimers.record(request, RequestLogFields.status(response), latency);
 
-            if (addr == null) {
-                addr = request.getRemoteAddr();
+            if (!filter.shouldLog(request, response)) {
+                return;
             }
 
-            buf.append(addr);
+            StringBuilder buf = buffers.get();
+            buf.setLength(0);
+
+            buf.append(RequestLogFields.remoteAddress(request, trustedProxies));
             buf.append(" - ");
             Authentication authentication = request.getAuthentication();
             if (authentication instanceof Authentication.User) {
@@ -88,7 +104,7 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
             }
 
             buf.append(" [");
-            buf.append(logDateCache.format(request.getTimeStamp()));
+            logDateCache.appendTo(buf, request.getTimeStamp());
 
             buf.append("] \"");
             buf.append(request.getMethod());
@@ -138,8 +154,6 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
 
             logExtended(request, response, buf);
 
-            long now = System.currentTimeMillis();
-
             // Duplicate response time for compatibility with legacy format, which included both dispatch time and response time.
             // Dispatch time was actually removed from Request in Jetty 8, but the fallback has always been response time so I
             // suspect that it was always just two of the same value anyway. I suspect that it's because it was a mostly redundant
@@ -147,10 +161,10 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
             // http://git.eclipse.org/c/jetty/org.eclipse.jetty.project.git/commit/jetty-server/src/main/java/org/eclipse \
             // /jetty/server/AbstractNCSARequestLog.java?id=c33db24d948b69fbe4b96cc9b52d80ca1580e3f7
             buf.append(' ');
-            buf.append(now - request.getTimeStamp());
+            buf.append(latency);
 
             buf.append(' ');
-            buf.append(now - request.getTimeStamp());
+            buf.append(latency);
 
             // Wotif customisation: include requestId
             buf.append(' ');
@@ -158,7 +172,9 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
 
             // Wotif customisation: include session cookies
             buf.append(" \"");
-            if (request.getCookies() != null) {
+            if (cookieMatcher != null) {
+                cookieMatcher.appendTo(buf, request);
+            } else if (request.getCookies() != null) {
                 boolean firstCookie = true;
                 for (Cookie cookie : request.getCookies()) {
                     if (cookies.contains(cookie.getName())) {
@@ -183,4 +199,28 @@ public class WotifFormatRequestLog extends Slf4jRequestLog {
         }
     }
 
+    /**
+     * Whether the configured cookies are found by scanning the raw Cookie headers, rather than having Jetty parse every
+     * cookie. See {@link CookieMatcher}.
+     */
+    public void setScanCookieHeader(boolean scanCookieHeader) {
+        cookieMatcher = scanCookieHeader ? new CookieMatcher(cookies) : null;
+    }
+
+    public boolean isScanCookieHeader() {
+        return cookieMatcher != null;
+    }
+
+    /**
+     * Networks of the proxies whose X-Forwarded-For header is logged in place of their own address. Defaults to any
+     * address.
+     */
+    public void setTrustedProxies(TrustedNetworks trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public TrustedNetworks getTrustedProxies() {
+        return trustedProxies;
+    }
+
 }
@@ -21,23 +21,61 @@ package com.wotifgroup.dropwizard.logging;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import com.codahale.metrics.MetricRegistry;
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
 import io.dropwizard.jetty.RequestLogFactory;
 import io.dropwizard.jetty.Slf4jRequestLog;
 import org.eclipse.jetty.server.RequestLog;
 
 import java.lang.reflect.Field;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 
 public class WotifFormatRequestLogFactory extends RequestLogFactory {
 
+    private final RequestLogConfiguration configuration;
+    private final MetricRegistry metrics;
+    private final RequestLogFilter filter;
+    private final RouteTimers routeTimers;
+    private final TrustedNetworks trustedProxies;
+
     public WotifFormatRequestLogFactory(RequestLogFactory requestLogFactory) {
+        this(requestLogFactory, new RequestLogConfiguration(), new MetricRegistry(), TrustedNetworks.any());
+    }
+
+    /**
+     * @param trustedProxies networks of the proxies whose X-Forwarded-For header is logged in place of their address
+     */
+    public WotifFormatRequestLogFactory(RequestLogFactory requestLogFactory, RequestLogConfiguration configuration,
+                                        MetricRegistry metrics, TrustedNetworks trustedProxies) {
         setAppenders(requestLogFactory.getAppenders());
+        this.configuration = configuration;
+        this.metrics = metrics;
+        this.trustedProxies = trustedProxies;
+        this.filter = new RequestLogFilter(RequestLogRules.from(configuration.getFilter()));
+        this.routeTimers = new RouteTimers(configuration.getRouteMetrics(), metrics);
+    }
+
+    /**
+     * The filter shared by every request log built by this factory.
+     */
+    public RequestLogFilter getFilter() {
+        return filter;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return isDirect() || super.isEnabled();
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public RequestLog build(String name) {
+        if (isDirect()) {
+            return new DirectRequestLog(buildEncoder(), buildSink(name), filter, routeTimers);
+        }
+
         Slf4jRequestLog superRequestLog = (Slf4jRequestLog) super.build(name);
         List<String> cookies = null;
 
@@ -51,7 +89,44 @@ public class WotifFormatRequestLogFactory extends RequestLogFactory {
             }
         } catch (NoSuchFieldException e) { cookies = new ArrayList<>(); } // cookies is an optional field
 
-        return new WotifFormatRequestLog(getAppenders(superRequestLog), cookies);
+        cookies = new ArrayList<>(cookies);
+        cookies.addAll(configuration.getCookies());
+
+        WotifFormatRequestLog requestLog = new WotifFormatRequestLog(getAppenders(superRequestLog), cookies, filter,
+                routeTimers);
+        requestLog.setScanCookieHeader(configuration.isScanCookieHeader());
+        requestLog.setTrustedProxies(trustedProxies);
+        return requestLog;
+    }
+
+    private RequestLogEncoder buildEncoder() {
+        final AbstractRequestLogEncoder encoder;
+        switch (configuration.getFormat()) {
+            case JSON:
+                encoder = new JsonRequestLogEncoder(configuration.getCookies());
+                break;
+            case BINARY:
+                encoder = new BinaryRequestLogEncoder(configuration.getCookies());
+                break;
+            default:
+                final NcsaRequestLogEncoder ncsaEncoder = new NcsaRequestLogEncoder(configuration.getCookies());
+                ncsaEncoder.setScanCookieHeader(configuration.isScanCookieHeader());
+                encoder = ncsaEncoder;
+        }
+        encoder.setTrustedProxies(trustedProxies);
+        return encoder;
+    }
+
+    private RequestLogSink buildSink(String name) {
+        final RequestLogSink sink = new FileChannelRequestLogSink(Paths.get(configuration.getCurrentLogFilename().get()));
+        if (configuration.getAsync().isEnabled()) {
+            return new AsyncRequestLogSink(sink, configuration.getAsync(), metrics, name);
+        }
+        return sink;
+    }
+
+    private boolean isDirect() {
+        return configuration.getOutput() == RequestLogConfiguration.Output.FILE;
     }
 
     @SuppressWarnings("unchecked")
@@ -0,0 +1,97 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Answers load balancer agent checks, which connect over plain TCP and read a single line, such as
+ * {@code up ready 75%}, then expect the connection to be closed. Each connection is answered and closed in turn, on a
+ * single daemon thread, with the response {@link PoolStatus} has already rendered.
+ */
+public class AgentCheckResponder implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AgentCheckResponder.class);
+
+    private final PoolStatus pool;
+    private final int port;
+    private ServerSocketChannel server;
+    private Thread thread;
+
+    public AgentCheckResponder(PoolStatus pool, int port) {
+        this.pool = pool;
+        this.port = port;
+    }
+
+    @Override
+    public void start() throws IOException {
+        server = ServerSocketChannel.open();
+        server.socket().setReuseAddress(true);
+        server.bind(new InetSocketAddress(port));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                respond();
+            }
+        }, "agent-check");
+        thread.setDaemon(true);
+        thread.start();
+        LOGGER.info("Answering agent checks on port {}", getPort());
+    }
+
+    @Override
+    public void stop() throws Exception {
+        server.close();
+        thread.join();
+    }
+
+    /**
+     * @return the port agent checks are answered on, which is only known once started when configured as zero
+     */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    private void respond() {
+        while (server.isOpen()) {
+            try (SocketChannel check = server.accept()) {
+                final ByteBuffer response = pool.agentCheckResponse();
+                while (response.hasRemaining()) {
+                    check.write(response);
+                }
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                LOGGER.debug("Failed to answer agent check", e);
+            }
+        }
+    }
+
+}
@@ -20,15 +20,19 @@
 package com.wotifgroup.dropwizard.poolstatus;
 
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.Iterables;
 import com.wotifgroup.poolstatusservlet.PoolStatus;
 import io.dropwizard.servlets.tasks.Task;
+import io.dropwizard.util.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
 /**
- * Marks this application as ready to exit the load balancer pool.
+ * Marks this application as ready to exit the load balancer pool. Given a {@code drain} duration, such as
+ * {@code POST /tasks/exit-pool?drain=30s}, it drains first: see {@link PoolStatus#exit(long, TimeUnit)}.
  */
 public class ExitPoolTask extends Task {
 
@@ -43,8 +47,18 @@ public class ExitPoolTask extends Task {
 
     @Override
     public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) throws Exception {
-        PoolStatus.State oldState = pool.exit();
-        String message = String.format("Exiting pool. Status was %s", oldState);
+        final String drain = Iterables.getFirst(parameters.get("drain"), null);
+        if (drain == null) {
+            PoolStatus.State oldState = pool.exit();
+            String message = String.format("Exiting pool. Status was %s", oldState);
+            LOGGER.info(message);
+            output.printf("%s\n", message);
+            return;
+        }
+        final Duration timeout = Duration.parse(drain);
+        PoolStatus.State oldState = pool.exit(timeout.getQuantity(), timeout.getUnit());
+        String message = String.format("Exiting pool. Status was %s, %d requests still in flight", oldState,
+                pool.inFlight());
         LOGGER.info(message);
         output.printf("%s\n", message);
     }
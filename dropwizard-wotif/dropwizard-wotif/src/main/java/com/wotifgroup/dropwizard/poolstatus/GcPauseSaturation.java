@@ -0,0 +1,74 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saturation from the share of time spent collecting garbage since it was last asked for, which is roughly once every
+ * refresh interval.
+ */
+class GcPauseSaturation implements SaturationSignal {
+
+    private final List<GarbageCollectorMXBean> collectors;
+    private final double maxGcShare;
+    private long lastCollectionMillis;
+    private long lastNanos;
+
+    GcPauseSaturation(double maxGcShare) {
+        this(ManagementFactory.getGarbageCollectorMXBeans(), maxGcShare);
+    }
+
+    GcPauseSaturation(List<GarbageCollectorMXBean> collectors, double maxGcShare) {
+        this.collectors = collectors;
+        this.maxGcShare = maxGcShare;
+        this.lastCollectionMillis = collectionMillis();
+        this.lastNanos = System.nanoTime();
+    }
+
+    @Override
+    public synchronized double saturation() {
+        final long collection = collectionMillis();
+        final long now = System.nanoTime();
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(now - lastNanos);
+        if (elapsed <= 0) {
+            return 0;
+        }
+        final double share = (double) (collection - lastCollectionMillis) / elapsed;
+        lastCollectionMillis = collection;
+        lastNanos = now;
+        return share / maxGcShare;
+    }
+
+    private long collectionMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            // -1 when a collector doesn't say
+            total += Math.max(0, collector.getCollectionTime());
+        }
+        return total;
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.MimeTypes;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.eclipse.jetty.server.handler.HandlerWrapper;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Answers GETs of {@code /pool_status.txt} and {@code /agent_check.txt} inside the application context but ahead of
+ * its filters and servlets, by sending the bytes {@link PoolStatus} rendered on its last change as they are. Anything
+ * else, including other methods on the same paths, goes on to the servlets. Inserted with
+ * {@link org.eclipse.jetty.servlet.ServletContextHandler#insertHandler(HandlerWrapper)}.
+ */
+public class PoolStatusHandler extends HandlerWrapper {
+
+    static final String POOL_STATUS = "/pool_status.txt";
+    static final String AGENT_CHECK = "/agent_check.txt";
+
+    // Found in Jetty's cache of known types, rather than parsed
+    private static final String CONTENT_TYPE = MimeTypes.Type.TEXT_PLAIN_UTF_8.asString();
+
+    private final PoolStatus pool;
+
+    public PoolStatusHandler(PoolStatus pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        final boolean status = POOL_STATUS.equals(target);
+        if (!status && !AGENT_CHECK.equals(target)
+                || !HttpMethod.GET.is(baseRequest.getMethod()) && !HttpMethod.HEAD.is(baseRequest.getMethod())) {
+            super.handle(target, baseRequest, request, response);
+            return;
+        }
+        baseRequest.setHandled(true);
+        final ByteBuffer body = status ? pool.statusResponse() : pool.agentCheckResponse();
+        final Response base = baseRequest.getResponse();
+        base.setStatus(HttpServletResponse.SC_OK);
+        base.setContentType(CONTENT_TYPE);
+        base.setContentLength(body.remaining());
+        base.getHttpOutput().sendContent(body);
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
+
+import java.util.regex.Pattern;
+
+/**
+ * Saturation from the recent mean wait of the worst connection pool, read from the timers whose names match a
+ * pattern.
+ */
+class PoolWaitSaturation implements SaturationSignal {
+
+    private final MetricRegistry metrics;
+    private final MetricFilter filter;
+    private final double maxWaitNanos;
+
+    PoolWaitSaturation(MetricRegistry metrics, final Pattern timers, long maxWaitNanos) {
+        this.metrics = metrics;
+        this.filter = new MetricFilter() {
+            @Override
+            public boolean matches(String name, Metric metric) {
+                return timers.matcher(name).matches();
+            }
+        };
+        this.maxWaitNanos = maxWaitNanos;
+    }
+
+    @Override
+    public double saturation() {
+        double wait = 0;
+        for (Timer timer : metrics.getTimers(filter).values()) {
+            wait = Math.max(wait, timer.getSnapshot().getMean());
+        }
+        return wait / maxWaitNanos;
+    }
+
+}
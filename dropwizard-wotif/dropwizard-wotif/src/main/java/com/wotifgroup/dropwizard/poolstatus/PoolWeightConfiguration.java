@@ -0,0 +1,185 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.codahale.metrics.MetricRegistry;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Configuration for the weight this application reports to the load balancer, see
+ * {@link com.wotifgroup.poolstatusservlet.PoolStatus#weight()}. The weight ramps up over the slow start after entering
+ * the pool, and comes down as request queue depth, time spent in GC or time waiting on client connection pools
+ * approach their limits.
+ */
+public class PoolWeightConfiguration {
+
+    @NotNull
+    @JsonProperty
+    private Duration slowStart = Duration.seconds(60);
+
+    @NotNull
+    @JsonProperty
+    private Duration refreshInterval = Duration.seconds(1);
+
+    @Min(0)
+    @JsonProperty
+    private int maxQueueDepth = 100;
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    @JsonProperty
+    private double maxGcShare = 0.25;
+
+    @JsonProperty
+    private String poolWaitTimers = null;
+
+    @NotNull
+    @JsonProperty
+    private Duration maxPoolWait = Duration.milliseconds(100);
+
+    @JsonProperty
+    private Integer agentCheckPort = null;
+
+    /**
+     * How long after entering the pool the weight takes to ramp up to full, or zero to take full weight at once.
+     */
+    public Duration getSlowStart() {
+        return slowStart;
+    }
+
+    public void setSlowStart(Duration slowStart) {
+        this.slowStart = slowStart;
+    }
+
+    /**
+     * How often the weight is recalculated, at most. It's only ever recalculated when it's asked for.
+     */
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * Requests waiting for a server thread at which the server counts as saturated, or zero to ignore the queue.
+     */
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public void setMaxQueueDepth(int maxQueueDepth) {
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    /**
+     * Share of time spent collecting garbage at which the server counts as saturated, or zero to ignore GC.
+     */
+    public double getMaxGcShare() {
+        return maxGcShare;
+    }
+
+    public void setMaxGcShare(double maxGcShare) {
+        this.maxGcShare = maxGcShare;
+    }
+
+    /**
+     * A regular expression for the names of timers of waits on connection pools, such as the lease timers of clients
+     * built by {@code WotifJerseyClientBuilder}: {@code org\.apache\.http\.client\.HttpClient\..*\.lease}. Not set by
+     * default, so pool waits are ignored.
+     */
+    public Optional<String> getPoolWaitTimers() {
+        return Optional.fromNullable(poolWaitTimers);
+    }
+
+    public void setPoolWaitTimers(String poolWaitTimers) {
+        this.poolWaitTimers = poolWaitTimers;
+    }
+
+    /**
+     * Mean pool wait at which the server counts as saturated.
+     */
+    public Duration getMaxPoolWait() {
+        return maxPoolWait;
+    }
+
+    public void setMaxPoolWait(Duration maxPoolWait) {
+        this.maxPoolWait = maxPoolWait;
+    }
+
+    /**
+     * Port to answer load balancer agent checks on, see {@link AgentCheckResponder}. Not set by default, as the same
+     * response is always available over HTTP at {@code /agent_check.txt}.
+     */
+    public Optional<Integer> getAgentCheckPort() {
+        return Optional.fromNullable(agentCheckPort);
+    }
+
+    public void setAgentCheckPort(Integer agentCheckPort) {
+        this.agentCheckPort = agentCheckPort;
+    }
+
+    /**
+     * @return the saturation signals configured, which read the server's thread pool and client pool metrics from the
+     * given registry
+     */
+    public List<SaturationSignal> buildSaturationSignals(MetricRegistry metrics) {
+        final List<SaturationSignal> signals = new ArrayList<>();
+        if (maxQueueDepth > 0) {
+            signals.add(new QueueDepthSaturation(metrics, maxQueueDepth));
+        }
+        if (maxGcShare > 0) {
+            signals.add(new GcPauseSaturation(maxGcShare));
+        }
+        if (poolWaitTimers != null) {
+            signals.add(new PoolWaitSaturation(metrics, Pattern.compile(poolWaitTimers),
+                    TimeUnit.MILLISECONDS.toNanos(maxPoolWait.toMilliseconds())));
+        }
+        return signals;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("slowStart", slowStart)
+                .add("refreshInterval", refreshInterval)
+                .add("maxQueueDepth", maxQueueDepth)
+                .add("maxGcShare", maxGcShare)
+                .add("poolWaitTimers", poolWaitTimers)
+                .add("maxPoolWait", maxPoolWait)
+                .add("agentCheckPort", agentCheckPort)
+                .toString();
+    }
+
+}
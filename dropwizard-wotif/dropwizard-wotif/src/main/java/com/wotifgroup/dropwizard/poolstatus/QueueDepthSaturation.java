@@ -0,0 +1,64 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricFilter;
+import com.codahale.metrics.MetricRegistry;
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Saturation from the number of requests waiting for a server thread, read from the {@code jobs} gauge of the
+ * server's instrumented thread pool. As the server's only built after the bundles have run, the gauge is looked up
+ * each time, and there's no saturation until it turns up.
+ */
+class QueueDepthSaturation implements SaturationSignal {
+
+    private static final String PREFIX = QueuedThreadPool.class.getName() + ".";
+    private static final String SUFFIX = ".jobs";
+
+    private final MetricRegistry metrics;
+    private final int maxQueueDepth;
+
+    QueueDepthSaturation(MetricRegistry metrics, int maxQueueDepth) {
+        this.metrics = metrics;
+        this.maxQueueDepth = maxQueueDepth;
+    }
+
+    @Override
+    public double saturation() {
+        int queued = 0;
+        for (Gauge<?> jobs : metrics.getGauges(new MetricFilter() {
+            @Override
+            public boolean matches(String name, Metric metric) {
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }
+        }).values()) {
+            final Object value = jobs.getValue();
+            if (value instanceof Number) {
+                queued = Math.max(queued, ((Number) value).intValue());
+            }
+        }
+        return (double) queued / maxQueueDepth;
+    }
+
+}
@@ -0,0 +1,76 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+/**
+ * Writes numbers as lower case base 36 digits straight into char arrays, so that IDs can be built up in a reused
+ * buffer rather than through {@link Long#toString(long, int)}.
+ */
+final class Base36 {
+
+    static final int RADIX = 36;
+
+    private static final char[] DIGITS = "0123456789abcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    /**
+     * Enough digits for any non-negative long.
+     */
+    static final int MAX_LENGTH = 13;
+
+    private Base36() {
+    }
+
+    /**
+     * Writes a non-negative value right-aligned so that its last digit is at end - 1.
+     *
+     * @return the index of the first digit
+     */
+    static int encode(long value, char[] buf, int end) {
+        int pos = end;
+        do {
+            buf[--pos] = DIGITS[(int) (value % RADIX)];
+            value /= RADIX;
+        } while (value > 0);
+        return pos;
+    }
+
+    /**
+     * Writes the low order digits of a non-negative value into exactly width chars from offset, padding with zeros.
+     * Fixed width values sort in the same order as the numbers they represent.
+     */
+    static void encodeFixed(long value, char[] buf, int offset, int width) {
+        for (int pos = offset + width - 1; pos >= offset; pos--) {
+            buf[pos] = DIGITS[(int) (value % RADIX)];
+            value /= RADIX;
+        }
+    }
+
+    /**
+     * @return 36 to the power of width, the number of distinct values width digits can hold
+     */
+    static long capacity(int width) {
+        long capacity = 1;
+        for (int i = 0; i < width; i++) {
+            capacity *= RADIX;
+        }
+        return capacity;
+    }
+
+}
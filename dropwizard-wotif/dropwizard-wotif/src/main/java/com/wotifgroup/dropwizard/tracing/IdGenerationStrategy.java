@@ -0,0 +1,38 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+/**
+ * Strategy for generating IDs that are "user friendly", for requests that don't already carry one.
+ *
+ * @see RandomIdGenerator
+ * @see TimeOrderedIdGenerator
+ * @see PrefetchingRandomIdGenerator
+ */
+public interface IdGenerationStrategy {
+
+    /**
+     * Generates a new ID. Implementations must be safe to call from many threads at once.
+     *
+     * @return ID string.
+     */
+    String generate();
+
+}
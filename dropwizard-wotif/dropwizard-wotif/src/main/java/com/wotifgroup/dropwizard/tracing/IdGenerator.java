@@ -19,22 +19,23 @@
  */
 package com.wotifgroup.dropwizard.tracing;
 
-import java.util.concurrent.ThreadLocalRandom;
-
 /**
- * Generates random IDs that are "user friendly"
+ * Generates random IDs that are "user friendly", using the default {@link RandomIdGenerator} strategy.
+ *
+ * @see IdGenerationStrategy
  */
-public class IdGenerator {
+public class IdGenerator implements IdGenerationStrategy {
+
+    private final IdGenerationStrategy strategy = new RandomIdGenerator();
 
     /**
      * Generates a new random ID.
      *
      * @return random ID string.
      */
+    @Override
     public String generate() {
-        // can't use nextLong as that can return negative numbers
-        long r = (long) (ThreadLocalRandom.current().nextDouble() * Long.MAX_VALUE);
-        return Long.toString(r, 36);
+        return strategy.generate();
     }
 
 }
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+/**
+ * Allocation-free checks on textual IP addresses, for decisions made on every request.
+ */
+final class IpAddresses {
+
+    /**
+     * Returned by {@link #parseIpv4(String)} when the address isn't a dotted quad.
+     */
+    static final long NOT_IPV4 = -1;
+
+    private IpAddresses() {
+    }
+
+    /**
+     * Parses a dotted quad such as 10.1.1.1 without going through {@link java.net.InetAddress}.
+     *
+     * @return the address as an unsigned 32 bit value, or {@link #NOT_IPV4}
+     */
+    static long parseIpv4(String address) {
+        if (address == null) {
+            return NOT_IPV4;
+        }
+        final int length = address.length();
+        long result = 0;
+        int octet = 0;
+        int digits = 0;
+        int dots = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = address.charAt(i);
+            if (c >= '0' && c <= '9') {
+                // leading zeros are rejected, as InetAddresses#forString does
+                if (digits > 0 && octet == 0) {
+                    return NOT_IPV4;
+                }
+                octet = octet * 10 + (c - '0');
+                if (++digits > 3 || octet > 255) {
+                    return NOT_IPV4;
+                }
+            } else if (c == '.' && digits > 0 && dots < 3) {
+                result = (result << 8) | octet;
+                octet = 0;
+                digits = 0;
+                dots++;
+            } else {
+                return NOT_IPV4;
+            }
+        }
+        if (dots != 3 || digits == 0) {
+            return NOT_IPV4;
+        }
+        return (result << 8) | octet;
+    }
+
+}
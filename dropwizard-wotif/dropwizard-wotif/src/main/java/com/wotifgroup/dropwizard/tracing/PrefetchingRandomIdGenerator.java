@@ -0,0 +1,80 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import java.security.SecureRandom;
+
+/**
+ * Generates random IDs like {@link RandomIdGenerator}, but from a {@link SecureRandom} so that IDs can't be predicted
+ * from earlier ones. Each thread fetches random bytes in batches from its own SecureRandom, which spreads the cost of
+ * reseeding and of the generator's lock over many IDs.
+ */
+public class PrefetchingRandomIdGenerator implements IdGenerationStrategy {
+
+    private final int batchSize;
+
+    private final ThreadLocal<Batch> batches = new ThreadLocal<Batch>() {
+        @Override
+        protected Batch initialValue() {
+            return new Batch(batchSize);
+        }
+    };
+
+    /**
+     * @param batchSize number of IDs worth of random bytes fetched at a time
+     */
+    public PrefetchingRandomIdGenerator(int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1, was " + batchSize);
+        }
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public String generate() {
+        return RandomIdGenerator.format(batches.get().next() >>> 1);
+    }
+
+    private static class Batch {
+
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] bytes;
+        private int next;
+
+        Batch(int batchSize) {
+            bytes = new byte[batchSize * 8];
+            next = bytes.length;
+        }
+
+        long next() {
+            if (next == bytes.length) {
+                random.nextBytes(bytes);
+                next = 0;
+            }
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (bytes[next++] & 0xff);
+            }
+            return value;
+        }
+
+    }
+
+}
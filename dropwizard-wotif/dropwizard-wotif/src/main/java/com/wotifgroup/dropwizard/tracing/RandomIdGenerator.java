@@ -0,0 +1,48 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Generates random IDs of up to 13 base 36 digits. This is the default strategy.
+ */
+public class RandomIdGenerator implements IdGenerationStrategy {
+
+    private static final ThreadLocal<char[]> BUFFERS = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[Base36.MAX_LENGTH];
+        }
+    };
+
+    @Override
+    public String generate() {
+        // the shift drops the sign bit, as IDs must not be negative
+        return format(ThreadLocalRandom.current().nextLong() >>> 1);
+    }
+
+    static String format(long value) {
+        final char[] buf = BUFFERS.get();
+        final int start = Base36.encode(value, buf, buf.length);
+        return new String(buf, start, buf.length - start);
+    }
+
+}
@@ -0,0 +1,204 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.google.common.base.Objects;
+import com.google.common.util.concurrent.FutureCallback;
+import org.slf4j.MDC;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The tracing state of the request being handled by the current thread. {@link RequestTracingFilter} attaches a context
+ * for the length of each request and detaches it afterwards, so the request ID doesn't leak into whatever the thread
+ * handles next.
+ *
+ * <p>Work handed to another thread loses the context unless it is wrapped, either with {@link #wrap(Runnable)} and
+ * friends or by submitting it to a {@link RequestContextExecutorService}. Capturing is a thread local read and
+ * attaching is a thread local write plus an MDC put, so wrapping is cheap enough to do for every task.</p>
+ *
+ * <p>A context may also carry the {@link SpanBuffer} that the request and its outbound calls are timed into.</p>
+ *
+ * <p>The request ID is also kept in the SLF4J MDC under {@link #REQUEST_ID} while the context is attached, for log
+ * patterns and for code that only knows about the MDC.</p>
+ */
+public final class RequestContext {
+
+    /**
+     * MDC key, and request attribute name, of the request ID.
+     */
+    public static final String REQUEST_ID = "requestId";
+
+    private static final ThreadLocal<RequestContext> CURRENT = new ThreadLocal<>();
+
+    private final String requestId;
+    private final SpanBuffer spans;
+
+    public RequestContext(final String requestId) {
+        this(requestId, null);
+    }
+
+    /**
+     * @param spans buffer to record spans into, or null to not record them
+     */
+    public RequestContext(final String requestId, final SpanBuffer spans) {
+        this.requestId = requestId;
+        this.spans = spans;
+    }
+
+    public String getRequestId() {
+        return requestId;
+    }
+
+    public boolean isRecordingSpans() {
+        return spans != null;
+    }
+
+    /**
+     * Records a span of this request, if span recording is enabled.
+     *
+     * @see Span#Span(String, Span.Kind, String, long, long, int)
+     */
+    public void recordSpan(final Span.Kind kind, final String name, final long startTime, final long durationNanos,
+                           final int status) {
+        if (spans != null) {
+            spans.record(new Span(requestId, kind, name, startTime, durationNanos, status));
+        }
+    }
+
+    /**
+     * @return the context attached to the current thread, or null when the thread isn't handling a request
+     */
+    public static RequestContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the request ID of the current context, or null when the thread isn't handling a request
+     */
+    public static String currentRequestId() {
+        final RequestContext context = CURRENT.get();
+        return context == null ? null : context.requestId;
+    }
+
+    /**
+     * Makes this the current context until the returned scope is closed, which puts back whatever was current before.
+     */
+    public Scope attach() {
+        return attach(this);
+    }
+
+    /**
+     * Wraps a task so that it runs with the context current at the time of wrapping, or with no context if there was
+     * none.
+     */
+    public static Runnable wrap(final Runnable task) {
+        final RequestContext context = CURRENT.get();
+        return new Runnable() {
+            @Override
+            public void run() {
+                try (Scope ignored = attach(context)) {
+                    task.run();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a task so that it runs with the context current at the time of wrapping, or with no context if there was
+     * none.
+     */
+    public static <T> Callable<T> wrap(final Callable<T> task) {
+        final RequestContext context = CURRENT.get();
+        return new Callable<T>() {
+            @Override
+            public T call() throws Exception {
+                try (Scope ignored = attach(context)) {
+                    return task.call();
+                }
+            }
+        };
+    }
+
+    /**
+     * Wraps a future callback so that it runs with the context current at the time of wrapping, whichever thread
+     * completes the future.
+     */
+    public static <V> FutureCallback<V> wrap(final FutureCallback<V> callback) {
+        final RequestContext context = CURRENT.get();
+        return new FutureCallback<V>() {
+            @Override
+            public void onSuccess(final V result) {
+                try (Scope ignored = attach(context)) {
+                    callback.onSuccess(result);
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable t) {
+                try (Scope ignored = attach(context)) {
+                    callback.onFailure(t);
+                }
+            }
+        };
+    }
+
+    private static Scope attach(final RequestContext context) {
+        final RequestContext previous = CURRENT.get();
+        install(context);
+        return new Scope(previous);
+    }
+
+    private static void install(final RequestContext context) {
+        if (context == null) {
+            CURRENT.remove();
+            MDC.remove(REQUEST_ID);
+        } else {
+            CURRENT.set(context);
+            MDC.put(REQUEST_ID, context.requestId);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("requestId", requestId)
+                .add("recordingSpans", spans != null)
+                .toString();
+    }
+
+    /**
+     * An attached context. Closing it restores the context, and the MDC request ID, that the thread had before.
+     */
+    public static final class Scope implements AutoCloseable {
+
+        private final RequestContext previous;
+
+        private Scope(final RequestContext previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void close() {
+            install(previous);
+        }
+    }
+
+}
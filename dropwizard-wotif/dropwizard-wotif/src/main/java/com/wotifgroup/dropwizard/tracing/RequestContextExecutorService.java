@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.google.common.util.concurrent.ForwardingExecutorService;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Executor service that runs each task with the {@link RequestContext} of the thread that submitted it, so downstream
+ * calls made from a pool still carry the request ID.
+ */
+public class RequestContextExecutorService extends ForwardingExecutorService {
+
+    private final ExecutorService delegate;
+
+    public RequestContextExecutorService(final ExecutorService delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Decorates an executor so that it propagates the {@link RequestContext} and returns
+     * {@link com.google.common.util.concurrent.ListenableFuture}s. Callbacks added to those futures should be wrapped
+     * with {@link RequestContext#wrap(com.google.common.util.concurrent.FutureCallback)}.
+     */
+    public static ListeningExecutorService listeningDecorator(final ExecutorService delegate) {
+        return MoreExecutors.listeningDecorator(new RequestContextExecutorService(delegate));
+    }
+
+    @Override
+    protected ExecutorService delegate() {
+        return delegate;
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        delegate.execute(RequestContext.wrap(command));
+    }
+
+    @Override
+    public <T> Future<T> submit(final Callable<T> task) {
+        return delegate.submit(RequestContext.wrap(task));
+    }
+
+    @Override
+    public Future<?> submit(final Runnable task) {
+        return delegate.submit(RequestContext.wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(final Runnable task, final T result) {
+        return delegate.submit(RequestContext.wrap(task), result);
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return delegate.invokeAll(wrap(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(final Collection<? extends Callable<T>> tasks, final long timeout,
+                                         final TimeUnit unit) throws InterruptedException {
+        return delegate.invokeAll(wrap(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks)
+            throws InterruptedException, ExecutionException {
+        return delegate.invokeAny(wrap(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(final Collection<? extends Callable<T>> tasks, final long timeout, final TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return delegate.invokeAny(wrap(tasks), timeout, unit);
+    }
+
+    private static <T> List<Callable<T>> wrap(final Collection<? extends Callable<T>> tasks) {
+        final List<Callable<T>> wrapped = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            wrapped.add(RequestContext.wrap(task));
+        }
+        return wrapped;
+    }
+
+}
@@ -0,0 +1,136 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link RequestTracingFilter}.
+ */
+public class RequestTracingConfiguration {
+
+    public enum IdStrategy {
+        /**
+         * See {@link RandomIdGenerator} (the default).
+         */
+        RANDOM,
+        /**
+         * See {@link TimeOrderedIdGenerator}.
+         */
+        TIME_ORDERED,
+        /**
+         * See {@link PrefetchingRandomIdGenerator}.
+         */
+        PREFETCHING_RANDOM
+    }
+
+    @NotNull
+    @JsonProperty
+    private IdStrategy idStrategy = IdStrategy.RANDOM;
+
+    @Min(0)
+    @Max(TimeOrderedIdGenerator.MAX_NODE)
+    @JsonProperty
+    private Integer node = null;
+
+    @Min(1)
+    @Max(4096)
+    @JsonProperty
+    private int prefetchSize = 64;
+
+    @Min(0)
+    @Max(1048576)
+    @JsonProperty
+    private int spanBufferSize = 0;
+
+    public IdStrategy getIdStrategy() {
+        return idStrategy;
+    }
+
+    public void setIdStrategy(IdStrategy idStrategy) {
+        this.idStrategy = idStrategy;
+    }
+
+    /**
+     * Number identifying this process in time ordered IDs. Defaults to one derived from the process ID and host name.
+     */
+    public Optional<Integer> getNode() {
+        return Optional.fromNullable(node);
+    }
+
+    public void setNode(Integer node) {
+        this.node = node;
+    }
+
+    /**
+     * Number of IDs worth of random bytes fetched at a time by the prefetching random strategy.
+     */
+    public int getPrefetchSize() {
+        return prefetchSize;
+    }
+
+    public void setPrefetchSize(int prefetchSize) {
+        this.prefetchSize = prefetchSize;
+    }
+
+    /**
+     * Number of recent spans kept in memory and served from the admin /tracing/spans servlet. Zero, the default,
+     * disables span recording.
+     */
+    public int getSpanBufferSize() {
+        return spanBufferSize;
+    }
+
+    public void setSpanBufferSize(int spanBufferSize) {
+        this.spanBufferSize = spanBufferSize;
+    }
+
+    public Optional<SpanBuffer> buildSpanBuffer() {
+        return spanBufferSize > 0 ? Optional.of(new SpanBuffer(spanBufferSize)) : Optional.<SpanBuffer>absent();
+    }
+
+    public IdGenerationStrategy buildIdGenerator() {
+        switch (idStrategy) {
+            case TIME_ORDERED:
+                return node != null ? new TimeOrderedIdGenerator(node) : new TimeOrderedIdGenerator();
+            case PREFETCHING_RANDOM:
+                return new PrefetchingRandomIdGenerator(prefetchSize);
+            default:
+                return new RandomIdGenerator();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("idStrategy", idStrategy)
+                .add("node", node)
+                .add("prefetchSize", prefetchSize)
+                .add("spanBufferSize", spanBufferSize)
+                .toString();
+    }
+
+}
@@ -20,9 +20,6 @@
 package com.wotifgroup.dropwizard.tracing;
 
 import com.google.common.annotations.VisibleForTesting;
-import com.google.common.collect.Iterators;
-import com.google.common.net.InetAddresses;
-import org.slf4j.MDC;
 
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
@@ -33,26 +30,50 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.net.InetAddress;
-import java.util.Iterator;
 import java.util.regex.Pattern;
 
 /**
- * Filter that looks for an incoming request ID and if none is found, adds its own.
+ * Filter that looks for an incoming request ID and if none is found, adds its own. Incoming IDs are only accepted, and
+ * only echoed back, for requests from {@link TrustedNetworks}.
+ *
+ * <p>The ID is attached to the thread as a {@link RequestContext} while the rest of the chain runs, and detached
+ * again, clearing it from the MDC, once the chain returns. Given a {@link SpanBuffer}, the filter also records how long
+ * the chain took as a server {@link Span}; asynchronous requests are timed until the chain returns, not until they
+ * complete.</p>
  */
 public class RequestTracingFilter implements Filter {
 
     @VisibleForTesting
     static final String X_OPAQUE_ID = "X-Opaque-ID";
     @VisibleForTesting
-    static final String REQUEST_ID = "requestId";
+    static final String REQUEST_ID = RequestContext.REQUEST_ID;
 
     private static final Pattern NEW_LINES = Pattern.compile("[\r\n]");
 
-    private final IdGenerator idGenerator;
+    private final IdGenerationStrategy idGenerator;
+    private final TrustedNetworks trustedNetworks;
+    private final SpanBuffer spans;
 
     public RequestTracingFilter() {
-        this.idGenerator = new IdGenerator();
+        this(new RandomIdGenerator());
+    }
+
+    public RequestTracingFilter(final IdGenerationStrategy idGenerator) {
+        this(idGenerator, TrustedNetworks.siteLocal());
+    }
+
+    public RequestTracingFilter(final IdGenerationStrategy idGenerator, final TrustedNetworks trustedNetworks) {
+        this(idGenerator, trustedNetworks, null);
+    }
+
+    /**
+     * @param spans buffer to record server and client spans into, or null to not record them
+     */
+    public RequestTracingFilter(final IdGenerationStrategy idGenerator, final TrustedNetworks trustedNetworks,
+                                final SpanBuffer spans) {
+        this.idGenerator = idGenerator;
+        this.trustedNetworks = trustedNetworks;
+        this.spans = spans;
     }
 
     @Override
@@ -64,43 +85,70 @@ public class RequestTracingFilter implements Filter {
     public void doFilter(final ServletRequest request, final ServletResponse response, final FilterChain chain)
             throws IOException, ServletException {
         if (request instanceof HttpServletRequest && response instanceof HttpServletResponse) {
-            final boolean siteLocal = isSiteLocalRequest(request);
+            final boolean trusted = isTrustedRequest(request);
 
-            final String requestId = buildRequestId(siteLocal, (HttpServletRequest) request);
+            final String requestId = buildRequestId(trusted, (HttpServletRequest) request);
 
-            MDC.put(REQUEST_ID, requestId);
             request.setAttribute(REQUEST_ID, requestId);
 
             // Response headers must be set prior to handling request as Transfer-Encoding is "chunked"
-            setResponseHeaders(siteLocal, (HttpServletResponse) response, requestId);
+            setResponseHeaders(trusted, (HttpServletResponse) response, requestId);
+
+            final RequestContext context = new RequestContext(requestId, spans);
+            try (RequestContext.Scope ignored = context.attach()) {
+                if (spans == null) {
+                    chain.doFilter(request, response);
+                } else {
+                    timeChain(context, (HttpServletRequest) request, (HttpServletResponse) response, chain);
+                }
+            }
+        } else {
+            chain.doFilter(request, response);
         }
-        chain.doFilter(request, response);
-
     }
 
-    private boolean isSiteLocalRequest(final ServletRequest request) {
-        // If the address is invalid it's probably from the Internet
+    private static void timeChain(final RequestContext context, final HttpServletRequest request,
+                                  final HttpServletResponse response, final FilterChain chain)
+            throws IOException, ServletException {
+        final long startTime = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
         try {
-            InetAddress inetAddress = InetAddresses.forString(request.getRemoteAddr());
-            return inetAddress.isLoopbackAddress() || inetAddress.isSiteLocalAddress();
-        } catch (IllegalArgumentException e) {
-            return false;
+            chain.doFilter(request, response);
+            status = response.getStatus();
+        } finally {
+            context.recordSpan(Span.Kind.SERVER, request.getMethod() + " " + request.getRequestURI(), startTime,
+                    System.nanoTime() - start, status);
         }
     }
 
+    private boolean isTrustedRequest(final ServletRequest request) {
+        // If the address is invalid it's probably from the Internet
+        return trustedNetworks.isTrusted(request.getRemoteAddr());
+    }
+
     // TODO: Move this to common request handler library
-    private String buildRequestId(final boolean siteLocal, final HttpServletRequest httpRequest) {
-        final Iterator<String> headers = Iterators.forEnumeration(httpRequest.getHeaderNames());
-        if (siteLocal && Iterators.contains(headers, X_OPAQUE_ID)) {
+    private String buildRequestId(final boolean trusted, final HttpServletRequest httpRequest) {
+        if (trusted) {
             final String requestId = httpRequest.getHeader(X_OPAQUE_ID);
-            return NEW_LINES.matcher(requestId).replaceAll("");
+            if (requestId != null) {
+                return stripNewLines(requestId);
+            }
         }
         return idGenerator.generate();
     }
 
+    private static String stripNewLines(final String value) {
+        // Nearly every value is clean, so only use the regex when there's something to strip
+        if (value.indexOf('\r') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return NEW_LINES.matcher(value).replaceAll("");
+    }
+
     // TODO: Move this to common request handler library
-    private void setResponseHeaders(final boolean siteLocal, final HttpServletResponse httpResponse, final String requestId) {
-        if (siteLocal) {
+    private void setResponseHeaders(final boolean trusted, final HttpServletResponse httpResponse, final String requestId) {
+        if (trusted) {
             httpResponse.setHeader(X_OPAQUE_ID, requestId);
         }
     }
@@ -0,0 +1,111 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+
+/**
+ * Timing of one step in handling a request: either the request itself, as seen by {@link RequestTracingFilter}, or a
+ * call it made to another service.
+ */
+public final class Span {
+
+    public enum Kind {
+        /**
+         * A request handled by this service.
+         */
+        SERVER,
+        /**
+         * A call made by this service to another one.
+         */
+        CLIENT
+    }
+
+    /**
+     * Status of a call that failed without a response.
+     */
+    public static final int NO_STATUS = -1;
+
+    private final String requestId;
+    private final Kind kind;
+    private final String name;
+    private final long startTime;
+    private final long durationNanos;
+    private final int status;
+
+    /**
+     * @param name          method and path of the request or call
+     * @param startTime     when it started, in milliseconds since the epoch
+     * @param durationNanos how long it took
+     * @param status        HTTP status, or {@link #NO_STATUS}
+     */
+    public Span(String requestId, Kind kind, String name, long startTime, long durationNanos, int status) {
+        this.requestId = requestId;
+        this.kind = kind;
+        this.name = name;
+        this.startTime = startTime;
+        this.durationNanos = durationNanos;
+        this.status = status;
+    }
+
+    @JsonProperty
+    public String getRequestId() {
+        return requestId;
+    }
+
+    @JsonProperty
+    public Kind getKind() {
+        return kind;
+    }
+
+    @JsonProperty
+    public String getName() {
+        return name;
+    }
+
+    @JsonProperty
+    public long getStartTime() {
+        return startTime;
+    }
+
+    @JsonProperty
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    @JsonProperty
+    public int getStatus() {
+        return status;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("requestId", requestId)
+                .add("kind", kind)
+                .add("name", name)
+                .add("startTime", startTime)
+                .add("durationNanos", durationNanos)
+                .add("status", status)
+                .toString();
+    }
+
+}
@@ -0,0 +1,92 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded in-memory buffer of the most recently recorded {@link Span}s, overwriting the oldest once full.
+ *
+ * <p>Recording is a counter increment and an array write, with no locking, so it's cheap enough to do for every request
+ * and every outbound call. The price is that a snapshot taken while spans are being recorded can miss a span that is
+ * overwritten as it is being read.</p>
+ */
+public class SpanBuffer {
+
+    private final AtomicReferenceArray<Span> spans;
+    private final int mask;
+    private final AtomicLong recorded = new AtomicLong();
+
+    /**
+     * @param capacity number of spans kept, rounded up to a power of two
+     */
+    public SpanBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.spans = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public void record(Span span) {
+        final long index = recorded.getAndIncrement();
+        spans.lazySet((int) (index & mask), span);
+    }
+
+    public int getCapacity() {
+        return spans.length();
+    }
+
+    /**
+     * @return the number of spans recorded since the buffer was created, including those since overwritten
+     */
+    public long getRecorded() {
+        return recorded.get();
+    }
+
+    /**
+     * @return the spans in the buffer, oldest first
+     */
+    public List<Span> snapshot() {
+        return snapshot(null);
+    }
+
+    /**
+     * @param requestId the request to return spans for, or null for all of them
+     * @return the spans in the buffer for the given request, oldest first
+     */
+    public List<Span> snapshot(String requestId) {
+        final long end = recorded.get();
+        final long start = Math.max(0, end - spans.length());
+        final List<Span> result = new ArrayList<>((int) (end - start));
+        for (long index = start; index < end; index++) {
+            final Span span = spans.get((int) (index & mask));
+            if (span != null && (requestId == null || requestId.equals(span.getRequestId()))) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Admin servlet that returns the contents of a {@link SpanBuffer} as a JSON array, oldest first. A requestId parameter
+ * limits the response to the spans of a single request.
+ */
+public class SpansServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -2947139468102851752L;
+
+    private final transient SpanBuffer spans;
+    private final transient ObjectMapper mapper;
+
+    public SpansServlet(final SpanBuffer spans, final ObjectMapper mapper) {
+        this.spans = spans;
+        this.mapper = mapper;
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        resp.setContentType("application/json");
+        resp.setHeader("Cache-Control", "must-revalidate,no-cache,no-store");
+        resp.setStatus(HttpServletResponse.SC_OK);
+        mapper.writeValue(resp.getOutputStream(), spans.snapshot(req.getParameter("requestId")));
+    }
+
+}
@@ -0,0 +1,133 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates fixed width, k-sortable IDs: IDs from the same clock sort in the order they were generated, to the
+ * millisecond. Each ID is 19 base 36 digits:
+ *
+ * <pre>
+ *   9 digits  milliseconds since the epoch
+ *   4 digits  node, identifying this process
+ *   3 digits  thread, assigned to each thread the first time it generates an ID
+ *   3 digits  counter, incremented for each ID generated by the thread
+ * </pre>
+ *
+ * <p>Each thread builds its IDs in its own buffer, only re-encoding the time when the millisecond changes, so the only
+ * allocation is the returned String. IDs are unique as long as no thread generates more than 46656 IDs in a
+ * millisecond and no two live threads on a node share a thread number. Thread numbers are handed out in turn and start
+ * again from 0 once 46656 threads have generated IDs, so a process that keeps creating new threads can give a new
+ * thread the same number as one that is still running, and the two can then generate the same ID within a
+ * millisecond. Generate IDs from pooled threads, or use {@link RandomIdGenerator}, where that matters.</p>
+ */
+public class TimeOrderedIdGenerator implements IdGenerationStrategy {
+
+    static final int LENGTH = 19;
+
+    private static final int TIME_WIDTH = 9;
+    private static final int NODE_WIDTH = 4;
+    private static final int THREAD_WIDTH = 3;
+    private static final int COUNTER_WIDTH = 3;
+
+    // 36 to the power of NODE_WIDTH, less one; a constant so that it can be used in validation annotations
+    static final int MAX_NODE = 36 * 36 * 36 * 36 - 1;
+    private static final int THREADS = (int) Base36.capacity(THREAD_WIDTH);
+    private static final int COUNTERS = (int) Base36.capacity(COUNTER_WIDTH);
+
+    private static final int NODE_OFFSET = TIME_WIDTH;
+    private static final int THREAD_OFFSET = NODE_OFFSET + NODE_WIDTH;
+    private static final int COUNTER_OFFSET = THREAD_OFFSET + THREAD_WIDTH;
+
+    private final int node;
+    private final AtomicLong nextThread = new AtomicLong();
+
+    private final ThreadLocal<State> states = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State(node, threadNumber(nextThread.getAndIncrement()));
+        }
+    };
+
+    /**
+     * Uses a node derived from the process ID and host name.
+     */
+    public TimeOrderedIdGenerator() {
+        this(defaultNode());
+    }
+
+    /**
+     * @param node number identifying this process among those generating IDs, from 0 to {@link #MAX_NODE}
+     */
+    public TimeOrderedIdGenerator(int node) {
+        if (node < 0 || node > MAX_NODE) {
+            throw new IllegalArgumentException("Node must be between 0 and " + MAX_NODE + ", was " + node);
+        }
+        this.node = node;
+    }
+
+    @Override
+    public String generate() {
+        return states.get().next(System.currentTimeMillis());
+    }
+
+    /**
+     * @return the node derived from the JVM's name, which is normally pid@hostname
+     */
+    static int defaultNode() {
+        final String name = ManagementFactory.getRuntimeMXBean().getName();
+        return (name.hashCode() & Integer.MAX_VALUE) % (MAX_NODE + 1);
+    }
+
+    /**
+     * @param created number of threads that generated IDs before this one, which as a long can't wrap around to
+     *                negative
+     * @return the thread number for the thread
+     */
+    static int threadNumber(long created) {
+        return (int) (created % THREADS);
+    }
+
+    private static class State {
+
+        private final char[] buf = new char[LENGTH];
+        private long lastMillis = -1;
+        private int counter;
+
+        State(int node, int thread) {
+            Base36.encodeFixed(node, buf, NODE_OFFSET, NODE_WIDTH);
+            Base36.encodeFixed(thread, buf, THREAD_OFFSET, THREAD_WIDTH);
+        }
+
+        String next(long millis) {
+            if (millis != lastMillis) {
+                Base36.encodeFixed(millis, buf, 0, TIME_WIDTH);
+                lastMillis = millis;
+            }
+            Base36.encodeFixed(counter, buf, COUNTER_OFFSET, COUNTER_WIDTH);
+            counter = (counter + 1) % COUNTERS;
+            return new String(buf);
+        }
+
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.net.InetAddresses;
+
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Table of networks, given as CIDR blocks such as 10.0.0.0/8, whose requests are trusted to carry our own headers:
+ * X-Opaque-ID for tracing and X-Forwarded-For for logging.
+ *
+ * <p>IPv4 blocks are merged into a sorted array of address ranges, so a lookup is a dotted-quad parse and a binary
+ * search with no allocation. IPv6 addresses are rarely seen here, so are checked against each IPv6 block in turn.</p>
+ */
+public final class TrustedNetworks {
+
+    /**
+     * Loopback and site-local networks, which were the only trusted networks before the table was configurable.
+     */
+    public static final List<String> SITE_LOCAL = ImmutableList.of("127.0.0.0/8", "10.0.0.0/8", "172.16.0.0/12",
+            "192.168.0.0/16", "::1/128", "fec0::/10");
+
+    /**
+     * Every address, which is how X-Forwarded-For was treated before the table was configurable.
+     */
+    public static final List<String> ANY = ImmutableList.of("0.0.0.0/0", "::/0");
+
+    private final List<String> networks;
+
+    // inclusive bounds of non-overlapping IPv4 ranges, sorted by start
+    private final long[] starts;
+    private final long[] ends;
+
+    private final List<Ipv6Network> ipv6Networks;
+
+    private TrustedNetworks(List<String> networks, long[] starts, long[] ends, List<Ipv6Network> ipv6Networks) {
+        this.networks = networks;
+        this.starts = starts;
+        this.ends = ends;
+        this.ipv6Networks = ipv6Networks;
+    }
+
+    public static TrustedNetworks siteLocal() {
+        return parse(SITE_LOCAL);
+    }
+
+    public static TrustedNetworks any() {
+        return parse(ANY);
+    }
+
+    /**
+     * @throws IllegalArgumentException if any network isn't a valid CIDR block
+     */
+    public static TrustedNetworks parse(List<String> networks) {
+        final List<long[]> ranges = new ArrayList<>();
+        final List<Ipv6Network> ipv6Networks = new ArrayList<>();
+        for (String network : networks) {
+            final int slash = network.indexOf('/');
+            if (slash < 0) {
+                throw new IllegalArgumentException("Expected a CIDR block such as 10.0.0.0/8, got " + network);
+            }
+            final InetAddress address = InetAddresses.forString(network.substring(0, slash).trim());
+            final int prefixLength = parsePrefixLength(network, slash, address.getAddress().length * 8);
+            if (address instanceof Inet4Address) {
+                final long start = IpAddresses.parseIpv4(address.getHostAddress()) & mask(prefixLength);
+                ranges.add(new long[] {start, start | (~mask(prefixLength) & 0xffffffffL)});
+            } else {
+                ipv6Networks.add(new Ipv6Network(address.getAddress(), prefixLength));
+            }
+        }
+
+        Collections.sort(ranges, new Comparator<long[]>() {
+            @Override
+            public int compare(long[] a, long[] b) {
+                return Long.compare(a[0], b[0]);
+            }
+        });
+        final List<long[]> merged = new ArrayList<>();
+        for (long[] range : ranges) {
+            final long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1) {
+                last[1] = Math.max(last[1], range[1]);
+            } else {
+                merged.add(range.clone());
+            }
+        }
+        final long[] starts = new long[merged.size()];
+        final long[] ends = new long[merged.size()];
+        for (int i = 0; i < merged.size(); i++) {
+            starts[i] = merged.get(i)[0];
+            ends[i] = merged.get(i)[1];
+        }
+
+        return new TrustedNetworks(ImmutableList.copyOf(networks), starts, ends, ImmutableList.copyOf(ipv6Networks));
+    }
+
+    private static int parsePrefixLength(String network, int slash, int maxLength) {
+        final int prefixLength;
+        try {
+            prefixLength = Integer.parseInt(network.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid prefix length in " + network, e);
+        }
+        if (prefixLength < 0 || prefixLength > maxLength) {
+            throw new IllegalArgumentException("Invalid prefix length in " + network);
+        }
+        return prefixLength;
+    }
+
+    private static long mask(int prefixLength) {
+        return prefixLength == 0 ? 0 : (0xffffffffL << (32 - prefixLength)) & 0xffffffffL;
+    }
+
+    /**
+     * @return whether the textual address is in one of the networks; anything that isn't a valid address is not
+     */
+    public boolean isTrusted(String address) {
+        final long ipv4 = IpAddresses.parseIpv4(address);
+        if (ipv4 != IpAddresses.NOT_IPV4) {
+            return isTrustedIpv4(ipv4);
+        }
+        if (address == null || address.indexOf(':') < 0) {
+            return false;
+        }
+        try {
+            final InetAddress inetAddress = InetAddresses.forString(address);
+            if (inetAddress instanceof Inet4Address) {
+                // IPv4-mapped IPv6 address
+                return isTrustedIpv4(IpAddresses.parseIpv4(inetAddress.getHostAddress()));
+            }
+            final byte[] bytes = inetAddress.getAddress();
+            for (Ipv6Network network : ipv6Networks) {
+                if (network.contains(bytes)) {
+                    return true;
+                }
+            }
+            return false;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private boolean isTrustedIpv4(long address) {
+        int i = Arrays.binarySearch(starts, address);
+        if (i < 0) {
+            // the range starting before the address, if any
+            i = -i - 2;
+        }
+        return i >= 0 && address <= ends[i];
+    }
+
+    public List<String> getNetworks() {
+        return networks;
+    }
+
+    @Override
+    public String toString() {
+        return networks.toString();
+    }
+
+    private static class Ipv6Network {
+
+        private final byte[] network;
+        private final int prefixLength;
+
+        Ipv6Network(byte[] network, int prefixLength) {
+            this.network = network;
+            this.prefixLength = prefixLength;
+        }
+
+        boolean contains(byte[] address) {
+            if (address.length != network.length) {
+                return false;
+            }
+            int bits = prefixLength;
+            for (int i = 0; bits > 0; i++, bits -= 8) {
+                final int mask = bits >= 8 ? 0xff : (0xff << (8 - bits)) & 0xff;
+                if ((address[i] & mask) != (network[i] & mask)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+    }
+
+}
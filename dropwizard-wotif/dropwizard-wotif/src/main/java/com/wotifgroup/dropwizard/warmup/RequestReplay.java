@@ -0,0 +1,158 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.warmup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Replays a sample of requests against the application, round after round, until they're as quick as they should be:
+ * enough for the JIT to compile the paths they take, and for whatever they load lazily to be loaded.
+ *
+ * <p>Metrics are named {@code com.wotifgroup.dropwizard.warmup.RequestReplay.<metric>}: rounds, and latency at the
+ * target percentile in the last round in milliseconds.</p>
+ */
+class RequestReplay implements WarmUp {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestReplay.class);
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private final String baseUri;
+    private final List<String> paths;
+    private final WarmUpConfiguration configuration;
+    private volatile int rounds;
+    private volatile long latencyNanos = -1;
+
+    /**
+     * @param baseUri the application's scheme, host, port and any context path, without a trailing slash
+     */
+    RequestReplay(String baseUri, List<String> paths, WarmUpConfiguration configuration, MetricRegistry metrics) {
+        this.baseUri = baseUri;
+        this.paths = paths;
+        this.configuration = configuration;
+        metrics.register(name(RequestReplay.class, "rounds"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return rounds;
+            }
+        });
+        metrics.register(name(RequestReplay.class, "latency"), new Gauge<Long>() {
+            @Override
+            public Long getValue() {
+                return latencyNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+            }
+        });
+    }
+
+    /**
+     * @return the paths in a sample file's lines, which may start with GET or HEAD, skipping blanks and comments
+     */
+    static List<String> parse(List<String> lines) {
+        final ImmutableList.Builder<String> paths = ImmutableList.builder();
+        for (String line : lines) {
+            String path = line.trim();
+            if (path.isEmpty() || path.startsWith("#")) {
+                continue;
+            }
+            if (path.startsWith("GET ") || path.startsWith("HEAD ")) {
+                path = path.substring(path.indexOf(' ') + 1).trim();
+            }
+            if (!path.startsWith("/")) {
+                throw new IllegalArgumentException("Not a GET or HEAD of a path: " + line);
+            }
+            paths.add(path);
+        }
+        return paths.build();
+    }
+
+    @Override
+    public void warmUp() throws Exception {
+        if (paths.isEmpty()) {
+            return;
+        }
+        final long target = TimeUnit.MILLISECONDS.toNanos(configuration.getTargetLatency().toMilliseconds());
+        final long[] latencies = new long[paths.size()];
+        for (int round = 1; round <= configuration.getMaxRounds(); round++) {
+            int errors = 0;
+            for (int i = 0; i < latencies.length; i++) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                final long start = System.nanoTime();
+                if (!get(paths.get(i))) {
+                    errors++;
+                }
+                latencies[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(latencies);
+            final int index = (int) Math.ceil(latencies.length * configuration.getTargetPercentile() / 100.0) - 1;
+            latencyNanos = latencies[Math.max(0, index)];
+            rounds = round;
+            if (errors > 0) {
+                LOGGER.warn("{} of {} replayed requests failed in round {}", errors, latencies.length, round);
+            }
+            if (latencyNanos <= target) {
+                LOGGER.info("Replayed requests took {}ms at the {}th percentile after {} rounds",
+                        TimeUnit.NANOSECONDS.toMillis(latencyNanos), configuration.getTargetPercentile(), round);
+                return;
+            }
+        }
+        LOGGER.warn("Replayed requests still took {}ms at the {}th percentile after {} rounds",
+                TimeUnit.NANOSECONDS.toMillis(latencyNanos), configuration.getTargetPercentile(), rounds);
+    }
+
+    /**
+     * @return whether the request succeeded
+     */
+    private boolean get(String path) {
+        try {
+            final HttpURLConnection connection = (HttpURLConnection) new URL(baseUri + path).openConnection();
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+            final int status = connection.getResponseCode();
+            // Read to the end, so the connection's kept alive for the next request
+            final InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            if (body != null) {
+                try (InputStream in = body) {
+                    ByteStreams.copy(in, ByteStreams.nullOutputStream());
+                }
+            }
+            return status < 500;
+        } catch (IOException e) {
+            LOGGER.debug("Replaying {} failed", path, e);
+            return false;
+        }
+    }
+
+}
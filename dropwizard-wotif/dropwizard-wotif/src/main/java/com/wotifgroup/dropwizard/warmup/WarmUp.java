@@ -0,0 +1,34 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.warmup;
+
+/**
+ * Something to do before this node enters the load balancer pool, such as opening a connection pool's connections or
+ * loading a cache, registered with {@link com.wotifgroup.dropwizard.WotifBundle#addWarmUp(String, WarmUp)}.
+ */
+public interface WarmUp {
+
+    /**
+     * Runs once the server has started, so local resources can be called. Should give up if interrupted, which it is
+     * when warming up has taken too long.
+     */
+    void warmUp() throws Exception;
+
+}
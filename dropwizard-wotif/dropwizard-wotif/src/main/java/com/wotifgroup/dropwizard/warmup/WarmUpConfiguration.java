@@ -0,0 +1,147 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.warmup;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.base.Objects;
+import com.google.common.base.Optional;
+import io.dropwizard.util.Duration;
+
+import javax.validation.constraints.Max;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+
+/**
+ * Configuration for {@link WarmUpRunner}, which is off by default. When it's on, the node enters the load balancer pool
+ * by itself once warmed up.
+ */
+public class WarmUpConfiguration {
+
+    @JsonProperty
+    private boolean enabled = false;
+
+    @NotNull
+    @JsonProperty
+    private Duration timeout = Duration.minutes(5);
+
+    @JsonProperty
+    private boolean enterPoolOnFailure = true;
+
+    @JsonProperty
+    private String requestSample = null;
+
+    @NotNull
+    @JsonProperty
+    private Duration targetLatency = Duration.milliseconds(100);
+
+    @Min(1)
+    @Max(100)
+    @JsonProperty
+    private int targetPercentile = 99;
+
+    @Min(1)
+    @JsonProperty
+    private int maxRounds = 20;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * How long warming up may take altogether. Whatever's still running then is interrupted, and the rest skipped.
+     */
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    public void setTimeout(Duration timeout) {
+        this.timeout = timeout;
+    }
+
+    /**
+     * Whether to enter the pool even though a warm up failed or warming up timed out, rather than waiting to be entered
+     * by hand.
+     */
+    public boolean isEnterPoolOnFailure() {
+        return enterPoolOnFailure;
+    }
+
+    public void setEnterPoolOnFailure(boolean enterPoolOnFailure) {
+        this.enterPoolOnFailure = enterPoolOnFailure;
+    }
+
+    /**
+     * A file of requests to replay against the application once the other warm ups are done, one path and query per
+     * line, optionally after GET or HEAD, all replayed as GETs. Blank lines and those starting with # are ignored.
+     */
+    public Optional<String> getRequestSample() {
+        return Optional.fromNullable(requestSample);
+    }
+
+    public void setRequestSample(String requestSample) {
+        this.requestSample = requestSample;
+    }
+
+    /**
+     * The sample is replayed until this percentile of a round's requests take no longer than the target latency, or
+     * it's been replayed the most rounds.
+     */
+    public Duration getTargetLatency() {
+        return targetLatency;
+    }
+
+    public void setTargetLatency(Duration targetLatency) {
+        this.targetLatency = targetLatency;
+    }
+
+    public int getTargetPercentile() {
+        return targetPercentile;
+    }
+
+    public void setTargetPercentile(int targetPercentile) {
+        this.targetPercentile = targetPercentile;
+    }
+
+    public int getMaxRounds() {
+        return maxRounds;
+    }
+
+    public void setMaxRounds(int maxRounds) {
+        this.maxRounds = maxRounds;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this)
+                .add("enabled", enabled)
+                .add("timeout", timeout)
+                .add("enterPoolOnFailure", enterPoolOnFailure)
+                .add("requestSample", requestSample)
+                .add("targetLatency", targetLatency)
+                .add("targetPercentile", targetPercentile)
+                .add("maxRounds", maxRounds)
+                .toString();
+    }
+
+}
@@ -0,0 +1,243 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.warmup;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import io.dropwizard.jetty.ConnectorFactory;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.jetty.HttpsConnectorFactory;
+import io.dropwizard.lifecycle.ServerLifecycleListener;
+import io.dropwizard.server.DefaultServerFactory;
+import io.dropwizard.server.ServerFactory;
+import io.dropwizard.server.SimpleServerFactory;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.SslConnectionFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * Runs the registered warm ups in turn once the server has started, then replays the request sample if there is one,
+ * and enters the load balancer pool when they're done. Until then, the pool status says how far it's got.
+ *
+ * <p>Warm ups run on a thread of their own, so they don't hold up startup. One that fails is logged and the rest still
+ * run; once the timeout passes, the one running is interrupted and the rest are skipped. Either way the pool is only
+ * entered if configured to enter on failure. Nor is it entered if someone has entered or exited it by hand while
+ * warming up, as with the pool status tasks.</p>
+ *
+ * <p>Metrics are named {@code com.wotifgroup.dropwizard.warmup.WarmUpRunner.<metric>}: progress (the fraction of warm
+ * ups done), finished, and the time each warm up took, by name.</p>
+ */
+public class WarmUpRunner implements ServerLifecycleListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(WarmUpRunner.class);
+    static final String REPLAY = "request replay";
+
+    private final WarmUpConfiguration configuration;
+    private final PoolStatus pool;
+    private final MetricRegistry metrics;
+    private final ServerFactory serverFactory;
+    private final List<String> sample;
+    private final Map<String, WarmUp> warmUps = new LinkedHashMap<>();
+    private final int poolChangeCount;
+
+    private volatile boolean started;
+    private final AtomicInteger completed = new AtomicInteger();
+    private volatile boolean finished;
+
+    public WarmUpRunner(WarmUpConfiguration configuration, PoolStatus pool, MetricRegistry metrics,
+                        ServerFactory serverFactory) throws IOException {
+        this.configuration = configuration;
+        this.pool = pool;
+        this.metrics = metrics;
+        this.serverFactory = serverFactory;
+        this.poolChangeCount = pool.changeCount();
+        // Read now, so a missing sample stops startup rather than going unnoticed
+        this.sample = configuration.getRequestSample().isPresent()
+                ? RequestReplay.parse(Files.readLines(new File(configuration.getRequestSample().get()),
+                        StandardCharsets.UTF_8))
+                : null;
+        metrics.register(name(WarmUpRunner.class, "progress"), new Gauge<Double>() {
+            @Override
+            public Double getValue() {
+                return warmUps.isEmpty() ? (finished ? 1.0 : 0.0) : (double) completed.get() / warmUps.size();
+            }
+        });
+        metrics.register(name(WarmUpRunner.class, "finished"), new Gauge<Boolean>() {
+            @Override
+            public Boolean getValue() {
+                return finished;
+            }
+        });
+    }
+
+    /**
+     * Adds a warm up, to run after those already added.
+     *
+     * @throws IllegalStateException if warming up has started
+     */
+    public synchronized void add(String name, WarmUp warmUp) {
+        if (started) {
+            throw new IllegalStateException("Warm ups have already started");
+        }
+        if (warmUps.containsKey(name)) {
+            throw new IllegalArgumentException("There's already a warm up called " + name);
+        }
+        warmUps.put(name, warmUp);
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public synchronized void serverStarted(Server server) {
+        started = true;
+        if (sample != null) {
+            warmUps.put(REPLAY, new RequestReplay(applicationUri(server), sample, configuration, metrics));
+        }
+        final Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                warmUp();
+            }
+        }, "warm-up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void warmUp() {
+        final long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(configuration.getTimeout().toMilliseconds());
+        final ExecutorService executor = Executors.newSingleThreadExecutor(
+                new ThreadFactoryBuilder().setNameFormat("warm-up-%d").setDaemon(true).build());
+        boolean failed = false;
+        try {
+            for (Map.Entry<String, WarmUp> entry : warmUps.entrySet()) {
+                final String name = entry.getKey();
+                pool.setDetail(String.format("warming up: %s, %d of %d done", name, completed.get(), warmUps.size()));
+                final WarmUp warmUp = entry.getValue();
+                final Timer.Context timer = metrics.timer(name(WarmUpRunner.class, name)).time();
+                final Future<?> future = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        warmUp.warmUp();
+                        return null;
+                    }
+                });
+                boolean warmedUp = false;
+                try {
+                    future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    warmedUp = true;
+                } catch (ExecutionException e) {
+                    LOGGER.warn("Warming up {} failed", name, e.getCause());
+                    failed = true;
+                } catch (TimeoutException e) {
+                    future.cancel(true);
+                    LOGGER.warn("Warming up timed out after {} during {}", configuration.getTimeout(), name);
+                    failed = true;
+                    break;
+                } finally {
+                    // Timed whether or not it worked, so the slow and the broken show up too
+                    final long elapsed = timer.stop();
+                    if (warmedUp) {
+                        LOGGER.info("Warmed up {} in {}ms", name, TimeUnit.NANOSECONDS.toMillis(elapsed));
+                    }
+                }
+                completed.incrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        } finally {
+            executor.shutdownNow();
+            finished = true;
+            pool.setDetail(null);
+        }
+        if (failed && !configuration.isEnterPoolOnFailure()) {
+            LOGGER.error("Warming up failed, so not entering the pool until told to");
+            return;
+        }
+        if (pool.enterUnlessChangedSince(poolChangeCount)) {
+            LOGGER.info("Warmed up, entered the pool");
+        } else {
+            LOGGER.warn("Warmed up, but the pool status was changed meanwhile, so leaving it {}", pool.state());
+        }
+    }
+
+    /**
+     * @return the URI of the first plain HTTP application connector, less the trailing slash
+     */
+    private String applicationUri(Server server) {
+        final List<ConnectorFactory> factories;
+        String contextPath = "";
+        if (serverFactory instanceof SimpleServerFactory) {
+            final SimpleServerFactory simple = (SimpleServerFactory) serverFactory;
+            factories = Collections.singletonList(simple.getConnector());
+            contextPath = simple.getApplicationContextPath();
+        } else if (serverFactory instanceof DefaultServerFactory) {
+            factories = ((DefaultServerFactory) serverFactory).getApplicationConnectors();
+        } else {
+            throw new IllegalStateException("Can't find the application connector of " + serverFactory);
+        }
+        for (ConnectorFactory factory : factories) {
+            if (!(factory instanceof HttpConnectorFactory) || factory instanceof HttpsConnectorFactory) {
+                continue;
+            }
+            final int port = ((HttpConnectorFactory) factory).getPort();
+            for (Connector connector : server.getConnectors()) {
+                if (connector instanceof ServerConnector
+                        && ((ServerConnector) connector).getPort() == port
+                        && connector.getConnectionFactory(SslConnectionFactory.class) == null) {
+                    final String host = ((ServerConnector) connector).getHost();
+                    return "http://" + (host == null ? "localhost" : host) + ":"
+                            + ((ServerConnector) connector).getLocalPort()
+                            + ("/".equals(contextPath) ? "" : contextPath);
+                }
+            }
+        }
+        throw new IllegalStateException("No plain HTTP application connector to replay requests against");
+    }
+
+}
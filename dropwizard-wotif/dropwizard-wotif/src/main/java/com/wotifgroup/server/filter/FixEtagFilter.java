@@ -39,7 +39,11 @@ import javax.ws.rs.core.HttpHeaders;
  *
  * Also, jetty may not append the "-gzip" suffix to ETags generated for a 304 Not Modified response due to the empty response
  * body, which means the response ETag in a 304 response may not actually match the requested If-None-Match header...
+ *
+ * @deprecated enable compression in {@link com.wotifgroup.dropwizard.WotifConfiguration} instead, which handles ETags,
+ * Vary and 304 responses correctly; see {@link com.wotifgroup.dropwizard.compression.CompressionFilter}
  */
+@Deprecated
 public class FixEtagFilter implements ContainerRequestFilter {
 
     @Override
@@ -0,0 +1,287 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import com.google.common.io.ByteStreams;
+import io.dropwizard.util.Size;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CompressionFilterTest {
+
+    private static final String PREFIX = "com.wotifgroup.dropwizard.compression.CompressionFilter.";
+    private static final String LARGE = Strings.repeat("All work and no play makes Jack a dull boy. ", 100);
+
+    private final CompressionConfiguration configuration = new CompressionConfiguration();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+
+    private String body = LARGE;
+    private String contentType = "text/plain; charset=UTF-8";
+    private String etag = "\"abc\"";
+    private String receivedIfNoneMatch;
+    private String receivedBody;
+
+    @Before
+    public void setUp() {
+        configuration.setEnabled(true);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void compressesLargeResponses() throws Exception {
+        start();
+        final Response response = get("Accept-Encoding: gzip, deflate");
+
+        assertThat(response.status).isEqualTo(200);
+        assertThat(response.headers.get("content-encoding")).isEqualTo("gzip");
+        assertThat(response.headers.get("vary")).isEqualTo("Accept-Encoding");
+        assertThat(response.headers.get("etag")).isEqualTo("\"abc-gzip\"");
+        assertThat(response.headers.get("content-length")).isNotEqualTo(String.valueOf(LARGE.length()));
+        assertThat(response.gunzipped()).isEqualTo(LARGE);
+        assertThat(metrics.meter(PREFIX + "compressed").getCount()).isEqualTo(1);
+        assertThat(metrics.histogram(PREFIX + "compression-ratio").getSnapshot().getMax()).isLessThan(10);
+        assertThat(metrics.timer(PREFIX + "deflate-time").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void sendsSmallResponsesAsTheyAre() throws Exception {
+        body = "small";
+        start();
+        final Response response = get("Accept-Encoding: gzip");
+
+        assertThat(response.headers).doesNotContainKey("content-encoding");
+        assertThat(response.headers.get("content-length")).isEqualTo("5");
+        assertThat(response.headers.get("vary")).isEqualTo("Accept-Encoding");
+        assertThat(response.headers.get("etag")).isEqualTo("\"abc\"");
+        assertThat(response.text()).isEqualTo("small");
+    }
+
+    @Test
+    public void sendsResponsesAsTheyAreToClientsNotAcceptingGzip() throws Exception {
+        start();
+        for (String acceptEncoding : new String[] {"X-Nothing: here", "Accept-Encoding: deflate",
+                "Accept-Encoding: gzip;q=0, deflate"}) {
+            final Response response = get(acceptEncoding);
+            assertThat(response.headers).doesNotContainKey("content-encoding");
+            assertThat(response.headers.get("vary")).isEqualTo("Accept-Encoding");
+            assertThat(response.headers.get("etag")).isEqualTo("\"abc\"");
+            assertThat(response.text()).isEqualTo(LARGE);
+        }
+    }
+
+    @Test
+    public void sendsIncompressibleTypesAsTheyAre() throws Exception {
+        contentType = "image/png";
+        start();
+        final Response response = get("Accept-Encoding: gzip");
+
+        assertThat(response.headers).doesNotContainKey("content-encoding");
+        assertThat(response.headers).doesNotContainKey("vary");
+        assertThat(response.text()).isEqualTo(LARGE);
+    }
+
+    @Test
+    public void matchesSuffixedEtagsInConditionalRequests() throws Exception {
+        start();
+        final Response response = get("Accept-Encoding: gzip", "If-None-Match: \"xyz-gzip\", \"abc-gzip\"");
+
+        assertThat(receivedIfNoneMatch).isEqualTo("\"xyz\", \"abc\"");
+        assertThat(response.status).isEqualTo(304);
+        assertThat(response.headers.get("etag")).isEqualTo("\"abc-gzip\"");
+        assertThat(response.headers.get("vary")).isEqualTo("Accept-Encoding");
+    }
+
+    @Test
+    public void leavesWeakEtagsAlone() throws Exception {
+        etag = "W/\"abc\"";
+        start();
+        assertThat(get("Accept-Encoding: gzip").headers.get("etag")).isEqualTo("W/\"abc\"");
+
+        final Response notModified = get("Accept-Encoding: gzip", "If-None-Match: W/\"abc\"");
+        assertThat(receivedIfNoneMatch).isEqualTo("W/\"abc\"");
+        assertThat(notModified.status).isEqualTo(304);
+        assertThat(notModified.headers.get("etag")).isEqualTo("W/\"abc\"");
+    }
+
+    @Test
+    public void reusesDeflaters() throws Exception {
+        start();
+        for (int i = 0; i < 3; i++) {
+            assertThat(get("Accept-Encoding: gzip").gunzipped()).isEqualTo(LARGE);
+        }
+        assertThat(metrics.getGauges().get(PREFIX + "idle-deflaters").getValue()).isEqualTo(1);
+    }
+
+    @Test
+    public void sendsCachedResponsesForSameUriAndEtag() throws Exception {
+        configuration.setCacheSize(Size.megabytes(1));
+        start();
+        final Response first = get("Accept-Encoding: gzip");
+        final Response second = get("Accept-Encoding: gzip");
+
+        assertThat(metrics.meter(PREFIX + "cache-hits").getCount()).isEqualTo(1);
+        assertThat(metrics.meter(PREFIX + "compressed").getCount()).isEqualTo(1);
+        assertThat(second.gunzipped()).isEqualTo(LARGE);
+        assertThat(second.headers.get("content-length")).isEqualTo(String.valueOf(first.body.length));
+        assertThat(second.headers.get("etag")).isEqualTo("\"abc-gzip\"");
+
+        // a new ETag means a new body
+        etag = "\"def\"";
+        body = LARGE + "!";
+        assertThat(get("Accept-Encoding: gzip").gunzipped()).isEqualTo(LARGE + "!");
+        assertThat(metrics.meter(PREFIX + "compressed").getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void inflatesGzippedRequestBodies() throws Exception {
+        start();
+        final ByteArrayOutputStream gzipped = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write("hello".getBytes(StandardCharsets.UTF_8));
+        }
+        final ByteArrayOutputStream request = new ByteArrayOutputStream();
+        request.write(("POST /thing HTTP/1.0\r\nContent-Encoding: gzip\r\nContent-Type: text/plain\r\n"
+                + "Content-Length: " + gzipped.size() + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        request.write(gzipped.toByteArray());
+
+        send(request.toByteArray());
+        assertThat(receivedBody).isEqualTo("hello");
+    }
+
+    @Test
+    public void parsesAcceptEncoding() {
+        assertThat(CompressionFilter.acceptsGzip("gzip")).isTrue();
+        assertThat(CompressionFilter.acceptsGzip("deflate, GZIP;q=0.5")).isTrue();
+        assertThat(CompressionFilter.acceptsGzip("*")).isTrue();
+        assertThat(CompressionFilter.acceptsGzip(null)).isFalse();
+        assertThat(CompressionFilter.acceptsGzip("identity")).isFalse();
+        assertThat(CompressionFilter.acceptsGzip("gzip;q=0")).isFalse();
+        assertThat(CompressionFilter.acceptsGzip("gzip; q=0.0, *")).isFalse();
+    }
+
+    private void start() throws Exception {
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                receivedIfNoneMatch = req.getHeader("If-None-Match");
+                resp.setHeader("ETag", etag);
+                if (receivedIfNoneMatch != null && receivedIfNoneMatch.contains(etag)) {
+                    resp.setStatus(304);
+                    return;
+                }
+                resp.setContentType(contentType);
+                final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                resp.setContentLength(bytes.length);
+                resp.getOutputStream().write(bytes);
+            }
+
+            @Override
+            protected void doPost(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                receivedBody = new String(ByteStreams.toByteArray(req.getInputStream()), StandardCharsets.UTF_8);
+            }
+        }), "/*");
+        context.addFilter(new FilterHolder(new CompressionFilter(configuration, metrics)), "/*",
+                EnumSet.of(DispatcherType.REQUEST));
+        server.addConnector(connector);
+        server.setHandler(context);
+        server.start();
+    }
+
+    private Response get(String... headers) throws Exception {
+        final StringBuilder request = new StringBuilder("GET /thing HTTP/1.0\r\n");
+        for (String header : headers) {
+            request.append(header).append("\r\n");
+        }
+        request.append("\r\n");
+        return send(request.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private Response send(byte[] request) throws Exception {
+        final ByteBuffer buffer = connector.getResponses(ByteBuffer.wrap(request));
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new Response(bytes);
+    }
+
+    private static final class Response {
+
+        private final int status;
+        private final Map<String, String> headers = new HashMap<>();
+        private final byte[] body;
+
+        private Response(byte[] raw) {
+            final String text = new String(raw, StandardCharsets.ISO_8859_1);
+            final int end = text.indexOf("\r\n\r\n");
+            final String[] lines = text.substring(0, end).split("\r\n");
+            status = Integer.parseInt(lines[0].split(" ")[1]);
+            for (int i = 1; i < lines.length; i++) {
+                final int colon = lines[i].indexOf(':');
+                headers.put(lines[i].substring(0, colon).trim().toLowerCase(Locale.ENGLISH),
+                        lines[i].substring(colon + 1).trim());
+            }
+            body = new byte[raw.length - end - 4];
+            System.arraycopy(raw, end + 4, body, 0, body.length);
+        }
+
+        private String text() {
+            return new String(body, StandardCharsets.UTF_8);
+        }
+
+        private String gunzipped() throws IOException {
+            try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                return new String(ByteStreams.toByteArray(in), StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.compression;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class EntityTagsTest {
+
+    @Test
+    public void marksStrongEtags() {
+        assertThat(EntityTags.mark("\"abc\"")).isEqualTo("\"abc-gzip\"");
+        assertThat(EntityTags.mark("abc")).isEqualTo("abc-gzip");
+    }
+
+    @Test
+    public void leavesWeakEtagsUnmarked() {
+        assertThat(EntityTags.mark("W/\"abc\"")).isEqualTo("W/\"abc\"");
+        assertThat(EntityTags.unmark("W/\"abc-gzip\"")).isNull();
+    }
+
+    @Test
+    public void unmarksEachEtagInList() {
+        assertThat(EntityTags.unmark("\"abc-gzip\"")).isEqualTo("\"abc\"");
+        assertThat(EntityTags.unmark("\"abc-gzip\",\"def\", W/\"ghi-gzip\""))
+                .isEqualTo("\"abc\", \"def\", W/\"ghi-gzip\"");
+        assertThat(EntityTags.unmark(EntityTags.mark("abc"))).isEqualTo("abc");
+    }
+
+    @Test
+    public void leavesUnmarkedHeadersAlone() {
+        assertThat(EntityTags.unmark("\"abc\"")).isNull();
+        assertThat(EntityTags.unmark("*")).isNull();
+    }
+
+}
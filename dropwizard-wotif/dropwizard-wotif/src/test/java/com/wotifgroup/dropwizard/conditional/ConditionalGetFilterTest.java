@@ -0,0 +1,201 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.conditional;
+
+import com.codahale.metrics.MetricRegistry;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import com.sun.jersey.api.core.ResourceConfig;
+import io.dropwizard.testing.junit.ResourceTestRule;
+import org.junit.Rule;
+import org.junit.Test;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.Date;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ConditionalGetFilterTest {
+
+    private static final String NOT_MODIFIED = "com.wotifgroup.dropwizard.conditional.ConditionalGetFilter.not-modified";
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final ConditionalGetCache cache = new ConditionalGetCache(new ConditionalGetConfiguration());
+    private final ConditionalGetFilter filter = new ConditionalGetFilter(cache, metrics);
+    private final HotelResource resource = new HotelResource();
+
+    @Rule
+    public final ResourceTestRule resources = ResourceTestRule.builder()
+            .addResource(resource)
+            .addProperty(ResourceConfig.PROPERTY_CONTAINER_REQUEST_FILTERS, filter)
+            .addProperty(ResourceConfig.PROPERTY_CONTAINER_RESPONSE_FILTERS, filter)
+            .build();
+
+    @Test
+    public void answersRevalidationWithoutCallingResource() {
+        assertThat(get("/hotels/1").getStatus()).isEqualTo(200);
+
+        final ClientResponse response = get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        assertThat(response.getStatus()).isEqualTo(304);
+        assertThat(response.getEntityTag()).isEqualTo(new EntityTag("v1"));
+        assertThat(response.getHeaders().getFirst(HttpHeaders.CACHE_CONTROL)).isEqualTo("max-age=10");
+        assertThat(resource.calls).isEqualTo(1);
+        assertThat(metrics.meter(NOT_MODIFIED).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void passesOtherEtagsToResource() {
+        get("/hotels/1");
+        resource.etag = "v2";
+
+        final ClientResponse response = get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v0\"");
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getEntityTag()).isEqualTo(new EntityTag("v2"));
+        assertThat(resource.calls).isEqualTo(2);
+
+        // the new response replaced the old validators
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(200);
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v2\"").getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    public void answersIfModifiedSince() {
+        resource.etag = null;
+        resource.lastModified = new Date(1400000000000L);
+        get("/hotels/1");
+
+        assertThat(get("/hotels/1", HttpHeaders.IF_MODIFIED_SINCE, "Tue, 13 May 2014 16:53:20 GMT").getStatus())
+                .isEqualTo(304);
+        assertThat(get("/hotels/1", HttpHeaders.IF_MODIFIED_SINCE, "Mon, 12 May 2014 00:00:00 GMT").getStatus())
+                .isEqualTo(200);
+        assertThat(resource.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void keepsPathsApart() {
+        get("/hotels/1");
+
+        assertThat(get("/hotels/2", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(200);
+        assertThat(resources.client().resource("/hotels/1").queryParam("rooms", "2")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"v1\"").get(ClientResponse.class).getStatus()).isEqualTo(200);
+        assertThat(resource.calls).isEqualTo(3);
+    }
+
+    @Test
+    public void keepsVariantsApart() {
+        resource.vary = "Accept-Language";
+        get("/hotels/1", "Accept-Language", "en");
+
+        final WebResource.Builder french = resources.client().resource("/hotels/1")
+                .header("Accept-Language", "fr").header(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        assertThat(french.get(ClientResponse.class).getStatus()).isEqualTo(200);
+        final WebResource.Builder english = resources.client().resource("/hotels/1")
+                .header("Accept-Language", "en").header(HttpHeaders.IF_NONE_MATCH, "\"v1\"");
+        assertThat(english.get(ClientResponse.class).getStatus()).isEqualTo(304);
+        assertThat(resource.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void passesRequestsForInvalidatedPathsToResource() {
+        get("/hotels/1");
+        cache.invalidate("/hotels/1");
+
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(200);
+        assertThat(resource.calls).isEqualTo(2);
+    }
+
+    @Test
+    public void doesNotKeepResponsesMadeDuringInvalidation() {
+        resource.invalidate = true;
+        get("/hotels/1");
+        resource.invalidate = false;
+
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(200);
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(304);
+    }
+
+    @Test
+    public void forgetsRepresentationsThatAreGone() {
+        get("/hotels/1");
+        resource.status = 404;
+
+        assertThat(get("/hotels/1").getStatus()).isEqualTo(404);
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(404);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    @Test
+    public void doesNotKeepUnstorableResponses() {
+        resource.cacheControl = "no-store";
+        get("/hotels/1");
+
+        assertThat(get("/hotels/1", HttpHeaders.IF_NONE_MATCH, "\"v1\"").getStatus()).isEqualTo(200);
+        assertThat(cache.size()).isEqualTo(0);
+    }
+
+    private ClientResponse get(String path) {
+        return resources.client().resource(path).get(ClientResponse.class);
+    }
+
+    private ClientResponse get(String path, String header, String value) {
+        return resources.client().resource(path).header(header, value).get(ClientResponse.class);
+    }
+
+    @Path("/hotels/{id}")
+    @Produces(MediaType.TEXT_PLAIN)
+    public final class HotelResource {
+
+        private volatile String etag = "v1";
+        private volatile Date lastModified;
+        private volatile String vary;
+        private volatile String cacheControl = "max-age=10";
+        private volatile int status = 200;
+        private volatile boolean invalidate;
+        private volatile int calls;
+
+        @GET
+        public Response get(@PathParam("id") String id) {
+            calls++;
+            if (invalidate) {
+                cache.invalidate("/hotels/" + id);
+            }
+            final Response.ResponseBuilder response = Response.status(status).entity("hotel " + id)
+                    .header(HttpHeaders.CACHE_CONTROL, cacheControl);
+            if (etag != null) {
+                response.tag(etag);
+            }
+            if (lastModified != null) {
+                response.lastModified(lastModified);
+            }
+            if (vary != null) {
+                response.header(HttpHeaders.VARY, vary);
+            }
+            return response.build();
+        }
+    }
+
+}
@@ -0,0 +1,338 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.loadshedding;
+
+import com.codahale.metrics.Clock;
+import com.codahale.metrics.MetricRegistry;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.server.Request;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LoadSheddingFilterTest {
+
+    private static final String PREFIX = "com.wotifgroup.dropwizard.loadshedding.LoadSheddingFilter.";
+
+    private final LoadSheddingConfiguration configuration = new LoadSheddingConfiguration();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final PoolStatus poolStatus = new PoolStatus();
+    private final FakeClock clock = new FakeClock();
+    private final HttpServletRequest request = mock(HttpServletRequest.class);
+    private final HttpServletRequest poolStatusRequest = mock(HttpServletRequest.class);
+    private final HttpServletResponse response = mock(HttpServletResponse.class);
+    private final HttpServletResponse shedResponse = mock(HttpServletResponse.class);
+    private LoadSheddingFilter filter;
+    private long latency = TimeUnit.MILLISECONDS.toNanos(10);
+    private int served;
+
+    @Before
+    public void setUp() {
+        configuration.setEnabled(true);
+        configuration.setMinLimit(1);
+        when(request.getServletPath()).thenReturn("/search");
+        when(poolStatusRequest.getServletPath()).thenReturn("/pool_status.txt");
+        poolStatus.enter();
+    }
+
+    @Test
+    public void shedsRequestsBeyondLimit() throws Exception {
+        configuration.setInitialLimit(2);
+        filter = filter();
+
+        // each request makes another while in flight, so the third finds two in flight
+        filter.doFilter(request, response, nested(2));
+
+        assertThat(served).isEqualTo(2);
+        verify(shedResponse).setStatus(503);
+        verify(shedResponse).setHeader("Retry-After", "1");
+        verify(response, never()).setStatus(503);
+        assertThat(metrics.meter(PREFIX + "rejected").getCount()).isEqualTo(1);
+        assertThat(gauge("in-flight")).isEqualTo(0);
+    }
+
+    @Test
+    public void neverShedsExemptPaths() throws Exception {
+        configuration.setInitialLimit(1);
+        filter = filter();
+
+        filter.doFilter(request, response, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                filter.doFilter(poolStatusRequest, shedResponse, chain());
+            }
+        });
+
+        assertThat(served).isEqualTo(1);
+        verify(shedResponse, never()).setStatus(503);
+    }
+
+    @Test
+    public void passesNonHttpRequestsThrough() throws Exception {
+        configuration.setInitialLimit(1);
+        filter = filter();
+
+        filter.doFilter(request, response, new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                filter.doFilter(mock(ServletRequest.class), mock(ServletResponse.class), chain());
+            }
+        });
+
+        assertThat(served).isEqualTo(1);
+        assertThat(metrics.meter(PREFIX + "rejected").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void growsLimitWhileInUse() throws Exception {
+        configuration.setInitialLimit(2);
+        filter = filter();
+
+        // grows by one for each limit's worth of requests made while at least half of it's in use: 2 -> 2.5 -> 2.9
+        // -> 3.24, by the nested requests
+        filter.doFilter(request, response, nested(1));
+        filter.doFilter(request, response, nested(1));
+        assertThat(gauge("limit")).isEqualTo(2);
+        filter.doFilter(request, response, nested(1));
+        assertThat(gauge("limit")).isEqualTo(3);
+        // a lone request isn't using enough of the limit to grow it
+        filter.doFilter(request, response, chain());
+        assertThat(gauge("limit")).isEqualTo(3);
+        verify(shedResponse, never()).setStatus(503);
+    }
+
+    @Test
+    public void cutsLimitWhenRequestsWaitTooLong() throws Exception {
+        filter = filter();
+        final Request queued = mock(Request.class);
+        when(queued.getServletPath()).thenReturn("/search");
+        when(queued.getTimeStamp()).thenReturn(clock.getTime() - 51);
+
+        filter.doFilter(queued, response, chain());
+        assertThat(gauge("limit")).isEqualTo(90);
+        assertThat(metrics.timer(PREFIX + "queue-wait").getSnapshot().getMax())
+                .isEqualTo(TimeUnit.MILLISECONDS.toNanos(51));
+
+        // waits for the last cut to take effect before cutting again
+        filter.doFilter(queued, response, chain());
+        assertThat(gauge("limit")).isEqualTo(90);
+        clock.tick += LoadSheddingFilter.CUT_INTERVAL;
+        filter.doFilter(queued, response, chain());
+        assertThat(gauge("limit")).isEqualTo(81);
+    }
+
+    @Test
+    public void cutsLimitWhenLatencyClimbs() throws Exception {
+        filter = filter();
+        for (int i = 0; i < 10; i++) {
+            filter.doFilter(request, response, chain());
+        }
+        assertThat(gauge("limit")).isEqualTo(100);
+
+        latency = TimeUnit.MILLISECONDS.toNanos(100);
+        filter.doFilter(request, response, chain());
+        assertThat(gauge("limit")).isEqualTo(100);
+        filter.doFilter(request, response, chain());
+        assertThat(gauge("limit")).isEqualTo(90);
+    }
+
+    @Test
+    public void neverCutsBelowMinLimit() throws Exception {
+        configuration.setInitialLimit(10);
+        configuration.setMinLimit(10);
+        filter = filter();
+        final Request queued = mock(Request.class);
+        when(queued.getServletPath()).thenReturn("/search");
+        when(queued.getTimeStamp()).thenReturn(clock.getTime() - 100);
+
+        filter.doFilter(queued, response, chain());
+        assertThat(gauge("limit")).isEqualTo(10);
+    }
+
+    @Test
+    public void exitsPoolWhenShedForLongEnoughAndReentersOnceRecovered() throws Exception {
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        configuration.setExitPoolAfter(Duration.seconds(2));
+        filter = filter();
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request, response, nested(1));
+            clock.tick += TimeUnit.MILLISECONDS.toNanos(500);
+        }
+        filter.doFilter(poolStatusRequest, response, chain());
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.ALIVE);
+
+        filter.doFilter(request, response, nested(1));
+        clock.tick += TimeUnit.MILLISECONDS.toNanos(500);
+        filter.doFilter(poolStatusRequest, response, chain());
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(metrics.meter(PREFIX + "pool-exits").getCount()).isEqualTo(1);
+
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        filter.doFilter(poolStatusRequest, response, chain());
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        filter.doFilter(poolStatusRequest, response, chain());
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.ALIVE);
+    }
+
+    @Test
+    public void reentersPoolWithoutAnyRequestsReachingTheFilter() throws Exception {
+        // As when the pool status handler answers the load balancer's checks ahead of the filters
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        configuration.setExitPoolAfter(Duration.seconds(1));
+        filter = filter();
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request, response, nested(1));
+            clock.tick += TimeUnit.MILLISECONDS.toNanos(500);
+        }
+        filter.updatePoolStatus();
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+
+        filter.updatePoolStatus();
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        filter.updatePoolStatus();
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.ALIVE);
+    }
+
+    @Test
+    public void staysOutOfPoolWhenExitedByHandMeanwhile() throws Exception {
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        configuration.setExitPoolAfter(Duration.seconds(1));
+        filter = filter();
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request, response, nested(1));
+            clock.tick += TimeUnit.MILLISECONDS.toNanos(500);
+        }
+        filter.updatePoolStatus();
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+
+        // as ExitPoolTask would at the start of a deploy
+        poolStatus.exit();
+        clock.tick += TimeUnit.SECONDS.toNanos(1);
+        filter.updatePoolStatus();
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+    }
+
+    @Test
+    public void staysInPoolWhenSheddingIsntSustained() throws Exception {
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        configuration.setExitPoolAfter(Duration.seconds(2));
+        filter = filter();
+
+        for (int i = 0; i < 3; i++) {
+            filter.doFilter(request, response, nested(1));
+            // far enough apart to be separate spells of overload
+            clock.tick += LoadSheddingFilter.SHEDDING_GAP;
+        }
+        filter.doFilter(poolStatusRequest, response, chain());
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.ALIVE);
+    }
+
+    @Test
+    public void leavesPoolAloneIfAlreadyOut() throws Exception {
+        configuration.setInitialLimit(1);
+        configuration.setMaxLimit(1);
+        configuration.setExitPoolAfter(Duration.seconds(0));
+        poolStatus.exit();
+        filter = filter();
+
+        filter.doFilter(request, response, nested(1));
+        filter.doFilter(poolStatusRequest, response, chain());
+        clock.tick += TimeUnit.SECONDS.toNanos(5);
+        filter.doFilter(poolStatusRequest, response, chain());
+
+        assertThat(poolStatus.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(metrics.meter(PREFIX + "pool-exits").getCount()).isEqualTo(0);
+    }
+
+    private LoadSheddingFilter filter() {
+        return new LoadSheddingFilter(configuration, metrics, poolStatus, clock);
+    }
+
+    /**
+     * @return a chain that serves the request after making the given number of requests of its own, the last of which
+     * gets the shed response
+     */
+    private FilterChain nested(final int depth) {
+        if (depth == 0) {
+            return chain();
+        }
+        return new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse resp) throws IOException, ServletException {
+                filter.doFilter(request, depth == 1 ? shedResponse : response, nested(depth - 1));
+                chain().doFilter(req, resp);
+            }
+        };
+    }
+
+    private FilterChain chain() {
+        return new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest req, ServletResponse resp) {
+                served++;
+                clock.tick += latency;
+            }
+        };
+    }
+
+    private Object gauge(String name) {
+        return metrics.getGauges().get(PREFIX + name).getValue();
+    }
+
+    private static final class FakeClock extends Clock {
+
+        private long tick = TimeUnit.DAYS.toNanos(1);
+
+        @Override
+        public long getTick() {
+            return tick;
+        }
+
+        @Override
+        public long getTime() {
+            return TimeUnit.NANOSECONDS.toMillis(tick);
+        }
+    }
+
+}
@@ -0,0 +1,171 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.codahale.metrics.MetricRegistry;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AsyncRequestLogSinkTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void writesAllLinesInOrderWhenClosed() throws Exception {
+        final CapturingSink delegate = new CapturingSink();
+        final AsyncRequestLogSink sink = new AsyncRequestLogSink(delegate, configuration(16,
+                AsyncRequestLogConfiguration.OverflowPolicy.BLOCK), metrics, "test");
+
+        final StringBuilder expected = new StringBuilder();
+        sink.open();
+        for (int i = 0; i < 1000; i++) {
+            final String line = "line " + i + "\n";
+            expected.append(line);
+            sink.write(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8)));
+        }
+        sink.close();
+
+        assertThat(delegate.contents()).isEqualTo(expected.toString());
+        assertThat(delegate.closed).isTrue();
+        assertThat(metrics.counter("com.wotifgroup.dropwizard.logging.AsyncRequestLogSink.test.dropped").getCount())
+                .isEqualTo(0);
+    }
+
+    @Test
+    public void batchesLinesIntoFewerWrites() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CapturingSink delegate = new CapturingSink(release);
+        final AsyncRequestLogSink sink = new AsyncRequestLogSink(delegate, configuration(1024,
+                AsyncRequestLogConfiguration.OverflowPolicy.BLOCK), metrics, "test");
+
+        sink.open();
+        for (int i = 0; i < 500; i++) {
+            sink.write(ByteBuffer.wrap(("line " + i + "\n").getBytes(StandardCharsets.UTF_8)));
+        }
+        release.countDown();
+        sink.close();
+
+        assertThat(delegate.writes.get()).isLessThan(500);
+        assertThat(delegate.contents()).startsWith("line 0\n").endsWith("line 499\n");
+    }
+
+    @Test
+    public void dropsAndCountsLinesWhenFull() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CapturingSink delegate = new CapturingSink(release);
+        final AsyncRequestLogSink sink = new AsyncRequestLogSink(delegate, configuration(4,
+                AsyncRequestLogConfiguration.OverflowPolicy.DROP), metrics, "test");
+
+        sink.open();
+        for (int i = 0; i < 100; i++) {
+            sink.write(ByteBuffer.wrap("line\n".getBytes(StandardCharsets.UTF_8)));
+        }
+        final long dropped = metrics.counter("com.wotifgroup.dropwizard.logging.AsyncRequestLogSink.test.dropped")
+                .getCount();
+        release.countDown();
+        sink.close();
+
+        assertThat(dropped).isGreaterThan(0);
+        assertThat(delegate.contents().length() / "line\n".length() + dropped).isEqualTo(100);
+    }
+
+    @Test
+    public void writesLinesBiggerThanASlot() throws Exception {
+        final CapturingSink delegate = new CapturingSink();
+        final AsyncRequestLogSink sink = new AsyncRequestLogSink(delegate, configuration(4,
+                AsyncRequestLogConfiguration.OverflowPolicy.BLOCK), metrics, "test");
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            line.append('x');
+        }
+        line.append('\n');
+
+        sink.open();
+        sink.write(ByteBuffer.wrap(line.toString().getBytes(StandardCharsets.UTF_8)));
+        sink.close();
+
+        assertThat(delegate.contents()).isEqualTo(line.toString());
+    }
+
+    private static AsyncRequestLogConfiguration configuration(int queueSize,
+                                                              AsyncRequestLogConfiguration.OverflowPolicy policy) {
+        final AsyncRequestLogConfiguration configuration = new AsyncRequestLogConfiguration();
+        configuration.setEnabled(true);
+        configuration.setQueueSize(queueSize);
+        configuration.setOverflowPolicy(policy);
+        return configuration;
+    }
+
+    private static class CapturingSink implements RequestLogSink {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private final AtomicInteger writes = new AtomicInteger();
+        private final CountDownLatch release;
+        private volatile boolean closed;
+
+        CapturingSink() {
+            this(new CountDownLatch(0));
+        }
+
+        CapturingSink(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void write(ByteBuffer line) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writes.incrementAndGet();
+            final byte[] bytes = new byte[line.remaining()];
+            line.get(bytes);
+            synchronized (out) {
+                out.write(bytes, 0, bytes.length);
+            }
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+
+        String contents() {
+            synchronized (out) {
+                return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            }
+        }
+
+    }
+
+}
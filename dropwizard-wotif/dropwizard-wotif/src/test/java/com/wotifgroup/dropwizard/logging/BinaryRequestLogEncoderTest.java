@@ -0,0 +1,126 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.google.common.base.Strings;
+import org.eclipse.jetty.server.Request;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class BinaryRequestLogEncoderTest {
+
+    private final BinaryRequestLogEncoder encoder = new BinaryRequestLogEncoder(Arrays.asList("wotif_session"));
+
+    @Test
+    public void encodesLengthPrefixedRecord() {
+        final Request request = request("/hotels/123");
+        request.getHttpFields().put("User-Agent", "café");
+        final ByteBuffer buf = ByteBuffer.allocate(1024);
+
+        encoder.encode(request, response(200, 1234), buf);
+        buf.flip();
+
+        assertThat(buf.getInt()).isEqualTo(buf.remaining());
+        assertThat(buf.get()).isEqualTo(BinaryRequestLogEncoder.VERSION);
+        assertThat(buf.getLong()).isEqualTo(request.getTimeStamp());
+        assertThat(buf.getInt()).isGreaterThanOrEqualTo(12);
+        assertThat(buf.getShort()).isEqualTo((short) 200);
+        assertThat(buf.getLong()).isEqualTo(1234);
+        assertThat(getString(buf)).isEqualTo("10.1.1.1");
+        assertThat(getString(buf)).isNull();
+        assertThat(getString(buf)).isEqualTo("GET");
+        assertThat(getString(buf)).isEqualTo("/hotels/123");
+        assertThat(getString(buf)).isEqualTo("HTTP/1.1");
+        assertThat(getString(buf)).isNull();
+        assertThat(getString(buf)).isEqualTo("café");
+        assertThat(getString(buf)).isEqualTo("3w5e11264sgsg");
+        assertThat(buf.getShort()).isEqualTo((short) 1);
+        assertThat(getString(buf)).isEqualTo("wotif_session");
+        assertThat(getString(buf)).isEqualTo("abc123");
+        assertThat(buf.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void encodesConsecutiveRecords() {
+        final ByteBuffer buf = ByteBuffer.allocate(1024);
+
+        encoder.encode(request("/hotels/1"), response(200, 10), buf);
+        encoder.encode(request("/hotels/2"), response(500, 20), buf);
+        buf.flip();
+
+        buf.position(buf.getInt() + 4);
+        final int length = buf.getInt();
+        assertThat(length).isEqualTo(buf.remaining());
+        buf.position(buf.position() + 1 + 8 + 4);
+        assertThat(buf.getShort()).isEqualTo((short) 500);
+        assertThat(buf.getLong()).isEqualTo(20);
+    }
+
+    @Test
+    public void encodesMissingRequestIdAsNull() {
+        final Request request = request("/hotels");
+        request.removeAttribute("requestId");
+        final ByteBuffer buf = ByteBuffer.allocate(1024);
+
+        encoder.encode(request, response(200, 10), buf);
+        buf.flip();
+
+        buf.position(4 + 1 + 8 + 4 + 2 + 8);
+        for (int i = 0; i < 7; i++) {
+            getString(buf);
+        }
+        assertThat(getString(buf)).isNull();
+    }
+
+    @Test
+    public void truncatesLongStrings() {
+        final Request request = request("/hotels");
+        request.getHttpFields().put("User-Agent", Strings.repeat("a", 70000));
+        final ByteBuffer buf = ByteBuffer.allocate(128 * 1024);
+
+        encoder.encode(request, response(200, 10), buf);
+        buf.flip();
+
+        buf.position(4 + 1 + 8 + 4 + 2 + 8);
+        for (int i = 0; i < 6; i++) {
+            getString(buf);
+        }
+        assertThat(getString(buf)).isEqualTo(Strings.repeat("a", 0xFFFE));
+        assertThat(getString(buf)).isEqualTo("3w5e11264sgsg");
+    }
+
+    private static String getString(ByteBuffer buf) {
+        final int length = buf.getShort() & 0xFFFF;
+        if (length == BinaryRequestLogEncoder.NULL_LENGTH) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
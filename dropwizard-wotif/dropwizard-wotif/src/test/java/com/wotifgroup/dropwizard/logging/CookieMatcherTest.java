@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.server.Request;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class CookieMatcherTest {
+
+    private final CookieMatcher matcher = new CookieMatcher(Arrays.asList("wotif_session", "tracking", "t"));
+
+    @Test
+    public void copiesConfiguredCookies() {
+        assertThat(chars(request("/hotels"))).isEqualTo("wotif_session=abc123; tracking=xyz");
+        assertThat(bytes(request("/hotels"))).isEqualTo("wotif_session=abc123; tracking=xyz");
+    }
+
+    @Test
+    public void copiesNothingWithoutCookieHeader() {
+        final Request request = request("/hotels");
+        request.getHttpFields().remove("Cookie");
+
+        assertThat(chars(request)).isEmpty();
+    }
+
+    @Test
+    public void matchesWholeNamesOnly() {
+        final Request request = cookies("wotif_session_old=1; t=2; xtracking=3; tracking2=4;track=5");
+
+        assertThat(chars(request)).isEqualTo("t=2");
+    }
+
+    @Test
+    public void handlesWhitespaceQuotesAndSeparators() {
+        final Request request = cookies("  tracking = \"a;b\" ,wotif_session=café;;  t=");
+
+        assertThat(chars(request)).isEqualTo("tracking=a;b; wotif_session=café; t=");
+        assertThat(bytes(request)).isEqualTo("tracking=a;b; wotif_session=café; t=");
+    }
+
+    @Test
+    public void skipsMalformedCookies() {
+        final Request request = cookies("tracking; =1; t=2");
+
+        assertThat(chars(request)).isEqualTo("t=2");
+    }
+
+    @Test
+    public void scansEveryCookieHeader() {
+        final Request request = request("/hotels");
+        request.getHttpFields().add("Cookie", "t=1");
+
+        assertThat(chars(request)).isEqualTo("wotif_session=abc123; tracking=xyz; t=1");
+    }
+
+    private static Request cookies(String header) {
+        final Request request = request("/hotels");
+        request.getHttpFields().put("Cookie", header);
+        return request;
+    }
+
+    private String chars(Request request) {
+        final StringBuilder buf = new StringBuilder();
+        matcher.appendTo(buf, request);
+        return buf.toString();
+    }
+
+    private String bytes(Request request) {
+        final ByteBuffer buf = ByteBuffer.allocate(256);
+        matcher.putTo(buf, request);
+        buf.flip();
+        return StandardCharsets.UTF_8.decode(buf).toString();
+    }
+
+}
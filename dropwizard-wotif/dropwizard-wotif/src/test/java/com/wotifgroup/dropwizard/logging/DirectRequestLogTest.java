@@ -0,0 +1,120 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.codahale.metrics.MetricRegistry;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class DirectRequestLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void appendsLinesToFile() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final DirectRequestLog log = new DirectRequestLog(new NcsaRequestLogEncoder(Arrays.asList("wotif_session")),
+                new FileChannelRequestLogSink(file.toPath()));
+
+        log.start();
+        log.log(request("/hotels/1"), response(200, 10));
+        log.log(request("/hotels/2"), response(404, 20));
+        log.stop();
+
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith("10.1.1.1 - - [").contains("\"GET /hotels/1 HTTP/1.1\" 200 10 ")
+                .endsWith(" 3w5e11264sgsg \"wotif_session=abc123\"");
+        assertThat(lines.get(1)).contains("\"GET /hotels/2 HTTP/1.1\" 404 20 ");
+    }
+
+    @Test
+    public void growsBufferForLongLines() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final DirectRequestLog log = new DirectRequestLog(new NcsaRequestLogEncoder(Collections.<String>emptyList()),
+                new FileChannelRequestLogSink(file.toPath()));
+        final StringBuilder uri = new StringBuilder("/hotels?q=");
+        for (int i = 0; i < 5000; i++) {
+            uri.append('x');
+        }
+
+        log.start();
+        log.log(request(uri.toString()), response(200, 10));
+        log.stop();
+
+        final List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0)).contains(uri.toString());
+    }
+
+    @Test
+    public void swallowsFailuresOfRouteTimersAndRules() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final RouteTimers failingTimers = new RouteTimers(new RouteMetricsConfiguration(), new MetricRegistry()) {
+            @Override
+            public void record(Request request, int status, long latencyMillis) {
+                throw new IllegalStateException("timers");
+            }
+        };
+        final RequestLogFilter failingFilter = new RequestLogFilter(RequestLogRules.LOG_ALL) {
+            @Override
+            public boolean shouldLog(Request request, Response response) {
+                throw new IllegalStateException("rules");
+            }
+        };
+
+        for (RouteTimers timers : Arrays.asList(failingTimers, RouteTimers.disabled())) {
+            final DirectRequestLog log = new DirectRequestLog(new NcsaRequestLogEncoder(Collections.<String>emptyList()),
+                    new FileChannelRequestLogSink(file.toPath()), failingFilter, timers);
+            log.start();
+            log.log(request("/hotels/1"), response(200, 10));
+            log.stop();
+        }
+
+        assertThat(Files.readAllLines(file.toPath(), StandardCharsets.UTF_8)).isEmpty();
+    }
+
+    @Test
+    public void doesNotLogWhenStopped() throws Exception {
+        final File file = new File(folder.getRoot(), "requests.log");
+        final DirectRequestLog log = new DirectRequestLog(new NcsaRequestLogEncoder(Collections.<String>emptyList()),
+                new FileChannelRequestLogSink(file.toPath()));
+
+        log.log(request("/hotels/1"), response(200, 10));
+
+        assertThat(file.exists()).isFalse();
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class JsonRequestLogEncoderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonRequestLogEncoder encoder = new JsonRequestLogEncoder(Arrays.asList("wotif_session", "tracking"));
+
+    @Test
+    public void encodesRecordAsJsonLine() throws IOException {
+        final Request request = request("/hotels/123?checkIn=2015-01-01");
+
+        final String line = encode(request, response(200, 1234), ByteBuffer.allocate(1024));
+
+        assertThat(line).endsWith("}\n");
+        final JsonNode json = mapper.readTree(line);
+        assertThat(json.get("remoteAddress").asText()).isEqualTo("10.1.1.1");
+        assertThat(json.get("user").isNull()).isTrue();
+        assertThat(json.get("timestamp").asLong()).isEqualTo(request.getTimeStamp());
+        assertThat(json.get("method").asText()).isEqualTo("GET");
+        assertThat(json.get("uri").asText()).isEqualTo("/hotels/123?checkIn=2015-01-01");
+        assertThat(json.get("protocol").asText()).isEqualTo("HTTP/1.1");
+        assertThat(json.get("status").asInt()).isEqualTo(200);
+        assertThat(json.get("responseLength").asLong()).isEqualTo(1234);
+        assertThat(json.get("referer").isNull()).isTrue();
+        assertThat(json.get("userAgent").asText()).isEqualTo("hotel-service/1.2.3");
+        assertThat(json.get("latency").asLong()).isGreaterThanOrEqualTo(12);
+        assertThat(json.get("requestId").asText()).isEqualTo("3w5e11264sgsg");
+        assertThat(json.get("cookies").size()).isEqualTo(2);
+        assertThat(json.get("cookies").get("wotif_session").asText()).isEqualTo("abc123");
+        assertThat(json.get("cookies").get("tracking").asText()).isEqualTo("xyz");
+    }
+
+    @Test
+    public void encodesBytesWrittenWhenLengthUnknown() throws IOException {
+        final JsonNode json = mapper.readTree(encode(request("/hotels"), response(0, -1), ByteBuffer.allocate(1024)));
+
+        assertThat(json.get("status").asInt()).isEqualTo(404);
+        assertThat(json.get("responseLength").asLong()).isEqualTo(0);
+    }
+
+    @Test
+    public void encodesMissingRequestIdAsNull() throws IOException {
+        final Request request = request("/hotels");
+        request.removeAttribute("requestId");
+
+        final JsonNode json = mapper.readTree(encode(request, response(200, 10), ByteBuffer.allocate(1024)));
+
+        assertThat(json.get("requestId").isNull()).isTrue();
+    }
+
+    @Test
+    public void escapesAndEncodesNonAscii() throws IOException {
+        final Request request = request("/hotels");
+        request.getHttpFields().put("User-Agent", "\"café\" € 😀\n");
+
+        final JsonNode json = mapper.readTree(encode(request, response(200, 10), ByteBuffer.allocate(1024)));
+
+        assertThat(json.get("userAgent").asText()).isEqualTo("\"café\" € 😀\n");
+    }
+
+    @Test
+    public void encodesAfterOverflow() throws IOException {
+        try {
+            encode(request("/hotels"), response(200, 10), ByteBuffer.allocate(64));
+        } catch (BufferOverflowException e) {
+            // expected, the next record should not include any of this one
+        }
+
+        final JsonNode json = mapper.readTree(encode(request("/hotels/1"), response(200, 10), ByteBuffer.allocate(1024)));
+
+        assertThat(json.get("uri").asText()).isEqualTo("/hotels/1");
+    }
+
+    private String encode(Request request, Response response, ByteBuffer buf) {
+        encoder.encode(request, response, buf);
+        buf.flip();
+        return StandardCharsets.UTF_8.decode(buf).toString();
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import com.wotifgroup.dropwizard.tracing.TrustedNetworks;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class NcsaRequestLogEncoderTest {
+
+    private static final List<String> COOKIES = Arrays.asList("wotif_session", "tracking");
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+    private WotifFormatRequestLog legacyLog;
+    private NcsaRequestLogEncoder encoder;
+
+    @Before
+    public void setup() {
+        appender.start();
+        final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+        appenders.addAppender(appender);
+        legacyLog = new WotifFormatRequestLog(appenders, COOKIES);
+        encoder = new NcsaRequestLogEncoder(COOKIES);
+    }
+
+    @Test
+    public void encodesSameLineAsWotifFormatRequestLog() {
+        checkSameLine(request("/hotels/123?checkIn=2015-01-01"), response(200, 1234));
+    }
+
+    @Test
+    public void encodesSameLineForUnknownLengthAndStatus() {
+        checkSameLine(request("/hotels"), response(0, -1));
+    }
+
+    @Test
+    public void encodesSameLineWithoutRequestId() {
+        final Request request = request("/hotels");
+        request.removeAttribute("requestId");
+
+        checkSameLine(request, response(200, 10));
+    }
+
+    @Test
+    public void encodesNonAsciiAsUtf8() {
+        final Request request = request("/hotels");
+        request.getHttpFields().put("User-Agent", "caf\u00e9 \u20ac \ud83d\ude00");
+
+        checkSameLine(request, response(200, 99999));
+    }
+
+    @Test
+    public void encodesSameLineWhenScanningCookieHeader() {
+        encoder.setScanCookieHeader(true);
+        legacyLog.setScanCookieHeader(true);
+        final Request request = request("/hotels");
+        request.getHttpFields().put("Cookie", "tracking=\"xyz\"; JSESSIONID=1234;wotif_session=abc123");
+
+        checkSameLine(request, response(200, 10));
+        assertThat(appender.list.get(0).getFormattedMessage()).endsWith(" \"tracking=xyz; wotif_session=abc123\"");
+    }
+
+    @Test
+    public void logsForwardedForOnlyFromTrustedProxies() {
+        final Request request = request("/hotels");
+        request.getHttpFields().put("X-Forwarded-For", "203.8.182.99");
+
+        assertThat(encode(request)).startsWith("203.8.182.99 - ");
+
+        encoder.setTrustedProxies(TrustedNetworks.parse(Arrays.asList("192.168.0.0/16")));
+        assertThat(encode(request)).startsWith("10.1.1.1 - ");
+
+        encoder.setTrustedProxies(TrustedNetworks.siteLocal());
+        assertThat(encode(request)).startsWith("203.8.182.99 - ");
+    }
+
+    @Test(expected = BufferOverflowException.class)
+    public void failsWhenLineDoesNotFit() {
+        encoder.encode(request("/hotels"), response(200, 10), ByteBuffer.allocate(16));
+    }
+
+    private void checkSameLine(Request request, Response response) {
+        legacyLog.log(request, response);
+        final String expected = appender.list.get(appender.list.size() - 1).getFormattedMessage() + "\n";
+
+        final ByteBuffer buf = ByteBuffer.allocate(1024);
+        encoder.encode(request, response, buf);
+        buf.flip();
+        final String actual = StandardCharsets.UTF_8.decode(buf).toString();
+
+        assertThat(withoutLatency(actual)).isEqualTo(withoutLatency(expected));
+    }
+
+    private String encode(Request request) {
+        final ByteBuffer buf = ByteBuffer.allocate(1024);
+        encoder.encode(request, response(200, 10), buf);
+        buf.flip();
+        return StandardCharsets.UTF_8.decode(buf).toString();
+    }
+
+    // the latency is measured separately by each log, so may have ticked over between them
+    private static String withoutLatency(String line) {
+        // the two latencies, then the request ID and cookies ending the line
+        return line.replaceFirst(" \\d+ \\d+ (\\S+) (\"[^\"]*\")$", " 0 0 $1 $2");
+    }
+
+}
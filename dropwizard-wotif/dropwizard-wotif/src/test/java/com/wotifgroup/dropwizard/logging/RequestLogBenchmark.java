@@ -0,0 +1,152 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import ch.qos.logback.core.spi.AppenderAttachableImpl;
+import com.google.common.io.ByteStreams;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of logging a request through the logback appenders with encoding it straight into a buffer. Both
+ * discard their output, so only the formatting and hand-off are measured. Run from the test classpath, adding
+ * "-prof gc" to see the allocation rate of each:
+ *
+ * <pre>
+ *   java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main RequestLogBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestLogBenchmark {
+
+    private static final List<String> COOKIES = Arrays.asList("wotif_session", "tracking");
+
+    private Request request;
+    private Response response;
+    private WotifFormatRequestLog appenderLog;
+    private DirectRequestLog directLog;
+    private DirectRequestLog jsonLog;
+    private DirectRequestLog binaryLog;
+
+    @Setup
+    public void setup() throws Exception {
+        request = RequestLogFixtures.request("/hotels/123/rooms?checkIn=2015-01-01&nights=2");
+        response = RequestLogFixtures.response(200, 4096);
+
+        final LoggerContext context = new LoggerContext();
+        final PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%m%n");
+        encoder.start();
+        final OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(ByteStreams.nullOutputStream());
+        appender.start();
+        final AppenderAttachableImpl<ILoggingEvent> appenders = new AppenderAttachableImpl<>();
+        appenders.addAppender(appender);
+        appenderLog = new WotifFormatRequestLog(appenders, COOKIES);
+        appenderLog.start();
+
+        directLog = new DirectRequestLog(new NcsaRequestLogEncoder(COOKIES), new DiscardingSink());
+        directLog.start();
+        jsonLog = new DirectRequestLog(new JsonRequestLogEncoder(COOKIES), new DiscardingSink());
+        jsonLog.start();
+        binaryLog = new DirectRequestLog(new BinaryRequestLogEncoder(COOKIES), new DiscardingSink());
+        binaryLog.start();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        appenderLog.stop();
+        directLog.stop();
+        jsonLog.stop();
+        binaryLog.stop();
+    }
+
+    @Benchmark
+    public void appenders() {
+        appenderLog.log(request, response);
+    }
+
+    @Benchmark
+    public void direct() {
+        directLog.log(request, response);
+    }
+
+    @Benchmark
+    public void directJson() {
+        jsonLog.log(request, response);
+    }
+
+    @Benchmark
+    public void directBinary() {
+        binaryLog.log(request, response);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RequestLogBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build()).run();
+    }
+
+    private static class DiscardingSink implements RequestLogSink {
+
+        @Override
+        public void open() {
+        }
+
+        @Override
+        public void write(ByteBuffer line) {
+            line.position(line.limit());
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableMultimap;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintWriter;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RequestLogFilterTaskTest {
+
+    private final RequestLogRules configured = new RequestLogRules(ImmutableList.of("/pool_status.txt"),
+            ImmutableMap.of(2, 10), -1, true);
+    private final RequestLogFilter filter = new RequestLogFilter(configured);
+    private final RequestLogFilterTask task = new RequestLogFilterTask(filter);
+
+    @Test
+    public void showsCurrentRules() throws Exception {
+        final String output = execute(ImmutableMultimap.<String, String>of());
+
+        assertThat(output).isEqualTo("excludedPaths=[/pool_status.txt], sampleRates={2xx=10}, slowThresholdMillis=-1, "
+                + "alwaysLogErrors=true\n");
+        assertThat(filter.getRules()).isSameAs(configured);
+    }
+
+    @Test
+    public void changesGivenRules() throws Exception {
+        execute(ImmutableMultimap.of("exclude", "/healthcheck", "exclude", "/ping", "sample", "3xx:5",
+                "slowThreshold", "250"));
+
+        assertThat(filter.getRules().getExcludedPaths()).containsExactly("/healthcheck", "/ping");
+        assertThat(filter.getRules().getSampleRates()).isEqualTo(ImmutableMap.of(3, 5));
+        assertThat(filter.getRules().getSlowThresholdMillis()).isEqualTo(250);
+        assertThat(filter.getRules().isAlwaysLogErrors()).isTrue();
+    }
+
+    @Test
+    public void clearsRules() throws Exception {
+        execute(ImmutableMultimap.of("exclude", "", "sample", ""));
+
+        assertThat(filter.getRules().getExcludedPaths()).isEmpty();
+        assertThat(filter.getRules().getSampleRates()).isEmpty();
+    }
+
+    @Test
+    public void resetsToConfiguredRules() throws Exception {
+        execute(ImmutableMultimap.of("alwaysLogErrors", "false"));
+        assertThat(filter.getRules().isAlwaysLogErrors()).isFalse();
+
+        execute(ImmutableMultimap.of("reset", ""));
+
+        assertThat(filter.getRules()).isSameAs(configured);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidSample() throws Exception {
+        execute(ImmutableMultimap.of("sample", "200:10"));
+    }
+
+    private String execute(ImmutableMultimap<String, String> parameters) throws Exception {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final PrintWriter output = new PrintWriter(baos);
+        task.execute(parameters, output);
+        output.flush();
+        return baos.toString();
+    }
+
+}
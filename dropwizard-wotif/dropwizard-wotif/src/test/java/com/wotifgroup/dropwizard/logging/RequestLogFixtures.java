@@ -0,0 +1,71 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.http.HttpMethod;
+import org.eclipse.jetty.http.HttpURI;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Builds Jetty requests and responses that can be logged without a running server.
+ */
+final class RequestLogFixtures {
+
+    private RequestLogFixtures() {
+    }
+
+    static Request request(String uri) {
+        final Request request = new Request(null, null);
+        request.setMethod(HttpMethod.GET, HttpMethod.GET.asString());
+        request.setUri(new HttpURI(uri));
+        request.setHttpVersion(HttpVersion.HTTP_1_1);
+        request.setRemoteAddr(new InetSocketAddress("10.1.1.1", 45678));
+        request.setTimeStamp(System.currentTimeMillis() - 12);
+        request.setAttribute("requestId", "3w5e11264sgsg");
+        request.getHttpFields().add("User-Agent", "hotel-service/1.2.3");
+        request.getHttpFields().add("Cookie", "JSESSIONID=1234; wotif_session=abc123; tracking=xyz");
+        return request;
+    }
+
+    static Response response(final int status, final long contentLength) {
+        // Response#setLongContentLength and #getContentCount need a channel, so the values are stubbed instead
+        return new Response(null, null) {
+            @Override
+            public int getStatus() {
+                return status;
+            }
+
+            @Override
+            public long getLongContentLength() {
+                return contentLength;
+            }
+
+            @Override
+            public long getContentCount() {
+                return 0;
+            }
+        };
+    }
+
+}
@@ -0,0 +1,117 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.server.Request;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.response;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RequestLogRulesTest {
+
+    private static final ImmutableMap<Integer, Integer> NO_SAMPLING = ImmutableMap.of();
+
+    @Test
+    public void logsEverythingByDefault() {
+        final RequestLogRules rules = RequestLogRules.from(new RequestLogFilterConfiguration());
+
+        assertThat(rules.shouldLog(request("/pool_status.txt"), response(200, 10))).isTrue();
+        assertThat(rules.shouldLog(request("/hotels"), response(404, 10))).isTrue();
+    }
+
+    @Test
+    public void dropsExcludedPaths() {
+        final RequestLogRules rules = new RequestLogRules(Arrays.asList("/pool_status.txt", "/health"), NO_SAMPLING,
+                -1, true);
+
+        assertThat(rules.shouldLog(request("/pool_status.txt"), response(200, 10))).isFalse();
+        assertThat(rules.shouldLog(request("/healthcheck?x=1"), response(200, 10))).isFalse();
+        assertThat(rules.shouldLog(request("/hotels/health"), response(200, 10))).isTrue();
+    }
+
+    @Test
+    public void alwaysLogsErrorsAndSlowRequests() {
+        final RequestLogRules rules = new RequestLogRules(Arrays.asList("/"), NO_SAMPLING, 1000, true);
+        final Request slowRequest = request("/hotels");
+        slowRequest.setTimeStamp(System.currentTimeMillis() - 2000);
+
+        assertThat(rules.shouldLog(request("/hotels"), response(200, 10))).isFalse();
+        assertThat(rules.shouldLog(request("/hotels"), response(503, 10))).isTrue();
+        assertThat(rules.shouldLog(slowRequest, response(200, 10))).isTrue();
+    }
+
+    @Test
+    public void dropsErrorsWhenNotAlwaysLogged() {
+        final RequestLogRules rules = new RequestLogRules(Arrays.asList("/"), NO_SAMPLING, -1, false);
+
+        assertThat(rules.shouldLog(request("/hotels"), response(500, 10))).isFalse();
+    }
+
+    @Test
+    public void samplesByStatusClass() {
+        final RequestLogRules rules = new RequestLogRules(Collections.<String>emptyList(), ImmutableMap.of(2, 10),
+                -1, true);
+
+        int logged = 0;
+        for (int i = 0; i < 10000; i++) {
+            if (rules.shouldLog(request("/hotels"), response(200, 10))) {
+                logged++;
+            }
+            assertThat(rules.shouldLog(request("/hotels"), response(404, 10))).isTrue();
+        }
+        assertThat(logged).isGreaterThan(800).isLessThan(1200);
+    }
+
+    @Test
+    public void buildsFromConfiguration() {
+        final RequestLogFilterConfiguration configuration = new RequestLogFilterConfiguration();
+        configuration.setExcludedPaths(ImmutableList.of("/pool_status.txt"));
+        configuration.setSampleRates(ImmutableMap.of("2xx", 100, "3XX", 5));
+        configuration.setSlowThreshold(Duration.seconds(2));
+
+        final RequestLogRules rules = RequestLogRules.from(configuration);
+
+        assertThat(configuration.isSampleRatesValid()).isTrue();
+        assertThat(rules.getExcludedPaths()).containsExactly("/pool_status.txt");
+        assertThat(rules.getSampleRates()).isEqualTo(ImmutableMap.of(2, 100, 3, 5));
+        assertThat(rules.getSlowThresholdMillis()).isEqualTo(2000);
+        assertThat(rules.isAlwaysLogErrors()).isTrue();
+    }
+
+    @Test
+    public void rejectsInvalidSampleRates() {
+        final RequestLogFilterConfiguration configuration = new RequestLogFilterConfiguration();
+
+        configuration.setSampleRates(ImmutableMap.of("200", 10));
+        assertThat(configuration.isSampleRatesValid()).isFalse();
+
+        configuration.setSampleRates(ImmutableMap.of("2xx", 0));
+        assertThat(configuration.isSampleRatesValid()).isFalse();
+    }
+
+}
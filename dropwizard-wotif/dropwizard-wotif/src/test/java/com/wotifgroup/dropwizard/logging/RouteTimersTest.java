@@ -0,0 +1,108 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.wotifgroup.dropwizard.logging.RequestLogFixtures.request;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RouteTimersTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+    private RouteTimers routeTimers;
+
+    @Before
+    public void setup() {
+        final RouteMetricsConfiguration configuration = new RouteMetricsConfiguration();
+        configuration.setEnabled(true);
+        configuration.setRoutes(Arrays.asList("/", "/hotels", "/hotels/{id}", "/hotels/{id}/rooms", "/hotels/search",
+                "/hotels/search/{query}/rooms/all"));
+        routeTimers = new RouteTimers(configuration, metrics);
+    }
+
+    @Test
+    public void matchesTemplates() {
+        assertThat(routeTimers.template("/")).isEqualTo("/");
+        assertThat(routeTimers.template("/hotels")).isEqualTo("/hotels");
+        assertThat(routeTimers.template("/hotels/")).isEqualTo("/hotels");
+        assertThat(routeTimers.template("/hotels/123")).isEqualTo("/hotels/{id}");
+        assertThat(routeTimers.template("/hotels/123/rooms")).isEqualTo("/hotels/{id}/rooms");
+        assertThat(routeTimers.template("/hotels/search")).isEqualTo("/hotels/search");
+    }
+
+    @Test
+    public void backtracksFromLiteralToVariable() {
+        assertThat(routeTimers.template("/hotels/search/rooms")).isEqualTo("/hotels/{id}/rooms");
+        assertThat(routeTimers.template("/hotels/search/x/rooms/all")).isEqualTo("/hotels/search/{query}/rooms/all");
+    }
+
+    @Test
+    public void ignoresPathParameters() {
+        assertThat(routeTimers.template("/hotels/123;jsessionid=abc/rooms")).isEqualTo("/hotels/{id}/rooms");
+    }
+
+    @Test
+    public void recordsUnmatchedPathsAsOther() {
+        assertThat(routeTimers.template("/hotels/123/rooms/456")).isEqualTo(RouteTimers.OTHER_ROUTE);
+        assertThat(routeTimers.template("/flights")).isEqualTo(RouteTimers.OTHER_ROUTE);
+    }
+
+    @Test
+    public void recordsLatencyByRouteAndStatusClass() {
+        routeTimers.record(request("/hotels/123?checkIn=2015-01-01"), 200, 12);
+        routeTimers.record(request("/hotels/456"), 204, 20);
+        routeTimers.record(request("/hotels/456"), 503, 30);
+        routeTimers.record(request("/flights"), 404, 5);
+
+        assertThat(timer("/hotels/{id}", "2xx").getCount()).isEqualTo(2);
+        assertThat(timer("/hotels/{id}", "5xx").getCount()).isEqualTo(1);
+        assertThat(timer("other", "4xx").getCount()).isEqualTo(1);
+        assertThat(timer("/hotels", "2xx").getCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void registersTimersUpFront() {
+        assertThat(metrics.getTimers()).hasSize(7 * 5);
+    }
+
+    @Test
+    public void disabledRecordsNothing() {
+        final MetricRegistry disabledMetrics = new MetricRegistry();
+        final RouteMetricsConfiguration configuration = new RouteMetricsConfiguration();
+        configuration.setRoutes(Arrays.asList("/hotels"));
+
+        new RouteTimers(configuration, disabledMetrics).record(request("/hotels"), 200, 12);
+        RouteTimers.disabled().record(request("/hotels"), 200, 12);
+
+        assertThat(disabledMetrics.getTimers()).isEmpty();
+    }
+
+    private Timer timer(String route, String statusClass) {
+        return metrics.getTimers().get(name(RouteTimers.class, route, statusClass));
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.util.DateCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares Jetty's shared {@link DateCache} with the per-thread {@link TimestampCache} used by the request logs, with
+ * as many threads as a busy request thread pool. Run with:
+ *
+ * <pre>
+ *   java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main TimestampBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(64)
+public class TimestampBenchmark {
+
+    private static final String FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+    private static final String TIME_ZONE_ID = "GMT+10";
+
+    private DateCache dateCache;
+    private TimestampCache timestampCache;
+
+    @State(Scope.Thread)
+    public static class Buffers {
+        private final StringBuilder chars = new StringBuilder(64);
+        private final ByteBuffer bytes = ByteBuffer.allocateDirect(64);
+    }
+
+    @Setup
+    public void setup() {
+        dateCache = new DateCache(FORMAT, Locale.getDefault());
+        dateCache.setTimeZoneID(TIME_ZONE_ID);
+        timestampCache = new TimestampCache(FORMAT, TimeZone.getTimeZone(TIME_ZONE_ID), Locale.getDefault());
+    }
+
+    @Benchmark
+    public StringBuilder dateCache(Buffers buffers) {
+        buffers.chars.setLength(0);
+        return buffers.chars.append(dateCache.format(System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public StringBuilder timestampCacheChars(Buffers buffers) {
+        buffers.chars.setLength(0);
+        timestampCache.appendTo(buffers.chars, System.currentTimeMillis());
+        return buffers.chars;
+    }
+
+    @Benchmark
+    public ByteBuffer timestampCacheBytes(Buffers buffers) {
+        buffers.bytes.clear();
+        timestampCache.putTo(buffers.bytes, System.currentTimeMillis());
+        return buffers.bytes;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(TimestampBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build()).run();
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.logging;
+
+import org.eclipse.jetty.util.DateCache;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TimestampCacheTest {
+
+    private static final String FORMAT = "dd/MMM/yyyy:HH:mm:ss Z";
+
+    private final TimestampCache cache = new TimestampCache(FORMAT, TimeZone.getTimeZone("GMT+10"), Locale.ENGLISH);
+    private final DateCache dateCache = new DateCache(FORMAT, Locale.ENGLISH);
+
+    {
+        dateCache.setTimeZoneID("GMT+10");
+    }
+
+    @Test
+    public void formatsSameAsDateCache() {
+        final long start = 1420030799000L; // 31/Dec/2014:22:59:59 +1000
+        for (long millis = start; millis < start + 3000; millis += 250) {
+            assertThat(chars(millis)).isEqualTo(dateCache.format(millis));
+            assertThat(bytes(millis)).isEqualTo(dateCache.format(millis));
+        }
+        assertThat(chars(start)).isEqualTo("31/Dec/2014:22:59:59 +1000");
+    }
+
+    @Test
+    public void formatsEarlierSecondsAgain() {
+        assertThat(chars(1420030800000L)).isEqualTo("31/Dec/2014:23:00:00 +1000");
+        assertThat(chars(1420030799999L)).isEqualTo("31/Dec/2014:22:59:59 +1000");
+    }
+
+    @Test
+    public void formatsIndependentlyOnEachThread() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final Future<?>[] futures = new Future<?>[4];
+            for (int t = 0; t < futures.length; t++) {
+                final long offset = t * 86400000L;
+                futures[t] = executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (long millis = 1420030799000L; millis < 1420030899000L; millis += 500) {
+                            assertThat(chars(millis + offset)).isEqualTo(dateCache.format(millis + offset));
+                        }
+                        return null;
+                    }
+                });
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private String chars(long millis) {
+        final StringBuilder buf = new StringBuilder();
+        cache.appendTo(buf, millis);
+        return buf.toString();
+    }
+
+    private String bytes(long millis) {
+        final ByteBuffer buf = ByteBuffer.allocate(64);
+        cache.putTo(buf, millis);
+        buf.flip();
+        return StandardCharsets.UTF_8.decode(buf).toString();
+    }
+
+}
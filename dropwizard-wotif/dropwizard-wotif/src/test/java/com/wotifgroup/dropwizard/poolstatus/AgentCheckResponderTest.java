@@ -0,0 +1,63 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.google.common.io.ByteStreams;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class AgentCheckResponderTest {
+
+    private final PoolStatus pool = new PoolStatus();
+    private final AgentCheckResponder responder = new AgentCheckResponder(pool, 0);
+
+    @Before
+    public void setUp() throws Exception {
+        responder.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        responder.stop();
+    }
+
+    @Test
+    public void answersEachCheckWithPoolState() throws Exception {
+        assertThat(check()).isEqualTo("down\n");
+        pool.enter();
+        assertThat(check()).isEqualTo("up ready 100%\n");
+        assertThat(check()).isEqualTo("up ready 100%\n");
+    }
+
+    private String check() throws IOException {
+        try (Socket socket = new Socket("localhost", responder.getPort())) {
+            return new String(ByteStreams.toByteArray(socket.getInputStream()), StandardCharsets.US_ASCII);
+        }
+    }
+
+}
@@ -25,6 +25,7 @@ import io.dropwizard.servlets.tasks.Task;
 import org.junit.Test;
 
 import java.io.PrintWriter;
+import java.util.concurrent.TimeUnit;
 
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
@@ -45,4 +46,11 @@ public class ExitsPoolTaskTest {
         verify(pool, times(1)).exit();
     }
 
+    @Test
+    public void drainsBeforeExitingPool() throws Exception {
+        task.execute(ImmutableMultimap.of("drain", "30s"), output);
+
+        verify(pool, times(1)).exit(30, TimeUnit.SECONDS);
+    }
+
 }
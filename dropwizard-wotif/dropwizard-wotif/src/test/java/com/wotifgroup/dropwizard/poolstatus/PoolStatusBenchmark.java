@@ -0,0 +1,184 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.wotifgroup.dropwizard.tracing.RequestTracingFilter;
+import com.wotifgroup.poolstatusservlet.InFlightRequestFilter;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import com.wotifgroup.poolstatusservlet.PoolStatusServlet;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a load balancer probe of {@code /pool_status.txt} against an embedded Jetty with the request tracing and
+ * in flight request filters every request goes through, answered by the servlet as it was, by the servlet as it is,
+ * and by {@link PoolStatusHandler} ahead of the filters. Probes are sent over a kept alive connection on the loopback
+ * interface, so each one is timed from sending the request to reading the whole response. Run with:
+ *
+ * <pre>
+ *   java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main PoolStatusBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PoolStatusBenchmark {
+
+    private static final byte[] PROBE = "GET /pool_status.txt HTTP/1.1\r\nHost: localhost\r\n\r\n"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    @Param({"original", "servlet", "handler"})
+    private String responder;
+
+    private final byte[] buffer = new byte[4096];
+    private Server server;
+    private Socket socket;
+    private OutputStream out;
+    private InputStream in;
+
+    @Setup
+    public void setup() throws Exception {
+        // Jetty logs every wake up of its selector at debug, which would swamp the probe itself
+        ((Logger) LoggerFactory.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME)).setLevel(Level.WARN);
+        final PoolStatus pool = new PoolStatus();
+        pool.enter();
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addFilter(new FilterHolder(new RequestTracingFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addFilter(new FilterHolder(new InFlightRequestFilter(pool)), "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addServlet(new ServletHolder("original".equals(responder)
+                ? new OriginalPoolStatusServlet(pool) : new PoolStatusServlet(pool)), "/pool_status.txt");
+        if ("handler".equals(responder)) {
+            context.insertHandler(new PoolStatusHandler(pool));
+        }
+        server = new Server();
+        final ServerConnector connector = new ServerConnector(server);
+        server.addConnector(connector);
+        server.setHandler(context);
+        server.start();
+
+        socket = new Socket("localhost", connector.getLocalPort());
+        socket.setTcpNoDelay(true);
+        out = socket.getOutputStream();
+        in = socket.getInputStream();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        socket.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public int probe() throws IOException {
+        out.write(PROBE);
+        int read = 0;
+        int length;
+        do {
+            final int count = in.read(buffer, read, buffer.length - read);
+            if (count < 0) {
+                throw new IOException("Connection closed after " + read + " bytes");
+            }
+            read += count;
+            length = responseLength(read);
+        } while (length < 0 || read < length);
+        return read;
+    }
+
+    /**
+     * @return the length of the whole response once its headers have been read, otherwise -1
+     */
+    private int responseLength(int read) {
+        for (int i = 3; i < read; i++) {
+            if (buffer[i] == '\n' && buffer[i - 1] == '\r' && buffer[i - 2] == '\n' && buffer[i - 3] == '\r') {
+                final String headers = new String(buffer, 0, i, StandardCharsets.US_ASCII);
+                final int start = headers.indexOf("Content-Length: ") + "Content-Length: ".length();
+                final int end = headers.indexOf('\r', start);
+                return i + 1 + Integer.parseInt(headers.substring(start, end));
+            }
+        }
+        return -1;
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(PoolStatusBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build()).run();
+    }
+
+    /**
+     * The servlet as it was before its responses were encoded in advance, for comparison.
+     */
+    private static class OriginalPoolStatusServlet extends HttpServlet {
+
+        private final PoolStatus pool;
+
+        OriginalPoolStatusServlet(PoolStatus pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+            resp.setStatus(HttpServletResponse.SC_OK);
+            final String entity = String.format("%s", pool.state());
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setContentLength(entity.length() + 1);
+
+            final ServletOutputStream out = resp.getOutputStream();
+            out.print(entity);
+            out.print('\n');
+            out.close();
+        }
+    }
+
+}
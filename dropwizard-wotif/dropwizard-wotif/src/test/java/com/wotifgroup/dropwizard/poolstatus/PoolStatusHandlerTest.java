@@ -0,0 +1,127 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import org.eclipse.jetty.server.LocalConnector;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.servlet.FilterHolder;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PoolStatusHandlerTest {
+
+    private final PoolStatus pool = new PoolStatus();
+    private final Server server = new Server();
+    private final LocalConnector connector = new LocalConnector(server);
+    private final AtomicInteger filtered = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addFilter(new FilterHolder(new CountingFilter()), "/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addServlet(new ServletHolder(new HttpServlet() {
+            @Override
+            protected void service(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+                resp.getWriter().print("servlet");
+            }
+        }), "/*");
+        context.insertHandler(new PoolStatusHandler(pool));
+        server.addConnector(connector);
+        server.setHandler(context);
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+    }
+
+    @Test
+    public void answersProbesAheadOfFilters() throws Exception {
+        assertThat(request("GET /pool_status.txt")).startsWith("HTTP/1.1 200 OK")
+                .contains("Content-Type: text/plain; charset=UTF-8")
+                .contains("Content-Length: 5")
+                .endsWith("\r\n\r\ndead\n");
+        pool.enter();
+        assertThat(request("GET /pool_status.txt")).endsWith("\r\n\r\nalive\n");
+        assertThat(request("GET /agent_check.txt")).endsWith("\r\n\r\nup ready 100%\n");
+        assertThat(filtered.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void answersHeadWithoutBody() throws Exception {
+        assertThat(request("HEAD /pool_status.txt")).contains("Content-Length: 5").endsWith("\r\n\r\n");
+        assertThat(filtered.get()).isEqualTo(0);
+    }
+
+    @Test
+    public void leavesOtherRequestsToServlets() throws Exception {
+        assertThat(request("GET /search")).endsWith("\r\n\r\nservlet");
+        assertThat(request("POST /pool_status.txt")).endsWith("\r\n\r\nservlet");
+        assertThat(filtered.get()).isEqualTo(2);
+    }
+
+    private String request(String requestLine) throws Exception {
+        final ByteBuffer response = connector.getResponses(
+                ByteBuffer.wrap((requestLine + " HTTP/1.0\r\n\r\n").getBytes(StandardCharsets.US_ASCII)));
+        return StandardCharsets.UTF_8.decode(response).toString();
+    }
+
+    private final class CountingFilter implements Filter {
+
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            filtered.incrementAndGet();
+            chain.doFilter(request, response);
+        }
+
+        @Override
+        public void destroy() {
+        }
+    }
+
+}
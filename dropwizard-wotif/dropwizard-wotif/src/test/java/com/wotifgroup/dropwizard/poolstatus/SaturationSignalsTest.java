@@ -0,0 +1,113 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.poolstatus;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.wotifgroup.poolstatusservlet.SaturationSignal;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.Test;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.fest.assertions.api.Assertions.offset;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SaturationSignalsTest {
+
+    private final MetricRegistry metrics = new MetricRegistry();
+
+    @Test
+    public void queueDepthIsZeroUntilServerIsBuilt() {
+        assertThat(new QueueDepthSaturation(metrics, 100).saturation()).isEqualTo(0.0);
+    }
+
+    @Test
+    public void queueDepthIsReadFromServerThreadPool() {
+        metrics.register(name(QueuedThreadPool.class, "dw", "jobs"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 25;
+            }
+        });
+        metrics.register(name(QueuedThreadPool.class, "dw", "size"), new Gauge<Integer>() {
+            @Override
+            public Integer getValue() {
+                return 1000;
+            }
+        });
+
+        assertThat(new QueueDepthSaturation(metrics, 100).saturation()).isEqualTo(0.25);
+    }
+
+    @Test
+    public void gcShareIsMeasuredSinceLastAsked() throws Exception {
+        final GarbageCollectorMXBean young = mock(GarbageCollectorMXBean.class);
+        final GarbageCollectorMXBean old = mock(GarbageCollectorMXBean.class);
+        when(young.getCollectionTime()).thenReturn(1000L);
+        when(old.getCollectionTime()).thenReturn(-1L);
+        final SaturationSignal signal = new GcPauseSaturation(Arrays.asList(young, old), 0.5);
+
+        Thread.sleep(100);
+        assertThat(signal.saturation()).isEqualTo(0.0);
+
+        when(young.getCollectionTime()).thenReturn(1050L);
+        final long start = System.nanoTime();
+        Thread.sleep(100);
+        final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // half the time spent collecting is the most allowed, so a quarter is halfway there
+        assertThat(signal.saturation()).isEqualTo(50.0 / elapsed / 0.5, offset(0.1));
+    }
+
+    @Test
+    public void poolWaitIsWorstMeanOfMatchingTimers() {
+        metrics.timer("org.apache.http.client.HttpClient.hotels.hotels:8080.lease")
+                .update(20, TimeUnit.MILLISECONDS);
+        metrics.timer("org.apache.http.client.HttpClient.flights.flights:8080.lease")
+                .update(50, TimeUnit.MILLISECONDS);
+        metrics.timer("org.apache.http.client.HttpClient.flights.flights:8080.latency")
+                .update(5, TimeUnit.SECONDS);
+        final SaturationSignal signal = new PoolWaitSaturation(metrics,
+                Pattern.compile("org\\.apache\\.http\\.client\\.HttpClient\\..*\\.lease"),
+                TimeUnit.MILLISECONDS.toNanos(100));
+
+        assertThat(signal.saturation()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void buildsOnlySignalsConfigured() {
+        final PoolWeightConfiguration configuration = new PoolWeightConfiguration();
+        assertThat(configuration.buildSaturationSignals(metrics)).hasSize(2);
+
+        configuration.setPoolWaitTimers(".*\\.lease");
+        assertThat(configuration.buildSaturationSignals(metrics)).hasSize(3);
+
+        configuration.setMaxQueueDepth(0);
+        configuration.setMaxGcShare(0);
+        assertThat(configuration.buildSaturationSignals(metrics)).hasSize(1);
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link IdGenerationStrategy} implementations, along with the original nextDouble and Long#toString implementation.
+ * Run with:
+ *
+ * <pre>
+ *   java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main IdGeneratorBenchmark -prof gc
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(8)
+public class IdGeneratorBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Strategy {
+
+        @Param({"RANDOM", "TIME_ORDERED", "PREFETCHING_RANDOM"})
+        private RequestTracingConfiguration.IdStrategy strategy;
+
+        private IdGenerationStrategy generator;
+
+        @Setup
+        public void setup() {
+            final RequestTracingConfiguration configuration = new RequestTracingConfiguration();
+            configuration.setIdStrategy(strategy);
+            generator = configuration.buildIdGenerator();
+        }
+
+    }
+
+    @Benchmark
+    public String generate(Strategy strategy) {
+        return strategy.generator.generate();
+    }
+
+    @Benchmark
+    public String original() {
+        long r = (long) (ThreadLocalRandom.current().nextDouble() * Long.MAX_VALUE);
+        return Long.toString(r, 36);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(IdGeneratorBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build()).run();
+    }
+
+}
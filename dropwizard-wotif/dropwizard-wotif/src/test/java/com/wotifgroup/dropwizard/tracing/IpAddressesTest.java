@@ -0,0 +1,45 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.junit.Test;
+
+import static com.wotifgroup.dropwizard.tracing.IpAddresses.NOT_IPV4;
+import static com.wotifgroup.dropwizard.tracing.IpAddresses.parseIpv4;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class IpAddressesTest {
+
+    @Test
+    public void parsesDottedQuads() {
+        assertThat(parseIpv4("0.0.0.0")).isEqualTo(0);
+        assertThat(parseIpv4("10.1.2.3")).isEqualTo(0x0a010203L);
+        assertThat(parseIpv4("255.255.255.255")).isEqualTo(0xffffffffL);
+    }
+
+    @Test
+    public void rejectsAnythingElse() {
+        for (String address : new String[] {null, "", "unknown", "10.1.2", "10.1.2.3.4", "10.1.2.256", "10..2.3",
+                "10.1.2.", ".10.1.2", "010.1.2.3", "1000.1.2.3", "10.1.2.3 ", "::1", "10.1.2.3a"}) {
+            assertThat(parseIpv4(address)).as(String.valueOf(address)).isEqualTo(NOT_IPV4);
+        }
+    }
+
+}
@@ -0,0 +1,69 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RandomIdGeneratorTest {
+
+    @Test
+    public void generatesRandomIds() {
+        checkGenerates(new RandomIdGenerator());
+    }
+
+    @Test
+    public void generatesRandomIdsFromIdGenerator() {
+        checkGenerates(new IdGenerator());
+    }
+
+    @Test
+    public void generatesPrefetchedRandomIds() {
+        checkGenerates(new PrefetchingRandomIdGenerator(7));
+    }
+
+    @Test
+    public void formatsSameAsLongToString() {
+        for (long value : new long[] {0, 1, 35, 36, 123456789, Long.MAX_VALUE}) {
+            assertThat(RandomIdGenerator.format(value)).isEqualTo(Long.toString(value, 36));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEmptyBatch() {
+        new PrefetchingRandomIdGenerator(0);
+    }
+
+    private static void checkGenerates(IdGenerationStrategy generator) {
+        final Set<String> ids = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            final String id = generator.generate();
+            assertThat(id).matches("[0-9a-z]{1,13}");
+            assertThat(Long.parseLong(id, 36)).isGreaterThanOrEqualTo(0);
+            ids.add(id);
+        }
+        assertThat(ids).hasSize(1000);
+    }
+
+}
@@ -0,0 +1,142 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Test;
+import org.slf4j.MDC;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RequestContextTest {
+
+    // a single thread, so a context left behind by one task would be seen by the next
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    private final ExecutorService executor = new RequestContextExecutorService(pool);
+
+    private final Callable<String> currentRequestId = new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+            return RequestContext.currentRequestId() + "/" + MDC.get(RequestContext.REQUEST_ID);
+        }
+    };
+
+    @After
+    public void tearDown() throws Exception {
+        pool.shutdownNow();
+        pool.awaitTermination(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void scopeRestoresPreviousContext() throws Exception {
+        try (RequestContext.Scope outer = new RequestContext("outer").attach()) {
+            try (RequestContext.Scope inner = new RequestContext("inner").attach()) {
+                assertThat(currentRequestId.call()).isEqualTo("inner/inner");
+            }
+            assertThat(currentRequestId.call()).isEqualTo("outer/outer");
+        }
+        assertThat(RequestContext.current()).isNull();
+        assertThat(MDC.get(RequestContext.REQUEST_ID)).isNull();
+    }
+
+    @Test
+    public void executorPropagatesAndClearsContext() throws Exception {
+        final Future<String> first;
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            first = executor.submit(currentRequestId);
+        }
+        final Future<String> second = executor.submit(currentRequestId);
+
+        assertThat(first.get()).isEqualTo("abc/abc");
+        assertThat(second.get()).isEqualTo("null/null");
+        assertThat(pool.submit(currentRequestId).get()).isEqualTo("null/null");
+    }
+
+    @Test
+    public void executorPropagatesContextToInvokeAll() throws Exception {
+        final List<Future<String>> results;
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            results = executor.invokeAll(Arrays.asList(currentRequestId, currentRequestId));
+        }
+
+        for (Future<String> result : results) {
+            assertThat(result.get()).isEqualTo("abc/abc");
+        }
+    }
+
+    @Test
+    public void executorPropagatesContextToRunnables() throws Exception {
+        final AtomicReference<String> got = new AtomicReference<>();
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    got.set(RequestContext.currentRequestId());
+                }
+            }).get();
+        }
+
+        assertThat(got.get()).isEqualTo("abc");
+    }
+
+    @Test
+    public void callbackRunsWithContextOfRegisteringThread() throws Exception {
+        final ListeningExecutorService listening = RequestContextExecutorService.listeningDecorator(pool);
+        final SettableFuture<String> future = SettableFuture.create();
+        final AtomicReference<String> got = new AtomicReference<>();
+
+        final ListenableFuture<String> result;
+        try (RequestContext.Scope ignored = new RequestContext("abc").attach()) {
+            result = listening.submit(currentRequestId);
+            Futures.addCallback(future, RequestContext.wrap(new FutureCallback<String>() {
+                @Override
+                public void onSuccess(String value) {
+                    got.set(RequestContext.currentRequestId());
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    got.set(t.toString());
+                }
+            }));
+        }
+        // completed from a thread with no context of its own
+        future.set("done");
+
+        assertThat(result.get()).isEqualTo("abc/abc");
+        assertThat(got.get()).isEqualTo("abc");
+        assertThat(RequestContext.current()).isNull();
+    }
+
+}
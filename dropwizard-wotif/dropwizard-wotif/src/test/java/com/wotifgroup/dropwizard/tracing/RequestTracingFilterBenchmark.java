@@ -0,0 +1,176 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import com.google.common.collect.Iterators;
+import com.google.common.net.InetAddresses;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Response;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.slf4j.MDC;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the per-request cost of {@link RequestTracingFilter} against the implementation it replaced, for an internal
+ * request echoing an X-Opaque-ID, an internal request without one and an external request. Run with:
+ *
+ * <pre>
+ *   java -cp target/test-classes:target/classes:... org.openjdk.jmh.Main RequestTracingFilterBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RequestTracingFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = new FilterChain() {
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response) {
+        }
+    };
+
+    @Param({"internal-echo", "internal-generate", "external"})
+    private String scenario;
+
+    private Request request;
+    private Response response;
+    private Filter filter;
+    private Filter originalFilter;
+
+    @Setup
+    public void setup() {
+        request = new Request(null, null);
+        final HttpFields headers = request.getHttpFields();
+        headers.add("Host", "hotels.example.com");
+        headers.add("Accept", "application/json");
+        headers.add("Accept-Encoding", "gzip");
+        headers.add("User-Agent", "hotel-service/1.2.3");
+        headers.add("Cookie", "JSESSIONID=1234; wotif_session=abc123");
+        if (!"internal-generate".equals(scenario)) {
+            headers.add(RequestTracingFilter.X_OPAQUE_ID, "3w5e11264sgsg");
+        }
+        request.setRemoteAddr(new InetSocketAddress("external".equals(scenario) ? "203.8.182.99" : "10.1.1.1", 45678));
+        // Response#setHeader needs a channel, so headers are written straight into the fields instead
+        response = new Response(null, null) {
+            @Override
+            public void setHeader(String name, String value) {
+                getHttpFields().put(name, value);
+            }
+        };
+        filter = new RequestTracingFilter();
+        originalFilter = new OriginalRequestTracingFilter();
+    }
+
+    @Benchmark
+    public Object current() throws Exception {
+        filter.doFilter(request, response, NO_OP_CHAIN);
+        return request.getAttribute(RequestTracingFilter.REQUEST_ID);
+    }
+
+    @Benchmark
+    public Object original() throws Exception {
+        originalFilter.doFilter(request, response, NO_OP_CHAIN);
+        return request.getAttribute(RequestTracingFilter.REQUEST_ID);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(RequestTracingFilterBenchmark.class.getSimpleName())
+                .warmupIterations(5)
+                .measurementIterations(5)
+                .forks(1)
+                .build()).run();
+    }
+
+    /**
+     * The filter as it was before the fast path, for comparison.
+     */
+    private static class OriginalRequestTracingFilter implements Filter {
+
+        private static final Pattern NEW_LINES = Pattern.compile("[\r\n]");
+
+        private final IdGenerationStrategy idGenerator = new RandomIdGenerator();
+
+        @Override
+        public void init(FilterConfig filterConfig) {
+        }
+
+        @Override
+        public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+                throws IOException, ServletException {
+            final boolean siteLocal = isSiteLocalRequest(request);
+            final String requestId = buildRequestId(siteLocal, (HttpServletRequest) request);
+            MDC.put(RequestTracingFilter.REQUEST_ID, requestId);
+            request.setAttribute(RequestTracingFilter.REQUEST_ID, requestId);
+            if (siteLocal) {
+                ((HttpServletResponse) response).setHeader(RequestTracingFilter.X_OPAQUE_ID, requestId);
+            }
+            chain.doFilter(request, response);
+        }
+
+        private boolean isSiteLocalRequest(ServletRequest request) {
+            try {
+                InetAddress inetAddress = InetAddresses.forString(request.getRemoteAddr());
+                return inetAddress.isLoopbackAddress() || inetAddress.isSiteLocalAddress();
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private String buildRequestId(boolean siteLocal, HttpServletRequest httpRequest) {
+            final Iterator<String> headers = Iterators.forEnumeration(httpRequest.getHeaderNames());
+            if (siteLocal && Iterators.contains(headers, RequestTracingFilter.X_OPAQUE_ID)) {
+                final String requestId = httpRequest.getHeader(RequestTracingFilter.X_OPAQUE_ID);
+                return NEW_LINES.matcher(requestId).replaceAll("");
+            }
+            return idGenerator.generate();
+        }
+
+        @Override
+        public void destroy() {
+        }
+
+    }
+
+}
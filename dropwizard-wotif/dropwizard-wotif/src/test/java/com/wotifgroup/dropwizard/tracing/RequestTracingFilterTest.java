@@ -34,10 +34,12 @@ import java.io.IOException;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.List;
 
 import static com.wotifgroup.dropwizard.tracing.RequestTracingFilter.REQUEST_ID;
 import static com.wotifgroup.dropwizard.tracing.RequestTracingFilter.X_OPAQUE_ID;
 import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -76,7 +78,7 @@ public class RequestTracingFilterTest {
         f.doFilter(request, response, c);
 
         verify(response, times(1)).setHeader(X_OPAQUE_ID, got.toString());
-        assertThat(MDC.get(REQUEST_ID)).isNotNull();
+        assertThat(MDC.get(REQUEST_ID)).isNull();
     }
 
     @Test
@@ -97,7 +99,7 @@ public class RequestTracingFilterTest {
 
         f.doFilter(request, response, c);
 
-        assertThat(MDC.get(REQUEST_ID)).isNotEqualTo(dummyRequestId);
+        assertThat(MDC.get(REQUEST_ID)).isNull();
     }
 
     @Test
@@ -118,7 +120,79 @@ public class RequestTracingFilterTest {
 
         f.doFilter(request, response, c);
 
-        assertThat(MDC.get(REQUEST_ID)).isNotEqualTo(dummyRequestId);
+        assertThat(MDC.get(REQUEST_ID)).isNull();
+    }
+
+    @Test
+    public void echoesRequestIdFromConfiguredTrustedNetwork() throws Exception {
+        final Filter f = new RequestTracingFilter(new RandomIdGenerator(),
+                TrustedNetworks.parse(Arrays.asList("203.8.182.0/24")));
+
+        when(request.getHeader(X_OPAQUE_ID)).thenReturn("foo");
+        when(request.getRemoteAddr()).thenReturn(EXTERNAL_IP);
+
+        f.doFilter(request, response, mock(FilterChain.class));
+
+        verify(response, times(1)).setHeader(X_OPAQUE_ID, "foo");
+        verify(request).setAttribute(REQUEST_ID, "foo");
+    }
+
+    @Test
+    public void stripsNewLinesFromRequestId() throws Exception {
+        final Filter f = new RequestTracingFilter();
+        final FilterChain c = mock(FilterChain.class);
+
+        when(request.getHeader(X_OPAQUE_ID)).thenReturn("foo\r\nbar\n");
+        when(request.getRemoteAddr()).thenReturn(INTERNAL_IP);
+
+        f.doFilter(request, response, c);
+
+        verify(response, times(1)).setHeader(X_OPAQUE_ID, "foobar");
+        verify(request).setAttribute(REQUEST_ID, "foobar");
+    }
+
+    @Test
+    public void detachesContextEvenIfChainThrows() throws Exception {
+        final Filter f = new RequestTracingFilter();
+        final FilterChain c = new FilterChain() {
+            @Override
+            public void doFilter(ServletRequest request, ServletResponse response)
+                    throws IOException, ServletException {
+                throw new ServletException("boom");
+            }
+        };
+        when(request.getRemoteAddr()).thenReturn(INTERNAL_IP);
+
+        try {
+            f.doFilter(request, response, c);
+            fail("expected the chain's exception");
+        } catch (ServletException expected) {
+            // expected
+        }
+
+        assertThat(RequestContext.current()).isNull();
+        assertThat(MDC.get(REQUEST_ID)).isNull();
+    }
+
+    @Test
+    public void recordsServerSpan() throws Exception {
+        final SpanBuffer spans = new SpanBuffer(4);
+        final Filter f = new RequestTracingFilter(new RandomIdGenerator(), TrustedNetworks.siteLocal(), spans);
+
+        when(request.getHeader(X_OPAQUE_ID)).thenReturn("foo");
+        when(request.getRemoteAddr()).thenReturn(INTERNAL_IP);
+        when(request.getMethod()).thenReturn("GET");
+        when(request.getRequestURI()).thenReturn("/hotels/1");
+        when(response.getStatus()).thenReturn(404);
+
+        f.doFilter(request, response, mock(FilterChain.class));
+
+        final List<Span> recorded = spans.snapshot();
+        assertThat(recorded).hasSize(1);
+        assertThat(recorded.get(0).getRequestId()).isEqualTo("foo");
+        assertThat(recorded.get(0).getKind()).isEqualTo(Span.Kind.SERVER);
+        assertThat(recorded.get(0).getName()).isEqualTo("GET /hotels/1");
+        assertThat(recorded.get(0).getStatus()).isEqualTo(404);
     }
 
     private void checkEchoesRequestId(String ipAddress) throws IOException, ServletException {
@@ -130,6 +204,7 @@ public class RequestTracingFilterTest {
             public void doFilter(ServletRequest request, ServletResponse response)
                     throws IOException, ServletException {
                 assertThat(MDC.get(REQUEST_ID)).isEqualTo(expected);
+                assertThat(RequestContext.currentRequestId()).isEqualTo(expected);
             }
         };
 
@@ -140,7 +215,7 @@ public class RequestTracingFilterTest {
         f.doFilter(request, response, c);
 
         verify(response, times(1)).setHeader(X_OPAQUE_ID, expected);
-        assertThat(MDC.get(REQUEST_ID)).isEqualTo(expected);
+        assertThat(MDC.get(REQUEST_ID)).isNull();
         Mockito.reset(request, response);
     }
 
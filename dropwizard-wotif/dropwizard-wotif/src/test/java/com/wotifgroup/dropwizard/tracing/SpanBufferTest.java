@@ -0,0 +1,85 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SpanBufferTest {
+
+    @Test
+    public void roundsCapacityUpToPowerOfTwo() {
+        assertThat(new SpanBuffer(1).getCapacity()).isEqualTo(1);
+        assertThat(new SpanBuffer(4).getCapacity()).isEqualTo(4);
+        assertThat(new SpanBuffer(5).getCapacity()).isEqualTo(8);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsZeroCapacity() {
+        new SpanBuffer(0);
+    }
+
+    @Test
+    public void returnsSpansOldestFirst() {
+        final SpanBuffer buffer = new SpanBuffer(4);
+        buffer.record(span("a", 1));
+        buffer.record(span("b", 2));
+
+        assertThat(names(buffer.snapshot())).isEqualTo("1,2,");
+    }
+
+    @Test
+    public void overwritesOldestSpansOnceFull() {
+        final SpanBuffer buffer = new SpanBuffer(4);
+        for (int i = 1; i <= 6; i++) {
+            buffer.record(span("a", i));
+        }
+
+        assertThat(names(buffer.snapshot())).isEqualTo("3,4,5,6,");
+        assertThat(buffer.getRecorded()).isEqualTo(6);
+    }
+
+    @Test
+    public void filtersByRequestId() {
+        final SpanBuffer buffer = new SpanBuffer(8);
+        buffer.record(span("a", 1));
+        buffer.record(span("b", 2));
+        buffer.record(span("a", 3));
+
+        assertThat(names(buffer.snapshot("a"))).isEqualTo("1,3,");
+        assertThat(buffer.snapshot("c")).isEmpty();
+    }
+
+    private static Span span(String requestId, int n) {
+        return new Span(requestId, Span.Kind.CLIENT, String.valueOf(n), 0, n, 200);
+    }
+
+    private static String names(List<Span> spans) {
+        final StringBuilder names = new StringBuilder();
+        for (Span span : spans) {
+            names.append(span.getName()).append(',');
+        }
+        return names.toString();
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TimeOrderedIdGeneratorTest {
+
+    private final TimeOrderedIdGenerator generator = new TimeOrderedIdGenerator(1295);
+
+    @Test
+    public void generatesFixedWidthIdsWithTimeAndNode() {
+        final long before = System.currentTimeMillis();
+        final String id = generator.generate();
+        final long after = System.currentTimeMillis();
+
+        assertThat(id).hasSize(TimeOrderedIdGenerator.LENGTH).matches("[0-9a-z]+");
+        assertThat(Long.parseLong(id.substring(0, 9), 36)).isGreaterThanOrEqualTo(before).isLessThanOrEqualTo(after);
+        assertThat(id.substring(9, 13)).isEqualTo("00zz");
+    }
+
+    @Test
+    public void generatesSortedIdsOnOneThread() {
+        final List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(generator.generate());
+        }
+
+        final List<String> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertThat(ids).isEqualTo(sorted);
+        assertThat(new HashSet<>(ids)).hasSize(ids.size());
+    }
+
+    @Test
+    public void generatesUniqueIdsAcrossThreads() throws Exception {
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        for (int i = 0; i < 10000; i++) {
+                            ids.add(generator.generate());
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(ids).hasSize(80000);
+    }
+
+    @Test
+    public void reusesThreadNumbersInTurnWithoutGoingNegative() {
+        assertThat(TimeOrderedIdGenerator.threadNumber(0)).isEqualTo(0);
+        assertThat(TimeOrderedIdGenerator.threadNumber(46655)).isEqualTo(46655);
+        assertThat(TimeOrderedIdGenerator.threadNumber(46656)).isEqualTo(0);
+        assertThat(TimeOrderedIdGenerator.threadNumber(Integer.MAX_VALUE + 1L))
+                .isEqualTo((int) ((Integer.MAX_VALUE + 1L) % 46656));
+    }
+
+    @Test
+    public void derivesDefaultNode() {
+        assertThat(TimeOrderedIdGenerator.defaultNode()).isGreaterThanOrEqualTo(0)
+                .isLessThanOrEqualTo(TimeOrderedIdGenerator.MAX_NODE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNodeOutOfRange() {
+        new TimeOrderedIdGenerator(TimeOrderedIdGenerator.MAX_NODE + 1);
+    }
+
+}
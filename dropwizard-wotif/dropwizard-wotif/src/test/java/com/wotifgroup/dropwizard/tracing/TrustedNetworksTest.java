@@ -0,0 +1,99 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.tracing;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TrustedNetworksTest {
+
+    private final TrustedNetworks siteLocal = TrustedNetworks.siteLocal();
+
+    @Test
+    public void trustsSiteLocalAddressesByDefault() {
+        for (String address : new String[] {"127.0.0.1", "10.1.1.1", "172.16.0.1", "172.31.255.255", "192.168.1.1",
+                "0:0:0:0:0:0:0:1", "::1", "fec0::1", "::ffff:10.1.1.1"}) {
+            assertThat(siteLocal.isTrusted(address)).as(address).isTrue();
+        }
+    }
+
+    @Test
+    public void doesNotTrustInternetAddressesByDefault() {
+        for (String address : new String[] {"203.8.182.99", "172.15.0.1", "172.32.0.1", "192.169.1.1", "11.0.0.1",
+                "2001:db8::1", "::ffff:203.8.182.99", "unknown", "", null}) {
+            assertThat(siteLocal.isTrusted(address)).as(String.valueOf(address)).isFalse();
+        }
+    }
+
+    @Test
+    public void trustsConfiguredNetworks() {
+        final TrustedNetworks networks = TrustedNetworks.parse(Arrays.asList("203.8.182.0/24", "203.8.183.7/32",
+                "198.51.100.0/22", "2001:db8::/32"));
+
+        assertThat(networks.isTrusted("203.8.182.0")).isTrue();
+        assertThat(networks.isTrusted("203.8.182.255")).isTrue();
+        assertThat(networks.isTrusted("203.8.183.7")).isTrue();
+        assertThat(networks.isTrusted("203.8.183.8")).isFalse();
+        assertThat(networks.isTrusted("198.51.103.255")).isTrue();
+        assertThat(networks.isTrusted("198.51.104.0")).isFalse();
+        assertThat(networks.isTrusted("203.8.181.255")).isFalse();
+        assertThat(networks.isTrusted("10.1.1.1")).isFalse();
+        assertThat(networks.isTrusted("2001:db8:1::1")).isTrue();
+        assertThat(networks.isTrusted("2001:db9::1")).isFalse();
+    }
+
+    @Test
+    public void mergesOverlappingNetworks() {
+        final TrustedNetworks networks = TrustedNetworks.parse(Arrays.asList("10.0.0.0/8", "10.1.0.0/16",
+                "11.0.0.0/8", "9.255.255.255/32"));
+
+        assertThat(networks.isTrusted("9.255.255.255")).isTrue();
+        assertThat(networks.isTrusted("10.200.0.1")).isTrue();
+        assertThat(networks.isTrusted("11.255.255.255")).isTrue();
+        assertThat(networks.isTrusted("12.0.0.0")).isFalse();
+        assertThat(networks.getNetworks()).hasSize(4);
+    }
+
+    @Test
+    public void trustsEverythingWithZeroLengthPrefixes() {
+        final TrustedNetworks any = TrustedNetworks.any();
+
+        assertThat(any.isTrusted("0.0.0.0")).isTrue();
+        assertThat(any.isTrusted("255.255.255.255")).isTrue();
+        assertThat(any.isTrusted("2001:db8::1")).isTrue();
+        assertThat(any.isTrusted("unknown")).isFalse();
+    }
+
+    @Test
+    public void rejectsInvalidNetworks() {
+        for (String network : new String[] {"10.0.0.0", "10.0.0.0/33", "10.0.0.0/x", "bogus/8", "::1/129"}) {
+            try {
+                TrustedNetworks.parse(Arrays.asList(network));
+                throw new AssertionError("Expected " + network + " to be rejected");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+
+}
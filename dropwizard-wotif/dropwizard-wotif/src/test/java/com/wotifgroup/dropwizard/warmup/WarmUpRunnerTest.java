@@ -0,0 +1,264 @@
+/*
+ * #%L
+ * dropwizard-wotif
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.dropwizard.warmup;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.io.Files;
+import com.wotifgroup.poolstatusservlet.PoolStatus;
+import io.dropwizard.jetty.HttpConnectorFactory;
+import io.dropwizard.server.DefaultServerFactory;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.ServletContextHandler;
+import org.eclipse.jetty.servlet.ServletHolder;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class WarmUpRunnerTest {
+
+    private static final String PREFIX = "com.wotifgroup.dropwizard.warmup.WarmUpRunner.";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final WarmUpConfiguration configuration = new WarmUpConfiguration();
+    private final PoolStatus pool = new PoolStatus();
+    private final MetricRegistry metrics = new MetricRegistry();
+    private final DefaultServerFactory serverFactory = new DefaultServerFactory();
+    private final List<String> ran = new ArrayList<>();
+    private Server server;
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void runsWarmUpsInOrderThenEntersPool() throws Exception {
+        final WarmUpRunner runner = runner();
+        runner.add("connections", record("connections"));
+        runner.add("cache", new WarmUp() {
+            @Override
+            public void warmUp() {
+                assertThat(pool.detail()).isEqualTo("warming up: cache, 1 of 2 done");
+                assertThat(metrics.getGauges().get(PREFIX + "progress").getValue()).isEqualTo(0.5);
+                ran.add("cache");
+            }
+        });
+
+        runner.warmUp();
+
+        assertThat(ran).containsExactly("connections", "cache");
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.ALIVE);
+        assertThat(pool.detail()).isNull();
+        assertThat(runner.isFinished()).isTrue();
+        assertThat(metrics.getGauges().get(PREFIX + "progress").getValue()).isEqualTo(1.0);
+        assertThat(metrics.timer(PREFIX + "cache").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void carriesOnAfterFailure() throws Exception {
+        final WarmUpRunner runner = runner();
+        runner.add("broken", new WarmUp() {
+            @Override
+            public void warmUp() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        });
+        runner.add("cache", record("cache"));
+
+        runner.warmUp();
+
+        assertThat(ran).containsExactly("cache");
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.ALIVE);
+        assertThat(metrics.timer(PREFIX + "broken").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staysOutOfPoolAfterFailureIfConfigured() throws Exception {
+        configuration.setEnterPoolOnFailure(false);
+        final WarmUpRunner runner = runner();
+        runner.add("broken", new WarmUp() {
+            @Override
+            public void warmUp() throws Exception {
+                throw new IllegalStateException("broken");
+            }
+        });
+
+        runner.warmUp();
+
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(runner.isFinished()).isTrue();
+    }
+
+    @Test
+    public void interruptsWarmUpThatTakesTooLong() throws Exception {
+        configuration.setTimeout(Duration.milliseconds(100));
+        configuration.setEnterPoolOnFailure(false);
+        final WarmUpRunner runner = runner();
+        runner.add("slow", new WarmUp() {
+            @Override
+            public void warmUp() {
+                try {
+                    Thread.sleep(60000);
+                } catch (InterruptedException e) {
+                    ran.add("interrupted");
+                }
+            }
+        });
+        runner.add("skipped", record("skipped"));
+
+        runner.warmUp();
+
+        assertThat(ran).doesNotContain("skipped");
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(metrics.timer(PREFIX + "slow").getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void staysOutOfPoolIfExitedMeanwhile() throws Exception {
+        final WarmUpRunner runner = runner();
+        runner.add("cache", new WarmUp() {
+            @Override
+            public void warmUp() {
+                // as ExitPoolTask would
+                pool.exit();
+            }
+        });
+
+        runner.warmUp();
+
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(runner.isFinished()).isTrue();
+    }
+
+    @Test
+    public void rejectsWarmUpsWithSameName() throws Exception {
+        final WarmUpRunner runner = runner();
+        runner.add("cache", record("cache"));
+        try {
+            runner.add("cache", record("cache"));
+            fail("expected the second to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("cache");
+        }
+    }
+
+    @Test
+    public void replaysSampleAgainstApplicationOnceServerStarts() throws Exception {
+        final AtomicInteger requests = new AtomicInteger();
+        startServer(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                assertThat(req.getRequestURI() + "?" + req.getQueryString()).isEqualTo("/hotels?city=Brisbane");
+                requests.incrementAndGet();
+            }
+        });
+        final File sample = folder.newFile("sample.txt");
+        Files.write("# captured from the request log\nGET /hotels?city=Brisbane\n\n/hotels?city=Brisbane\n",
+                sample, StandardCharsets.UTF_8);
+        configuration.setRequestSample(sample.getPath());
+        configuration.setTargetLatency(Duration.minutes(1));
+        final WarmUpRunner runner = runner();
+        runner.add("cache", record("cache"));
+
+        runner.serverStarted(server);
+        while (!runner.isFinished()) {
+            Thread.sleep(10);
+        }
+
+        assertThat(ran).containsExactly("cache");
+        assertThat(requests.get()).isEqualTo(2);
+        assertThat(metrics.getGauges().get("com.wotifgroup.dropwizard.warmup.RequestReplay.rounds").getValue())
+                .isEqualTo(1);
+        assertThat(pool.state()).isEqualTo(PoolStatus.State.ALIVE);
+        try {
+            runner.add("late", record("late"));
+            fail("expected a warm up added after starting to be rejected");
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("started");
+        }
+    }
+
+    @Test
+    public void replaysSampleUntilTargetLatencyMet() throws Exception {
+        startServer(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+            }
+        });
+        configuration.setTargetLatency(Duration.milliseconds(0));
+        configuration.setMaxRounds(3);
+        final RequestReplay replay = new RequestReplay(
+                "http://localhost:" + ((ServerConnector) server.getConnectors()[0]).getLocalPort(),
+                RequestReplay.parse(Arrays.asList("/a", "HEAD /b")), configuration, metrics);
+
+        replay.warmUp();
+
+        assertThat(metrics.getGauges().get("com.wotifgroup.dropwizard.warmup.RequestReplay.rounds").getValue())
+                .isEqualTo(3);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSamplesOfOtherMethods() {
+        RequestReplay.parse(Arrays.asList("POST /hotels"));
+    }
+
+    private WarmUpRunner runner() throws Exception {
+        return new WarmUpRunner(configuration, pool, metrics, serverFactory);
+    }
+
+    private WarmUp record(final String name) {
+        return new WarmUp() {
+            @Override
+            public void warmUp() {
+                ran.add(name);
+            }
+        };
+    }
+
+    private void startServer(HttpServlet servlet) throws Exception {
+        ((HttpConnectorFactory) serverFactory.getApplicationConnectors().get(0)).setPort(0);
+        server = new Server(0);
+        final ServletContextHandler context = new ServletContextHandler();
+        context.addServlet(new ServletHolder(servlet), "/*");
+        server.setHandler(context);
+        server.start();
+    }
+
+}
@@ -23,15 +23,29 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.servlet.ServletException;
-import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
 
+/**
+ * Answers with bodies encoded in advance, so probes from load balancers, which come several times a second from each
+ * of them, don't format, encode or copy anything.
+ */
 class AbstractPoolServlet extends HttpServlet {
 
     static final Logger LOGGER = LoggerFactory.getLogger(PoolStatus.class);
 
+    /**
+     * Set as a single value, which Jetty knows without parsing, rather than as a type and then an encoding.
+     */
+    static final String CONTENT_TYPE = "text/plain;charset=UTF-8";
+
+    private static final Map<PoolStatus.State, byte[]> ENTERING = messages("Entering pool. Status was ");
+    private static final Map<PoolStatus.State, byte[]> EXITING = messages("Exiting pool. Status was ");
+
     private final PoolStatus pool;
 
     protected AbstractPoolServlet(final PoolStatus pool) {
@@ -39,32 +53,43 @@ class AbstractPoolServlet extends HttpServlet {
     }
 
     protected void enter(final HttpServletResponse resp) throws ServletException, IOException {
-        String message = String.format("Entering pool. Status was %s", pool.enter());
-        LOGGER.info(message);
-        respond(resp, message);
+        final PoolStatus.State previous = pool.enter();
+        LOGGER.info("Entering pool. Status was {}", previous);
+        respond(resp, ENTERING.get(previous));
     }
 
     protected final void exit(final HttpServletResponse resp) throws ServletException, IOException {
-        String message = String.format("Exiting pool. Status was %s", pool.exit());
-        LOGGER.info(message);
-        respond(resp, message);
+        final PoolStatus.State previous = pool.exit();
+        LOGGER.info("Exiting pool. Status was {}", previous);
+        respond(resp, EXITING.get(previous));
     }
 
     protected final void state(final HttpServletResponse resp) throws ServletException, IOException {
-        final PoolStatus.State state = pool.state();
         resp.setStatus(HttpServletResponse.SC_OK);
-        respond(resp, state.toString());
+        respond(resp, pool.statusBody());
     }
 
-    private void respond(final HttpServletResponse response, final String entity) throws ServletException, IOException {
-        response.setContentType("text/plain");
-        response.setCharacterEncoding("UTF-8");
-        response.setContentLength(entity.length() + 1);
+    protected final void agentCheck(final HttpServletResponse resp) throws ServletException, IOException {
+        resp.setStatus(HttpServletResponse.SC_OK);
+        respond(resp, pool.agentCheckBody());
+    }
+
+    /**
+     * Writes a body encoded in advance. With its length set, the container completes the response as soon as it's
+     * written, so the stream isn't closed.
+     */
+    private void respond(final HttpServletResponse response, final byte[] body) throws IOException {
+        response.setContentType(CONTENT_TYPE);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
 
-        final ServletOutputStream out = response.getOutputStream();
-        out.print(entity);
-        out.print('\n');
-        out.close();
+    private static Map<PoolStatus.State, byte[]> messages(final String prefix) {
+        final Map<PoolStatus.State, byte[]> messages = new EnumMap<>(PoolStatus.State.class);
+        for (PoolStatus.State state : PoolStatus.State.values()) {
+            messages.put(state, (prefix + state + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        return messages;
     }
 
 }
@@ -0,0 +1,44 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Reports this node's state and weight in the format of HAProxy's agent check, for load balancers that spread
+ * traffic by weight. See {@link PoolStatus#agentCheckResponse()}.
+ */
+public class AgentCheckServlet extends AbstractPoolServlet {
+
+    private static final long serialVersionUID = 4821504697687119241L;
+
+    public AgentCheckServlet(final PoolStatus pool) {
+        super(pool);
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws ServletException, IOException {
+        agentCheck(resp);
+    }
+
+}
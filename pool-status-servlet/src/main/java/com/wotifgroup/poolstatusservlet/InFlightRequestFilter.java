@@ -0,0 +1,90 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * Counts the requests in flight for {@link PoolStatus#exit(long, java.util.concurrent.TimeUnit)} to drain. Requests
+ * that go async are counted until they complete.
+ */
+public class InFlightRequestFilter implements Filter {
+
+    private final PoolStatus pool;
+
+    public InFlightRequestFilter(final PoolStatus pool) {
+        this.pool = pool;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        pool.requestStarted();
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) throws IOException {
+                        // Called however the request ends, after any timeout or error
+                        pool.requestFinished();
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) throws IOException {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) throws IOException {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) throws IOException {
+                        // Started again, so this listener's removed unless re-added
+                        event.getAsyncContext().addListener(this);
+                    }
+                });
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                pool.requestFinished();
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+}
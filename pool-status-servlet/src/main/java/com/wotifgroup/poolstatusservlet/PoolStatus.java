@@ -19,10 +19,54 @@
  */
 package com.wotifgroup.poolstatusservlet;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicStampedReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Whether this node should be in the load balancer's pool, and how many requests it has in flight.
+ *
+ * <p>A node leaving the pool can drain first: it reports itself {@link State#DRAINING}, so the load balancer stops
+ * sending it requests, while the requests it already has finish, and only then goes {@link State#DEAD}. Requests are
+ * counted by {@link InFlightRequestFilter}.</p>
+ *
+ * <p>A node in the pool also has a weight, from 1 to 100, for load balancers that can spread traffic by weight. It
+ * starts low on entering the pool and ramps up over the slow start period, so a fresh node isn't given its full share
+ * at once, and drops as {@link SaturationSignal}s rise. The weight is published in the format of HAProxy's agent check
+ * (such as {@code up ready 75%}), as {@link AgentCheckServlet} does.</p>
+ *
+ * <p>Responses for the pool status page and agent check are rendered when the state changes and when the weight is
+ * recalculated, at most once a refresh interval, so probes only have to write out bytes.</p>
+ *
+ * <p>Rather than holding a thread in {@link #awaitEntry()}, work that should only happen in the pool can be started and
+ * stopped by a {@link PoolStatusListener}, or wait on {@link #whenAlive()}.</p>
+ *
+ * <p>State changes and counting are lock free; threads waiting for a state change are parked and unparked
+ * directly.</p>
+ */
 public class PoolStatus {
 
     public enum State {
-        ALIVE("alive"), DEAD("dead");
+        ALIVE("alive"), DRAINING("draining"), DEAD("dead");
 
         private final String label;
 
@@ -37,33 +81,498 @@ public class PoolStatus {
 
     }
 
-    private volatile State state = State.DEAD;
+    public static final int MAX_WEIGHT = 100;
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PoolStatus.class);
+
+    // Stamped with the number of calls to enter or exit, see changeCount()
+    private final AtomicStampedReference<State> state = new AtomicStampedReference<>(State.DEAD, 0);
+    private final StripedCounter inFlight = new StripedCounter();
+    private final Queue<Thread> waiters = new ConcurrentLinkedQueue<>();
+    private final List<SaturationSignal> saturationSignals = new CopyOnWriteArrayList<>();
+    private final List<Registration> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<AliveFuture> aliveFutures = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextRefresh = new AtomicLong(System.nanoTime());
+    private volatile String detail;
+    private volatile long slowStartNanos;
+    private volatile long refreshIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+    private volatile long enteredAt = System.nanoTime();
+    private volatile double saturation;
+    private volatile int aliveWeight = MAX_WEIGHT;
+    private volatile Rendered rendered = render(State.DEAD, null);
 
     public State enter() {
         return getAndSetState(State.ALIVE);
     }
 
+    /**
+     * Enters the pool unless it has been entered or exited since the change count was read, so that whatever took this
+     * node out of the pool can put it back without overriding anyone who has taken it out, or put it in, since.
+     *
+     * @param changeCount the {@link #changeCount()} when this node was taken out
+     * @return whether it entered the pool
+     */
+    public boolean enterUnlessChangedSince(final int changeCount) {
+        final int[] changes = new int[1];
+        final State oldState = state.get(changes);
+        if (changes[0] != changeCount || !state.compareAndSet(oldState, State.ALIVE, changeCount, changeCount + 1)) {
+            return false;
+        }
+        changed(oldState, State.ALIVE);
+        return true;
+    }
+
+    /**
+     * @return the number of calls made to enter or exit the pool, whether or not they changed the state
+     */
+    public int changeCount() {
+        return state.getStamp();
+    }
+
+    /**
+     * Leaves the pool straight away, whatever's still in flight.
+     */
     public State exit() {
         return getAndSetState(State.DEAD);
     }
 
+    /**
+     * Leaves the pool after draining: the node is {@link State#DRAINING} until it has no requests in flight or the
+     * timeout passes, whichever is first, and then {@link State#DEAD}. Entering the pool meanwhile stops the drain and
+     * leaves the node in it.
+     *
+     * @return the state before draining
+     */
+    public State exit(final long timeout, final TimeUnit unit) throws InterruptedException {
+        final long deadline = System.nanoTime() + unit.toNanos(timeout);
+        final int[] changes = new int[1];
+        State previous;
+        do {
+            previous = state.get(changes);
+        } while (!state.compareAndSet(previous, previous == State.DEAD ? State.DEAD : State.DRAINING, changes[0],
+                changes[0] + 1));
+        if (previous == State.DEAD) {
+            return previous;
+        }
+        if (previous != State.DRAINING) {
+            changed(State.DRAINING);
+        }
+
+        awaitState(new Condition() {
+            @Override
+            public boolean isMet(State current) {
+                return current != State.DRAINING || inFlight.sum() <= 0;
+            }
+        }, true, deadline);
+        // Finishing the drain isn't a call of its own, so leaves the change count alone
+        while (state.get(changes) == State.DRAINING) {
+            if (state.compareAndSet(State.DRAINING, State.DEAD, changes[0], changes[0])) {
+                changed(State.DEAD);
+                break;
+            }
+        }
+        return previous;
+    }
+
     public State state() {
-        return state;
+        return state.getReference();
+    }
+
+    /**
+     * @return what the node's doing about its state, such as warming up before entering the pool, or null
+     */
+    public String detail() {
+        return detail;
+    }
+
+    /**
+     * Says what the node's doing about its state, for the pool status page, or nothing if null.
+     */
+    public void setDetail(final String detail) {
+        this.detail = detail;
+        rerender();
+    }
+
+    /**
+     * @return the weight this node should have in the pool: 0 if it's not in it, otherwise from 1 to {@link #MAX_WEIGHT}
+     */
+    public int weight() {
+        return rendered().weight;
+    }
+
+    /**
+     * @return the highest saturation signal when the weight was last calculated
+     */
+    public double saturation() {
+        return saturation;
+    }
+
+    /**
+     * Sets how long after entering the pool the weight takes to ramp up to full, or zero for full weight at once.
+     */
+    public void setSlowStart(final long duration, final TimeUnit unit) {
+        this.slowStartNanos = unit.toNanos(duration);
+        refresh();
+    }
+
+    /**
+     * Sets how often the weight may be recalculated, which means checking every saturation signal.
+     */
+    public void setRefreshInterval(final long interval, final TimeUnit unit) {
+        this.refreshIntervalNanos = unit.toNanos(interval);
     }
 
-    public synchronized void awaitEntry() throws InterruptedException {
-        while (state != State.ALIVE) {
-            wait();
+    public void addSaturationSignal(final SaturationSignal signal) {
+        saturationSignals.add(signal);
+    }
+
+    /**
+     * @return this node's state and weight in the format of HAProxy's agent check, such as {@code up ready 75%},
+     * {@code drain} or {@code down}, followed by a newline
+     */
+    public ByteBuffer agentCheckResponse() {
+        return rendered().agentCheckBuffer.duplicate();
+    }
+
+    /**
+     * @return the body of the pool status page, such as {@code alive}, followed by a newline: a read only view of the
+     * bytes rendered on the last change, which isn't copied and can be sent as it is
+     */
+    public ByteBuffer statusResponse() {
+        return rendered().statusBuffer.duplicate();
+    }
+
+    /**
+     * Recalculates the weight from the slow start ramp and the saturation signals.
+     */
+    public void refresh() {
+        final long now = System.nanoTime();
+        double highest = 0;
+        for (SaturationSignal signal : saturationSignals) {
+            try {
+                highest = Math.max(highest, signal.saturation());
+            } catch (RuntimeException e) {
+                LOGGER.debug("Saturation signal {} failed", signal, e);
+            }
         }
+        saturation = Math.min(1, highest);
+        final long slowStart = slowStartNanos;
+        final double ramp = slowStart <= 0 ? 1 : Math.min(1, (double) (now - enteredAt) / slowStart);
+        aliveWeight = Math.max(1, (int) Math.round(MAX_WEIGHT * ramp * (1 - saturation)));
+        rerender();
     }
 
-    private synchronized State getAndSetState(State newState) {
-        State oldState = state;
-        if (oldState != newState) {
-            state = newState;
-            notifyAll();
+    /**
+     * @return the body of the pool status page, the state and any detail followed by a newline
+     */
+    byte[] statusBody() {
+        return rendered().status;
+    }
+
+    byte[] agentCheckBody() {
+        return rendered().agentCheck;
+    }
+
+    int aliveFuturesWaiting() {
+        return aliveFutures.size();
+    }
+
+    /**
+     * @return the number of requests started and not yet finished
+     */
+    public long inFlight() {
+        return Math.max(0, inFlight.sum());
+    }
+
+    public void requestStarted() {
+        inFlight.increment();
+    }
+
+    public void requestFinished() {
+        inFlight.decrement();
+        if (state.getReference() == State.DRAINING) {
+            // Only counted while draining, when there's someone waiting for it to reach zero
+            signal();
+        }
+    }
+
+    public void awaitEntry() throws InterruptedException {
+        awaitState(new Condition() {
+            @Override
+            public boolean isMet(State current) {
+                return current == State.ALIVE;
+            }
+        }, false, 0);
+    }
+
+    /**
+     * Adds a listener told of changes on a single shared daemon thread, see {@link #addListener(PoolStatusListener,
+     * Executor)}.
+     */
+    public void addListener(final PoolStatusListener listener) {
+        addListener(listener, ListenerExecutor.INSTANCE);
+    }
+
+    /**
+     * Adds a listener told of changes on the given executor, never on the thread making the change. A listener added
+     * while this node's in the pool, or draining, is told so straight away.
+     *
+     * <p>Each listener is told of one change at a time, in order, and is always told of the latest state: changes
+     * made faster than it handles them are skipped, so it may hear of leaving the pool without hearing of draining
+     * first, or nothing at all of entering and leaving again, but never ends up thinking it's in the pool when it
+     * isn't.</p>
+     */
+    public void addListener(final PoolStatusListener listener, final Executor executor) {
+        final Registration registration = new Registration(listener, executor);
+        listeners.add(registration);
+        registration.changed();
+    }
+
+    public void removeListener(final PoolStatusListener listener) {
+        for (Registration registration : listeners) {
+            if (registration.listener == listener) {
+                listeners.remove(registration);
+            }
+        }
+    }
+
+    /**
+     * @return a future that's done once this node's in the pool, straight away if it already is
+     */
+    public Future<State> whenAlive() {
+        final AliveFuture alive = new AliveFuture();
+        aliveFutures.add(alive);
+        // Checked after adding, so entering either sees it in the queue or is seen here
+        if (state.getReference() == State.ALIVE && aliveFutures.remove(alive)) {
+            alive.run();
         }
+        return alive;
+    }
+
+    private State getAndSetState(State newState) {
+        final int[] changes = new int[1];
+        State oldState;
+        do {
+            oldState = state.get(changes);
+        } while (!state.compareAndSet(oldState, newState, changes[0], changes[0] + 1));
+        changed(oldState, newState);
         return oldState;
     }
 
+    private void changed(State oldState, State newState) {
+        if (oldState != newState) {
+            if (newState == State.ALIVE) {
+                enteredAt = System.nanoTime();
+                refresh();
+            }
+            changed(newState);
+        }
+    }
+
+    private void changed(State newState) {
+        signal();
+        rerender();
+        if (newState == State.ALIVE) {
+            AliveFuture alive;
+            while ((alive = aliveFutures.poll()) != null) {
+                alive.run();
+            }
+        }
+        for (Registration registration : listeners) {
+            registration.changed();
+        }
+    }
+
+    /**
+     * @return the current responses, recalculating the weight if it's due
+     */
+    private Rendered rendered() {
+        final long now = System.nanoTime();
+        final long next = nextRefresh.get();
+        if (now - next >= 0 && nextRefresh.compareAndSet(next, now + refreshIntervalNanos)) {
+            refresh();
+        }
+        final Rendered current = rendered;
+        // Rendered by a thread that lost a race with a state change, which rendered first
+        if (current.state != state.getReference() || current.detail != detail) {
+            return rerender();
+        }
+        return current;
+    }
+
+    private Rendered rerender() {
+        final Rendered current = render(state.getReference(), detail);
+        rendered = current;
+        return current;
+    }
+
+    private Rendered render(State current, String currentDetail) {
+        return new Rendered(current, current == State.ALIVE ? aliveWeight : 0, currentDetail);
+    }
+
+    /**
+     * Parks until the condition's met, or the deadline passes if there is one.
+     */
+    private void awaitState(Condition condition, boolean timed, long deadline) throws InterruptedException {
+        final Thread current = Thread.currentThread();
+        // Added before checking, so any change after the check unparks it
+        waiters.add(current);
+        try {
+            while (!condition.isMet(state.getReference())) {
+                if (!timed) {
+                    LockSupport.park(this);
+                } else {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        } finally {
+            waiters.remove(current);
+        }
+    }
+
+    private void signal() {
+        for (Thread waiter : waiters) {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet(State current);
+    }
+
+    /**
+     * Tells a listener of changes, one at a time. Every change counts as pending, and the listener is only called by
+     * whoever took the count from zero, until the count is back to zero, so changes made while it's being called are
+     * picked up by the same run rather than starting another.
+     */
+    private final class Registration implements Runnable {
+
+        private final PoolStatusListener listener;
+        private final Executor executor;
+        private final AtomicInteger pending = new AtomicInteger();
+        // Only touched by the single run in progress, which the pending count orders
+        private State told = State.DEAD;
+
+        private Registration(PoolStatusListener listener, Executor executor) {
+            this.listener = listener;
+            this.executor = executor;
+        }
+
+        private void changed() {
+            if (pending.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    pending.set(0);
+                    LOGGER.warn("Pool status listener {} rejected", listener, e);
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int seen;
+            do {
+                seen = pending.get();
+                final State current = state.getReference();
+                if (current != told) {
+                    told = current;
+                    tell(current);
+                }
+            } while (pending.addAndGet(-seen) != 0);
+        }
+
+        private void tell(State current) {
+            try {
+                switch (current) {
+                    case ALIVE:
+                        listener.onEnter();
+                        break;
+                    case DRAINING:
+                        listener.onDrain();
+                        break;
+                    default:
+                        listener.onExit();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Pool status listener {} failed", listener, e);
+            }
+        }
+    }
+
+    /**
+     * Future for {@link #whenAlive()}, which stops waiting for the node to enter the pool if it's cancelled, so callers
+     * that give up on a node that stays dead don't pile up.
+     */
+    private final class AliveFuture extends FutureTask<State> {
+
+        private AliveFuture() {
+            super(new Callable<State>() {
+                @Override
+                public State call() {
+                    return State.ALIVE;
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            if (isCancelled()) {
+                aliveFutures.remove(this);
+            }
+        }
+    }
+
+    private static final class ListenerExecutor {
+
+        private static final ExecutorService INSTANCE = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                final Thread thread = new Thread(runnable, "pool-status-listeners");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    private static final class Rendered {
+
+        private final State state;
+        private final int weight;
+        private final String detail;
+        private final byte[] status;
+        private final byte[] agentCheck;
+        private final ByteBuffer statusBuffer;
+        private final ByteBuffer agentCheckBuffer;
+
+        private Rendered(State state, int weight, String detail) {
+            this.state = state;
+            this.weight = weight;
+            this.detail = detail;
+            this.status = ((detail == null ? state.toString() : state + " (" + detail + ")") + "\n")
+                    .getBytes(StandardCharsets.UTF_8);
+            final String agentCheck;
+            switch (state) {
+                case ALIVE:
+                    agentCheck = "up ready " + weight + "%\n";
+                    break;
+                case DRAINING:
+                    agentCheck = "drain\n";
+                    break;
+                default:
+                    agentCheck = "down\n";
+            }
+            this.agentCheck = agentCheck.getBytes(StandardCharsets.US_ASCII);
+            this.statusBuffer = ByteBuffer.wrap(status).asReadOnlyBuffer();
+            this.agentCheckBuffer = ByteBuffer.wrap(this.agentCheck).asReadOnlyBuffer();
+        }
+    }
+
 }
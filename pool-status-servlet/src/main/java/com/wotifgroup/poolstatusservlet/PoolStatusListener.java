@@ -0,0 +1,34 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+/**
+ * Told when this node enters, starts draining from or leaves the pool, so it can start and stop work that should only
+ * happen in the pool, such as consuming from a queue. See {@link PoolStatus#addListener(PoolStatusListener)}.
+ */
+public interface PoolStatusListener {
+
+    void onEnter();
+
+    void onDrain();
+
+    void onExit();
+
+}
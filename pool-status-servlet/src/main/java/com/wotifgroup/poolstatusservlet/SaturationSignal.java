@@ -0,0 +1,33 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+/**
+ * A sign of this node being busier than it can comfortably be, such as requests queueing or time lost to GC, which
+ * takes weight off it in the pool. See {@link PoolStatus#addSaturationSignal(SaturationSignal)}.
+ */
+public interface SaturationSignal {
+
+    /**
+     * @return from 0, for no sign of saturation, to 1, for fully saturated
+     */
+    double saturation();
+
+}
@@ -0,0 +1,75 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A counter spread over several cells, so that threads counting at once mostly update different cache lines rather
+ * than all contending for one. The sum is only weakly consistent: counts made while it's being taken may or may not be
+ * in it.
+ */
+final class StripedCounter {
+
+    /**
+     * Longs in a 64 byte cache line, so each cell gets a line of its own.
+     */
+    private static final int PADDING = 8;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedCounter(int concurrency) {
+        int stripes = 1;
+        while (stripes < concurrency * 2 && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        this.mask = stripes - 1;
+        // The first line is left empty, so the array's header isn't in the first cell's line either
+        this.cells = new AtomicLongArray((stripes + 1) * PADDING);
+    }
+
+    void increment() {
+        cells.incrementAndGet(cell());
+    }
+
+    void decrement() {
+        cells.decrementAndGet(cell());
+    }
+
+    long sum() {
+        long sum = 0;
+        for (int i = PADDING; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    private int cell() {
+        // Thread IDs are handed out in order, so consecutive threads get consecutive cells
+        return (((int) Thread.currentThread().getId() & mask) + 1) * PADDING;
+    }
+
+}
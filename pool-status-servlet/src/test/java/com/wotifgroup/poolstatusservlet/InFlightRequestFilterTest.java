@@ -0,0 +1,82 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+import org.junit.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class InFlightRequestFilterTest {
+
+    private final PoolStatus pool = new PoolStatus();
+    private final InFlightRequestFilter filter = new InFlightRequestFilter(pool);
+
+    @Test
+    public void countsRequestsWhileInFlight() throws Exception {
+        final long[] during = new long[1];
+        filter.doFilter(request(), null, new FilterChain() {
+            public void doFilter(ServletRequest request, ServletResponse response) {
+                during[0] = pool.inFlight();
+            }
+        });
+
+        assertThat(during[0]).isEqualTo(1);
+        assertThat(pool.inFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void countsFailedRequestsAsFinished() throws Exception {
+        try {
+            filter.doFilter(request(), null, new FilterChain() {
+                public void doFilter(ServletRequest request, ServletResponse response) throws ServletException {
+                    throw new ServletException("failed");
+                }
+            });
+            fail("expected the failure to be rethrown");
+        } catch (ServletException e) {
+            assertThat(e.getMessage()).isEqualTo("failed");
+        }
+
+        assertThat(pool.inFlight()).isEqualTo(0);
+    }
+
+    private static ServletRequest request() throws IOException {
+        return (ServletRequest) Proxy.newProxyInstance(InFlightRequestFilterTest.class.getClassLoader(),
+                new Class<?>[] {ServletRequest.class}, new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        if ("isAsyncStarted".equals(method.getName())) {
+                            return false;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                });
+    }
+
+}
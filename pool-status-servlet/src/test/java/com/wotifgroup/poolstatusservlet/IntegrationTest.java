@@ -43,6 +43,7 @@ public class IntegrationTest {
                 .with(new EnterPoolServlet(POOL_STATUS), "/enter")
                 .with(new ExitPoolServlet(POOL_STATUS), "/exit")
                 .with(new PoolStatusServlet(POOL_STATUS), "/pool_status.txt")
+                .with(new AgentCheckServlet(POOL_STATUS), "/agent_check.txt")
                 .build();
         return server;
     }
@@ -117,6 +118,10 @@ public class IntegrationTest {
                 .isEqualTo(HttpServletResponse.SC_OK);
         assertThat(response.getContentAsString())
                 .isEqualTo("alive\n");
+        assertThat(response.getHeaders().get("Content-Type"))
+                .isEqualTo("text/plain;charset=UTF-8");
+        assertThat(response.getHeaders().get("Content-Length"))
+                .isEqualTo("6");
     }
 
     @Test
@@ -131,6 +136,43 @@ public class IntegrationTest {
                 .isEqualTo("dead\n");
     }
 
+    @Test
+    public void shouldReturnAgentCheckWeightWhenAlive() throws Exception {
+        POOL_STATUS.enter();
+
+        final ContentResponse response = newRequest("/agent_check.txt", HttpMethod.GET);
+
+        assertThat(response.getStatus())
+                .isEqualTo(HttpServletResponse.SC_OK);
+        assertThat(response.getContentAsString())
+                .isEqualTo("up ready 100%\n");
+    }
+
+    @Test
+    public void shouldReturnAgentCheckDownWhenDead() throws Exception {
+        POOL_STATUS.exit();
+
+        final ContentResponse response = newRequest("/agent_check.txt", HttpMethod.GET);
+
+        assertThat(response.getContentAsString())
+                .isEqualTo("down\n");
+    }
+
+    @Test
+    public void shouldReturnDetailWithState() throws Exception {
+        POOL_STATUS.exit();
+        POOL_STATUS.setDetail("warming up");
+
+        try {
+            final ContentResponse response = newRequest("/pool_status.txt", HttpMethod.GET);
+
+            assertThat(response.getContentAsString())
+                    .isEqualTo("dead (warming up)\n");
+        } finally {
+            POOL_STATUS.setDetail(null);
+        }
+    }
+
     private ContentResponse newRequest(final String path, final HttpMethod method) throws Exception {
         return client.newRequest("localhost", server.port())
                 .path(path)
@@ -20,6 +20,18 @@
 package com.wotifgroup.poolstatusservlet;
 
 import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
 import static org.fest.assertions.api.Assertions.assertThat;
 
 public class PoolStatusTest {
@@ -122,4 +134,334 @@ public class PoolStatusTest {
         }
     }
 
+    @Test
+    public void drainsBeforeExiting() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        status.requestStarted();
+
+        final Thread drainer = exitInBackground(status, 10);
+        while (status.state() != PoolStatus.State.DRAINING) {
+            Thread.sleep(1);
+        }
+        Thread.sleep(50);
+        assertThat(status.state()).isEqualTo(PoolStatus.State.DRAINING);
+
+        status.requestFinished();
+        drainer.join(5000);
+        assertThat(drainer.isAlive()).isFalse();
+        assertThat(status.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(status.inFlight()).isEqualTo(0);
+    }
+
+    @Test
+    public void exitsWhenDrainTimesOut() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        status.requestStarted();
+
+        final long start = System.nanoTime();
+        assertThat(status.exit(100, TimeUnit.MILLISECONDS)).isEqualTo(PoolStatus.State.ALIVE);
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+        assertThat(status.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(status.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    public void exitsStraightAwayWhenNothingInFlight() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+
+        assertThat(status.exit(10, TimeUnit.SECONDS)).isEqualTo(PoolStatus.State.ALIVE);
+        assertThat(status.state()).isEqualTo(PoolStatus.State.DEAD);
+        assertThat(status.exit(10, TimeUnit.SECONDS)).isEqualTo(PoolStatus.State.DEAD);
+    }
+
+    @Test
+    public void enteringStopsDrain() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        status.requestStarted();
+
+        final Thread drainer = exitInBackground(status, 10);
+        while (status.state() != PoolStatus.State.DRAINING) {
+            Thread.sleep(1);
+        }
+        assertThat(status.enter()).isEqualTo(PoolStatus.State.DRAINING);
+        drainer.join(5000);
+        assertThat(drainer.isAlive()).isFalse();
+        assertThat(status.state()).isEqualTo(PoolStatus.State.ALIVE);
+    }
+
+    @Test
+    public void entersUnlessChangedSince() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        final int changeCount = status.changeCount();
+        status.exit();
+
+        assertThat(status.enterUnlessChangedSince(changeCount + 1)).isTrue();
+        assertThat(status.state()).isEqualTo(PoolStatus.State.ALIVE);
+    }
+
+    @Test
+    public void staysOutWhenExitedAgainSince() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        final int changeCount = status.changeCount();
+        status.exit();
+        // already out, but still counts as someone wanting it out
+        status.exit(1, TimeUnit.SECONDS);
+
+        assertThat(status.enterUnlessChangedSince(changeCount + 1)).isFalse();
+        assertThat(status.state()).isEqualTo(PoolStatus.State.DEAD);
+    }
+
+    @Test
+    public void rampsWeightUpOverSlowStart() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        status.setRefreshInterval(0, TimeUnit.SECONDS);
+        status.setSlowStart(400, TimeUnit.MILLISECONDS);
+
+        assertThat(status.weight()).isEqualTo(0);
+        status.enter();
+        final int entered = status.weight();
+        assertThat(entered).isLessThan(50);
+        Thread.sleep(200);
+        assertThat(status.weight()).isGreaterThan(entered);
+        Thread.sleep(300);
+        assertThat(status.weight()).isEqualTo(PoolStatus.MAX_WEIGHT);
+
+        // starts again from the bottom on entering again
+        status.exit();
+        assertThat(status.weight()).isEqualTo(0);
+        status.enter();
+        assertThat(status.weight()).isLessThan(50);
+    }
+
+    @Test
+    public void takesWeightOffWhenSaturated() {
+        final PoolStatus status = new PoolStatus();
+        status.setRefreshInterval(0, TimeUnit.SECONDS);
+        final double[] saturation = {0.25};
+        status.addSaturationSignal(new SaturationSignal() {
+            public double saturation() {
+                return saturation[0];
+            }
+        });
+        status.addSaturationSignal(new SaturationSignal() {
+            public double saturation() {
+                throw new IllegalStateException("ignored");
+            }
+        });
+        status.enter();
+
+        assertThat(status.weight()).isEqualTo(75);
+        saturation[0] = 2;
+        assertThat(status.weight()).isEqualTo(1);
+        assertThat(status.saturation()).isEqualTo(1.0);
+    }
+
+    @Test
+    public void recalculatesWeightOnlyOnceEachRefreshInterval() {
+        final PoolStatus status = new PoolStatus();
+        status.setRefreshInterval(1, TimeUnit.HOURS);
+        final int[] checks = {0};
+        status.addSaturationSignal(new SaturationSignal() {
+            public double saturation() {
+                checks[0]++;
+                return 0;
+            }
+        });
+        status.enter();
+        final int checksOnEntering = checks[0];
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(status.weight()).isEqualTo(PoolStatus.MAX_WEIGHT);
+        }
+        assertThat(checks[0]).isLessThanOrEqualTo(checksOnEntering + 1);
+    }
+
+    @Test
+    public void rendersAgentCheckResponses() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        assertThat(agentCheck(status)).isEqualTo("down\n");
+        status.enter();
+        assertThat(agentCheck(status)).isEqualTo("up ready 100%\n");
+        status.requestStarted();
+        final Thread drainer = exitInBackground(status, 10);
+        while (status.state() != PoolStatus.State.DRAINING) {
+            Thread.sleep(1);
+        }
+        assertThat(agentCheck(status)).isEqualTo("drain\n");
+        status.requestFinished();
+        drainer.join();
+        assertThat(agentCheck(status)).isEqualTo("down\n");
+    }
+
+    @Test
+    public void rendersStatusWithDetail() {
+        final PoolStatus status = new PoolStatus();
+        assertThat(new String(status.statusBody(), StandardCharsets.UTF_8)).isEqualTo("dead\n");
+        status.setDetail("warming up");
+        assertThat(new String(status.statusBody(), StandardCharsets.UTF_8)).isEqualTo("dead (warming up)\n");
+    }
+
+    @Test
+    public void tellsListenersOfChangesInOrder() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        final RecordingListener listener = new RecordingListener();
+        status.addListener(listener, DIRECT);
+        assertThat(listener.events).isEmpty();
+
+        status.enter();
+        status.enter();
+        status.requestStarted();
+        final Thread drainer = exitInBackground(status, 10);
+        while (status.state() != PoolStatus.State.DRAINING) {
+            Thread.sleep(1);
+        }
+        status.requestFinished();
+        drainer.join();
+
+        assertThat(listener.events).containsExactly("enter", "drain", "exit");
+    }
+
+    @Test
+    public void tellsListenerAddedInPoolStraightAway() {
+        final PoolStatus status = new PoolStatus();
+        status.enter();
+        final RecordingListener listener = new RecordingListener();
+
+        status.addListener(listener, DIRECT);
+        assertThat(listener.events).containsExactly("enter");
+
+        status.removeListener(listener);
+        status.exit();
+        assertThat(listener.events).containsExactly("enter");
+    }
+
+    @Test
+    public void tellsListenersOffTheChangingThread() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        final BlockingQueue<String> events = new LinkedBlockingQueue<>();
+        status.addListener(new PoolStatusListener() {
+            @Override
+            public void onEnter() {
+                events.add("enter on " + Thread.currentThread().getName());
+                throw new IllegalStateException("ignored");
+            }
+
+            @Override
+            public void onDrain() {
+            }
+
+            @Override
+            public void onExit() {
+                events.add("exit on " + Thread.currentThread().getName());
+            }
+        });
+
+        status.enter();
+        assertThat(events.poll(1, TimeUnit.SECONDS)).isEqualTo("enter on pool-status-listeners");
+        // still told of changes after failing
+        status.exit();
+        assertThat(events.poll(1, TimeUnit.SECONDS)).isEqualTo("exit on pool-status-listeners");
+    }
+
+    @Test
+    public void tellsSlowListenerOnlyOfLatestState() {
+        final PoolStatus status = new PoolStatus();
+        final RecordingListener listener = new RecordingListener();
+        final List<Runnable> queued = new ArrayList<>();
+        status.addListener(listener, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                queued.add(command);
+            }
+        });
+
+        status.enter();
+        status.exit();
+        status.enter();
+        // one run, started by the first change, picks up the others
+        assertThat(queued).hasSize(1);
+        queued.get(0).run();
+
+        assertThat(listener.events).containsExactly("enter");
+    }
+
+    @Test
+    public void completesFutureOnEntering() throws Exception {
+        final PoolStatus status = new PoolStatus();
+        final Future<PoolStatus.State> alive = status.whenAlive();
+        assertThat(alive.isDone()).isFalse();
+
+        status.enter();
+        assertThat(alive.get(1, TimeUnit.SECONDS)).isEqualTo(PoolStatus.State.ALIVE);
+        assertThat(status.whenAlive().isDone()).isTrue();
+    }
+
+    @Test
+    public void forgetsCancelledFutures() {
+        final PoolStatus status = new PoolStatus();
+        for (int i = 0; i < 100; i++) {
+            status.whenAlive().cancel(false);
+        }
+        final Future<PoolStatus.State> alive = status.whenAlive();
+
+        assertThat(status.aliveFuturesWaiting()).isEqualTo(1);
+        status.enter();
+        assertThat(alive.isDone()).isTrue();
+        assertThat(status.aliveFuturesWaiting()).isEqualTo(0);
+    }
+
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private static final class RecordingListener implements PoolStatusListener {
+
+        private final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onEnter() {
+            events.add("enter");
+        }
+
+        @Override
+        public void onDrain() {
+            events.add("drain");
+        }
+
+        @Override
+        public void onExit() {
+            events.add("exit");
+        }
+    }
+
+    private static String agentCheck(PoolStatus status) {
+        final ByteBuffer response = status.agentCheckResponse();
+        final byte[] bytes = new byte[response.remaining()];
+        response.get(bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static Thread exitInBackground(final PoolStatus status, final long seconds) {
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    status.exit(seconds, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
 }
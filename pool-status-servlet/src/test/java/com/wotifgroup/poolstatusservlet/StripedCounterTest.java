@@ -0,0 +1,72 @@
+/*
+ * #%L
+ * pool-status-servlet
+ * %%
+ * Copyright (C) 2015 Wotif Group
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+package com.wotifgroup.poolstatusservlet;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class StripedCounterTest {
+
+    @Test
+    public void countsAcrossThreads() throws Exception {
+        final StripedCounter counter = new StripedCounter(4);
+
+        final Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final boolean up = i % 2 == 0;
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        if (up) {
+                            counter.increment();
+                            counter.increment();
+                        } else {
+                            counter.decrement();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertThat(counter.sum()).isEqualTo(40000);
+    }
+
+    @Test
+    public void countsDownOnOtherThreads() throws Exception {
+        final StripedCounter counter = new StripedCounter(1);
+        counter.increment();
+
+        final Thread other = new Thread(new Runnable() {
+            public void run() {
+                counter.decrement();
+            }
+        });
+        other.start();
+        other.join();
+
+        assertThat(counter.sum()).isEqualTo(0);
+    }
+
+}